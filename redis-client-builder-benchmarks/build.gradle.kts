@@ -0,0 +1,33 @@
+plugins {
+    id("me.champeau.jmh")
+}
+
+dependencies {
+    // Modules under benchmark
+    jmh(project(":redis-client-builder-core"))
+    jmh(project(":redis-client-builder-resilience4j"))
+    jmh(project(":redis-client-builder-lettuce"))
+
+    // Fault injection for ResilienceFaultBenchmark
+    jmh(project(":redis-client-builder-test-fixtures"))
+
+    // Client libraries
+    jmh(libs.jedis)
+    jmh(libs.lettuce.core)
+
+    // Native transports compared by TransportBenchmark
+    jmh(variantOf(libs.netty.transport.native.epoll) { classifier("linux-x86_64") })
+    jmh(variantOf(libs.netty.transport.native.io.uring) { classifier("linux-x86_64") })
+}
+
+jmh {
+    jmhVersion.set(libs.versions.jmh.get())
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+
+    // Allocation per operation, and results that can be compared between runs
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+}
@@ -0,0 +1,244 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisFuture
+import io.lettuce.core.RedisURI
+import io.lettuce.core.api.StatefulRedisConnection
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Threads
+import reactor.core.publisher.Flux
+import redis.clients.jedis.ConnectionPoolConfig
+import redis.clients.jedis.DefaultJedisClientConfig
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisPool
+import redis.clients.jedis.JedisPoolConfig
+import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.Response
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.providers.PooledConnectionProvider
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the clients the builders produce on the same workload: single GETs and SETs, an MGET and a
+ * pipeline of GETs, against an in-process [RespStandIn] over loopback.
+ *
+ * The clients are created the way the builders create them, since this module depends on the libraries
+ * rather than on the builder modules. Each client is shared by all benchmark threads, like an application
+ * shares the client it built. The resilience variants wrap the client in a circuit breaker, which stands
+ * in for the decorators; [ResilienceDecoratorBenchmark] compares the decorators without a network.
+ *
+ * The nested classes run the same benchmarks with 1, 8 and 32 threads. The GC profiler and the JSON result
+ * file are configured in the module's build script, so `gc.alloc.rate.norm` gives the allocation per command.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh -Pjmh.includes=ClientBenchmark`, and narrow the
+ * clients with `-Pjmh.benchmarkParameters=client=jedisPooled,lettuceAsync` if needed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+abstract class ClientBenchmark {
+    @Param(
+        "jedisPool",
+        "jedisPooled",
+        "unifiedJedis",
+        "lettuceSync",
+        "lettuceAsync",
+        "lettuceReactive",
+        "resilientJedisPooled",
+        "resilientUnifiedJedis",
+        "resilientLettuceSync"
+    )
+    lateinit var client: String
+
+    @Param("16", "1024", "16384")
+    @JvmField
+    var valueSize: Int = 0
+
+    private lateinit var standIn: RespStandIn
+    private lateinit var driver: Driver
+    private lateinit var value: String
+    private val keys = Array(BATCH_SIZE) { "benchmark:key:$it" }
+
+    /**
+     * The commands under benchmark, implemented with each client's own API.
+     */
+    private interface Driver : AutoCloseable {
+        fun get(key: String): String?
+
+        fun set(key: String, value: String): String?
+
+        /** Returns the number of values read. */
+        fun mget(keys: Array<String>): Int
+
+        /** Returns the number of values read. */
+        fun pipeline(keys: Array<String>): Int
+    }
+
+    @Setup
+    fun setup() {
+        standIn = RespStandIn(valueSize)
+        value = "x".repeat(valueSize)
+        driver = when (client) {
+            "jedisPool" -> JedisPoolDriver(JedisPool(jedisPoolConfig(), LOCALHOST, standIn.port))
+            "jedisPooled" -> UnifiedJedisDriver(jedisPooled())
+            "unifiedJedis" -> UnifiedJedisDriver(unifiedJedis())
+            "resilientJedisPooled" -> UnifiedJedisDriver(circuitBreaker<UnifiedJedis>(jedisPooled()))
+            "resilientUnifiedJedis" -> UnifiedJedisDriver(circuitBreaker(unifiedJedis()))
+            "lettuceSync" -> LettuceDriver(lettuceClient(), LettuceApi.SYNC)
+            "lettuceAsync" -> LettuceDriver(lettuceClient(), LettuceApi.ASYNC)
+            "lettuceReactive" -> LettuceDriver(lettuceClient(), LettuceApi.REACTIVE)
+            "resilientLettuceSync" -> LettuceDriver(circuitBreaker(lettuceClient()), LettuceApi.SYNC)
+            else -> throw IllegalArgumentException("Unknown client $client")
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        driver.close()
+        standIn.close()
+    }
+
+    @Benchmark
+    fun get(): String? = driver.get(KEY)
+
+    @Benchmark
+    fun set(): String? = driver.set(KEY, value)
+
+    @Benchmark
+    fun mget(): Int = driver.mget(keys)
+
+    @Benchmark
+    fun pipeline(): Int = driver.pipeline(keys)
+
+    private fun <T> circuitBreaker(client: T): T = RedisCircuitBreakerImpl.create<T>().wrap(client)
+
+    private fun jedisPoolConfig(): JedisPoolConfig = JedisPoolConfig().apply { maxTotal = MAX_THREADS }
+
+    private fun jedisPooled(): JedisPooled =
+        JedisPooled(ConnectionPoolConfig().apply { maxTotal = MAX_THREADS }, LOCALHOST, standIn.port)
+
+    private fun unifiedJedis(): UnifiedJedis =
+        UnifiedJedis(
+            PooledConnectionProvider(
+                HostAndPort(LOCALHOST, standIn.port),
+                DefaultJedisClientConfig.builder().build(),
+                ConnectionPoolConfig().apply { maxTotal = MAX_THREADS }
+            )
+        )
+
+    private fun lettuceClient(): RedisClient = RedisClient.create(RedisURI.create(LOCALHOST, standIn.port))
+
+    private class JedisPoolDriver(private val pool: JedisPool) : Driver {
+        override fun get(key: String): String? = pool.resource.use { it.get(key) }
+
+        override fun set(key: String, value: String): String? = pool.resource.use { it.set(key, value) }
+
+        override fun mget(keys: Array<String>): Int = pool.resource.use { it.mget(*keys).size }
+
+        override fun pipeline(keys: Array<String>): Int =
+            pool.resource.use { jedis ->
+                val pipeline = jedis.pipelined()
+                val responses = keys.map { pipeline.get(it) }
+                pipeline.sync()
+                responses.count { it.get() != null }
+            }
+
+        override fun close() = pool.close()
+    }
+
+    /**
+     * Drives a JedisPooled or a plain UnifiedJedis, either of which may be wrapped by a decorator.
+     */
+    private class UnifiedJedisDriver(private val jedis: UnifiedJedis) : Driver {
+        override fun get(key: String): String? = jedis.get(key)
+
+        override fun set(key: String, value: String): String? = jedis.set(key, value)
+
+        override fun mget(keys: Array<String>): Int = jedis.mget(*keys).size
+
+        override fun pipeline(keys: Array<String>): Int =
+            jedis.pipelined().use { pipeline ->
+                val responses: List<Response<String>> = keys.map { pipeline.get(it) }
+                pipeline.sync()
+                responses.count { it.get() != null }
+            }
+
+        override fun close() = jedis.close()
+    }
+
+    private enum class LettuceApi { SYNC, ASYNC, REACTIVE }
+
+    /**
+     * Drives one shared Lettuce connection through its sync, async or reactive API. Lettuce has no pipeline
+     * object, so a pipeline writes all commands before awaiting any reply, through the async or reactive API.
+     */
+    private class LettuceDriver(private val client: RedisClient, private val api: LettuceApi) : Driver {
+        private val connection: StatefulRedisConnection<String, String> = client.connect()
+
+        override fun get(key: String): String? =
+            when (api) {
+                LettuceApi.SYNC -> connection.sync().get(key)
+                LettuceApi.ASYNC -> connection.async().get(key).get()
+                LettuceApi.REACTIVE -> connection.reactive().get(key).block()
+            }
+
+        override fun set(key: String, value: String): String? =
+            when (api) {
+                LettuceApi.SYNC -> connection.sync().set(key, value)
+                LettuceApi.ASYNC -> connection.async().set(key, value).get()
+                LettuceApi.REACTIVE -> connection.reactive().set(key, value).block()
+            }
+
+        override fun mget(keys: Array<String>): Int =
+            when (api) {
+                LettuceApi.SYNC -> connection.sync().mget(*keys).size
+                LettuceApi.ASYNC -> connection.async().mget(*keys).get().size
+                LettuceApi.REACTIVE -> connection.reactive().mget(*keys).count().block()!!.toInt()
+            }
+
+        override fun pipeline(keys: Array<String>): Int {
+            if (api == LettuceApi.REACTIVE) {
+                val reactive = connection.reactive()
+                return Flux.fromArray(keys).flatMap { reactive.get(it) }.count().block()!!.toInt()
+            }
+            val async = connection.async()
+            val futures = arrayOfNulls<RedisFuture<String>>(keys.size)
+            for (i in keys.indices) {
+                futures[i] = async.get(keys[i])
+            }
+            return futures.count { it!!.get() != null }
+        }
+
+        override fun close() {
+            connection.close()
+            client.shutdown()
+        }
+    }
+
+    @Threads(1)
+    open class OneThread : ClientBenchmark()
+
+    @Threads(8)
+    open class EightThreads : ClientBenchmark()
+
+    @Threads(MAX_THREADS)
+    open class ThirtyTwoThreads : ClientBenchmark()
+
+    companion object {
+        private const val LOCALHOST = "localhost"
+        private const val KEY = "benchmark:key"
+        private const val BATCH_SIZE = 16
+
+        // Pools are sized for the most threads, so that threads never wait for a connection
+        private const val MAX_THREADS = 32
+    }
+}
@@ -0,0 +1,77 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import com.joshrotenberg.redis.client.builder.resilience.GcraRateLimiter
+import io.github.resilience4j.ratelimiter.RateLimiter
+import io.github.resilience4j.ratelimiter.RateLimiterConfig
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.Threads
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the cost of taking a permission from the resilience4j rate limiter and the GCRA rate limiters
+ * as the number of contending threads grows. The limit is set high enough that permissions are rarely
+ * refused, so the results reflect the contention on the limiter state rather than throttling.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class RateLimiterBenchmark {
+
+    @Param("resilience4j", "gcra", "gcra-striped")
+    lateinit var limiter: String
+
+    private lateinit var acquire: () -> Boolean
+
+    @Setup
+    fun setup() {
+        acquire = when (limiter) {
+            "resilience4j" -> {
+                val rateLimiter = RateLimiter.of(
+                    "benchmark",
+                    RateLimiterConfig.custom()
+                        .limitForPeriod(LIMIT_FOR_PERIOD)
+                        .limitRefreshPeriod(Duration.ofNanos(PERIOD_NANOS))
+                        .timeoutDuration(Duration.ZERO)
+                        .build()
+                )
+                rateLimiter::acquirePermission
+            }
+            "gcra" -> GcraRateLimiter("benchmark", LIMIT_FOR_PERIOD, PERIOD_NANOS, 0)::tryAcquirePermission
+            "gcra-striped" ->
+                GcraRateLimiter("benchmark", LIMIT_FOR_PERIOD, PERIOD_NANOS, 0, STRIPES)::tryAcquirePermission
+            else -> throw IllegalArgumentException("Unknown limiter: $limiter")
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    fun threads1(): Boolean = acquire()
+
+    @Benchmark
+    @Threads(8)
+    fun threads8(): Boolean = acquire()
+
+    @Benchmark
+    @Threads(64)
+    fun threads64(): Boolean = acquire()
+
+    @Benchmark
+    @Threads(256)
+    fun threads256(): Boolean = acquire()
+
+    companion object {
+        private const val LIMIT_FOR_PERIOD = 1_000_000_000
+        private const val PERIOD_NANOS = 1_000_000_000L
+        private const val STRIPES = 16
+    }
+}
@@ -0,0 +1,83 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.executors.CommandExecutor
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the per-command overhead of the resilience decorators.
+ * Commands are answered in memory by a stub executor, so the difference between the raw and the wrapped
+ * clients is the cost of the decorator itself rather than of a network round trip.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+open class ResilienceDecoratorBenchmark {
+    private lateinit var raw: UnifiedJedis
+    private lateinit var circuitBreaker: UnifiedJedis
+    private lateinit var retry: UnifiedJedis
+    private lateinit var bulkhead: UnifiedJedis
+
+    @Setup
+    fun setup() {
+        raw = UnifiedJedis(InMemoryCommandExecutor())
+        circuitBreaker = RedisCircuitBreakerImpl.create<UnifiedJedis>().wrap(UnifiedJedis(InMemoryCommandExecutor()))
+        retry = RedisRetryImpl.create<UnifiedJedis>().wrap(UnifiedJedis(InMemoryCommandExecutor()))
+        bulkhead = RedisBulkheadImpl.create<UnifiedJedis>().wrap(UnifiedJedis(InMemoryCommandExecutor()))
+    }
+
+    @Benchmark
+    fun rawGet(): String? = raw.get(KEY)
+
+    @Benchmark
+    fun rawSet(): String = raw.set(KEY, VALUE)
+
+    @Benchmark
+    fun circuitBreakerGet(): String? = circuitBreaker.get(KEY)
+
+    @Benchmark
+    fun circuitBreakerSet(): String = circuitBreaker.set(KEY, VALUE)
+
+    @Benchmark
+    fun retryGet(): String? = retry.get(KEY)
+
+    @Benchmark
+    fun retrySet(): String = retry.set(KEY, VALUE)
+
+    @Benchmark
+    fun bulkheadGet(): String? = bulkhead.get(KEY)
+
+    @Benchmark
+    fun bulkheadSet(): String = bulkhead.set(KEY, VALUE)
+
+    /**
+     * Command executor that answers every command with a constant reply.
+     */
+    private class InMemoryCommandExecutor : CommandExecutor {
+        @Suppress("UNCHECKED_CAST")
+        override fun <T> executeCommand(commandObject: CommandObject<T>): T = REPLY as T
+
+        override fun close() {
+            // Nothing to close
+        }
+    }
+
+    companion object {
+        private const val KEY = "benchmark:key"
+        private const val VALUE = "benchmark-value"
+        private const val REPLY = "OK"
+    }
+}
@@ -0,0 +1,172 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import com.joshrotenberg.redis.client.builder.fixtures.FaultProxy
+import com.joshrotenberg.redis.client.builder.fixtures.LatencyDistribution
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
+import org.openjdk.jmh.annotations.AuxCounters
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import org.openjdk.jmh.annotations.Threads
+import redis.clients.jedis.ConnectionPoolConfig
+import redis.clients.jedis.DefaultJedisClientConfig
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisPooled
+import java.time.Duration
+import java.util.concurrent.TimeUnit
+
+/**
+ * Shows how the resilience decorators behave when the network misbehaves, to tune their settings. A
+ * [FaultProxy] between the client and a [RespStandIn] injects one kind of fault per run:
+ *
+ * - `latency`: a log-normal delay on every reply, with a median of 0.5 ms and a long tail
+ * - `bandwidth`: 64 KB/s per connection
+ * - `stalls`: all traffic held for 250 ms every second
+ * - `resets`: all connections reset every 500 ms
+ * - `halfOpen`: all connections silently dropped every 2 seconds, so only the socket timeout ends a command
+ *
+ * `latency` samples every GET, failed ones included, so its percentiles (p50, p99, p99.9) show what callers
+ * wait for. `outcomes` counts succeeded and failed GETs per second; their ratio is the error rate.
+ *
+ * The client is a [JedisPooled] with a 100 ms socket timeout, wrapped in each of the decorators with settings
+ * sized for that timeout. `pipeline` combines all three, in the order [RedisResiliencePipeline] applies them.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh -Pjmh.includes=ResilienceFaultBenchmark`. Faults
+ * are scheduled by wall clock, so keep measurement iterations at several seconds.
+ */
+@State(Scope.Benchmark)
+@Threads(ResilienceFaultBenchmark.THREADS)
+open class ResilienceFaultBenchmark {
+    @Param("none", "circuitBreaker", "timeLimiter", "retry", "pipeline")
+    lateinit var resilience: String
+
+    @Param("latency", "bandwidth", "stalls", "resets", "halfOpen")
+    lateinit var fault: String
+
+    private lateinit var standIn: RespStandIn
+    private lateinit var proxy: FaultProxy
+    private lateinit var client: JedisPooled
+
+    /**
+     * The GETs that succeeded and failed on one thread, reported by JMH as rates.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    open class Outcomes {
+        @JvmField
+        var successes: Long = 0
+
+        @JvmField
+        var errors: Long = 0
+
+        @Setup(Level.Iteration)
+        fun reset() {
+            successes = 0
+            errors = 0
+        }
+    }
+
+    @Setup
+    fun setup() {
+        standIn = RespStandIn()
+        proxy = FaultProxy.builder().upstream(LOCALHOST, standIn.port).seed(SEED).build()
+        when (fault) {
+            "latency" -> proxy.latency = LatencyDistribution.logNormal(Duration.ofNanos(MEDIAN_LATENCY_NANOS), 1.0)
+            "bandwidth" -> proxy.bandwidthBytesPerSecond = BANDWIDTH_BYTES_PER_SECOND
+            "stalls" -> proxy.scheduleAtFixedRate(Duration.ofSeconds(1)) { it.stall(Duration.ofMillis(STALL_MS)) }
+            "resets" -> proxy.scheduleAtFixedRate(Duration.ofMillis(RESET_PERIOD_MS)) { it.resetConnections() }
+            "halfOpen" -> proxy.scheduleAtFixedRate(Duration.ofSeconds(2)) { it.halfOpenConnections() }
+            else -> throw IllegalArgumentException("Unknown fault $fault")
+        }
+        val jedis = JedisPooled(
+            HostAndPort(LOCALHOST, proxy.port),
+            DefaultJedisClientConfig.builder()
+                .connectionTimeoutMillis(TIMEOUT_MS.toInt())
+                .socketTimeoutMillis(TIMEOUT_MS.toInt())
+                .build(),
+            ConnectionPoolConfig().apply { maxTotal = THREADS }
+        )
+        client = when (resilience) {
+            "none" -> jedis
+            "circuitBreaker" -> circuitBreaker().wrap(jedis)
+            "timeLimiter" -> timeLimiter().wrap(jedis)
+            "retry" -> retry().wrap(jedis)
+            "pipeline" -> RedisResiliencePipeline.create<JedisPooled>()
+                .circuitBreaker(circuitBreaker())
+                .retry(retry())
+                .timeLimiter(timeLimiter())
+                .wrap(jedis)
+            else -> throw IllegalArgumentException("Unknown resilience $resilience")
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        client.close()
+        proxy.close()
+        standIn.close()
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    fun latency(): String? =
+        try {
+            client.get(KEY)
+        } catch (e: Exception) {
+            null
+        }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    fun outcomes(outcomes: Outcomes): String? =
+        try {
+            client.get(KEY).also { outcomes.successes++ }
+        } catch (e: Exception) {
+            outcomes.errors++
+            null
+        }
+
+    private fun circuitBreaker() = RedisCircuitBreakerImpl.create<JedisPooled>()
+        .failureRateThreshold(FAILURE_RATE_THRESHOLD)
+        .minimumNumberOfCalls(MINIMUM_CALLS)
+        .waitDurationInOpenState(OPEN_STATE_MS)
+
+    private fun timeLimiter() = RedisTimeLimiterImpl.create<JedisPooled>().timeoutDuration(TIME_LIMIT_MS)
+
+    private fun retry() = RedisRetryImpl.create<JedisPooled>().maxAttempts(RETRY_ATTEMPTS).waitDuration(RETRY_WAIT_MS)
+
+    companion object {
+        const val THREADS = 8
+
+        private const val LOCALHOST = "localhost"
+        private const val KEY = "benchmark:key"
+        private const val SEED = 42L
+
+        // Faults
+        private const val MEDIAN_LATENCY_NANOS = 500_000L
+        private const val BANDWIDTH_BYTES_PER_SECOND = 64 * 1024L
+        private const val STALL_MS = 250L
+        private const val RESET_PERIOD_MS = 500L
+
+        // Client and decorator settings, sized for a loopback round trip well under a millisecond
+        private const val TIMEOUT_MS = 100L
+        private const val FAILURE_RATE_THRESHOLD = 50f
+        private const val MINIMUM_CALLS = 20
+        private const val OPEN_STATE_MS = 500L
+        private const val TIME_LIMIT_MS = 50L
+        private const val RETRY_ATTEMPTS = 3
+        private const val RETRY_WAIT_MS = 10L
+    }
+}
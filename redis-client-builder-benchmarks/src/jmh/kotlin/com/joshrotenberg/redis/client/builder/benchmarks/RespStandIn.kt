@@ -0,0 +1,130 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.InputStream
+import java.io.OutputStream
+import java.net.InetAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.SocketException
+
+/**
+ * Minimal in-process stand-in for Redis, so client benchmarks measure the client and the transport
+ * rather than a server. It serves each connection on its own thread and answers RESP commands with
+ * canned replies: `PING` with `PONG`, `GET` with a fixed value, `MGET` with the value for every key,
+ * `HELLO` with an error so clients fall back to RESP2, and everything else with `OK`.
+ *
+ * @param valueSize The size of the value returned by reads in bytes, or 0 for the five bytes `value`
+ */
+class RespStandIn @JvmOverloads constructor(valueSize: Int = 0) : AutoCloseable {
+    private val server = ServerSocket(0, BACKLOG, InetAddress.getLoopbackAddress())
+    private val value = bulkString(if (valueSize > 0) ByteArray(valueSize) { 'x'.code.toByte() } else VALUE)
+
+    /**
+     * The port the stand-in listens on.
+     */
+    val port: Int
+        get() = server.localPort
+
+    init {
+        Thread({ acceptLoop() }, "resp-stand-in").apply { isDaemon = true }.start()
+    }
+
+    private fun acceptLoop() {
+        while (!server.isClosed) {
+            val socket = try {
+                server.accept()
+            } catch (e: SocketException) {
+                return
+            }
+            socket.tcpNoDelay = true
+            Thread({ serve(socket) }, "resp-stand-in-connection").apply { isDaemon = true }.start()
+        }
+    }
+
+    private fun serve(socket: Socket) {
+        socket.use {
+            val input = BufferedInputStream(it.getInputStream())
+            val output = BufferedOutputStream(it.getOutputStream())
+            try {
+                while (true) {
+                    val command = readCommand(input) ?: return
+                    writeReply(output, command)
+                    // Flush only once the pipeline is drained, like Redis does per read
+                    if (input.available() == 0) {
+                        output.flush()
+                    }
+                }
+            } catch (e: SocketException) {
+                // Client disconnected
+            }
+        }
+    }
+
+    /**
+     * A command's name upper-cased, and its number of arguments.
+     */
+    private class Command(val name: String, val arguments: Int)
+
+    /**
+     * Reads a RESP array of bulk strings, or returns null at end of stream.
+     */
+    private fun readCommand(input: InputStream): Command? {
+        val header = readLine(input) ?: return null
+        require(header.startsWith("*")) { "Expected a RESP array, got $header" }
+        val size = header.substring(1).toInt()
+        var name = ""
+        repeat(size) { index ->
+            val length = readLine(input)!!.substring(1).toInt()
+            val bytes = input.readNBytes(length + 2)
+            if (index == 0) {
+                name = String(bytes, 0, length, Charsets.US_ASCII).uppercase()
+            }
+        }
+        return Command(name, size - 1)
+    }
+
+    private fun readLine(input: InputStream): String? {
+        val line = StringBuilder()
+        while (true) {
+            val b = input.read()
+            if (b < 0) {
+                return null
+            }
+            if (b == '\r'.code) {
+                input.read()
+                return line.toString()
+            }
+            line.append(b.toChar())
+        }
+    }
+
+    private fun writeReply(output: OutputStream, command: Command) {
+        when (command.name) {
+            "PING" -> output.write(PONG)
+            "GET" -> output.write(value)
+            "MGET" -> {
+                output.write("*${command.arguments}\r\n".toByteArray())
+                repeat(command.arguments) { output.write(value) }
+            }
+            "HELLO" -> output.write(UNKNOWN_COMMAND)
+            else -> output.write(OK)
+        }
+    }
+
+    override fun close() {
+        server.close()
+    }
+
+    companion object {
+        private const val BACKLOG = 128
+        private val PONG = "+PONG\r\n".toByteArray()
+        private val OK = "+OK\r\n".toByteArray()
+        private val VALUE = "value".toByteArray()
+        private val UNKNOWN_COMMAND = "-ERR unknown command\r\n".toByteArray()
+
+        private fun bulkString(bytes: ByteArray): ByteArray =
+            "\$${bytes.size}\r\n".toByteArray() + bytes + "\r\n".toByteArray()
+    }
+}
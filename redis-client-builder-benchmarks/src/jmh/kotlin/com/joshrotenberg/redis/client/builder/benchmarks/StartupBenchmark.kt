@@ -0,0 +1,84 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import com.joshrotenberg.redis.client.builder.RedisClientProvider
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.io.File
+import java.net.URL
+import java.net.URLClassLoader
+import java.util.ServiceLoader
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the class loading that resolving a builder costs an application at startup. Every invocation
+ * loads the classes into a new class loader, so each one pays the cost a fresh JVM pays, and returns the
+ * number of classes the loader had to define.
+ *
+ * - `allDrivers` loads the client classes of both drivers, which `RedisClientBuilderFactory` referenced
+ *   before it resolved builders through [RedisClientProvider]s: resolving any builder loaded them.
+ * - `jedisProvider` loads what resolving a Jedis builder loads now: the provider interface, a
+ *   [ServiceLoader] scan for providers and the Jedis client class. Lettuce and Netty stay unloaded.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh -Pjmh.includes=StartupBenchmark`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+open class StartupBenchmark {
+    private lateinit var classpath: Array<URL>
+
+    @Setup
+    fun setup() {
+        classpath = System.getProperty("java.class.path")
+            .split(File.pathSeparator)
+            .filter { it.isNotEmpty() }
+            .map { File(it).toURI().toURL() }
+            .toTypedArray()
+    }
+
+    @Benchmark
+    fun allDrivers(): Int = IsolatedClassLoader(classpath).use { loader ->
+        ALL_DRIVER_CLASSES.forEach { Class.forName(it, false, loader) }
+        loader.definedClasses
+    }
+
+    @Benchmark
+    fun jedisProvider(): Int = IsolatedClassLoader(classpath).use { loader ->
+        val provider = Class.forName(RedisClientProvider::class.java.name, false, loader)
+        ServiceLoader.load(provider, loader).count()
+        Class.forName(JEDIS_POOL, false, loader)
+        loader.definedClasses
+    }
+
+    /**
+     * A class loader that loads the benchmark's classpath again, apart from the JVM's platform classes,
+     * and counts the classes it defines.
+     */
+    private class IsolatedClassLoader(classpath: Array<URL>) :
+        URLClassLoader(classpath, ClassLoader.getPlatformClassLoader()) {
+        var definedClasses = 0
+            private set
+
+        override fun findClass(name: String): Class<*> = super.findClass(name).also { definedClasses++ }
+    }
+
+    companion object {
+        private const val JEDIS_POOL = "redis.clients.jedis.JedisPool"
+
+        // The client classes the factory's builder, clusterBuilder and sentinelBuilder methods referenced
+        private val ALL_DRIVER_CLASSES = listOf(
+            JEDIS_POOL,
+            "redis.clients.jedis.UnifiedJedis",
+            "redis.clients.jedis.JedisPooled",
+            "redis.clients.jedis.JedisCluster",
+            "redis.clients.jedis.JedisSentinelPool",
+            "io.lettuce.core.RedisClient",
+            "io.lettuce.core.cluster.RedisClusterClient"
+        )
+    }
+}
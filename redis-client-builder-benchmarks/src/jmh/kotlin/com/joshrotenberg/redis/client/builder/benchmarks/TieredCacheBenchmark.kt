@@ -0,0 +1,91 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import com.joshrotenberg.redis.client.builder.cache.RedisTieredCache
+import com.joshrotenberg.redis.client.builder.lettuce.LettuceCacheStore
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisURI
+import io.lettuce.core.api.StatefulRedisConnection
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+
+/**
+ * Measures the latency a [RedisTieredCache] saves over reading Redis directly.
+ * Redis is played by an in-process [RespStandIn] over loopback, so an L2 read costs a real round trip
+ * through Lettuce, while an L1 hit is a lookup in local memory. The L2 is the library's [LettuceCacheStore].
+ *
+ * The skewed benchmark reads 100,000 keys with a Zipf-like distribution through an L1 that holds about
+ * a tenth of them, so its result reflects the hit rate of the L1's TinyLFU admission as well as its speed.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh -Pjmh.includes=TieredCacheBenchmark`.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+open class TieredCacheBenchmark {
+    private lateinit var standIn: RespStandIn
+    private lateinit var client: RedisClient
+    private lateinit var connection: StatefulRedisConnection<String, String>
+    private lateinit var cache: RedisTieredCache
+    private lateinit var skewedKeys: Array<String>
+
+    @Setup
+    fun setup() {
+        standIn = RespStandIn()
+        client = RedisClient.create(RedisURI.create("localhost", standIn.port))
+        connection = client.connect()
+        cache = RedisTieredCache.builder()
+            .maximumWeight(L1_WEIGHT)
+            .l1Ttl(L1_TTL_MS)
+            .build(LettuceCacheStore.create(client))
+        // Zipf-like with exponent 1: the key of rank r is drawn with probability proportional to 1 / r
+        skewedKeys = Array(SAMPLES) {
+            val rank = Math.pow(KEYS.toDouble(), ThreadLocalRandom.current().nextDouble()).toInt()
+            "benchmark:key:$rank"
+        }
+    }
+
+    @TearDown
+    fun tearDown() {
+        cache.close()
+        connection.close()
+        client.shutdown()
+        standIn.close()
+    }
+
+    /**
+     * Every read goes to Redis.
+     */
+    @Benchmark
+    fun redisGet(): String? = connection.sync().get(KEY)
+
+    /**
+     * Every read after the first is an L1 hit.
+     */
+    @Benchmark
+    fun l1Hit(): String? = cache.get(KEY)
+
+    /**
+     * Reads of a skewed key space, answered from the L1 or Redis.
+     */
+    @Benchmark
+    fun skewedGet(): String? =
+        cache.get(skewedKeys[ThreadLocalRandom.current().nextInt(SAMPLES)])
+
+    companion object {
+        private const val KEY = "benchmark:key"
+        private const val KEYS = 100_000
+        private const val SAMPLES = 1 shl 20
+        private const val L1_TTL_MS = 60_000L
+
+        // About 10,000 entries of the default weigher, which weighs these keys at about 175 bytes
+        private const val L1_WEIGHT = 1_750_000L
+    }
+}
@@ -0,0 +1,89 @@
+package com.joshrotenberg.redis.client.builder.benchmarks
+
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisFuture
+import io.lettuce.core.RedisURI
+import io.lettuce.core.api.StatefulRedisConnection
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.BenchmarkMode
+import org.openjdk.jmh.annotations.Fork
+import org.openjdk.jmh.annotations.Mode
+import org.openjdk.jmh.annotations.OutputTimeUnit
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import org.openjdk.jmh.annotations.TearDown
+import java.util.concurrent.TimeUnit
+
+/**
+ * Compares the Netty transports of a Lettuce client against an in-process [RespStandIn].
+ * The stand-in answers from memory over loopback, so the differences between the variants are the
+ * cost of the transport: the event loop's selector or ring, and the read and write system calls.
+ *
+ * Lettuce selects its transport once per JVM, so each variant runs in its own fork, configured with
+ * Lettuce's `io.lettuce.core.epoll` and `io.lettuce.core.iouring` switches. A native variant without
+ * its library for the current OS silently runs on NIO; check the fork's log for the loaded transport.
+ *
+ * Run with `./gradlew :redis-client-builder-benchmarks:jmh -Pjmh.includes=TransportBenchmark`.
+ * To compare system calls, add JMH's `perfnorm` profiler on Linux (`-prof perfnorm`), or attach
+ * `strace -c -f` to the forked JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+abstract class TransportBenchmark {
+    private lateinit var standIn: RespStandIn
+    private lateinit var client: RedisClient
+    private lateinit var connection: StatefulRedisConnection<String, String>
+
+    @Setup
+    fun setup() {
+        standIn = RespStandIn()
+        client = RedisClient.create(RedisURI.create("localhost", standIn.port))
+        connection = client.connect()
+    }
+
+    @TearDown
+    fun tearDown() {
+        connection.close()
+        client.shutdown()
+        standIn.close()
+    }
+
+    /**
+     * One round trip at a time: the latency of a single command.
+     */
+    @Benchmark
+    fun ping(): String = connection.sync().ping()
+
+    /**
+     * A pipelined batch of reads: the throughput of the event loop.
+     */
+    @Benchmark
+    fun pipelinedGets(): Int {
+        val async = connection.async()
+        val futures = arrayOfNulls<RedisFuture<String>>(BATCH_SIZE)
+        for (i in 0 until BATCH_SIZE) {
+            futures[i] = async.get(KEY)
+        }
+        var length = 0
+        for (future in futures) {
+            length += future!!.get().length
+        }
+        return length
+    }
+
+    @Fork(jvmArgsAppend = ["-Dio.lettuce.core.epoll=false", "-Dio.lettuce.core.iouring=false"])
+    open class Nio : TransportBenchmark()
+
+    @Fork(jvmArgsAppend = ["-Dio.lettuce.core.iouring=false"])
+    open class Epoll : TransportBenchmark()
+
+    @Fork(jvmArgsAppend = ["-Dio.lettuce.core.epoll=false"])
+    open class IoUring : TransportBenchmark()
+
+    companion object {
+        private const val KEY = "benchmark:key"
+        private const val BATCH_SIZE = 32
+    }
+}
@@ -0,0 +1,42 @@
+package com.joshrotenberg.redis.client.builder
+
+import java.util.function.Supplier
+
+/**
+ * Service provider interface through which a driver module offers its builders to [RedisClientBuilderFactory].
+ * Providers are discovered with [java.util.ServiceLoader], so an application only needs the modules of the
+ * drivers it uses on its classpath.
+ *
+ * Builders are registered under the fully qualified name of the client class they build, such as
+ * `redis.clients.jedis.JedisPool`, so that looking a builder up does not load the classes of drivers that
+ * are not asked for. Implementations must therefore not reference driver classes until a supplier is
+ * invoked, and must have a public no-argument constructor. They are registered in
+ * `META-INF/services/com.joshrotenberg.redis.client.builder.RedisClientProvider`.
+ */
+interface RedisClientProvider {
+    /**
+     * The name of the driver, such as `jedis` or `lettuce`.
+     */
+    val name: String
+
+    /**
+     * Returns the standalone client builders of this driver.
+     *
+     * @return The builder suppliers, keyed by the name of the client class they build
+     */
+    fun builders(): Map<String, Supplier<out RedisClientBuilder<*>>>
+
+    /**
+     * Returns the cluster client builders of this driver.
+     *
+     * @return The builder suppliers, keyed by the name of the client class they build
+     */
+    fun clusterBuilders(): Map<String, Supplier<out RedisClusterClientBuilder<*>>> = emptyMap()
+
+    /**
+     * Returns the sentinel client builders of this driver.
+     *
+     * @return The builder suppliers, keyed by the name of the client class they build
+     */
+    fun sentinelBuilders(): Map<String, Supplier<out RedisSentinelClientBuilder<*>>> = emptyMap()
+}
\ No newline at end of file
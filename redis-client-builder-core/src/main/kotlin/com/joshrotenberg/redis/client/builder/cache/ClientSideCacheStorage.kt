@@ -0,0 +1,43 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * Where a client-side cache keeps the values it read from Redis, either on the heap in a [LocalCache]
+ * or in direct memory in an [OffHeapCache].
+ *
+ * @param K The key type
+ * @param V The value type
+ */
+interface ClientSideCacheStorage<K : Any, V : Any> {
+    /**
+     * The metrics of the storage.
+     */
+    val metrics: ClientSideCacheMetrics
+
+    /**
+     * Returns the cached value of a key, counting a hit or a miss.
+     *
+     * @param key The key to look up
+     * @return The value, or null if the key is not cached or has expired
+     */
+    fun get(key: K): V?
+
+    /**
+     * Caches the value of a key, evicting other entries if the storage is full.
+     *
+     * @param key The key
+     * @param value The value read from Redis
+     */
+    fun put(key: K, value: V)
+
+    /**
+     * Removes a key because Redis reported that it changed.
+     *
+     * @param key The key to remove
+     */
+    fun invalidate(key: K)
+
+    /**
+     * Removes all keys.
+     */
+    fun invalidateAll()
+}
\ No newline at end of file
@@ -0,0 +1,69 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * The Redis operations a [RedisTieredCache] needs from its L2, implemented over a client of any library.
+ * Stores for Jedis and Lettuce clients are provided with the builders of those clients.
+ */
+interface RedisCacheStore : AutoCloseable {
+    /**
+     * Reads the value of a key.
+     *
+     * @param key The key to read
+     * @return The value, or null if the key does not exist
+     */
+    fun get(key: String): String?
+
+    /**
+     * Writes the value of a key.
+     *
+     * @param key The key to write
+     * @param value The value
+     * @param ttlMs The time after which Redis expires the key, or 0 to keep it
+     */
+    fun set(key: String, value: String, ttlMs: Long)
+
+    /**
+     * Deletes a key.
+     *
+     * @param key The key to delete
+     */
+    fun delete(key: String)
+
+    /**
+     * Publishes a message on a pub/sub channel.
+     *
+     * @param channel The channel
+     * @param message The message
+     */
+    fun publish(channel: String, message: String)
+
+    /**
+     * Subscribes to a pub/sub channel.
+     *
+     * @param channel The channel
+     * @param listener Called with each message received on the channel, or with null when messages may have
+     * been lost, for example after the subscription reconnected
+     * @return Unsubscribes when closed
+     */
+    fun subscribe(channel: String, listener: (String?) -> Unit): AutoCloseable
+
+    /**
+     * Enables server-assisted key tracking in broadcast mode: Redis reports every change of a key with one
+     * of the given prefixes, except changes made by this store's own connection.
+     *
+     * @param prefixes The key prefixes to track, or none to track all keys
+     * @param listener Called with each changed key, or with null when all keys must be considered changed,
+     * for example after the tracking connection reconnected
+     * @return Stops tracking when closed
+     * @throws UnsupportedOperationException if the store does not support key tracking
+     */
+    fun track(prefixes: List<String>, listener: (String?) -> Unit): AutoCloseable =
+        throw UnsupportedOperationException("Key tracking is not supported by ${javaClass.simpleName}")
+
+    /**
+     * Releases the connections of the store. The client it reads through is not closed.
+     */
+    override fun close() {
+        // Nothing to release by default
+    }
+}
\ No newline at end of file
@@ -0,0 +1,610 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import java.util.UUID
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executor
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ln
+
+/**
+ * Two-tier cache of String values: a bounded in-process L1 in front of Redis as the L2.
+ * Reads are answered from the L1 when possible, then from Redis, and finally from an optional loader
+ * whose value is written to both tiers. Concurrent misses of the same key share one read of Redis and
+ * one call of the loader.
+ *
+ * The L1 is bounded by weight, an estimate of the entries' size in bytes, and uses Window TinyLFU
+ * eviction, see [TinyLfuCache]: keys read once do not displace keys read all the time. For large caches,
+ * the L1 can instead be kept in direct memory with clock eviction, see [OffHeapCache], so that it does
+ * not lengthen garbage collection pauses.
+ *
+ * Hot keys are kept from expiring all at once in two ways:
+ * - Refresh-ahead: an entry read after a set fraction of its L1 time to live is reloaded in the background,
+ *   while readers keep getting the current value.
+ * - Probabilistic early expiration: each read of an entry reloads it early with a probability that grows
+ *   as its expiry approaches, scaled by how long the entry took to load. Readers of a hot key then refresh
+ *   it at slightly different times instead of missing together when it expires.
+ *
+ * Other instances learn of changes through pub/sub messages or Redis key tracking, see [CacheInvalidation].
+ * Without invalidation, an L1 entry can be stale for up to its time to live.
+ *
+ * @property store The L2
+ * @property ownedClient The client the store reads through, if the cache built it and must close it
+ */
+class RedisTieredCache private constructor(
+    private val store: RedisCacheStore,
+    private val ownedClient: AutoCloseable?,
+    settings: Builder
+) : AutoCloseable {
+
+    /**
+     * Counters of the reads and invalidations of a tiered cache.
+     */
+    interface Metrics {
+        /** The number of reads answered from the L1. */
+        val l1Hits: Long
+
+        /** The number of reads answered from Redis. */
+        val l2Hits: Long
+
+        /** The number of reads that found the key in neither tier. */
+        val misses: Long
+
+        /** The number of background reloads started by refresh-ahead or early expiration. */
+        val refreshes: Long
+
+        /** The number of L1 entries removed because their key changed elsewhere. */
+        val invalidations: Long
+
+        /** The number of L1 entries removed to stay within the maximum weight or because they expired. */
+        val evictions: Long
+
+        /** The number of entries in the L1. */
+        val size: Long
+    }
+
+    private val l1: TieredL1
+    private val l1TtlNanos: Long
+    private val l2TtlMs: Long = settings.l2TtlMs
+    private val refreshAheadRatio: Double = settings.refreshAheadRatio
+    private val earlyExpirationBeta: Double = settings.earlyExpirationBeta
+    private val loader: ((String) -> String?)? = settings.loader
+    private val invalidation: CacheInvalidation = settings.invalidation
+    private val channel: String = settings.channel
+    private val executor: Executor = settings.executor
+    private val clock: () -> Long = settings.clock
+
+    private val instanceId = UUID.randomUUID().toString()
+    private val loads = ConcurrentHashMap<String, CompletableFuture<String?>>()
+    private val refreshing = ConcurrentHashMap.newKeySet<String>()
+
+    // Versions of the keys with loads in flight, bumped by writes and invalidations of the key, so a load
+    // that raced with one does not cache its stale value. Keys without loads in flight have no entry.
+    private val fillVersions = ConcurrentHashMap<String, FillVersion>()
+
+    // Bumped when the whole L1 is cleared, which makes every load in flight stale
+    private val clears = AtomicLong()
+
+    private val l1Hits = LongAdder()
+    private val l2Hits = LongAdder()
+    private val misses = LongAdder()
+    private val refreshes = LongAdder()
+    private val invalidations = LongAdder()
+    private val expirations = LongAdder()
+
+    private val subscription: AutoCloseable?
+
+    init {
+        val offHeapBytes = settings.offHeapBytes
+        l1 = if (offHeapBytes != null) {
+            OffHeapL1(OffHeapCache(offHeapBytes, 0, settings.offHeapPageBytes, settings.clock))
+        } else {
+            HeapL1(settings.maximumWeight, settings.weigher)
+        }
+        l1TtlNanos = TimeUnit.MILLISECONDS.toNanos(settings.l1TtlMs)
+        subscription = when (invalidation) {
+            CacheInvalidation.NONE -> null
+            CacheInvalidation.PUBSUB -> store.subscribe(channel, ::onMessage)
+            CacheInvalidation.TRACKING -> store.track(settings.prefixes, ::invalidateLocally)
+        }
+    }
+
+    /**
+     * The metrics of this cache.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val l1Hits: Long
+            get() = this@RedisTieredCache.l1Hits.sum()
+        override val l2Hits: Long
+            get() = this@RedisTieredCache.l2Hits.sum()
+        override val misses: Long
+            get() = this@RedisTieredCache.misses.sum()
+        override val refreshes: Long
+            get() = this@RedisTieredCache.refreshes.sum()
+        override val invalidations: Long
+            get() = this@RedisTieredCache.invalidations.sum()
+        override val evictions: Long
+            get() = synchronized(l1) { l1.evictions } + expirations.sum()
+        override val size: Long
+            get() = synchronized(l1) { l1.size.toLong() }
+    }
+
+    /**
+     * Returns the value of a key, using the cache's loader if the key is in neither tier.
+     *
+     * @param key The key to read
+     * @return The value, or null if the key does not exist and could not be loaded
+     */
+    fun get(key: String): String? = get(key, loader)
+
+    /**
+     * Returns the value of a key, using the given loader if the key is in neither tier.
+     *
+     * @param key The key to read
+     * @param loader Loads the value of a missing key, or returns null if it has none
+     * @return The value, or null if the key does not exist and could not be loaded
+     */
+    fun get(key: String, loader: ((String) -> String?)?): String? {
+        val entry = synchronized(l1) { l1.get(key) }
+        if (entry != null) {
+            val now = clock()
+            if (now < entry.expiresAt) {
+                l1Hits.increment()
+                if (isDueForRefresh(entry, now)) {
+                    refreshAsync(key, loader)
+                }
+                return entry.value
+            }
+            val expired = synchronized(l1) { l1.removeIfSame(key, entry) }
+            if (expired) {
+                expirations.increment()
+            }
+        }
+        return load(key, loader)
+    }
+
+    /**
+     * Writes the value of a key to Redis and the L1, and tells other instances it changed.
+     *
+     * @param key The key to write
+     * @param value The value
+     */
+    fun put(key: String, value: String) {
+        store.set(key, value, l2TtlMs)
+        changed(key)
+        val now = clock()
+        synchronized(l1) { l1.put(key, entry(value, now, 0)) }
+        announce(key)
+    }
+
+    /**
+     * Deletes a key from Redis and the L1, and tells other instances it changed.
+     *
+     * @param key The key to delete
+     */
+    fun invalidate(key: String) {
+        store.delete(key)
+        changed(key)
+        synchronized(l1) { l1.remove(key) }
+        announce(key)
+    }
+
+    /**
+     * Clears the L1 of this instance and, with pub/sub invalidation, of all instances. Redis is not changed.
+     */
+    fun invalidateAll() {
+        invalidateLocally(null)
+        if (invalidation == CacheInvalidation.PUBSUB) {
+            store.publish(channel, instanceId)
+        }
+    }
+
+    /**
+     * Stops listening for invalidations and closes the store, and the client if the cache built it.
+     */
+    override fun close() {
+        subscription?.close()
+        store.close()
+        ownedClient?.close()
+    }
+
+    /**
+     * Reads a key from Redis or the loader, sharing one read among concurrent callers.
+     */
+    private fun load(key: String, loader: ((String) -> String?)?): String? {
+        val flight = CompletableFuture<String?>()
+        val leader = loads.putIfAbsent(key, flight)
+        if (leader != null) {
+            return try {
+                leader.join()
+            } catch (e: CompletionException) {
+                throw e.cause ?: e
+            }
+        }
+        try {
+            val value = fetch(key, loader)
+            flight.complete(value)
+            return value
+        } catch (e: Throwable) {
+            flight.completeExceptionally(e)
+            throw e
+        } finally {
+            loads.remove(key, flight)
+        }
+    }
+
+    /**
+     * Reads a key from Redis, falling back to the loader, and caches the value in the L1 unless the key
+     * changed in the meantime.
+     */
+    private fun fetch(key: String, loader: ((String) -> String?)?): String? {
+        val loadClears = clears.get()
+        val loadVersion = beginFill(key)
+        try {
+            val start = clock()
+            var value = store.get(key)
+            if (value != null) {
+                l2Hits.increment()
+            } else {
+                misses.increment()
+                value = loader?.invoke(key)
+                if (value != null) {
+                    store.set(key, value, l2TtlMs)
+                }
+            }
+            val now = clock()
+            synchronized(l1) {
+                if (clears.get() == loadClears && fillVersions[key]?.version == loadVersion) {
+                    if (value != null) l1.put(key, entry(value, now, now - start)) else l1.remove(key)
+                }
+            }
+            return value
+        } finally {
+            endFill(key)
+        }
+    }
+
+    /**
+     * Registers a load of a key and returns the key's current version.
+     */
+    private fun beginFill(key: String): Long {
+        var version = 0L
+        fillVersions.compute(key) { _, current ->
+            (current ?: FillVersion()).also {
+                it.loads++
+                version = it.version
+            }
+        }
+        return version
+    }
+
+    /**
+     * Unregisters a load of a key, dropping its version once no loads of it are in flight.
+     */
+    private fun endFill(key: String) {
+        fillVersions.computeIfPresent(key) { _, current -> if (--current.loads == 0) null else current }
+    }
+
+    /**
+     * Makes loads of a key that are in flight stale, so they do not cache what they read.
+     */
+    private fun changed(key: String) {
+        fillVersions.computeIfPresent(key) { _, current -> current.also { it.version++ } }
+    }
+
+    private fun entry(value: String, now: Long, loadNanos: Long): TieredEntry =
+        if (l1TtlNanos == 0L) {
+            TieredEntry(value, Long.MAX_VALUE, Long.MAX_VALUE, loadNanos)
+        } else {
+            val refreshAt = if (refreshAheadRatio > 0) {
+                now + (l1TtlNanos * refreshAheadRatio).toLong()
+            } else {
+                Long.MAX_VALUE
+            }
+            TieredEntry(value, refreshAt, now + l1TtlNanos, loadNanos)
+        }
+
+    /**
+     * Decides whether a read of a live entry reloads it: always once it is past its refresh-ahead point,
+     * and otherwise with the XFetch probability, which reaches 1 at expiry and grows faster for entries
+     * that are slow to load.
+     */
+    private fun isDueForRefresh(entry: TieredEntry, now: Long): Boolean {
+        if (now >= entry.refreshAt) {
+            return true
+        }
+        if (earlyExpirationBeta <= 0 || entry.expiresAt == Long.MAX_VALUE || entry.loadNanos == 0L) {
+            return false
+        }
+        val draw = 1.0 - ThreadLocalRandom.current().nextDouble()
+        return now - entry.loadNanos * earlyExpirationBeta * ln(draw) >= entry.expiresAt
+    }
+
+    /**
+     * Reloads a key in the background unless it is already being reloaded.
+     */
+    private fun refreshAsync(key: String, loader: ((String) -> String?)?) {
+        if (!refreshing.add(key)) {
+            return
+        }
+        refreshes.increment()
+        try {
+            executor.execute {
+                try {
+                    fetch(key, loader)
+                } catch (e: Exception) {
+                    logger.log(System.Logger.Level.WARNING, "Refresh of cache key $key failed", e)
+                } finally {
+                    refreshing.remove(key)
+                }
+            }
+        } catch (e: Exception) {
+            refreshing.remove(key)
+            logger.log(System.Logger.Level.WARNING, "Refresh of cache key $key was rejected", e)
+        }
+    }
+
+    private fun announce(key: String) {
+        if (invalidation == CacheInvalidation.PUBSUB) {
+            store.publish(channel, "$instanceId $key")
+        }
+    }
+
+    /**
+     * Handles a pub/sub message: the sender's instance id, followed by the changed key or nothing for all keys.
+     * A null message means messages may have been lost, so all keys are considered changed.
+     */
+    private fun onMessage(message: String?) {
+        if (message == null) {
+            invalidateLocally(null)
+            return
+        }
+        val separator = message.indexOf(' ')
+        val sender = if (separator < 0) message else message.substring(0, separator)
+        if (sender != instanceId) {
+            invalidateLocally(if (separator < 0) null else message.substring(separator + 1))
+        }
+    }
+
+    /**
+     * Removes a key, or all keys if it is null, from the L1 because it changed elsewhere.
+     */
+    private fun invalidateLocally(key: String?) {
+        if (key == null) clears.incrementAndGet() else changed(key)
+        val removed = synchronized(l1) {
+            if (key == null) l1.clear() else if (l1.remove(key)) 1 else 0
+        }
+        invalidations.add(removed.toLong())
+    }
+
+    /**
+     * The version of a key with loads in flight, and the number of those loads.
+     * Only changed inside the atomic operations of [fillVersions]; the version is read outside them.
+     */
+    private class FillVersion {
+        @Volatile
+        var version = 0L
+        var loads = 0
+    }
+
+    /**
+     * Builder for [RedisTieredCache] instances.
+     */
+    class Builder internal constructor() {
+        internal var maximumWeight: Long = DEFAULT_MAXIMUM_WEIGHT
+        internal var weigher: (String, String) -> Int = { key, value ->
+            STRING_ENTRY_OVERHEAD + 2 * (key.length + value.length)
+        }
+        internal var l1TtlMs: Long = DEFAULT_L1_TTL_MS
+        internal var l2TtlMs: Long = 0
+        internal var refreshAheadRatio: Double = 0.0
+        internal var earlyExpirationBeta: Double = 1.0
+        internal var loader: ((String) -> String?)? = null
+        internal var invalidation: CacheInvalidation = CacheInvalidation.NONE
+        internal var channel: String = DEFAULT_CHANNEL
+        internal var prefixes: List<String> = emptyList()
+        internal var executor: Executor = ForkJoinPool.commonPool()
+        internal var clock: () -> Long = System::nanoTime
+        internal var offHeapBytes: Long? = null
+        internal var offHeapPageBytes: Int = OffHeapCache.DEFAULT_PAGE_BYTES
+
+        /**
+         * Sets the maximum total weight of the L1 entries, by default an estimate of their size in bytes.
+         *
+         * @param maximumWeight The maximum weight
+         * @return This builder instance
+         */
+        fun maximumWeight(maximumWeight: Long): Builder {
+            require(maximumWeight > 0) { "maximumWeight must be positive" }
+            this.maximumWeight = maximumWeight
+            return this
+        }
+
+        /**
+         * Keeps the L1 in direct memory instead of on the heap, see [OffHeapCache]. The maximum weight and
+         * weigher do not apply to an off-heap L1, which is bounded by the memory it allocates.
+         *
+         * @param maxBytes The maximum amount of direct memory to allocate
+         * @param pageBytes The size of a page, and of the largest entry that can be cached
+         * @return This builder instance
+         */
+        @JvmOverloads
+        fun offHeap(maxBytes: Long, pageBytes: Int = OffHeapCache.DEFAULT_PAGE_BYTES): Builder {
+            require(maxBytes >= pageBytes) { "maxBytes must be at least pageBytes" }
+            this.offHeapBytes = maxBytes
+            this.offHeapPageBytes = pageBytes
+            return this
+        }
+
+        /**
+         * Sets how the weight of an L1 entry is computed.
+         *
+         * @param weigher Computes the weight of a key and its value
+         * @return This builder instance
+         */
+        fun weigher(weigher: (String, String) -> Int): Builder {
+            this.weigher = weigher
+            return this
+        }
+
+        /**
+         * Sets the time after which an L1 entry expires and is read from Redis again.
+         *
+         * @param ttlMs The time to live in milliseconds, or 0 to keep entries until they are evicted
+         * @return This builder instance
+         */
+        fun l1Ttl(ttlMs: Long): Builder {
+            require(ttlMs >= 0) { "ttlMs must not be negative" }
+            this.l1TtlMs = ttlMs
+            return this
+        }
+
+        /**
+         * Sets the time after which Redis expires keys written by the cache.
+         *
+         * @param ttlMs The time to live in milliseconds, or 0 to keep keys
+         * @return This builder instance
+         */
+        fun l2Ttl(ttlMs: Long): Builder {
+            require(ttlMs >= 0) { "ttlMs must not be negative" }
+            this.l2TtlMs = ttlMs
+            return this
+        }
+
+        /**
+         * Enables refresh-ahead: an L1 entry read after the given fraction of its time to live is reloaded
+         * in the background.
+         *
+         * @param ratio The fraction of the L1 time to live, between 0 and 1, or 0 to disable refresh-ahead
+         * @return This builder instance
+         */
+        fun refreshAhead(ratio: Double): Builder {
+            require(ratio in 0.0..1.0) { "ratio must be between 0 and 1" }
+            this.refreshAheadRatio = ratio
+            return this
+        }
+
+        /**
+         * Sets the scale of probabilistic early expiration. Larger values refresh entries earlier; 1 suits
+         * most workloads.
+         *
+         * @param beta The scale, or 0 to disable early expiration
+         * @return This builder instance
+         */
+        fun earlyExpiration(beta: Double): Builder {
+            require(beta >= 0) { "beta must not be negative" }
+            this.earlyExpirationBeta = beta
+            return this
+        }
+
+        /**
+         * Sets the loader of keys that are in neither tier. Loaded values are written to Redis and the L1.
+         *
+         * @param loader Loads the value of a key, or returns null if it has none
+         * @return This builder instance
+         */
+        fun loader(loader: (String) -> String?): Builder {
+            this.loader = loader
+            return this
+        }
+
+        /**
+         * Announces writes and invalidations on a pub/sub channel, and listens for those of other instances.
+         *
+         * @param channel The channel shared by the instances of the cache
+         * @return This builder instance
+         */
+        @JvmOverloads
+        fun pubSubInvalidation(channel: String = DEFAULT_CHANNEL): Builder {
+            this.invalidation = CacheInvalidation.PUBSUB
+            this.channel = channel
+            return this
+        }
+
+        /**
+         * Listens for changes of keys with Redis key tracking in broadcast mode, see [RedisCacheStore.track].
+         *
+         * @param prefixes The key prefixes to track, or none to track all keys
+         * @return This builder instance
+         */
+        fun trackingInvalidation(vararg prefixes: String): Builder {
+            this.invalidation = CacheInvalidation.TRACKING
+            this.prefixes = prefixes.toList()
+            return this
+        }
+
+        /**
+         * Sets the executor of background refreshes, by default the common fork-join pool.
+         *
+         * @param executor The executor
+         * @return This builder instance
+         */
+        fun executor(executor: Executor): Builder {
+            this.executor = executor
+            return this
+        }
+
+        /**
+         * Sets the time source in nanoseconds.
+         */
+        internal fun clock(clock: () -> Long): Builder {
+            this.clock = clock
+            return this
+        }
+
+        /**
+         * Builds a cache over a store. Closing the cache closes the store.
+         *
+         * @param store The L2
+         * @return A new RedisTieredCache
+         */
+        fun build(store: RedisCacheStore): RedisTieredCache = RedisTieredCache(store, null, this)
+
+        /**
+         * Builds a client with a client builder and a cache over it. Closing the cache closes the client.
+         *
+         * @param clientBuilder The builder of the client
+         * @param store Adapts the built client to a store
+         * @return A new RedisTieredCache
+         */
+        fun <T : Any> build(clientBuilder: RedisClientBuilder<T>, store: (T) -> RedisCacheStore): RedisTieredCache {
+            val client = clientBuilder.build()
+            val closeable = client as? AutoCloseable
+            return try {
+                RedisTieredCache(store(client), closeable, this)
+            } catch (e: Exception) {
+                closeable?.close()
+                throw e
+            }
+        }
+    }
+
+    companion object {
+        private val logger = System.getLogger(RedisTieredCache::class.java.name)
+
+        private const val DEFAULT_MAXIMUM_WEIGHT = 64L * 1024 * 1024
+        private const val DEFAULT_L1_TTL_MS = 60_000L
+
+        // Object headers, references and the nodes of a cached String pair
+        private const val STRING_ENTRY_OVERHEAD = 128
+
+        /**
+         * The default channel of pub/sub invalidations.
+         */
+        const val DEFAULT_CHANNEL = "redis-tiered-cache:invalidations"
+
+        /**
+         * Creates a new builder.
+         *
+         * @return A new Builder
+         */
+        @JvmStatic
+        fun builder(): Builder = Builder()
+    }
+}
\ No newline at end of file
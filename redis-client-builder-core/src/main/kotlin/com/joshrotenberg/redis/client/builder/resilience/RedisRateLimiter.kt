@@ -38,4 +38,40 @@ interface RedisRateLimiter<T> : RedisResilience<T> {
      * @return This rate limiter instance
      */
     fun timeoutDuration(timeoutMs: Long): RedisRateLimiter<T>
+
+    /**
+     * Sets the algorithm used to hand out permissions.
+     *
+     * @param algorithm The rate limiting algorithm
+     * @return This rate limiter instance
+     */
+    fun algorithm(algorithm: RateLimiterAlgorithm): RedisRateLimiter<T>
+
+    /**
+     * Sets the number of stripes the permissions are spread over.
+     * Each stripe receives an equal share of the rate, and threads draw from different stripes,
+     * which reduces contention under many threads at the cost of an exact limit.
+     * This is only used by the [RateLimiterAlgorithm.GCRA] algorithm.
+     *
+     * @param stripes The number of stripes, 1 for an exact limit
+     * @return This rate limiter instance
+     */
+    fun stripes(stripes: Int): RedisRateLimiter<T>
+}
+
+/**
+ * Algorithms for handing out rate limiter permissions.
+ */
+enum class RateLimiterAlgorithm {
+    /**
+     * The resilience4j rate limiter, which refills all permissions at the start of each refresh period.
+     */
+    FIXED_WINDOW,
+
+    /**
+     * The generic cell rate algorithm, which spaces permissions evenly over the refresh period
+     * while allowing a burst of up to the limit. A permission is taken with a single compare-and-set
+     * of the theoretical arrival time, so it scales better under many threads.
+     */
+    GCRA
 }
\ No newline at end of file
@@ -56,4 +56,35 @@ interface RedisRetry<T> : RedisResilience<T> {
      * @return This retry instance
      */
     fun retryOnResult(value: Any?): RedisRetry<T>
+
+    /**
+     * Sets whether non-idempotent commands, such as INCR or LPUSH, are retried.
+     * By default they are not, since a failed attempt may still have been applied by the server.
+     *
+     * @param enabled Whether to retry non-idempotent commands
+     * @return This retry instance
+     */
+    fun retryNonIdempotent(enabled: Boolean): RedisRetry<T>
+
+    /**
+     * Limits retries to a share of successful commands.
+     * Every successful command earns a fraction of a retry, and every retry spends a whole one,
+     * so retries cannot multiply the load on a Redis server that is already failing.
+     *
+     * @param percentOfSuccesses The number of retries permitted per 100 successful commands
+     * @param maxRetryBurst The maximum number of retries that can be saved up
+     * @return This retry instance
+     */
+    fun retryBudget(percentOfSuccesses: Double, maxRetryBurst: Int): RedisRetry<T>
+
+    /**
+     * Enables decorrelated jitter backoff.
+     * Each wait is chosen at random between the wait duration and three times the previous wait,
+     * capped at the given maximum, so clients that fail together do not retry in lockstep.
+     * This takes precedence over exponential backoff.
+     *
+     * @param maxWaitDurationMs The maximum wait duration in milliseconds
+     * @return This retry instance
+     */
+    fun decorrelatedJitter(maxWaitDurationMs: Long): RedisRetry<T>
 }
\ No newline at end of file
@@ -9,6 +9,10 @@ dependencies {
     api(libs.resilience4j.timelimiter)
     api(libs.resilience4j.bulkhead)
     api(libs.resilience4j.ratelimiter)
+
+    // Client decorators are only used when the matching client library is on the classpath
+    compileOnly(libs.jedis)
+    compileOnly(libs.lettuce.core)
     
     // Testing
     testImplementation(kotlin("test"))
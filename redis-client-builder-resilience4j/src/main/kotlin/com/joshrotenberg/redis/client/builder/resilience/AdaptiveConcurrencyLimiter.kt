@@ -0,0 +1,235 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAdder
+import kotlin.math.ceil
+import kotlin.math.log10
+import kotlin.math.max
+import kotlin.math.sqrt
+
+/**
+ * Concurrency limiter whose limit is adjusted from the measured round-trip time of Redis commands.
+ * When a Redis server slows down, round-trip times rise and the limit shrinks, so excess calls are shed
+ * on the client instead of queueing on the server. When round-trip times recover, the limit grows again.
+ *
+ * Acquiring a permit is a single compare-and-set against the current limit. The limit itself is
+ * recalculated when a command completes.
+ *
+ * Errors that signal overload, which are timeouts anywhere in the cause chain, count as dropped calls.
+ * Other errors, such as a WRONGTYPE reply, release the permit without affecting the limit.
+ *
+ * @property name The name of the limiter
+ * @property algorithm The algorithm used to adjust the limit
+ * @param initialLimit The limit before any round-trip time has been measured
+ * @property minLimit The lowest limit the algorithm may choose
+ * @property maxLimit The highest limit the algorithm may choose
+ */
+class AdaptiveConcurrencyLimiter(
+    val name: String,
+    private val algorithm: AdaptiveLimitAlgorithm,
+    initialLimit: Int,
+    private val minLimit: Int,
+    private val maxLimit: Int
+) : RedisCommandGuard {
+
+    /**
+     * Metrics of an adaptive concurrency limiter.
+     */
+    interface Metrics {
+        /**
+         * The current concurrency limit.
+         */
+        val limit: Int
+
+        /**
+         * The number of calls currently holding a permit.
+         */
+        val inFlight: Int
+
+        /**
+         * The lowest round-trip time seen recently, in nanoseconds, or 0 if none was measured yet.
+         */
+        val minRttNanos: Long
+
+        /**
+         * The exponentially smoothed round-trip time, in nanoseconds, or 0 if none was measured yet.
+         */
+        val smoothedRttNanos: Long
+
+        /**
+         * The number of calls rejected because the limit was reached.
+         */
+        val rejectedCalls: Long
+    }
+
+    private val inFlight = AtomicInteger()
+    private val rejectedCalls = LongAdder()
+
+    @Volatile
+    private var limit: Int = initialLimit.coerceIn(minLimit, maxLimit)
+
+    @Volatile
+    private var minRtt: Long = 0
+
+    @Volatile
+    private var smoothedRtt: Long = 0
+
+    // The fields below are only accessed while holding this limiter's monitor
+    private var estimatedLimit: Double = limit.toDouble()
+    private var longRtt: Double = 0.0
+    private var samples: Long = 0
+
+    init {
+        require(minLimit in 1..maxLimit) { "minLimit must be between 1 and maxLimit" }
+    }
+
+    /**
+     * The metrics of this limiter.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val limit: Int
+            get() = this@AdaptiveConcurrencyLimiter.limit
+        override val inFlight: Int
+            get() = this@AdaptiveConcurrencyLimiter.inFlight.get()
+        override val minRttNanos: Long
+            get() = minRtt
+        override val smoothedRttNanos: Long
+            get() = smoothedRtt
+        override val rejectedCalls: Long
+            get() = this@AdaptiveConcurrencyLimiter.rejectedCalls.sum()
+    }
+
+    override fun acquirePermission(): Long {
+        while (true) {
+            val current = inFlight.get()
+            val currentLimit = limit
+            if (current >= currentLimit) {
+                rejectedCalls.increment()
+                throw ConcurrencyLimitExceededException(name, currentLimit, current, minRtt, smoothedRtt)
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return System.nanoTime()
+            }
+        }
+    }
+
+    override fun onSuccess(startNanos: Long) {
+        val rtt = System.nanoTime() - startNanos
+        update(rtt, inFlight.getAndDecrement(), dropped = false)
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        val rtt = System.nanoTime() - startNanos
+        val inFlightAtCompletion = inFlight.getAndDecrement()
+        if (isTimeout(error)) {
+            update(rtt, inFlightAtCompletion, dropped = true)
+        }
+    }
+
+    @Synchronized
+    private fun update(rtt: Long, inFlightAtCompletion: Int, dropped: Boolean) {
+        if (!dropped) {
+            recordRtt(rtt)
+        }
+        val next = when (algorithm) {
+            AdaptiveLimitAlgorithm.AIMD -> aimd(inFlightAtCompletion, dropped)
+            AdaptiveLimitAlgorithm.VEGAS -> vegas(rtt, inFlightAtCompletion, dropped)
+            AdaptiveLimitAlgorithm.GRADIENT -> gradient(rtt, inFlightAtCompletion, dropped)
+        }
+        estimatedLimit = next.coerceIn(minLimit.toDouble(), maxLimit.toDouble())
+        limit = estimatedLimit.toInt()
+    }
+
+    private fun recordRtt(rtt: Long) {
+        samples++
+        // Forget the lowest round-trip time now and then, so a permanent latency shift is eventually accepted
+        minRtt = if (minRtt == 0L || rtt < minRtt || samples % MIN_RTT_RESET_SAMPLES == 0L) rtt else minRtt
+        smoothedRtt = if (smoothedRtt == 0L) rtt else smoothedRtt + (rtt - smoothedRtt) / SMOOTHING_DIVISOR
+        longRtt = when {
+            samples <= WARMUP_SAMPLES -> longRtt + (rtt - longRtt) / samples
+            else -> longRtt + (rtt - longRtt) / LONG_RTT_WINDOW
+        }
+    }
+
+    private fun aimd(inFlightAtCompletion: Int, dropped: Boolean): Double =
+        when {
+            dropped -> estimatedLimit * BACKOFF_RATIO
+            // Only grow while the limit is actually being used
+            inFlightAtCompletion * 2 >= estimatedLimit -> estimatedLimit + 1
+            else -> estimatedLimit
+        }
+
+    private fun vegas(rtt: Long, inFlightAtCompletion: Int, dropped: Boolean): Double {
+        val step = max(1.0, log10(estimatedLimit))
+        if (dropped) {
+            return estimatedLimit - step
+        }
+        if (inFlightAtCompletion * 2 < estimatedLimit || rtt <= 0) {
+            return estimatedLimit
+        }
+        val queue = ceil(estimatedLimit * (1 - minRtt.toDouble() / rtt))
+        return when {
+            queue <= step -> estimatedLimit + VEGAS_BETA * step
+            queue < VEGAS_ALPHA * step -> estimatedLimit + step
+            queue > VEGAS_BETA * step -> estimatedLimit - step
+            else -> estimatedLimit
+        }
+    }
+
+    private fun gradient(rtt: Long, inFlightAtCompletion: Int, dropped: Boolean): Double {
+        if (dropped) {
+            return estimatedLimit * BACKOFF_RATIO
+        }
+        if (inFlightAtCompletion * 2 < estimatedLimit || rtt <= 0) {
+            return estimatedLimit
+        }
+        // Let the long-term average catch up quickly once latency has recovered
+        if (longRtt / rtt > 2) {
+            longRtt *= LONG_RTT_DECAY
+        }
+        val gradient = (GRADIENT_TOLERANCE * longRtt / rtt).coerceIn(0.5, 1.0)
+        val target = estimatedLimit * gradient + sqrt(estimatedLimit)
+        return estimatedLimit * (1 - GRADIENT_SMOOTHING) + target * GRADIENT_SMOOTHING
+    }
+
+    private fun isTimeout(error: Throwable): Boolean {
+        var current: Throwable? = error
+        while (current != null) {
+            if (current.javaClass.simpleName.endsWith("TimeoutException")) {
+                return true
+            }
+            current = current.cause.takeUnless { it === current }
+        }
+        return false
+    }
+
+    companion object {
+        private const val BACKOFF_RATIO = 0.9
+        private const val VEGAS_ALPHA = 3
+        private const val VEGAS_BETA = 6
+        private const val GRADIENT_TOLERANCE = 1.5
+        private const val GRADIENT_SMOOTHING = 0.2
+        private const val LONG_RTT_DECAY = 0.95
+        private const val LONG_RTT_WINDOW = 600
+        private const val SMOOTHING_DIVISOR = 8
+        private const val WARMUP_SAMPLES = 10L
+        private const val MIN_RTT_RESET_SAMPLES = 1000L
+    }
+}
+
+/**
+ * Exception thrown when an adaptive concurrency limiter sheds a call.
+ * The message records the limiter state that caused the rejection.
+ */
+class ConcurrencyLimitExceededException(
+    name: String,
+    limit: Int,
+    inFlight: Int,
+    minRttNanos: Long,
+    smoothedRttNanos: Long
+) : RuntimeException(
+    "Concurrency limiter '$name' rejected the call: limit=$limit, inFlight=$inFlight, " +
+        "minRtt=${TimeUnit.NANOSECONDS.toMicros(minRttNanos)}us, " +
+        "smoothedRtt=${TimeUnit.NANOSECONDS.toMicros(smoothedRttNanos)}us"
+)
\ No newline at end of file
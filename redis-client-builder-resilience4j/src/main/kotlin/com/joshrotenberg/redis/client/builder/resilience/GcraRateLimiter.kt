@@ -0,0 +1,133 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Rate limiter based on the generic cell rate algorithm.
+ * The limiter keeps a theoretical arrival time (TAT) that advances by one emission interval per permission.
+ * A permission is granted while the TAT is no more than the burst tolerance ahead of the current time,
+ * so taking a permission is a single compare-and-set, with no refresh cycle to contend on.
+ *
+ * With more than one stripe, the rate is divided evenly between independent TATs. A thread first tries
+ * the stripe chosen by its id, then the other stripes, before it waits on its own stripe. The total rate
+ * is still bounded, but a burst may be split unevenly between threads.
+ *
+ * @property name The name of the rate limiter
+ * @param limitForPeriod The number of permissions per period
+ * @param periodNanos The period in nanoseconds
+ * @param timeoutNanos The maximum time to wait for a permission in nanoseconds
+ * @param stripes The number of stripes
+ */
+class GcraRateLimiter(
+    val name: String,
+    limitForPeriod: Int,
+    periodNanos: Long,
+    private val timeoutNanos: Long,
+    stripes: Int = 1
+) : RedisCommandGuard {
+
+    private val stripes: Int
+    private val intervalNanos: Long
+    private val toleranceNanos: Long
+
+    // Each TAT lives on its own cache line to avoid false sharing between stripes
+    private val arrivalTimes: AtomicLongArray
+
+    init {
+        require(limitForPeriod > 0) { "limitForPeriod must be positive" }
+        require(periodNanos > 0) { "periodNanos must be positive" }
+        require(stripes > 0) { "stripes must be positive" }
+        this.stripes = minOf(stripes, limitForPeriod)
+        intervalNanos = maxOf(1, periodNanos * this.stripes / limitForPeriod)
+        toleranceNanos = (limitForPeriod / this.stripes - 1) * intervalNanos
+        arrivalTimes = AtomicLongArray(this.stripes * PADDING)
+        val now = System.nanoTime()
+        for (stripe in 0 until this.stripes) {
+            arrivalTimes.set(stripe * PADDING, now)
+        }
+    }
+
+    /**
+     * Takes a permission if one is available right now.
+     *
+     * @return true if a permission was taken
+     */
+    fun tryAcquirePermission(): Boolean {
+        val home = homeStripe()
+        for (i in 0 until stripes) {
+            if (reserve((home + i) % stripes, 0) == 0L) {
+                return true
+            }
+        }
+        return false
+    }
+
+    override fun acquirePermission(): Long {
+        if (!tryAcquirePermission()) {
+            val wait = reserve(homeStripe(), timeoutNanos)
+            if (wait < 0) {
+                throw RateLimitExceededException(name, TimeUnit.NANOSECONDS.toMillis(timeoutNanos))
+            }
+            parkUntil(System.nanoTime() + wait)
+        }
+        return 0
+    }
+
+    override fun onSuccess(startNanos: Long) {
+        // Permissions are consumed when taken
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        // Permissions are consumed when taken
+    }
+
+    /**
+     * Reserves a permission on a stripe.
+     *
+     * @return The time to wait before the permission may be used in nanoseconds,
+     * or -1 if that would exceed the given maximum wait
+     */
+    private fun reserve(stripe: Int, maxWaitNanos: Long): Long {
+        val index = stripe * PADDING
+        while (true) {
+            val now = System.nanoTime()
+            val tat = arrivalTimes.get(index)
+            val base = if (tat - now > 0) tat else now
+            val wait = base - toleranceNanos - now
+            if (wait > maxWaitNanos) {
+                return -1
+            }
+            if (arrivalTimes.compareAndSet(index, tat, base + intervalNanos)) {
+                return maxOf(0, wait)
+            }
+        }
+    }
+
+    private fun homeStripe(): Int =
+        if (stripes == 1) 0 else (Thread.currentThread().id % stripes).toInt()
+
+    private fun parkUntil(deadline: Long) {
+        var remaining = deadline - System.nanoTime()
+        while (remaining > 0) {
+            LockSupport.parkNanos(remaining)
+            if (Thread.interrupted()) {
+                Thread.currentThread().interrupt()
+                throw RateLimitExceededException(name, TimeUnit.NANOSECONDS.toMillis(timeoutNanos))
+            }
+            remaining = deadline - System.nanoTime()
+        }
+    }
+
+    companion object {
+        // Longs per stripe, so that neighbouring TATs are at least 128 bytes apart
+        private const val PADDING = 16
+    }
+}
+
+/**
+ * Exception thrown when a GCRA rate limiter cannot grant a permission within its timeout.
+ */
+class RateLimitExceededException(name: String, timeoutMs: Long) :
+    RuntimeException("Rate limiter '$name' did not grant a permission within ${timeoutMs}ms")
\ No newline at end of file
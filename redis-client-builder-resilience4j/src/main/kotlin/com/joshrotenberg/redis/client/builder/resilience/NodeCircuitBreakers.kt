@@ -0,0 +1,60 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Circuit breakers for the nodes of a Redis cluster, keyed by `host:port`.
+ * Cluster decorators resolve the node that owns a command's slot from the client's current slot map
+ * and run the command through that node's breaker, so a failing shard fails fast while the other
+ * shards keep serving. Because the node is looked up per command, a slot that moves after a MOVED
+ * redirect or a topology refresh is charged to its new owner from then on.
+ *
+ * @param factory Creates the circuit breaker of a node from its `host:port` key
+ * @param release Releases the circuit breaker of a node that left the cluster
+ */
+class NodeCircuitBreakers internal constructor(
+    private val factory: (String) -> CircuitBreaker,
+    private val release: (String) -> Unit = {}
+) {
+    private val guards = ConcurrentHashMap<String, CircuitBreakerGuard>()
+
+    /**
+     * Returns the circuit breaker of a node, creating it on first use.
+     *
+     * @param node The node as `host:port`
+     * @return The circuit breaker of the node
+     */
+    fun circuitBreaker(node: String): CircuitBreaker = guardFor(node).circuitBreaker
+
+    /**
+     * Returns the nodes that currently have a circuit breaker.
+     *
+     * @return The nodes as `host:port`
+     */
+    fun nodes(): Set<String> = guards.keys.toSet()
+
+    /**
+     * Drops the circuit breakers of nodes that are no longer part of the cluster.
+     * A node that rejoins later starts with a fresh, closed breaker.
+     *
+     * @param nodes The current nodes of the cluster as `host:port`
+     */
+    fun retainNodes(nodes: Collection<String>) {
+        val current = nodes.toSet()
+        for (node in guards.keys) {
+            if (node !in current && guards.remove(node) != null) {
+                release(node)
+            }
+        }
+    }
+
+    /**
+     * Returns the guard for a node's circuit breaker, creating it on first use.
+     *
+     * @param node The node as `host:port`
+     * @return The guard of the node
+     */
+    internal fun guardFor(node: String): CircuitBreakerGuard =
+        guards[node] ?: guards.computeIfAbsent(node) { CircuitBreakerGuard(factory(it)) }
+}
\ No newline at end of file
@@ -4,7 +4,6 @@ import io.github.resilience4j.circuitbreaker.CircuitBreaker
 import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig
 import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry
 import java.time.Duration
-import java.util.function.Supplier
 
 /**
  * Implementation of the RedisCircuitBreaker interface.
@@ -90,12 +89,22 @@ class RedisCircuitBreakerImpl<T>(
         return this
     }
 
+    /**
+     * The configured settings, compared by value in the specs of the builders using this policy.
+     */
+    internal fun settings(): List<Any?> =
+        listOf(
+            name, failureRateThreshold, minimumNumberOfCalls, waitDurationInOpenState,
+            permittedNumberOfCallsInHalfOpenState, automaticTransitionFromOpenToHalfOpenEnabled
+        )
+
     /**
      * Creates a circuit breaker with the configured settings.
      *
+     * @param name The name of the circuit breaker in the registry
      * @return The created circuit breaker
      */
-    private fun createCircuitBreaker(): CircuitBreaker {
+    internal fun createCircuitBreaker(name: String = this.name): CircuitBreaker {
         val config = CircuitBreakerConfig.custom()
             .failureRateThreshold(failureRateThreshold)
             .minimumNumberOfCalls(minimumNumberOfCalls)
@@ -107,28 +116,30 @@ class RedisCircuitBreakerImpl<T>(
         return registry.circuitBreaker(name, config)
     }
 
+    /**
+     * Creates a set of circuit breakers with the configured settings, one per cluster node.
+     * The breaker of a node is registered as this breaker's name followed by the node's host and port,
+     * and removed from the registry when the node leaves the cluster.
+     *
+     * @return The per-node circuit breakers
+     */
+    internal fun createNodeCircuitBreakers(): NodeCircuitBreakers =
+        NodeCircuitBreakers(
+            factory = { node -> createCircuitBreaker("$name-$node") },
+            release = { node -> registry.remove("$name-$node") }
+        )
+
     /**
      * Wraps the Redis client with circuit breaker functionality.
-     * This method creates a dynamic proxy that intercepts all method calls to the Redis client
-     * and applies circuit breaker functionality to them.
+     * Every command of the returned client acquires permission from the circuit breaker and records
+     * its outcome, so commands fail fast with a CallNotPermittedException while the breaker is open.
+     * See [RedisClientDecorators] for the supported client types.
      *
      * @param client The Redis client to wrap
      * @return The wrapped Redis client with circuit breaker functionality
+     * @throws IllegalArgumentException if the client type cannot be decorated
      */
-    @Suppress("UNCHECKED_CAST")
-    override fun wrap(client: T): T {
-        val circuitBreaker = createCircuitBreaker()
-        
-        // For now, we'll return the client as-is
-        // In a real implementation, we would create a dynamic proxy or decorator
-        // that wraps all methods with circuit breaker functionality
-        
-        // This is a placeholder implementation
-        // The actual implementation would depend on the specific Redis client type
-        // and would require reflection or code generation to create a proper wrapper
-        
-        return client
-    }
+    override fun wrap(client: T): T = RedisClientDecorators.decorate(client, CircuitBreakerGuard(createCircuitBreaker()))
 
     companion object {
         /**
@@ -0,0 +1,74 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.lettuce.core.RedisClient
+import io.lettuce.core.cluster.RedisClusterClient
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.UnifiedJedis
+
+/**
+ * Selects the decorator for a Redis client built by this library.
+ * Jedis and Lettuce are optional dependencies, so each driver is only touched when it is on the classpath.
+ */
+internal object RedisClientDecorators {
+    private val jedisAvailable = isClassPresent("redis.clients.jedis.UnifiedJedis")
+    private val lettuceAvailable = isClassPresent("io.lettuce.core.RedisClient")
+
+    /**
+     * Decorates a Redis client so that every command runs through the given guard.
+     *
+     * @param client The Redis client to decorate
+     * @param guard The guard applied to every command
+     * @return The decorated Redis client
+     * @throws IllegalArgumentException if the client type cannot be decorated
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> decorate(client: T, guard: RedisCommandGuard): T {
+        requireNotNull(client) { "Redis client must not be null" }
+        val decorated = when {
+            jedisAvailable && JedisDecorators.supports(client) -> JedisDecorators.decorate(client, guard)
+            lettuceAvailable && LettuceDecorators.supports(client) -> LettuceDecorators.decorate(client, guard)
+            else -> throw IllegalArgumentException(
+                "Unsupported Redis client type for resilience: ${client!!::class.java.name}"
+            )
+        }
+        return decorated as T
+    }
+
+    private fun isClassPresent(className: String): Boolean =
+        try {
+            Class.forName(className, false, RedisClientDecorators::class.java.classLoader)
+            true
+        } catch (e: ClassNotFoundException) {
+            false
+        }
+}
+
+/**
+ * Decorators for Jedis clients. Only loaded when Jedis is on the classpath.
+ * Subclasses of UnifiedJedis, such as an auto-pipelining client, are decorated through their command
+ * executor. A JedisCluster is left to its builder, which guards it per node with [ResilientJedisCluster].
+ */
+private object JedisDecorators {
+    fun supports(client: Any): Boolean =
+        client is JedisPooled || (client is UnifiedJedis && client !is JedisCluster)
+
+    fun decorate(client: Any, guard: RedisCommandGuard): Any =
+        when (client) {
+            is JedisPooled -> ResilientJedisPooled(client, guard)
+            else -> ResilientUnifiedJedis(client as UnifiedJedis, guard)
+        }
+}
+
+/**
+ * Decorators for Lettuce clients. Only loaded when Lettuce is on the classpath.
+ */
+private object LettuceDecorators {
+    fun supports(client: Any): Boolean = client is RedisClient || client is RedisClusterClient
+
+    fun decorate(client: Any, guard: RedisCommandGuard): Any =
+        when (client) {
+            is RedisClusterClient -> ResilientRedisClusterClient.wrap(client, guard)
+            else -> ResilientRedisClient.wrap(client as RedisClient, guard)
+        }
+}
\ No newline at end of file
@@ -4,6 +4,7 @@ import io.github.resilience4j.ratelimiter.RateLimiter
 import io.github.resilience4j.ratelimiter.RateLimiterConfig
 import io.github.resilience4j.ratelimiter.RateLimiterRegistry
 import java.time.Duration
+import java.util.concurrent.TimeUnit
 
 /**
  * Implementation of the RedisRateLimiter interface.
@@ -20,6 +21,9 @@ class RedisRateLimiterImpl<T>(
     private var limitForPeriod: Int = 50
     private var limitRefreshPeriod: Long = 1000000000 // 1 second in nanoseconds
     private var timeoutDuration: Long = 5000 // 5 seconds in milliseconds
+    private var algorithm: RateLimiterAlgorithm = RateLimiterAlgorithm.FIXED_WINDOW
+    private var stripes: Int = 1
+    private var gcraRateLimiter: GcraRateLimiter? = null
 
     /**
      * Sets the name of the rate limiter.
@@ -29,7 +33,7 @@ class RedisRateLimiterImpl<T>(
      */
     override fun name(name: String): RedisRateLimiter<T> {
         this.name = name
-        return this
+        return reconfigured()
     }
 
     /**
@@ -40,7 +44,7 @@ class RedisRateLimiterImpl<T>(
      */
     override fun limitForPeriod(limit: Int): RedisRateLimiter<T> {
         this.limitForPeriod = limit
-        return this
+        return reconfigured()
     }
 
     /**
@@ -51,7 +55,7 @@ class RedisRateLimiterImpl<T>(
      */
     override fun limitRefreshPeriod(periodNanos: Long): RedisRateLimiter<T> {
         this.limitRefreshPeriod = periodNanos
-        return this
+        return reconfigured()
     }
 
     /**
@@ -62,15 +66,55 @@ class RedisRateLimiterImpl<T>(
      */
     override fun timeoutDuration(timeoutMs: Long): RedisRateLimiter<T> {
         this.timeoutDuration = timeoutMs
+        return reconfigured()
+    }
+
+    /**
+     * Sets the algorithm used to hand out permissions.
+     *
+     * @param algorithm The rate limiting algorithm
+     * @return This rate limiter instance
+     */
+    override fun algorithm(algorithm: RateLimiterAlgorithm): RedisRateLimiter<T> {
+        this.algorithm = algorithm
+        return reconfigured()
+    }
+
+    /**
+     * Sets the number of stripes the permissions are spread over.
+     *
+     * @param stripes The number of stripes, 1 for an exact limit
+     * @return This rate limiter instance
+     */
+    override fun stripes(stripes: Int): RedisRateLimiter<T> {
+        require(stripes > 0) { "stripes must be positive" }
+        this.stripes = stripes
+        return reconfigured()
+    }
+
+    /**
+     * Drops the shared GCRA rate limiter after a setting changed, so clients wrapped from now on get one
+     * with the new settings. Clients wrapped before keep the previous one.
+     */
+    private fun reconfigured(): RedisRateLimiter<T> {
+        synchronized(this) {
+            gcraRateLimiter = null
+        }
         return this
     }
 
+    /**
+     * The configured settings, compared by value in the specs of the builders using this policy.
+     */
+    internal fun settings(): List<Any?> =
+        listOf(name, limitForPeriod, limitRefreshPeriod, timeoutDuration, algorithm, stripes)
+
     /**
      * Creates a rate limiter with the configured settings.
      *
      * @return The created rate limiter
      */
-    private fun createRateLimiter(): RateLimiter {
+    internal fun createRateLimiter(): RateLimiter {
         val configBuilder = RateLimiterConfig.custom()
             .limitForPeriod(limitForPeriod)
             .limitRefreshPeriod(Duration.ofNanos(limitRefreshPeriod))
@@ -81,28 +125,39 @@ class RedisRateLimiterImpl<T>(
         return registry.rateLimiter(name, config)
     }
 
+    /**
+     * Creates the guard applied to every command of a wrapped client.
+     * A GCRA rate limiter is created once and shared by all clients wrapped by this instance until a
+     * setting changes, just as the resilience4j rate limiter is shared through the registry.
+     *
+     * @return The guard for the configured rate limiter
+     */
+    internal fun createGuard(): RedisCommandGuard {
+        if (algorithm == RateLimiterAlgorithm.FIXED_WINDOW) {
+            return RateLimiterGuard(createRateLimiter())
+        }
+        return synchronized(this) {
+            gcraRateLimiter ?: GcraRateLimiter(
+                name,
+                limitForPeriod,
+                limitRefreshPeriod,
+                TimeUnit.MILLISECONDS.toNanos(timeoutDuration),
+                stripes
+            ).also { gcraRateLimiter = it }
+        }
+    }
+
     /**
      * Wraps the Redis client with rate limiter functionality.
-     * This method creates a dynamic proxy that intercepts all method calls to the Redis client
-     * and applies rate limiter functionality to them.
+     * Every command of the returned client waits for a rate limiter permission before it is executed,
+     * and fails with a RequestNotPermitted exception if none is available within the timeout.
+     * With the GCRA algorithm, it fails with a RateLimitExceededException instead.
      *
      * @param client The Redis client to wrap
      * @return The wrapped Redis client with rate limiter functionality
+     * @throws IllegalArgumentException if the client type cannot be decorated
      */
-    @Suppress("UNCHECKED_CAST")
-    override fun wrap(client: T): T {
-        val rateLimiter = createRateLimiter()
-        
-        // For now, we'll return the client as-is
-        // In a real implementation, we would create a dynamic proxy or decorator
-        // that wraps all methods with rate limiter functionality
-        
-        // This is a placeholder implementation
-        // The actual implementation would depend on the specific Redis client type
-        // and would require reflection or code generation to create a proper wrapper
-        
-        return client
-    }
+    override fun wrap(client: T): T = RedisClientDecorators.decorate(client, createGuard())
 
     companion object {
         /**
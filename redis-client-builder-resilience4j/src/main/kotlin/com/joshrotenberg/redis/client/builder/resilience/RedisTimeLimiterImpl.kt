@@ -54,12 +54,17 @@ class RedisTimeLimiterImpl<T>(
         return this
     }
 
+    /**
+     * The configured settings, compared by value in the specs of the builders using this policy.
+     */
+    internal fun settings(): List<Any?> = listOf(name, timeoutDuration, cancelRunningFuture)
+
     /**
      * Creates a time limiter with the configured settings.
      *
      * @return The created time limiter
      */
-    private fun createTimeLimiter(): TimeLimiter {
+    internal fun createTimeLimiter(): TimeLimiter {
         val config = TimeLimiterConfig.custom()
             .timeoutDuration(Duration.ofMillis(timeoutDuration))
             .cancelRunningFuture(cancelRunningFuture)
@@ -70,26 +75,17 @@ class RedisTimeLimiterImpl<T>(
 
     /**
      * Wraps the Redis client with time limiter functionality.
-     * This method creates a dynamic proxy that intercepts all method calls to the Redis client
-     * and applies time limiter functionality to them.
+     * Blocking commands cannot be interrupted on the calling thread, so they are checked when they return:
+     * a late command is recorded as a timeout by the time limiter and its reply is returned, and the socket
+     * timeout of the client bounds how long it can block.
+     * Commands of Lettuce clients, including their RedisFuture and CompletionStage results, are expired
+     * on the timer wheel of the client resources and fail with a RedisCommandTimeoutException.
      *
      * @param client The Redis client to wrap
      * @return The wrapped Redis client with time limiter functionality
+     * @throws IllegalArgumentException if the client type cannot be decorated
      */
-    @Suppress("UNCHECKED_CAST")
-    override fun wrap(client: T): T {
-        val timeLimiter = createTimeLimiter()
-        
-        // For now, we'll return the client as-is
-        // In a real implementation, we would create a dynamic proxy or decorator
-        // that wraps all methods with time limiter functionality
-        
-        // This is a placeholder implementation
-        // The actual implementation would depend on the specific Redis client type
-        // and would require reflection or code generation to create a proper wrapper
-        
-        return client
-    }
+    override fun wrap(client: T): T = RedisClientDecorators.decorate(client, TimeLimiterGuard(createTimeLimiter()))
 
     companion object {
         /**
@@ -0,0 +1,174 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.bulkhead.Bulkhead
+import io.github.resilience4j.bulkhead.BulkheadFullException
+import io.github.resilience4j.circuitbreaker.CircuitBreaker
+import io.github.resilience4j.core.functions.Either
+import io.github.resilience4j.ratelimiter.RateLimiter
+import io.github.resilience4j.retry.Retry
+import io.github.resilience4j.timelimiter.TimeLimiter
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * Guard that records Redis commands in a resilience4j circuit breaker.
+ *
+ * @property circuitBreaker The circuit breaker to use
+ */
+internal class CircuitBreakerGuard(val circuitBreaker: CircuitBreaker) : RedisCommandGuard {
+    override fun acquirePermission(): Long {
+        circuitBreaker.acquirePermission()
+        return System.nanoTime()
+    }
+
+    override fun onSuccess(startNanos: Long) {
+        circuitBreaker.onSuccess(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS)
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        circuitBreaker.onError(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS, error)
+    }
+}
+
+/**
+ * Guard that retries failed Redis commands according to a resilience4j retry configuration.
+ * Retries are decided from the configured exception predicate and interval function,
+ * so a successful command does not allocate a retry context.
+ *
+ * Non-idempotent commands are only retried if [retryNonIdempotent] is set. With a [budget], a retry
+ * also needs a token from the budget, and with a [jitterMaxDelay] the interval function is replaced
+ * by decorrelated jitter between [jitterBaseDelay] and three times the previous delay.
+ *
+ * @property retry The retry to use
+ * @property retryNonIdempotent Whether non-idempotent commands are retried
+ * @property budget The retry budget, or null for no budget
+ * @property jitterBaseDelay The lowest decorrelated jitter delay in milliseconds
+ * @property jitterMaxDelay The highest decorrelated jitter delay in milliseconds, or 0 to disable jitter
+ */
+internal class RetryGuard(
+    private val retry: Retry,
+    private val retryNonIdempotent: Boolean = false,
+    private val budget: RetryBudget? = null,
+    private val jitterBaseDelay: Long = 0,
+    private val jitterMaxDelay: Long = 0
+) : RedisCommandGuard {
+    private val config = retry.retryConfig
+
+    override fun acquirePermission(): Long = 0
+
+    override fun onSuccess(startNanos: Long) {
+        budget?.onSuccess()
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        // Nothing to record
+    }
+
+    override fun retryDelay(attempt: Int, error: Throwable, idempotent: Boolean, previousDelay: Long): Long {
+        if (attempt >= config.maxAttempts || !config.exceptionPredicate.test(error)) {
+            return RedisCommandGuard.NO_RETRY
+        }
+        if (!idempotent && !retryNonIdempotent) {
+            return RedisCommandGuard.NO_RETRY
+        }
+        if (budget != null && !budget.tryWithdraw()) {
+            return RedisCommandGuard.NO_RETRY
+        }
+        if (jitterMaxDelay > 0) {
+            val base = maxOf(1, jitterBaseDelay)
+            val upper = maxOf(base, previousDelay) * 3
+            return minOf(jitterMaxDelay, ThreadLocalRandom.current().nextLong(base, upper + 1))
+        }
+        return config.intervalBiFunction.apply(attempt, Either.left(error))
+    }
+}
+
+/**
+ * Guard that limits concurrent Redis commands with a resilience4j bulkhead.
+ * Calls that find the bulkhead full wait for a permit, but only up to [maxWaitingCalls] at a time;
+ * further calls are rejected immediately.
+ *
+ * @property bulkhead The bulkhead to use
+ * @property maxWaitingCalls The maximum number of calls waiting for a permit
+ */
+internal class BulkheadGuard(
+    private val bulkhead: Bulkhead,
+    private val maxWaitingCalls: Int = Int.MAX_VALUE
+) : RedisCommandGuard {
+    private val waitingCalls = AtomicInteger()
+
+    override fun acquirePermission(): Long {
+        if (bulkhead.tryAcquirePermission()) {
+            return 0
+        }
+        if (waitingCalls.incrementAndGet() > maxWaitingCalls) {
+            waitingCalls.decrementAndGet()
+            throw BulkheadFullException.createBulkheadFullException(bulkhead)
+        }
+        try {
+            bulkhead.acquirePermission()
+        } finally {
+            waitingCalls.decrementAndGet()
+        }
+        return 0
+    }
+
+    override fun onSuccess(startNanos: Long) {
+        bulkhead.onComplete()
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        bulkhead.onComplete()
+    }
+}
+
+/**
+ * Guard that limits the rate of Redis commands with a resilience4j rate limiter.
+ *
+ * @property rateLimiter The rate limiter to use
+ */
+internal class RateLimiterGuard(private val rateLimiter: RateLimiter) : RedisCommandGuard {
+    override fun acquirePermission(): Long {
+        RateLimiter.waitForPermission(rateLimiter)
+        return 0
+    }
+
+    override fun onSuccess(startNanos: Long) {
+        rateLimiter.onSuccess()
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        rateLimiter.onError(error)
+    }
+}
+
+/**
+ * Guard that reports Redis commands exceeding a resilience4j time limiter's timeout as timed out.
+ * A blocking command cannot be interrupted without handing it to another thread, so the deadline is
+ * checked when the command returns and a late command is recorded as a timeout. Its reply is still
+ * returned: the server has executed the command, and failing it would make callers retry a write.
+ * Blocking commands are bounded by the socket timeout of the client; asynchronous Lettuce commands
+ * are expired when the timeout elapses, see [commandTimeoutNanos].
+ *
+ * @property timeLimiter The time limiter to use
+ */
+internal class TimeLimiterGuard(private val timeLimiter: TimeLimiter) : RedisCommandGuard {
+    private val timeoutNanos = timeLimiter.timeLimiterConfig.timeoutDuration.toNanos()
+
+    override fun acquirePermission(): Long = System.nanoTime()
+
+    override fun onSuccess(startNanos: Long) {
+        if (System.nanoTime() - startNanos > timeoutNanos) {
+            timeLimiter.onError(TimeLimiter.createdTimeoutExceptionWithName(timeLimiter.name, null))
+        } else {
+            timeLimiter.onSuccess()
+        }
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        timeLimiter.onError(error)
+    }
+
+    override fun commandTimeoutNanos(): Long = timeoutNanos
+}
\ No newline at end of file
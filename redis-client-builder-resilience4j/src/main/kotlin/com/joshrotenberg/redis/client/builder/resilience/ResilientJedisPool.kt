@@ -0,0 +1,108 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import org.apache.commons.pool2.PooledObject
+import org.apache.commons.pool2.impl.DefaultPooledObject
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.Connection
+import redis.clients.jedis.DefaultJedisSocketFactory
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.JedisClientConfig
+import redis.clients.jedis.JedisFactory
+import redis.clients.jedis.JedisPool
+import redis.clients.jedis.JedisSentinelPool
+import redis.clients.jedis.JedisSocketFactory
+
+/**
+ * JedisPool whose Jedis instances run every command through a [RedisCommandGuard].
+ * A JedisPool hands out Jedis instances rather than executing commands, so the guard is applied where
+ * the commands of a Jedis funnel into its [Connection]: the pool's factory builds each Jedis on a
+ * [GuardedConnection]. Commands that Jedis writes to the connection directly, such as PING, and the
+ * pool's own validation are not guarded. A retried attempt runs on the same connection, so a command is
+ * only retried while the connection is intact: after an I/O error or a read timeout, the reply may still
+ * be on its way, and the error is propagated so that the pool replaces the connection.
+ *
+ * @param poolConfig The configuration of the pool
+ * @param hostAndPort The Redis server
+ * @param clientConfig The configuration of the connections
+ * @param guard The guard applied to every command
+ */
+class ResilientJedisPool(
+    poolConfig: GenericObjectPoolConfig<Jedis>,
+    hostAndPort: HostAndPort,
+    clientConfig: JedisClientConfig,
+    guard: RedisCommandGuard
+) : JedisPool(poolConfig, GuardedJedisFactory(DefaultJedisSocketFactory(hostAndPort, clientConfig), clientConfig, guard))
+
+/**
+ * JedisSentinelPool whose Jedis instances run every command through a [RedisCommandGuard], like
+ * [ResilientJedisPool]. After a failover, connections to the new master are guarded alike.
+ *
+ * @param masterName The name of the master the sentinels monitor
+ * @param sentinels The sentinels
+ * @param poolConfig The configuration of the pool
+ * @param masterClientConfig The configuration of the connections to the master
+ * @param sentinelClientConfig The configuration of the connections to the sentinels
+ * @param guard The guard applied to every command
+ */
+class ResilientJedisSentinelPool(
+    masterName: String,
+    sentinels: Set<HostAndPort>,
+    poolConfig: GenericObjectPoolConfig<Jedis>,
+    masterClientConfig: JedisClientConfig,
+    sentinelClientConfig: JedisClientConfig,
+    guard: RedisCommandGuard
+) : JedisSentinelPool(
+    masterName,
+    sentinels,
+    poolConfig,
+    GuardedJedisFactory(DefaultJedisSocketFactory(masterClientConfig), masterClientConfig, guard),
+    sentinelClientConfig
+)
+
+/**
+ * Jedis factory that builds every Jedis on a [GuardedConnection].
+ * Validation, activation and destruction are left to [JedisFactory]. The socket factory is shared with
+ * it, so when a sentinel pool moves the factory to a new master, new connections go to the new master.
+ *
+ * @property socketFactory The socket factory of the connections
+ * @property clientConfig The configuration of the connections
+ * @property guard The guard applied to every command
+ */
+internal class GuardedJedisFactory(
+    private val socketFactory: JedisSocketFactory,
+    private val clientConfig: JedisClientConfig,
+    private val guard: RedisCommandGuard
+) : JedisFactory(socketFactory, clientConfig) {
+
+    override fun makeObject(): PooledObject<Jedis> =
+        DefaultPooledObject(Jedis(GuardedConnection(socketFactory, clientConfig, guard)))
+}
+
+/**
+ * Jedis connection that runs every command through a [RedisCommandGuard].
+ * The Jedis command API funnels into [executeCommand], so overriding it covers most commands.
+ * Once the connection is broken, failed commands are not retried: a retry would read the reply of the
+ * failed attempt, and every later command on the connection would get the reply of the one before.
+ *
+ * @param socketFactory The socket factory of the connection
+ * @param clientConfig The configuration of the connection
+ * @param guard The guard applied to every command
+ */
+internal class GuardedConnection(
+    socketFactory: JedisSocketFactory,
+    clientConfig: JedisClientConfig,
+    guard: RedisCommandGuard
+) : Connection(socketFactory, clientConfig) {
+
+    private val guard: RedisCommandGuard = object : RedisCommandGuard by guard {
+        override fun retryDelay(attempt: Int, error: Throwable, idempotent: Boolean, previousDelay: Long): Long =
+            if (isBroken) RedisCommandGuard.NO_RETRY else guard.retryDelay(attempt, error, idempotent, previousDelay)
+    }
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T =
+        guard.execute({ isIdempotent(commandObject.arguments) }) {
+            super.executeCommand(commandObject)
+        }
+}
\ No newline at end of file
@@ -0,0 +1,29 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.csc.Cache
+import redis.clients.jedis.providers.PooledConnectionProvider
+
+/**
+ * JedisPooled decorator that runs every command through a [RedisCommandGuard].
+ * All JedisPooled commands funnel into [executeCommand], so overriding it covers the whole command API
+ * without reflection, argument arrays or boxing. The decorator shares the connection pool of the
+ * wrapped client, and closing either one closes the pool. If the wrapped client has a client-side cache,
+ * its pooled connections keep caching and the decorator reports the same cache.
+ *
+ * @property delegate The JedisPooled client to decorate
+ * @property guard The guard applied to every command
+ */
+class ResilientJedisPooled(
+    private val delegate: JedisPooled,
+    private val guard: RedisCommandGuard
+) : JedisPooled(PooledConnectionProvider(delegate.pool)) {
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T =
+        guard.execute({ isIdempotent(commandObject.arguments) }) {
+            super.executeCommand(commandObject)
+        }
+
+    override fun getCache(): Cache? = delegate.cache
+}
\ No newline at end of file
@@ -0,0 +1,267 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.lettuce.core.AbstractRedisClient
+import io.lettuce.core.ConnectionBuilder
+import io.lettuce.core.ConnectionPoint
+import io.lettuce.core.RedisChannelWriter
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisCommandTimeoutException
+import io.lettuce.core.RedisURI
+import io.lettuce.core.StatefulRedisConnectionImpl
+import io.lettuce.core.codec.RedisCodec
+import io.lettuce.core.protocol.CommandWrapper
+import io.lettuce.core.protocol.PushHandler
+import io.lettuce.core.protocol.RedisCommand
+import io.lettuce.core.resource.ClientResources
+import io.netty.util.Timeout
+import io.netty.util.Timer
+import io.netty.util.TimerTask
+import java.lang.reflect.InvocationTargetException
+import java.lang.reflect.Method
+import java.time.Duration
+import java.util.concurrent.CancellationException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * RedisClient decorator whose connections run every command through a [RedisCommandGuard].
+ * The sync, async and reactive command interfaces of a Lettuce connection all dispatch through
+ * [StatefulRedisConnectionImpl.dispatch], so the decorator hands out connections that override it.
+ * Permission is acquired when a command is dispatched and the outcome is recorded when it completes.
+ * Lettuce commands cannot be re-dispatched once written, so retries are not applied to this client.
+ *
+ * If the guard has a command timeout, each command's deadline is registered with the Netty timer of
+ * the client resources, a hashed timer wheel shared by all connections. A command still running at its
+ * deadline fails with a RedisCommandTimeoutException, so timeouts cost O(1) and need no extra threads.
+ *
+ * The decorator uses the client resources, options and transport of the wrapped client, and shutting
+ * it down also shuts down the wrapped client.
+ *
+ * @property delegate The RedisClient to decorate
+ * @param redisURI The default URI of the wrapped client
+ * @property guard The guard applied to every command
+ */
+class ResilientRedisClient private constructor(
+    private val delegate: RedisClient,
+    redisURI: RedisURI,
+    private val guard: RedisCommandGuard
+) : RedisClient(delegate.resources, redisURI) {
+
+    init {
+        options = delegate.options
+    }
+
+    override fun <K, V> newStatefulRedisConnection(
+        channelWriter: RedisChannelWriter,
+        pushHandler: PushHandler,
+        codec: RedisCodec<K, V>,
+        timeout: Duration
+    ): StatefulRedisConnectionImpl<K, V> =
+        GuardedStatefulRedisConnection(channelWriter, pushHandler, codec, timeout, CommandGuarding(guard, resources))
+
+    override fun channelType(connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint) =
+        DelegateChannelType.apply(delegate, connectionBuilder, connectionPoint)
+
+    override fun shutdownAsync(quietPeriod: Long, timeout: Long, timeUnit: TimeUnit): CompletableFuture<Void> =
+        super.shutdownAsync(quietPeriod, timeout, timeUnit)
+            .thenCompose { delegate.shutdownAsync(quietPeriod, timeout, timeUnit) }
+
+    companion object {
+        /**
+         * Wraps a RedisClient with the given guard.
+         *
+         * @param client The RedisClient to decorate
+         * @param guard The guard applied to every command
+         * @return A RedisClient whose connections are guarded
+         */
+        @JvmStatic
+        fun wrap(client: RedisClient, guard: RedisCommandGuard): ResilientRedisClient =
+            ResilientRedisClient(client, redisUriOf(client), guard)
+
+        /**
+         * Reads the default URI of a RedisClient.
+         * RedisClient keeps it private, so it is looked up once here rather than on the command path.
+         */
+        private fun redisUriOf(client: RedisClient): RedisURI {
+            val field = RedisClient::class.java.getDeclaredField("redisURI")
+            field.isAccessible = true
+            return field.get(client) as RedisURI
+        }
+    }
+}
+
+/**
+ * Opens the connections of a decorator with the event loop group and channel class of the wrapped client,
+ * so a client built for a specific Netty transport keeps it when it is decorated.
+ * [AbstractRedisClient.channelType] is protected, so it is looked up once and invoked reflectively.
+ */
+internal object DelegateChannelType {
+    private val channelType: Method = AbstractRedisClient::class.java
+        .getDeclaredMethod("channelType", ConnectionBuilder::class.java, ConnectionPoint::class.java)
+        .apply { isAccessible = true }
+
+    /**
+     * Sets up the bootstrap of a connection the way the wrapped client would.
+     *
+     * @param delegate The wrapped client
+     * @param connectionBuilder The builder of the connection
+     * @param connectionPoint The address of the connection
+     */
+    fun apply(delegate: AbstractRedisClient, connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint) {
+        try {
+            channelType.invoke(delegate, connectionBuilder, connectionPoint)
+        } catch (e: InvocationTargetException) {
+            throw e.targetException
+        }
+    }
+}
+
+/**
+ * The guard applied to the commands of a Lettuce connection, together with the timer that expires them.
+ *
+ * @property guard The guard applied to every command
+ * @property timer The timer used to expire commands, from the client resources
+ */
+internal class CommandGuarding(val guard: RedisCommandGuard, resources: ClientResources) {
+    val timer: Timer = resources.timer()
+    val timeoutNanos: Long = guard.commandTimeoutNanos()
+
+    /**
+     * Acquires permission for a command and wraps it, registering its deadline if commands expire.
+     *
+     * @param command The command to guard
+     * @return The guarded command
+     */
+    fun <K, V, T> guard(command: RedisCommand<K, V, T>): GuardedCommand<K, V, T> =
+        expire(acquire(command))
+
+    /**
+     * Acquires permission for a command and wraps it without registering a deadline.
+     * Used when the command is wrapped again, so the deadline can be registered on the outermost wrapper.
+     *
+     * @param command The command to guard
+     * @return The guarded command
+     */
+    fun <K, V, T> acquire(command: RedisCommand<K, V, T>): GuardedCommand<K, V, T> =
+        GuardedCommand(command, guard, guard.acquirePermission())
+
+    /**
+     * Registers the deadline of a guarded command if commands expire.
+     * Expiring the outermost wrapper completes every wrapper inside it, so each guard records the timeout.
+     *
+     * @param command The outermost wrapper of the command
+     * @return The same command
+     */
+    fun <K, V, T> expire(command: GuardedCommand<K, V, T>): GuardedCommand<K, V, T> {
+        if (timeoutNanos > 0) {
+            command.expireAfter(timer, timeoutNanos)
+        }
+        return command
+    }
+}
+
+/**
+ * Lettuce connection that acquires permission from a [RedisCommandGuard] before dispatching a command.
+ *
+ * @property guarding The guard applied to every command
+ */
+internal class GuardedStatefulRedisConnection<K, V>(
+    channelWriter: RedisChannelWriter,
+    pushHandler: PushHandler,
+    codec: RedisCodec<K, V>,
+    timeout: Duration,
+    private val guarding: CommandGuarding
+) : StatefulRedisConnectionImpl<K, V>(channelWriter, pushHandler, codec, timeout) {
+
+    override fun <T> dispatch(command: RedisCommand<K, V, T>): RedisCommand<K, V, T> =
+        super.dispatch(guarding.guard(command))
+
+    override fun dispatch(commands: Collection<RedisCommand<K, V, *>>): Collection<RedisCommand<K, V, *>> {
+        val guarded = ArrayList<RedisCommand<K, V, *>>(commands.size)
+        try {
+            for (command in commands) {
+                guarded.add(guarding.guard(command))
+            }
+        } catch (e: Exception) {
+            // The commands guarded so far hold permits and are never dispatched: failing them releases the permits
+            guarded.forEach { it.completeExceptionally(e) }
+            commands.drop(guarded.size).forEach { it.completeExceptionally(e) }
+            throw e
+        }
+        return super.dispatch(guarded)
+    }
+}
+
+/**
+ * Command wrapper that reports the outcome of a dispatched command to a [RedisCommandGuard] exactly once.
+ * If the guard rejects a completed command, the command is completed exceptionally instead.
+ * A command with a deadline is completed exceptionally by the timer if it is still running when the
+ * deadline passes, and its timer entry is cancelled as soon as it completes.
+ *
+ * @property guard The guard to report to
+ * @property startNanos The value returned by [RedisCommandGuard.acquirePermission]
+ */
+internal class GuardedCommand<K, V, T>(
+    command: RedisCommand<K, V, T>,
+    private val guard: RedisCommandGuard,
+    private val startNanos: Long
+) : CommandWrapper<K, V, T>(command), TimerTask {
+
+    private val reported = AtomicBoolean()
+
+    @Volatile
+    private var expiry: Timeout? = null
+
+    /**
+     * Registers the deadline of this command with a timer.
+     *
+     * @param timer The timer to register with
+     * @param timeoutNanos The time until the deadline in nanoseconds
+     */
+    fun expireAfter(timer: Timer, timeoutNanos: Long) {
+        expiry = timer.newTimeout(this, timeoutNanos, TimeUnit.NANOSECONDS)
+    }
+
+    override fun run(timeout: Timeout) {
+        if (!reported.get()) {
+            val millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+            completeExceptionally(RedisCommandTimeoutException("Command $type timed out after $millis ms"))
+        }
+    }
+
+    override fun complete() {
+        if (!reported.compareAndSet(false, true)) {
+            super.complete()
+            return
+        }
+        expiry?.cancel()
+        val rejection = try {
+            guard.onSuccess(startNanos)
+            null
+        } catch (e: Exception) {
+            e
+        }
+        if (rejection == null) {
+            super.complete()
+        } else {
+            super.completeExceptionally(rejection)
+        }
+    }
+
+    override fun completeExceptionally(throwable: Throwable): Boolean {
+        if (reported.compareAndSet(false, true)) {
+            expiry?.cancel()
+            guard.onError(startNanos, throwable)
+        }
+        return super.completeExceptionally(throwable)
+    }
+
+    override fun cancel() {
+        if (reported.compareAndSet(false, true)) {
+            expiry?.cancel()
+            guard.onError(startNanos, CancellationException("Redis command cancelled"))
+        }
+        super.cancel()
+    }
+}
\ No newline at end of file
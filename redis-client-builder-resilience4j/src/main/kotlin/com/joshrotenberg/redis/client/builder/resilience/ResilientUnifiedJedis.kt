@@ -0,0 +1,58 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import redis.clients.jedis.CommandArguments
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.csc.Cache
+import redis.clients.jedis.executors.CommandExecutor
+
+/**
+ * UnifiedJedis decorator that runs every command through a [RedisCommandGuard].
+ * UnifiedJedis hands every command to its [CommandExecutor], so the decorator plugs in a guarded executor
+ * that forwards to the wrapped client. Closing the decorator closes the wrapped client, and the decorator
+ * reports the client-side cache of the wrapped client, if any.
+ *
+ * @property delegate The UnifiedJedis client to decorate
+ * @param guard The guard applied to every command
+ */
+class ResilientUnifiedJedis(
+    private val delegate: UnifiedJedis,
+    guard: RedisCommandGuard
+) : UnifiedJedis(GuardedCommandExecutor(delegate, guard)) {
+
+    override fun getCache(): Cache? = delegate.cache
+}
+
+/**
+ * Command executor that forwards commands to a UnifiedJedis client under a [RedisCommandGuard].
+ *
+ * @property delegate The UnifiedJedis client that executes the commands
+ * @property guard The guard applied to every command
+ */
+internal class GuardedCommandExecutor(
+    private val delegate: UnifiedJedis,
+    private val guard: RedisCommandGuard
+) : CommandExecutor {
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T =
+        guard.execute({ isIdempotent(commandObject.arguments) }) {
+            delegate.executeCommand(commandObject)
+        }
+
+    override fun close() {
+        delegate.close()
+    }
+}
+
+/**
+ * Returns whether a Jedis command can safely be executed more than once, see [RedisCommands].
+ * The guards only ask after a command failed, so the arguments are not decoded on the success path.
+ *
+ * @param arguments The arguments of the command, starting with its name
+ * @return true if the command is idempotent
+ */
+internal fun isIdempotent(arguments: CommandArguments): Boolean =
+    RedisCommands.isIdempotent(
+        String(arguments.command.raw, Charsets.US_ASCII),
+        arguments.drop(1).map { String(it.raw, Charsets.UTF_8) }
+    )
\ No newline at end of file
@@ -0,0 +1,10 @@
+dependencies {
+    // The server has no dependencies, so tests of any module can use it
+
+    // Testing
+    testImplementation(kotlin("test"))
+    testImplementation(libs.junit.api)
+    testRuntimeOnly(libs.junit.engine)
+    testImplementation(libs.jedis)
+    testImplementation(libs.lettuce.core)
+}
@@ -0,0 +1,102 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+/**
+ * Replies to the CLUSTER commands clients use to discover a cluster's topology, from a [ClusterView].
+ */
+internal object ClusterReplies {
+    private const val BUS_PORT_OFFSET = 10000
+
+    /**
+     * CLUSTER SLOTS: one entry per slot range, with the range and the node serving it.
+     */
+    fun slots(writer: RespWriter, view: ClusterView) {
+        val ranges = view.nodes.flatMap { node -> view.slots(node).map { node to it } }
+        writer.array(ranges.size)
+        for ((node, range) in ranges) {
+            writer.array(3)
+            writer.integer(range.first)
+            writer.integer(range.last)
+            writer.array(3)
+            writer.bulk(node.host)
+            writer.integer(node.port)
+            writer.bulk(node.id)
+        }
+    }
+
+    /**
+     * CLUSTER SHARDS: one entry per node, since nodes have no replicas, with its slots and its address.
+     */
+    fun shards(writer: RespWriter, view: ClusterView) {
+        writer.array(view.nodes.size)
+        for (node in view.nodes) {
+            val ranges = view.slots(node)
+            writer.map(2)
+            writer.bulk("slots")
+            writer.array(ranges.size * 2)
+            for (range in ranges) {
+                writer.integer(range.first)
+                writer.integer(range.last)
+            }
+            writer.bulk("nodes")
+            writer.array(1)
+            writer.map(7)
+            writer.bulk("id")
+            writer.bulk(node.id)
+            writer.bulk("port")
+            writer.integer(node.port)
+            writer.bulk("ip")
+            writer.bulk(node.host)
+            writer.bulk("endpoint")
+            writer.bulk(node.host)
+            writer.bulk("role")
+            writer.bulk("master")
+            writer.bulk("replication-offset")
+            writer.integer(0)
+            writer.bulk("health")
+            writer.bulk("online")
+        }
+    }
+
+    /**
+     * CLUSTER NODES: one line per node, in the format of nodes.conf.
+     */
+    fun nodes(view: ClusterView): String =
+        view.nodes.withIndex().joinToString("") { (index, node) ->
+            val failed = view.isFailed(node)
+            val flags = (if (node == view.myself) "myself,master" else "master") + if (failed) ",fail" else ""
+            val slots = view.slots(node).map { range ->
+                if (range.first == range.last) "${range.first}" else "${range.first}-${range.last}"
+            } + if (node == view.myself) migrations(view) else emptyList()
+            val link = if (failed) "disconnected" else "connected"
+            "${node.id} ${node.host}:${node.port}@${node.port + BUS_PORT_OFFSET} $flags - 0 0 ${index + 1} $link " +
+                slots.joinToString(" ").trimEnd() + "\n"
+        }
+
+    /**
+     * The slots being migrated to or from the answering node, as `[slot->-target]` and `[slot-<-source]`.
+     */
+    private fun migrations(view: ClusterView): List<String> =
+        (0 until ClusterSlots.COUNT).mapNotNull { slot ->
+            view.migratingTo(slot)?.let { "[$slot->-${it.id}]" }
+                ?: view.importingFrom(slot)?.let { "[$slot-<-${it.id}]" }
+        }
+
+    /**
+     * CLUSTER INFO: the cluster's state and size.
+     */
+    fun info(view: ClusterView): String {
+        val slotCounts = view.nodes.associateWith { node -> view.slots(node).sumOf { it.last - it.first + 1 } }
+        val assigned = slotCounts.values.sum()
+        val failed = slotCounts.filterKeys { view.isFailed(it) }.values.sum()
+        val state = if (assigned == ClusterSlots.COUNT && failed == 0) "ok" else "fail"
+        return "cluster_state:$state\r\n" +
+            "cluster_slots_assigned:$assigned\r\n" +
+            "cluster_slots_ok:${assigned - failed}\r\n" +
+            "cluster_slots_pfail:0\r\n" +
+            "cluster_slots_fail:$failed\r\n" +
+            "cluster_known_nodes:${view.nodes.size}\r\n" +
+            "cluster_size:${view.nodes.size}\r\n" +
+            "cluster_current_epoch:${view.nodes.size}\r\n" +
+            "cluster_my_epoch:${view.nodes.indexOf(view.myself) + 1}\r\n"
+    }
+}
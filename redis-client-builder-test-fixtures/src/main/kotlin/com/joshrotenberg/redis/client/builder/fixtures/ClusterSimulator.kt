@@ -0,0 +1,404 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * A Redis Cluster of [RespServer] nodes in one JVM, for testing how cluster clients follow redirects and
+ * topology changes without a real cluster.
+ *
+ * The nodes share one topology. Slots are split evenly between them when the cluster starts, and each
+ * node answers CLUSTER SLOTS, SHARDS and NODES from the shared topology and redirects commands for slots
+ * it does not serve with MOVED. Slots can be migrated live, like `redis-cli --cluster reshard` does:
+ *
+ * 1. [beginMigration] marks the slot as migrating on its owner and importing on the target. The owner
+ *    keeps serving keys it still has and answers commands for missing keys with ASK.
+ * 2. [migrateKeys] moves keys to the target in batches. The owner's thread is blocked while a batch is
+ *    moved, so every command sees each key on exactly one node.
+ * 3. [finishMigration] makes the target the owner, after which the old owner answers with MOVED.
+ *
+ * [kill] stops a node; its slots answer with CLUSTERDOWN until [assignSlots] hands them to another node.
+ * Each node's [RespServer.metrics] count its commands and the redirects it sent, and
+ * [topologyRefreshLatencyNanos] measures how soon clients asked for the topology after it last changed.
+ *
+ * ```kotlin
+ * ClusterSimulator.builder().nodes(3).build().use { cluster ->
+ *     val client = JedisCluster(cluster.nodes.map { HostAndPort(it.host, it.port) }.toSet())
+ *     cluster.migrateSlot(ClusterSlots.slot("key"), cluster.nodes[2])
+ * }
+ * ```
+ */
+class ClusterSimulator private constructor(builder: Builder) : AutoCloseable {
+    private val state = ClusterState()
+    private val servers = LinkedHashMap<ClusterNode, RespServer>()
+
+    // Moving keys blocks the source node until the target stored them, so only one move runs at a time
+    private val migrationLock = Any()
+
+    init {
+        try {
+            repeat(builder.nodes) {
+                val serverBuilder = RespServer.builder()
+                    .latency(builder.latencyMs)
+                    .jitter(builder.jitterMs)
+                    .errorRate(builder.errorRate)
+                builder.seed?.let { seed -> serverBuilder.seed(seed + it) }
+                serverBuilder.clusterView = { node ->
+                    state.update { topology -> topology.withNode(node) }
+                    NodeView(state, node)
+                }
+                val server = serverBuilder.build()
+                servers[server.clusterNode!!] = server
+            }
+            val nodes = state.topology.nodes
+            state.update { topology ->
+                nodes.indices.fold(topology) { assigned, index ->
+                    val from = index * ClusterSlots.COUNT / nodes.size
+                    val to = (index + 1) * ClusterSlots.COUNT / nodes.size - 1
+                    assigned.withOwner(from..to, index)
+                }
+            }
+        } catch (e: Exception) {
+            servers.values.forEach { it.close() }
+            throw e
+        }
+    }
+
+    /**
+     * The nodes of the cluster, including killed ones.
+     */
+    val nodes: List<ClusterNode>
+        get() = state.topology.nodes
+
+    /**
+     * The time between the last topology change and the first topology query any node answered after it,
+     * or null if no client asked since the last change.
+     */
+    val topologyRefreshLatencyNanos: Long?
+        get() = state.refreshLatencyNanos()
+
+    /**
+     * Returns the server of a node, for its metrics and fault settings.
+     *
+     * @param node A node of this cluster
+     * @return The node's server
+     */
+    fun server(node: ClusterNode): RespServer =
+        requireNotNull(servers[node]) { "$node is not a node of this cluster" }
+
+    /**
+     * Returns the node that serves a slot.
+     *
+     * @param slot The slot
+     * @return The node
+     */
+    fun nodeForSlot(slot: Int): ClusterNode = state.topology.owner(slot)
+
+    /**
+     * Returns the node that serves a key.
+     *
+     * @param key The key
+     * @return The node
+     */
+    fun nodeFor(key: String): ClusterNode = nodeForSlot(ClusterSlots.slot(key))
+
+    /**
+     * Returns the slot ranges a node serves.
+     *
+     * @param node A node of this cluster
+     * @return The slot ranges
+     */
+    fun slots(node: ClusterNode): List<IntRange> = state.topology.ranges[node].orEmpty()
+
+    /**
+     * Starts migrating a slot to another node. Until the migration finishes, the owner answers commands
+     * for keys it no longer has with ASK.
+     *
+     * @param slot The slot to migrate
+     * @param target The node to migrate it to
+     */
+    fun beginMigration(slot: Int, target: ClusterNode) {
+        requireSlot(slot)
+        state.update { topology ->
+            val targetIndex = topology.indexOf(target)
+            require(topology.owners[slot] != targetIndex) { "$target already serves slot $slot" }
+            check(topology.nodes[topology.owners[slot]] !in topology.failed) { "The owner of slot $slot has failed" }
+            check(target !in topology.failed) { "$target has failed" }
+            topology.withMigration(slot, targetIndex)
+        }
+    }
+
+    /**
+     * Moves keys of a migrating slot from its owner to the target.
+     *
+     * @param slot The migrating slot
+     * @param count The maximum number of keys to move
+     * @return The number of keys moved, 0 once the owner has none left
+     */
+    fun migrateKeys(slot: Int, count: Int): Int {
+        require(count > 0) { "count must be positive" }
+        synchronized(migrationLock) {
+            val topology = state.topology
+            val target = checkNotNull(topology.migrating[slot]) { "Slot $slot is not being migrated" }
+            val source = server(topology.owner(slot))
+            val destination = server(topology.nodes[target])
+            return source.submit {
+                val keyspace = source.databases[0]
+                val entries = keysInSlot(keyspace, slot).take(count).mapNotNull { key ->
+                    keyspace.export(key)?.let { (value, expiresAt) -> Triple(key, value, expiresAt) }
+                }
+                destination.submit {
+                    val target = destination.databases[0]
+                    entries.forEach { (key, value, expiresAt) -> target.import(key, value, expiresAt) }
+                }.get(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                entries.size
+            }.get(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+        }
+    }
+
+    /**
+     * Makes the target of a migration the owner of the slot. The old owner answers with MOVED from now on.
+     *
+     * @param slot The migrating slot
+     * @throws IllegalStateException if the old owner still has keys in the slot
+     */
+    fun finishMigration(slot: Int) {
+        synchronized(migrationLock) {
+            val topology = state.topology
+            val target = checkNotNull(topology.migrating[slot]) { "Slot $slot is not being migrated" }
+            val source = server(topology.owner(slot))
+            val remaining = source.submit { keysInSlot(source.databases[0], slot).size }
+                .get(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            check(remaining == 0) { "Slot $slot still has $remaining keys on ${topology.owner(slot)}" }
+            state.update { it.withOwner(slot..slot, target) }
+        }
+    }
+
+    /**
+     * Migrates a slot and all its keys to another node.
+     *
+     * @param slot The slot to migrate
+     * @param target The node to migrate it to
+     */
+    fun migrateSlot(slot: Int, target: ClusterNode) {
+        beginMigration(slot, target)
+        while (migrateKeys(slot, MIGRATION_BATCH) > 0) {
+            // Keep moving batches until the owner has no keys left
+        }
+        finishMigration(slot)
+    }
+
+    /**
+     * Stops a node. Clients see its connections reset, and the other nodes report it as failed and answer
+     * commands for its slots with CLUSTERDOWN.
+     *
+     * @param node The node to stop
+     */
+    fun kill(node: ClusterNode) {
+        server(node).close()
+        state.update { it.withFailed(node) }
+    }
+
+    /**
+     * Hands slots to a node without moving their keys, like a failover to an empty replica. Use it to bring
+     * the slots of a killed node back; keys left on a live previous owner become unreachable.
+     *
+     * @param slots The slots to hand over
+     * @param node The node to serve them
+     */
+    fun assignSlots(slots: IntRange, node: ClusterNode) {
+        requireSlot(slots.first)
+        requireSlot(slots.last)
+        state.update { topology ->
+            check(node !in topology.failed) { "$node has failed" }
+            topology.withOwner(slots, topology.indexOf(node))
+        }
+    }
+
+    /**
+     * Stops all nodes.
+     */
+    override fun close() {
+        servers.values.forEach { it.close() }
+    }
+
+    private fun requireSlot(slot: Int) = require(slot in 0 until ClusterSlots.COUNT) { "Invalid slot $slot" }
+
+    private fun keysInSlot(keyspace: Keyspace, slot: Int): List<String> =
+        keyspace.keys("*").filter { ClusterSlots.slot(it.toByteArray(Charsets.ISO_8859_1)) == slot }
+
+    /**
+     * An immutable snapshot of the cluster's topology. Slots are mapped to the index of their node.
+     */
+    internal class Topology(
+        val nodes: List<ClusterNode>,
+        val owners: IntArray,
+        val migrating: Map<Int, Int>,
+        val failed: Set<ClusterNode>
+    ) {
+        val ranges: Map<ClusterNode, List<IntRange>> by lazy {
+            val ranges = LinkedHashMap<ClusterNode, MutableList<IntRange>>()
+            var start = 0
+            for (slot in 1..ClusterSlots.COUNT) {
+                if (slot == ClusterSlots.COUNT || owners[slot] != owners[start]) {
+                    if (owners[start] >= 0) {
+                        ranges.getOrPut(nodes[owners[start]]) { ArrayList() }.add(start until slot)
+                    }
+                    start = slot
+                }
+            }
+            ranges
+        }
+
+        fun owner(slot: Int): ClusterNode = nodes[owners[slot]]
+
+        fun indexOf(node: ClusterNode): Int = nodes.indexOf(node).also {
+            require(it >= 0) { "$node is not a node of this cluster" }
+        }
+
+        fun withNode(node: ClusterNode) = Topology(nodes + node, owners, migrating, failed)
+
+        fun withOwner(slots: IntRange, owner: Int): Topology {
+            val reassigned = owners.copyOf()
+            slots.forEach { reassigned[it] = owner }
+            return Topology(nodes, reassigned, migrating.filterKeys { it !in slots }, failed)
+        }
+
+        fun withMigration(slot: Int, target: Int) = Topology(nodes, owners, migrating + (slot to target), failed)
+
+        fun withFailed(node: ClusterNode): Topology {
+            val index = indexOf(node)
+            val migrations = migrating.filter { (slot, target) -> target != index && owners[slot] != index }
+            return Topology(nodes, owners, migrations, failed + node)
+        }
+    }
+
+    /**
+     * The topology shared by the nodes, replaced as a whole on every change.
+     */
+    internal class ClusterState {
+        @Volatile
+        var topology = Topology(emptyList(), IntArray(ClusterSlots.COUNT) { -1 }, emptyMap(), emptySet())
+            private set
+
+        @Volatile
+        private var changedAt = System.nanoTime()
+        private val firstQueryAfterChange = AtomicLong()
+
+        @Synchronized
+        fun update(change: (Topology) -> Topology) {
+            topology = change(topology)
+            changedAt = System.nanoTime()
+            firstQueryAfterChange.set(0)
+        }
+
+        fun queried() {
+            firstQueryAfterChange.compareAndSet(0, System.nanoTime())
+        }
+
+        fun refreshLatencyNanos(): Long? = firstQueryAfterChange.get().takeIf { it != 0L }?.let { it - changedAt }
+    }
+
+    /**
+     * The topology as one node sees it.
+     */
+    private class NodeView(private val state: ClusterState, override val myself: ClusterNode) : ClusterView {
+        override val nodes: List<ClusterNode>
+            get() = state.topology.nodes
+
+        override fun slots(node: ClusterNode): List<IntRange> = state.topology.ranges[node].orEmpty()
+
+        override fun owner(slot: Int): ClusterNode = state.topology.owner(slot)
+
+        override fun migratingTo(slot: Int): ClusterNode? {
+            val topology = state.topology
+            val target = topology.migrating[slot] ?: return null
+            return if (topology.owner(slot) == myself) topology.nodes[target] else null
+        }
+
+        override fun importingFrom(slot: Int): ClusterNode? {
+            val topology = state.topology
+            val target = topology.migrating[slot] ?: return null
+            return if (topology.nodes[target] == myself) topology.owner(slot) else null
+        }
+
+        override fun isFailed(node: ClusterNode): Boolean = node in state.topology.failed
+
+        override fun topologyQueried() = state.queried()
+    }
+
+    /**
+     * Builder for [ClusterSimulator].
+     */
+    class Builder internal constructor() {
+        internal var nodes = DEFAULT_NODES
+        internal var latencyMs = 0L
+        internal var jitterMs = 0L
+        internal var errorRate = 0.0
+        internal var seed: Long? = null
+
+        /**
+         * Sets the number of nodes. Defaults to 3.
+         *
+         * @param nodes The number of nodes
+         * @return The builder instance
+         */
+        fun nodes(nodes: Int): Builder = apply {
+            require(nodes in 1..ClusterSlots.COUNT) { "nodes must be between 1 and ${ClusterSlots.COUNT}" }
+            this.nodes = nodes
+        }
+
+        /**
+         * Sets the delay added to every reply of every node, see [RespServer.latencyMs].
+         *
+         * @param latencyMs The delay in milliseconds
+         * @return The builder instance
+         */
+        fun latency(latencyMs: Long): Builder = apply { this.latencyMs = latencyMs }
+
+        /**
+         * Sets the maximum random delay added on top of the latency, see [RespServer.jitterMs].
+         *
+         * @param jitterMs The maximum delay in milliseconds
+         * @return The builder instance
+         */
+        fun jitter(jitterMs: Long): Builder = apply { this.jitterMs = jitterMs }
+
+        /**
+         * Sets the fraction of data commands answered with an injected error, see [RespServer.errorRate].
+         *
+         * @param errorRate The fraction, from 0 to 1
+         * @return The builder instance
+         */
+        fun errorRate(errorRate: Double): Builder = apply { this.errorRate = errorRate }
+
+        /**
+         * Seeds the random sources of the nodes, so that runs are repeatable.
+         *
+         * @param seed The seed
+         * @return The builder instance
+         */
+        fun seed(seed: Long): Builder = apply { this.seed = seed }
+
+        /**
+         * Starts the nodes.
+         *
+         * @return A new ClusterSimulator, with every slot served
+         */
+        fun build(): ClusterSimulator = ClusterSimulator(this)
+    }
+
+    companion object {
+        private const val DEFAULT_NODES = 3
+        private const val MIGRATION_BATCH = 100
+        private const val TASK_TIMEOUT_SECONDS = 10L
+
+        /**
+         * Creates a builder for a cluster of three nodes.
+         *
+         * @return A new Builder
+         */
+        @JvmStatic
+        fun builder(): Builder = Builder()
+    }
+}
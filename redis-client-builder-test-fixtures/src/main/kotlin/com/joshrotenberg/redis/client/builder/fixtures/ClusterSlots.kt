@@ -0,0 +1,118 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+/**
+ * A node of a cluster, as reported by CLUSTER SLOTS, SHARDS and NODES.
+ *
+ * @property id The node's 40-character hexadecimal id
+ * @property host The host clients connect to
+ * @property port The port clients connect to
+ */
+data class ClusterNode(val id: String, val host: String, val port: Int) {
+    override fun toString(): String = "$host:$port"
+}
+
+/**
+ * The nodes of a cluster and the slots each of them serves, as one node sees them.
+ */
+internal interface ClusterView {
+    /**
+     * The node answering the commands.
+     */
+    val myself: ClusterNode
+
+    /**
+     * The nodes of the cluster, including failed ones.
+     */
+    val nodes: List<ClusterNode>
+
+    /**
+     * Returns the slot ranges a node serves.
+     */
+    fun slots(node: ClusterNode): List<IntRange>
+
+    /**
+     * Returns the node that serves a slot.
+     */
+    fun owner(slot: Int): ClusterNode = myself
+
+    /**
+     * Returns the node a slot of [myself] is being migrated to, or null if it is not being migrated.
+     */
+    fun migratingTo(slot: Int): ClusterNode? = null
+
+    /**
+     * Returns the node [myself] is importing a slot from, or null if it is not importing it.
+     */
+    fun importingFrom(slot: Int): ClusterNode? = null
+
+    /**
+     * Returns whether a node has failed.
+     */
+    fun isFailed(node: ClusterNode): Boolean = false
+
+    /**
+     * Called when a client asks [myself] for the topology.
+     */
+    fun topologyQueried() {
+        // Nothing to record for a fixed topology
+    }
+}
+
+/**
+ * The view of a server that serves every slot on its own.
+ */
+internal class SingleNodeView(override val myself: ClusterNode) : ClusterView {
+    override val nodes: List<ClusterNode> = listOf(myself)
+
+    override fun slots(node: ClusterNode): List<IntRange> = listOf(0 until ClusterSlots.COUNT)
+}
+
+/**
+ * Maps keys to cluster slots as Redis does: CRC16 (XMODEM) of the key, or of its hash tag, modulo 16384.
+ */
+object ClusterSlots {
+    /**
+     * The number of slots of a cluster.
+     */
+    const val COUNT = 16384
+
+    private val TABLE = IntArray(256) { index ->
+        var crc = index shl 8
+        repeat(8) {
+            crc = if (crc and 0x8000 != 0) (crc shl 1) xor 0x1021 else crc shl 1
+        }
+        crc and 0xFFFF
+    }
+
+    /**
+     * Returns the slot of a key.
+     */
+    @JvmStatic
+    fun slot(key: ByteArray): Int {
+        var from = 0
+        var to = key.size
+        // Only the part between the first { and the next } is hashed, if it is not empty
+        val open = key.indexOf('{'.code.toByte())
+        if (open >= 0) {
+            var close = open + 1
+            while (close < key.size && key[close] != '}'.code.toByte()) {
+                close++
+            }
+            if (close < key.size && close > open + 1) {
+                from = open + 1
+                to = close
+            }
+        }
+        var crc = 0
+        for (i in from until to) {
+            crc = ((crc shl 8) xor TABLE[((crc shr 8) xor key[i].toInt()) and 0xFF]) and 0xFFFF
+        }
+        return crc and (COUNT - 1)
+    }
+
+    /**
+     * Returns the slot of a key.
+     */
+    @JvmStatic
+    fun slot(key: String): Int = slot(key.toByteArray(Charsets.UTF_8))
+}
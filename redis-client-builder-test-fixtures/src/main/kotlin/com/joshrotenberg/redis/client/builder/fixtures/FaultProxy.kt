@@ -0,0 +1,500 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.net.ServerSocket
+import java.net.Socket
+import java.net.SocketException
+import java.time.Duration
+import java.util.Random
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.Executors
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * A TCP proxy between a client and a server, Redis or [RespServer], that injects network faults. Clients
+ * connect to the proxy's [port] instead of the server's, and see the server through the faults:
+ *
+ * - [latency] delays the replies the server sends by a [LatencyDistribution]. Replies keep their order.
+ * - [bandwidthBytesPerSecond] caps how fast data is forwarded in each direction of each connection.
+ * - [stall] holds all data for a while, like a congested or briefly partitioned network.
+ * - [resetConnections] resets the open connections, like a server restart or a load balancer dropping them.
+ * - [halfOpenConnections] silently drops the open connections: the server sees them closed, while clients
+ *   see them open but never get a reply, like after a host crash or a lost NAT entry. Only a timeout
+ *   rescues such a client.
+ *
+ * Faults can be changed at any time, or run on a schedule with [schedule] and [scheduleAtFixedRate].
+ *
+ * ```kotlin
+ * FaultProxy.builder().upstream(server.host, server.port).build().use { proxy ->
+ *     proxy.latency = LatencyDistribution.logNormal(Duration.ofMillis(1), 1.0)
+ *     proxy.scheduleAtFixedRate(Duration.ofSeconds(1)) { it.stall(Duration.ofMillis(200)) }
+ *     val jedis = JedisPooled(proxy.host, proxy.port)
+ * }
+ * ```
+ *
+ * Each connection is forwarded by four daemon threads, a reader and a writer per direction, so the proxy
+ * suits tests and benchmarks with tens of connections rather than thousands.
+ */
+class FaultProxy private constructor(builder: Builder) : AutoCloseable {
+    private val upstream = InetSocketAddress(
+        checkNotNull(builder.upstreamHost) { "The upstream address is not set" },
+        builder.upstreamPort
+    )
+    private val serverSocket = ServerSocket(builder.port, BACKLOG, builder.bindAddress)
+    private val random = builder.seed?.let { Random(it) } ?: Random()
+    private val links = ConcurrentHashMap.newKeySet<Link>()
+    private val scheduler: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { task ->
+        Thread(task, "fault-proxy-scheduler-${serverSocket.localPort}").apply { isDaemon = true }
+    }
+
+    @Volatile
+    private var running = true
+
+    @Volatile
+    private var stalledUntil = 0L
+
+    private val accepted = LongAdder()
+    private val resets = LongAdder()
+    private val halfOpened = LongAdder()
+    private val bytesForwarded = LongAdder()
+
+    /**
+     * The delay added to the replies the server sends.
+     */
+    @Volatile
+    var latency: LatencyDistribution = builder.latency
+
+    /**
+     * The maximum rate data is forwarded at in each direction of each connection, or 0 for no limit.
+     */
+    @Volatile
+    var bandwidthBytesPerSecond: Long = builder.bandwidthBytesPerSecond
+        set(value) {
+            require(value >= 0) { "bandwidthBytesPerSecond must not be negative" }
+            field = value
+        }
+
+    /**
+     * The host the proxy listens on.
+     */
+    val host: String = builder.bindAddress.hostAddress
+
+    /**
+     * The port the proxy listens on.
+     */
+    val port: Int = serverSocket.localPort
+
+    /**
+     * Counters of the connections the proxy forwarded.
+     */
+    interface Metrics {
+        /**
+         * The number of open connections, including half-open ones.
+         */
+        val connections: Int
+
+        /**
+         * The number of connections accepted.
+         */
+        val accepted: Long
+
+        /**
+         * The number of connections reset by [resetConnections], or because the server could not be reached.
+         */
+        val resets: Long
+
+        /**
+         * The number of connections dropped by [halfOpenConnections].
+         */
+        val halfOpened: Long
+
+        /**
+         * The number of bytes forwarded in both directions.
+         */
+        val bytesForwarded: Long
+    }
+
+    /**
+     * The metrics of this proxy.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val connections: Int
+            get() = links.size
+        override val accepted: Long
+            get() = this@FaultProxy.accepted.sum()
+        override val resets: Long
+            get() = this@FaultProxy.resets.sum()
+        override val halfOpened: Long
+            get() = this@FaultProxy.halfOpened.sum()
+        override val bytesForwarded: Long
+            get() = this@FaultProxy.bytesForwarded.sum()
+    }
+
+    init {
+        Thread({ acceptLoop() }, "fault-proxy-$port").apply { isDaemon = true }.start()
+    }
+
+    /**
+     * Holds all data in both directions until the duration has passed. Data keeps arriving and is
+     * forwarded, in order, when the stall ends.
+     *
+     * @param duration How long to hold data
+     */
+    fun stall(duration: Duration) {
+        require(!duration.isNegative) { "duration must not be negative" }
+        stalledUntil = maxOf(stalledUntil, System.nanoTime() + duration.toNanos())
+    }
+
+    /**
+     * Resets the open connections: both the client and the server see a connection reset.
+     *
+     * @return The number of connections reset
+     */
+    fun resetConnections(): Int = links.count { it.reset() }
+
+    /**
+     * Drops the open connections without telling the clients. The server sees them closed, while the
+     * clients' writes succeed and their reads wait for replies that never come.
+     *
+     * @return The number of connections dropped
+     */
+    fun halfOpenConnections(): Int = links.count { it.halfOpen() }
+
+    /**
+     * Runs an action on the proxy once, after a delay.
+     *
+     * @param delay The delay
+     * @param action The action, such as injecting a fault
+     * @return The future of the scheduled action, to cancel it
+     */
+    fun schedule(delay: Duration, action: (FaultProxy) -> Unit): ScheduledFuture<*> =
+        scheduler.schedule({ action(this) }, delay.toNanos(), TimeUnit.NANOSECONDS)
+
+    /**
+     * Runs an action on the proxy periodically, the first time after one period.
+     *
+     * @param period The time between two runs
+     * @param action The action, such as injecting a fault
+     * @return The future of the scheduled action, to cancel it
+     */
+    fun scheduleAtFixedRate(period: Duration, action: (FaultProxy) -> Unit): ScheduledFuture<*> =
+        scheduler.scheduleAtFixedRate({ action(this) }, period.toNanos(), period.toNanos(), TimeUnit.NANOSECONDS)
+
+    /**
+     * Stops accepting connections, cancels the scheduled actions and closes the open connections.
+     */
+    override fun close() {
+        if (!running) {
+            return
+        }
+        running = false
+        scheduler.shutdownNow()
+        serverSocket.close()
+        links.forEach { it.close() }
+    }
+
+    private fun acceptLoop() {
+        while (running) {
+            val client = try {
+                serverSocket.accept()
+            } catch (e: SocketException) {
+                return
+            }
+            accepted.increment()
+            val server = Socket()
+            try {
+                server.connect(upstream, CONNECT_TIMEOUT_MS)
+            } catch (e: IOException) {
+                // The client sees the same reset it would get from a server that is down
+                resets.increment()
+                reset(client)
+                server.close()
+                continue
+            }
+            client.tcpNoDelay = true
+            server.tcpNoDelay = true
+            Link(client, server).start()
+        }
+    }
+
+    private fun reset(socket: Socket) {
+        try {
+            socket.setSoLinger(true, 0)
+        } catch (e: SocketException) {
+            // Already closed
+        }
+        socket.close()
+    }
+
+    /**
+     * A chunk of data read from one side, and when it may be written to the other.
+     */
+    private class Chunk(val bytes: ByteArray, val length: Int, val dueNanos: Long)
+
+    /**
+     * A client connection and its connection to the server.
+     */
+    private inner class Link(val client: Socket, val server: Socket) {
+        private val state = AtomicInteger(OPEN)
+        private val finishedWriters = AtomicInteger()
+        private val threads = ArrayList<Thread>()
+
+        val isHalfOpen: Boolean
+            get() = state.get() == HALF_OPEN
+
+        fun start() {
+            links.add(this)
+            if (!running) {
+                close()
+                return
+            }
+            pipe(client, server, delayed = false, "up")
+            pipe(server, client, delayed = true, "down")
+            threads.forEach { it.start() }
+        }
+
+        /**
+         * Forwards data from one socket to the other with a reader thread, which timestamps it, and a
+         * writer thread, which writes it when it is due.
+         */
+        private fun pipe(from: Socket, to: Socket, delayed: Boolean, direction: String) {
+            val queue = LinkedBlockingQueue<Chunk>()
+            threads += Thread({ read(from, queue, delayed) }, "fault-proxy-$port-$direction-reader")
+                .apply { isDaemon = true }
+            threads += Thread({ write(to, queue) }, "fault-proxy-$port-$direction-writer")
+                .apply { isDaemon = true }
+        }
+
+        private fun read(from: Socket, queue: LinkedBlockingQueue<Chunk>, delayed: Boolean) {
+            var lastDue = 0L
+            try {
+                val input = from.getInputStream()
+                while (true) {
+                    val bytes = ByteArray(CHUNK_BYTES)
+                    val length = input.read(bytes)
+                    if (length < 0) {
+                        break
+                    }
+                    val delay = if (delayed) latency.sampleNanos(random) else 0L
+                    // Never overtake the previous chunk, so data keeps its order
+                    lastDue = maxOf(System.nanoTime() + delay, lastDue)
+                    queue.offer(Chunk(bytes, length, lastDue))
+                }
+            } catch (e: IOException) {
+                // The socket was closed or reset, which ends the stream like an end of file
+            }
+            queue.offer(END)
+        }
+
+        private fun write(to: Socket, queue: LinkedBlockingQueue<Chunk>) {
+            var nextFreeNanos = 0L
+            try {
+                val output = to.getOutputStream()
+                while (true) {
+                    val chunk = queue.take()
+                    if (chunk === END) {
+                        break
+                    }
+                    parkUntil(chunk.dueNanos)
+                    parkUntil(stalledUntil)
+                    if (isHalfOpen) {
+                        continue
+                    }
+                    var offset = 0
+                    while (offset < chunk.length) {
+                        val bandwidth = bandwidthBytesPerSecond
+                        val slice = if (bandwidth == 0L) {
+                            chunk.length - offset
+                        } else {
+                            (bandwidth / SLICES_PER_SECOND).coerceIn(1, (chunk.length - offset).toLong()).toInt()
+                        }
+                        if (bandwidth > 0) {
+                            nextFreeNanos = maxOf(nextFreeNanos, System.nanoTime())
+                            parkUntil(nextFreeNanos)
+                            nextFreeNanos += slice * TimeUnit.SECONDS.toNanos(1) / bandwidth
+                        }
+                        output.write(chunk.bytes, offset, slice)
+                        bytesForwarded.add(slice.toLong())
+                        offset += slice
+                    }
+                }
+                // Pass the end of the stream on, unless the other side is meant to never hear of it
+                if (!isHalfOpen) {
+                    to.shutdownOutput()
+                }
+            } catch (e: IOException) {
+                // The other side is gone; closing the link below tells this side too
+            } catch (e: InterruptedException) {
+                return
+            }
+            if (finishedWriters.incrementAndGet() == 2) {
+                close()
+            }
+        }
+
+        private fun parkUntil(deadlineNanos: Long) {
+            while (true) {
+                val remaining = deadlineNanos - System.nanoTime()
+                if (remaining <= 0) {
+                    return
+                }
+                LockSupport.parkNanos(remaining)
+                if (Thread.interrupted()) {
+                    throw InterruptedException()
+                }
+            }
+        }
+
+        fun reset(): Boolean {
+            if (!state.compareAndSet(OPEN, CLOSED)) {
+                return false
+            }
+            resets.increment()
+            reset(client)
+            reset(server)
+            finish()
+            return true
+        }
+
+        fun halfOpen(): Boolean {
+            if (!state.compareAndSet(OPEN, HALF_OPEN)) {
+                return false
+            }
+            halfOpened.increment()
+            // The server sees the connection closed; the client socket stays open and its data is discarded
+            server.close()
+            return true
+        }
+
+        fun close() {
+            state.set(CLOSED)
+            client.close()
+            server.close()
+            finish()
+        }
+
+        private fun finish() {
+            links.remove(this)
+            threads.forEach { if (it !== Thread.currentThread()) it.interrupt() }
+        }
+    }
+
+    /**
+     * Builder for [FaultProxy].
+     */
+    class Builder internal constructor() {
+        internal var upstreamHost: String? = null
+        internal var upstreamPort = 0
+        internal var bindAddress: InetAddress = InetAddress.getLoopbackAddress()
+        internal var port = 0
+        internal var latency = LatencyDistribution.NONE
+        internal var bandwidthBytesPerSecond = 0L
+        internal var seed: Long? = null
+
+        /**
+         * Sets the server to forward connections to. Required.
+         *
+         * @param host The server's host
+         * @param port The server's port
+         * @return The builder instance
+         */
+        fun upstream(host: String, port: Int): Builder = apply {
+            require(port in 1..MAX_PORT) { "port must be between 1 and $MAX_PORT" }
+            this.upstreamHost = host
+            this.upstreamPort = port
+        }
+
+        /**
+         * Sets the port to listen on, or 0 for a free port.
+         *
+         * @param port The port
+         * @return The builder instance
+         */
+        fun port(port: Int): Builder = apply {
+            require(port in 0..MAX_PORT) { "port must be between 0 and $MAX_PORT" }
+            this.port = port
+        }
+
+        /**
+         * Sets the address to listen on. Defaults to the loopback address.
+         *
+         * @param address The address
+         * @return The builder instance
+         */
+        fun bindAddress(address: InetAddress): Builder = apply { this.bindAddress = address }
+
+        /**
+         * Sets the delay added to the replies the server sends. Defaults to none.
+         *
+         * @param latency The distribution of the delay
+         * @return The builder instance
+         */
+        fun latency(latency: LatencyDistribution): Builder = apply { this.latency = latency }
+
+        /**
+         * Caps the rate data is forwarded at in each direction of each connection. Defaults to no limit.
+         *
+         * @param bytesPerSecond The rate, or 0 for no limit
+         * @return The builder instance
+         */
+        fun bandwidth(bytesPerSecond: Long): Builder = apply {
+            require(bytesPerSecond >= 0) { "bytesPerSecond must not be negative" }
+            this.bandwidthBytesPerSecond = bytesPerSecond
+        }
+
+        /**
+         * Seeds the random source of the latency, so that runs are repeatable.
+         *
+         * @param seed The seed
+         * @return The builder instance
+         */
+        fun seed(seed: Long): Builder = apply { this.seed = seed }
+
+        /**
+         * Starts the proxy.
+         *
+         * @return A new FaultProxy, listening and forwarding
+         */
+        fun build(): FaultProxy = FaultProxy(this)
+    }
+
+    companion object {
+        private const val BACKLOG = 128
+        private const val MAX_PORT = 65535
+        private const val CONNECT_TIMEOUT_MS = 1000
+        private const val CHUNK_BYTES = 16 * 1024
+        private const val SLICES_PER_SECOND = 100
+
+        private const val OPEN = 0
+        private const val HALF_OPEN = 1
+        private const val CLOSED = 2
+
+        // Marks the end of a stream in a pipe's queue
+        private val END = Chunk(ByteArray(0), 0, 0)
+
+        /**
+         * Creates a builder for a proxy on a free port of the loopback address.
+         *
+         * @return A new Builder
+         */
+        @JvmStatic
+        fun builder(): Builder = Builder()
+
+        /**
+         * Starts a proxy in front of a [RespServer], with no faults.
+         *
+         * @param server The server to forward connections to
+         * @return A new FaultProxy
+         */
+        @JvmStatic
+        fun forServer(server: RespServer): FaultProxy = builder().upstream(server.host, server.port).build()
+    }
+}
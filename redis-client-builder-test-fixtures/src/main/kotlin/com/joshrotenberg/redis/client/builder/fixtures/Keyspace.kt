@@ -0,0 +1,261 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import java.util.TreeSet
+
+/**
+ * Thrown when a command is applied to a key holding a different type.
+ */
+internal class WrongTypeException :
+    RuntimeException("WRONGTYPE Operation against a key holding the wrong kind of value")
+
+/**
+ * The keys and values of one database of a [RespServer].
+ * Keys, hash fields and members are held as ISO-8859-1 strings, which map each byte to one character, so
+ * binary keys round-trip unchanged. Expired keys are removed when they are next accessed.
+ *
+ * Only the server's event loop touches a keyspace, so it is not synchronized.
+ *
+ * @property clock The time source in milliseconds
+ */
+internal class Keyspace(private val clock: () -> Long = System::currentTimeMillis) {
+    private val values = HashMap<String, Any>()
+    private val expiries = HashMap<String, Long>()
+
+    /**
+     * The number of keys, including expired keys that were not accessed since they expired.
+     */
+    val size: Int
+        get() = values.size
+
+    /**
+     * Returns the value of a key, or null if it does not exist or has expired.
+     */
+    fun get(key: String): Any? {
+        val expiry = expiries[key]
+        if (expiry != null && expiry <= clock()) {
+            remove(key)
+            return null
+        }
+        return values[key]
+    }
+
+    fun string(key: String): ByteArray? = typed(key)
+
+    fun hash(key: String): LinkedHashMap<String, ByteArray>? = typed(key)
+
+    fun list(key: String): ArrayDeque<ByteArray>? = typed(key)
+
+    fun set(key: String): LinkedHashSet<String>? = typed(key)
+
+    fun zset(key: String): SortedSet? = typed(key)
+
+    fun hashOrCreate(key: String): LinkedHashMap<String, ByteArray> = hash(key) ?: create(key, LinkedHashMap())
+
+    fun listOrCreate(key: String): ArrayDeque<ByteArray> = list(key) ?: create(key, ArrayDeque())
+
+    fun setOrCreate(key: String): LinkedHashSet<String> = set(key) ?: create(key, LinkedHashSet())
+
+    fun zsetOrCreate(key: String): SortedSet = zset(key) ?: create(key, SortedSet())
+
+    /**
+     * Sets the string value of a key, dropping its expiry unless [keepTtl] is set.
+     */
+    fun putString(key: String, value: ByteArray, keepTtl: Boolean = false) {
+        values[key] = value
+        if (!keepTtl) {
+            expiries.remove(key)
+        }
+    }
+
+    fun exists(key: String): Boolean = get(key) != null
+
+    fun remove(key: String): Boolean {
+        expiries.remove(key)
+        return values.remove(key) != null
+    }
+
+    /**
+     * Removes a key whose collection became empty, as Redis does.
+     */
+    fun removeIfEmpty(key: String, collection: Collection<*>) {
+        if (collection.isEmpty()) {
+            remove(key)
+        }
+    }
+
+    fun removeIfEmpty(key: String, map: Map<*, *>) {
+        if (map.isEmpty()) {
+            remove(key)
+        }
+    }
+
+    /**
+     * Sets the time at which a key expires in epoch milliseconds. A time in the past removes the key.
+     *
+     * @return false if the key does not exist
+     */
+    fun expireAt(key: String, atMs: Long): Boolean {
+        if (!exists(key)) {
+            return false
+        }
+        if (atMs <= clock()) {
+            remove(key)
+        } else {
+            expiries[key] = atMs
+        }
+        return true
+    }
+
+    /**
+     * Returns the time to live of a key in milliseconds, -1 if it has no expiry or -2 if it does not exist.
+     */
+    fun ttlMs(key: String): Long {
+        if (!exists(key)) {
+            return -2
+        }
+        val expiry = expiries[key] ?: return -1
+        return maxOf(0, expiry - clock())
+    }
+
+    fun persist(key: String): Boolean = exists(key) && expiries.remove(key) != null
+
+    /**
+     * Returns the live keys matching a glob pattern.
+     */
+    fun keys(pattern: String): List<String> = values.keys.toList().filter { Glob.matches(pattern, it) && exists(it) }
+
+    fun typeOf(key: String): String =
+        when (get(key)) {
+            null -> "none"
+            is ByteArray -> "string"
+            is LinkedHashMap<*, *> -> "hash"
+            is ArrayDeque<*> -> "list"
+            is LinkedHashSet<*> -> "set"
+            is SortedSet -> "zset"
+            else -> "none"
+        }
+
+    /**
+     * Removes a key and returns its value and expiry time, to move it to another keyspace.
+     */
+    fun export(key: String): Pair<Any, Long?>? {
+        val value = get(key) ?: return null
+        val expiry = expiries[key]
+        remove(key)
+        return value to expiry
+    }
+
+    /**
+     * Adds a key exported from another keyspace, replacing any value it has here.
+     */
+    fun import(key: String, value: Any, expiresAt: Long?) {
+        values[key] = value
+        if (expiresAt != null) expiries[key] = expiresAt else expiries.remove(key)
+    }
+
+    fun clear() {
+        values.clear()
+        expiries.clear()
+    }
+
+    private fun <T : Any> create(key: String, value: T): T {
+        values[key] = value
+        return value
+    }
+
+    private inline fun <reified T> typed(key: String): T? {
+        val value = get(key) ?: return null
+        return value as? T ?: throw WrongTypeException()
+    }
+}
+
+/**
+ * The members of a sorted set with their scores, ordered by score and then by member.
+ */
+internal class SortedSet {
+    private val scores = HashMap<String, Double>()
+    private val order = TreeSet<Pair<Double, String>>(compareBy<Pair<Double, String>> { it.first }.thenBy { it.second })
+
+    val size: Int
+        get() = scores.size
+
+    fun score(member: String): Double? = scores[member]
+
+    /**
+     * Sets the score of a member, returning true if the member was added rather than updated.
+     */
+    fun put(member: String, score: Double): Boolean {
+        val previous = scores.put(member, score)
+        if (previous != null) {
+            order.remove(previous to member)
+        }
+        order.add(score to member)
+        return previous == null
+    }
+
+    fun remove(member: String): Boolean {
+        val previous = scores.remove(member) ?: return false
+        order.remove(previous to member)
+        return true
+    }
+
+    /**
+     * Returns the members and scores in ascending order.
+     */
+    fun ascending(): List<Pair<String, Double>> = order.map { it.second to it.first }
+
+    fun rank(member: String): Int? {
+        val score = scores[member] ?: return null
+        return order.headSet(score to member).size
+    }
+
+    fun isEmpty(): Boolean = scores.isEmpty()
+}
+
+/**
+ * Redis's glob-style patterns, as used by KEYS and PSUBSCRIBE: `*`, `?`, `[abc]`, `[^a]`, `[a-z]` and `\` escapes.
+ */
+internal object Glob {
+    fun matches(pattern: String, text: String): Boolean = matches(pattern, 0, text, 0)
+
+    private fun matches(pattern: String, p: Int, text: String, t: Int): Boolean {
+        if (p == pattern.length) {
+            return t == text.length
+        }
+        return when (pattern[p]) {
+            '*' -> (t..text.length).any { matches(pattern, p + 1, text, it) }
+            '?' -> t < text.length && matches(pattern, p + 1, text, t + 1)
+            '[' -> {
+                val close = pattern.indexOf(']', p + 1)
+                if (close < 0 || t == text.length) {
+                    return false
+                }
+                val negated = pattern.getOrNull(p + 1) == '^'
+                val members = pattern.substring(if (negated) p + 2 else p + 1, close)
+                val inClass = classContains(members, text[t])
+                inClass != negated && matches(pattern, close + 1, text, t + 1)
+            }
+            '\\' -> p + 1 < pattern.length && t < text.length && pattern[p + 1] == text[t] &&
+                matches(pattern, p + 2, text, t + 1)
+            else -> t < text.length && pattern[p] == text[t] && matches(pattern, p + 1, text, t + 1)
+        }
+    }
+
+    private fun classContains(members: String, c: Char): Boolean {
+        var i = 0
+        while (i < members.length) {
+            if (i + 2 < members.length && members[i + 1] == '-') {
+                if (c in members[i]..members[i + 2]) {
+                    return true
+                }
+                i += 3
+            } else {
+                if (members[i] == c) {
+                    return true
+                }
+                i++
+            }
+        }
+        return false
+    }
+}
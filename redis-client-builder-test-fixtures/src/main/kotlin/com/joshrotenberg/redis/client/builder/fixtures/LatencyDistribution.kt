@@ -0,0 +1,106 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import java.time.Duration
+import java.util.Random
+import kotlin.math.exp
+import kotlin.math.ln
+import kotlin.math.pow
+
+/**
+ * A distribution of delays that a [FaultProxy] adds to the data it forwards.
+ *
+ * Real network latency is rarely uniform: most round trips are fast and a few are much slower. The
+ * [logNormal] and [pareto] distributions model that long tail, which is what timeouts, retries and circuit
+ * breakers have to be tuned against.
+ */
+fun interface LatencyDistribution {
+    /**
+     * Draws a delay.
+     *
+     * @param random The random source to draw from
+     * @return The delay in nanoseconds, not negative
+     */
+    fun sampleNanos(random: Random): Long
+
+    companion object {
+        /**
+         * No delay.
+         */
+        @JvmField
+        val NONE = LatencyDistribution { 0L }
+
+        /**
+         * The same delay every time.
+         *
+         * @param delay The delay
+         * @return A new LatencyDistribution
+         */
+        @JvmStatic
+        fun fixed(delay: Duration): LatencyDistribution {
+            val nanos = nanos(delay)
+            return LatencyDistribution { nanos }
+        }
+
+        /**
+         * A delay drawn uniformly between two bounds.
+         *
+         * @param min The shortest delay
+         * @param max The longest delay
+         * @return A new LatencyDistribution
+         */
+        @JvmStatic
+        fun uniform(min: Duration, max: Duration): LatencyDistribution {
+            val from = nanos(min)
+            val to = nanos(max)
+            require(from <= to) { "min must not be greater than max" }
+            return LatencyDistribution { random -> from + (random.nextDouble() * (to - from)).toLong() }
+        }
+
+        /**
+         * An exponentially distributed delay, like the waiting time between independent events.
+         *
+         * @param mean The mean delay
+         * @return A new LatencyDistribution
+         */
+        @JvmStatic
+        fun exponential(mean: Duration): LatencyDistribution {
+            val meanNanos = nanos(mean)
+            return LatencyDistribution { random -> (-ln(1.0 - random.nextDouble()) * meanNanos).toLong() }
+        }
+
+        /**
+         * A log-normally distributed delay. Half the delays are shorter than the median, and a larger sigma
+         * makes the tail longer: with a sigma of 1 the 99th percentile is about ten times the median.
+         *
+         * @param median The median delay
+         * @param sigma The standard deviation of the delay's logarithm
+         * @return A new LatencyDistribution
+         */
+        @JvmStatic
+        fun logNormal(median: Duration, sigma: Double): LatencyDistribution {
+            val medianNanos = nanos(median)
+            require(sigma >= 0) { "sigma must not be negative" }
+            return LatencyDistribution { random -> (medianNanos * exp(sigma * random.nextGaussian())).toLong() }
+        }
+
+        /**
+         * A Pareto distributed delay, never shorter than the minimum. A smaller alpha makes the tail heavier;
+         * below 2 its variance is infinite, which models occasional very long pauses.
+         *
+         * @param min The shortest delay
+         * @param alpha The shape of the tail, positive
+         * @return A new LatencyDistribution
+         */
+        @JvmStatic
+        fun pareto(min: Duration, alpha: Double): LatencyDistribution {
+            val minNanos = nanos(min)
+            require(alpha > 0) { "alpha must be positive" }
+            return LatencyDistribution { random -> (minNanos / (1.0 - random.nextDouble()).pow(1 / alpha)).toLong() }
+        }
+
+        private fun nanos(delay: Duration): Long {
+            require(!delay.isNegative) { "The delay must not be negative" }
+            return delay.toNanos()
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import com.joshrotenberg.redis.client.builder.fixtures.RespServer.Connection
+
+/**
+ * The channel and pattern subscriptions of a [RespServer]'s connections.
+ */
+internal class PubSub {
+    private val channels = HashMap<String, LinkedHashSet<Connection>>()
+    private val patterns = HashMap<String, LinkedHashSet<Connection>>()
+
+    fun subscribe(connection: Connection, channel: String): Boolean {
+        channels.getOrPut(channel) { LinkedHashSet() }.add(connection)
+        return connection.channels.add(channel)
+    }
+
+    fun unsubscribe(connection: Connection, channel: String): Boolean {
+        channels[channel]?.let { subscribers ->
+            subscribers.remove(connection)
+            if (subscribers.isEmpty()) {
+                channels.remove(channel)
+            }
+        }
+        return connection.channels.remove(channel)
+    }
+
+    fun psubscribe(connection: Connection, pattern: String): Boolean {
+        patterns.getOrPut(pattern) { LinkedHashSet() }.add(connection)
+        return connection.patterns.add(pattern)
+    }
+
+    fun punsubscribe(connection: Connection, pattern: String): Boolean {
+        patterns[pattern]?.let { subscribers ->
+            subscribers.remove(connection)
+            if (subscribers.isEmpty()) {
+                patterns.remove(pattern)
+            }
+        }
+        return connection.patterns.remove(pattern)
+    }
+
+    fun unsubscribeAll(connection: Connection) {
+        connection.channels.toList().forEach { unsubscribe(connection, it) }
+        connection.patterns.toList().forEach { punsubscribe(connection, it) }
+    }
+
+    /**
+     * The channels with at least one subscriber.
+     */
+    fun activeChannels(): Set<String> = channels.keys
+
+    fun subscribers(channel: String): Int = channels[channel]?.size ?: 0
+
+    /**
+     * Sends a message to the subscribers of a channel and of the patterns matching it.
+     *
+     * @param server The server whose connections receive the message
+     * @param publisher The connection running PUBLISH, whose own message goes out with its reply
+     * @return The number of subscriptions that received the message
+     */
+    fun publish(server: RespServer, publisher: Connection, channel: String, message: ByteArray): Int {
+        var received = 0
+        channels[channel]?.forEach { subscriber ->
+            deliver(server, publisher, subscriber) { writer ->
+                writer.push(3)
+                writer.bulk("message")
+                writer.bulk(channel)
+                writer.bulk(message)
+            }
+            received++
+        }
+        for ((pattern, subscribers) in patterns) {
+            if (!Glob.matches(pattern, channel)) {
+                continue
+            }
+            subscribers.forEach { subscriber ->
+                deliver(server, publisher, subscriber) { writer ->
+                    writer.push(4)
+                    writer.bulk("pmessage")
+                    writer.bulk(pattern)
+                    writer.bulk(channel)
+                    writer.bulk(message)
+                }
+                received++
+            }
+        }
+        return received
+    }
+
+    private inline fun deliver(
+        server: RespServer,
+        publisher: Connection,
+        subscriber: Connection,
+        write: (RespWriter) -> Unit
+    ) {
+        write(subscriber.writer)
+        if (subscriber !== publisher) {
+            server.enqueue(subscriber, subscriber.writer.take())
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import java.nio.ByteBuffer
+
+/**
+ * Thrown when a client sends bytes that are not a RESP command.
+ */
+class RespProtocolException(message: String) : RuntimeException(message)
+
+/**
+ * Incremental reader of RESP commands. Bytes are fed as they arrive from the socket, and complete
+ * commands are taken out one at a time, so a command split across reads is parsed once it is whole.
+ * Commands are arrays of bulk strings, as clients send them, or inline commands separated by spaces,
+ * as typed into a terminal.
+ */
+internal class RespReader {
+    private var buffer = ByteArray(INITIAL_CAPACITY)
+    private var start = 0
+    private var end = 0
+
+    /**
+     * Appends the readable bytes of a buffer.
+     */
+    fun feed(source: ByteBuffer) {
+        val length = source.remaining()
+        if (end + length > buffer.size) {
+            // Drop the parsed bytes first, then grow if the unparsed ones still do not fit
+            val unparsed = end - start
+            val target = if (unparsed + length > buffer.size) {
+                ByteArray(maxOf(buffer.size * 2, unparsed + length))
+            } else {
+                buffer
+            }
+            System.arraycopy(buffer, start, target, 0, unparsed)
+            buffer = target
+            start = 0
+            end = unparsed
+        }
+        source.get(buffer, end, length)
+        end += length
+    }
+
+    /**
+     * Returns the next complete command, or null if more bytes are needed.
+     *
+     * @throws RespProtocolException if the bytes are not a command
+     */
+    fun next(): List<ByteArray>? {
+        if (start == end) {
+            return null
+        }
+        val result = if (buffer[start] == '*'.code.toByte()) parseArray() else parseInline()
+        if (start == end) {
+            start = 0
+            end = 0
+        }
+        return result
+    }
+
+    private fun parseArray(): List<ByteArray>? {
+        var position = start
+        val header = lineEnd(position) ?: return null
+        val count = parseLength(position + 1, header)
+        position = header + 2
+        val arguments = ArrayList<ByteArray>(maxOf(count, 0))
+        repeat(count) {
+            val line = lineEnd(position) ?: return null
+            if (buffer[position] != '$'.code.toByte()) {
+                throw RespProtocolException("expected '\$', got '${buffer[position].toInt().toChar()}'")
+            }
+            val length = parseLength(position + 1, line)
+            position = line + 2
+            if (end - position < length + 2) {
+                return null
+            }
+            arguments.add(buffer.copyOfRange(position, position + length))
+            position += length + 2
+        }
+        start = position
+        return arguments
+    }
+
+    private fun parseInline(): List<ByteArray>? {
+        var newline = start
+        while (newline < end && buffer[newline] != '\n'.code.toByte()) {
+            newline++
+        }
+        if (newline == end) {
+            return null
+        }
+        val line = String(buffer, start, newline - start, Charsets.ISO_8859_1).trimEnd('\r')
+        start = newline + 1
+        return line.split(' ').filter { it.isNotEmpty() }.map { it.toByteArray(Charsets.ISO_8859_1) }
+    }
+
+    /**
+     * Returns the position of the CR ending the line that starts at [from], or null if it has not arrived.
+     */
+    private fun lineEnd(from: Int): Int? {
+        var position = from
+        while (position + 1 < end) {
+            if (buffer[position] == '\r'.code.toByte() && buffer[position + 1] == '\n'.code.toByte()) {
+                return position
+            }
+            position++
+        }
+        return null
+    }
+
+    private fun parseLength(from: Int, to: Int): Int =
+        String(buffer, from, to - from, Charsets.US_ASCII).toIntOrNull()
+            ?: throw RespProtocolException("invalid length")
+
+    private companion object {
+        const val INITIAL_CAPACITY = 4096
+    }
+}
+
+/**
+ * Encodes replies in the protocol version a connection negotiated with HELLO.
+ * RESP3 types are downgraded for RESP2 connections the way Redis downgrades them: maps and sets become
+ * flat arrays, doubles become bulk strings, booleans become integers and pushes become arrays.
+ *
+ * @property protocol The protocol version, 2 or 3
+ */
+internal class RespWriter(var protocol: Int = 2) {
+    private var buffer = ByteArray(INITIAL_CAPACITY)
+    private var size = 0
+
+    val isEmpty: Boolean
+        get() = size == 0
+
+    fun simple(value: String) = line('+', value)
+
+    fun error(message: String) = line('-', message)
+
+    fun integer(value: Long) = line(':', value.toString())
+
+    fun integer(value: Int) = integer(value.toLong())
+
+    fun bulk(value: ByteArray?) {
+        if (value == null) {
+            nil()
+            return
+        }
+        line('$', value.size.toString())
+        write(value)
+        write(CRLF)
+    }
+
+    fun bulk(value: String?) = bulk(value?.toByteArray(Charsets.ISO_8859_1))
+
+    /**
+     * Writes a null bulk string, or RESP3's null.
+     */
+    fun nil() = if (protocol >= 3) line('_', "") else line('$', "-1")
+
+    /**
+     * Writes a null array, or RESP3's null.
+     */
+    fun nilArray() = if (protocol >= 3) line('_', "") else line('*', "-1")
+
+    fun array(size: Int) = line('*', size.toString())
+
+    fun map(size: Int) = if (protocol >= 3) line('%', size.toString()) else array(size * 2)
+
+    fun set(size: Int) = if (protocol >= 3) line('~', size.toString()) else array(size)
+
+    fun push(size: Int) = if (protocol >= 3) line('>', size.toString()) else array(size)
+
+    fun double(value: Double) = if (protocol >= 3) line(',', formatDouble(value)) else bulk(formatDouble(value))
+
+    fun bool(value: Boolean) = if (protocol >= 3) line('#', if (value) "t" else "f") else integer(if (value) 1 else 0)
+
+    fun ok() = simple("OK")
+
+    /**
+     * Takes the encoded replies and starts over.
+     */
+    fun take(): ByteBuffer {
+        val bytes = ByteBuffer.wrap(buffer.copyOf(size))
+        size = 0
+        return bytes
+    }
+
+    private fun line(type: Char, value: String) {
+        ensureCapacity(value.length + 3)
+        buffer[size++] = type.code.toByte()
+        for (c in value) {
+            buffer[size++] = c.code.toByte()
+        }
+        buffer[size++] = '\r'.code.toByte()
+        buffer[size++] = '\n'.code.toByte()
+    }
+
+    private fun write(bytes: ByteArray) {
+        ensureCapacity(bytes.size)
+        System.arraycopy(bytes, 0, buffer, size, bytes.size)
+        size += bytes.size
+    }
+
+    private fun ensureCapacity(extra: Int) {
+        if (size + extra > buffer.size) {
+            buffer = buffer.copyOf(maxOf(buffer.size * 2, size + extra))
+        }
+    }
+
+    companion object {
+        private const val INITIAL_CAPACITY = 256
+        private val CRLF = "\r\n".toByteArray()
+
+        /**
+         * Formats a score like Redis does: integral values without a fraction, and infinities as inf.
+         */
+        fun formatDouble(value: Double): String =
+            when {
+                value == Double.POSITIVE_INFINITY -> "inf"
+                value == Double.NEGATIVE_INFINITY -> "-inf"
+                value == Math.rint(value) && Math.abs(value) < 1e17 -> value.toLong().toString()
+                else -> value.toString()
+            }
+    }
+}
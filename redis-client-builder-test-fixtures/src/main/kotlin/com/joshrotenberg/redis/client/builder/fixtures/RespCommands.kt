@@ -0,0 +1,985 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import com.joshrotenberg.redis.client.builder.fixtures.RespServer.Connection
+import java.net.InetSocketAddress
+
+/**
+ * Thrown by a command to answer with an error reply.
+ */
+internal class CommandException(message: String) : RuntimeException(message)
+
+/**
+ * The commands of a [RespServer]. Each command reads its arguments and writes its reply to the
+ * connection's writer; errors are thrown as [CommandException] and written as error replies.
+ */
+internal class RespCommands(private val server: RespServer) {
+
+    fun execute(connection: Connection, name: String, arguments: List<ByteArray>) {
+        val writer = connection.writer
+        // ASKING applies to the next command only
+        val asking = connection.asking
+        connection.asking = false
+        try {
+            if (!connection.authenticated && name != "AUTH" && name != "HELLO" && name != "QUIT") {
+                throw CommandException("NOAUTH Authentication required.")
+            }
+            if (connection.protocolIs2() && connection.subscriptions > 0 && name !in SUBSCRIBED_COMMANDS) {
+                throw CommandException(
+                    "ERR Can't execute '${name.lowercase()}': only (P)SUBSCRIBE / (P)UNSUBSCRIBE / PING / QUIT / " +
+                        "RESET are allowed in this context"
+                )
+            }
+            val command = Command(connection, name, arguments)
+            server.cluster?.let { command.route(it, asking) }
+            command.run()
+        } catch (e: CommandException) {
+            writer.error(e.message!!)
+        } catch (e: WrongTypeException) {
+            writer.error(e.message!!)
+        }
+    }
+
+    private fun Connection.protocolIs2(): Boolean = writer.protocol < 3
+
+    /**
+     * One command being run, with helpers to read its arguments.
+     */
+    private inner class Command(
+        val connection: Connection,
+        val name: String,
+        val arguments: List<ByteArray>
+    ) {
+        val writer: RespWriter = connection.writer
+        val keyspace: Keyspace
+            get() = server.databases[connection.db]
+
+        fun string(index: Int): String = latin1(arguments[index])
+
+        fun long(index: Int): Long =
+            string(index).toLongOrNull() ?: throw CommandException("ERR value is not an integer or out of range")
+
+        fun int(index: Int): Int =
+            string(index).toIntOrNull() ?: throw CommandException("ERR value is not an integer or out of range")
+
+        fun double(index: Int): Double = parseDouble(string(index))
+
+        fun arity(min: Int, max: Int = Int.MAX_VALUE) {
+            if (arguments.size < min || arguments.size > max) {
+                wrongArity()
+            }
+        }
+
+        fun wrongArity(): Nothing =
+            throw CommandException("ERR wrong number of arguments for '${name.lowercase()}' command")
+
+        /**
+         * Checks that this node serves the slot of the command's keys, and redirects the client otherwise.
+         * While a slot is migrating out, commands whose keys have all been moved are sent on with ASK; the
+         * node importing the slot serves them if the client sent ASKING first.
+         *
+         * @throws CommandException with the redirect or cluster error
+         */
+        fun route(view: ClusterView, asking: Boolean) {
+            val keys = keyIndices()
+            val slot = keys.map { ClusterSlots.slot(arguments[it]) }.distinct().let { slots ->
+                when (slots.size) {
+                    0 -> return
+                    1 -> slots[0]
+                    else -> throw CommandException("CROSSSLOT Keys in request don't hash to the same slot")
+                }
+            }
+            val owner = view.owner(slot)
+            if (owner == view.myself) {
+                val target = view.migratingTo(slot)
+                if (target != null && keys.any { !keyspace.exists(string(it)) }) {
+                    server.redirected(ask = true)
+                    throw CommandException("ASK $slot ${target.host}:${target.port}")
+                }
+                return
+            }
+            if (asking && view.importingFrom(slot) != null) {
+                return
+            }
+            if (view.isFailed(owner)) {
+                throw CommandException("CLUSTERDOWN The cluster is down")
+            }
+            server.redirected(ask = false)
+            throw CommandException("MOVED $slot ${owner.host}:${owner.port}")
+        }
+
+        /**
+         * The positions of the command's keys in its arguments.
+         */
+        private fun keyIndices(): IntProgression =
+            when (name) {
+                in KEYLESS_COMMANDS -> IntRange.EMPTY
+                "DEL", "UNLINK", "EXISTS", "MGET" -> 1 until arguments.size
+                "MSET", "MSETNX" -> 1 until arguments.size step 2
+                else -> if (arguments.size > 1) 1..1 else IntRange.EMPTY
+            }
+
+        fun run() {
+            when (name) {
+                // Connection and server
+                "PING" -> ping()
+                "ECHO" -> {
+                    arity(2, 2)
+                    writer.bulk(arguments[1])
+                }
+                "HELLO" -> hello()
+                "AUTH" -> auth()
+                "SELECT" -> select()
+                "QUIT" -> {
+                    writer.ok()
+                    connection.closing = true
+                }
+                "RESET" -> reset()
+                "CLIENT" -> client()
+                "INFO" -> info()
+                "COMMAND" -> writer.array(0)
+                "TIME" -> time()
+                "DBSIZE" -> writer.integer(keyspace.size)
+                "FLUSHDB" -> {
+                    keyspace.clear()
+                    writer.ok()
+                }
+                "FLUSHALL" -> {
+                    server.databases.forEach { it.clear() }
+                    writer.ok()
+                }
+                "READONLY", "READWRITE" -> writer.ok()
+                "ASKING" -> {
+                    connection.asking = true
+                    writer.ok()
+                }
+                "CLUSTER" -> cluster()
+
+                // Keys
+                "DEL", "UNLINK" -> {
+                    arity(2)
+                    writer.integer((1 until arguments.size).count { keyspace.remove(string(it)) })
+                }
+                "EXISTS" -> {
+                    arity(2)
+                    writer.integer((1 until arguments.size).count { keyspace.exists(string(it)) })
+                }
+                "EXPIRE" -> expire(1000, relative = true)
+                "PEXPIRE" -> expire(1, relative = true)
+                "EXPIREAT" -> expire(1000, relative = false)
+                "PEXPIREAT" -> expire(1, relative = false)
+                "TTL" -> ttl(1000)
+                "PTTL" -> ttl(1)
+                "PERSIST" -> {
+                    arity(2, 2)
+                    writer.integer(if (keyspace.persist(string(1))) 1 else 0)
+                }
+                "TYPE" -> {
+                    arity(2, 2)
+                    writer.simple(keyspace.typeOf(string(1)))
+                }
+                "KEYS" -> {
+                    arity(2, 2)
+                    bulks(keyspace.keys(string(1)))
+                }
+                "SCAN" -> scan()
+
+                // Strings
+                "GET" -> {
+                    arity(2, 2)
+                    writer.bulk(keyspace.string(string(1)))
+                }
+                "SET" -> set()
+                "SETNX" -> {
+                    arity(3, 3)
+                    val absent = !keyspace.exists(string(1))
+                    if (absent) {
+                        keyspace.putString(string(1), arguments[2])
+                    }
+                    writer.integer(if (absent) 1 else 0)
+                }
+                "SETEX", "PSETEX" -> {
+                    arity(4, 4)
+                    val ttl = long(2)
+                    if (ttl <= 0) {
+                        throw CommandException("ERR invalid expire time in '${name.lowercase()}' command")
+                    }
+                    keyspace.putString(string(1), arguments[3])
+                    keyspace.expireAt(string(1), System.currentTimeMillis() + ttl * if (name == "SETEX") 1000 else 1)
+                    writer.ok()
+                }
+                "GETSET" -> {
+                    arity(3, 3)
+                    writer.bulk(keyspace.string(string(1)))
+                    keyspace.putString(string(1), arguments[2])
+                }
+                "GETDEL" -> {
+                    arity(2, 2)
+                    val value = keyspace.string(string(1))
+                    keyspace.remove(string(1))
+                    writer.bulk(value)
+                }
+                "MGET" -> {
+                    arity(2)
+                    writer.array(arguments.size - 1)
+                    for (i in 1 until arguments.size) {
+                        writer.bulk(keyspace.get(string(i)) as? ByteArray)
+                    }
+                }
+                "MSET" -> {
+                    if (arguments.size < 3 || arguments.size % 2 == 0) wrongArity()
+                    for (i in 1 until arguments.size step 2) {
+                        keyspace.putString(string(i), arguments[i + 1])
+                    }
+                    writer.ok()
+                }
+                "MSETNX" -> {
+                    if (arguments.size < 3 || arguments.size % 2 == 0) wrongArity()
+                    val absent = (1 until arguments.size step 2).none { keyspace.exists(string(it)) }
+                    if (absent) {
+                        for (i in 1 until arguments.size step 2) {
+                            keyspace.putString(string(i), arguments[i + 1])
+                        }
+                    }
+                    writer.integer(if (absent) 1 else 0)
+                }
+                "INCR" -> incrementBy(1)
+                "DECR" -> incrementBy(-1)
+                "INCRBY" -> {
+                    arity(3, 3)
+                    incrementBy(long(2))
+                }
+                "DECRBY" -> {
+                    arity(3, 3)
+                    incrementBy(-long(2))
+                }
+                "INCRBYFLOAT" -> {
+                    arity(3, 3)
+                    val current = keyspace.string(string(1))?.let { parseDouble(latin1(it)) } ?: 0.0
+                    val value = RespWriter.formatDouble(current + double(2))
+                    keyspace.putString(string(1), value.toByteArray(Charsets.ISO_8859_1), keepTtl = true)
+                    writer.bulk(value)
+                }
+                "APPEND" -> {
+                    arity(3, 3)
+                    val value = (keyspace.string(string(1)) ?: ByteArray(0)) + arguments[2]
+                    keyspace.putString(string(1), value, keepTtl = true)
+                    writer.integer(value.size)
+                }
+                "STRLEN" -> {
+                    arity(2, 2)
+                    writer.integer(keyspace.string(string(1))?.size ?: 0)
+                }
+
+                // Hashes
+                "HSET", "HMSET" -> {
+                    if (arguments.size < 4 || arguments.size % 2 != 0) wrongArity()
+                    val hash = keyspace.hashOrCreate(string(1))
+                    var added = 0
+                    for (i in 2 until arguments.size step 2) {
+                        if (hash.put(string(i), arguments[i + 1]) == null) {
+                            added++
+                        }
+                    }
+                    if (name == "HSET") writer.integer(added) else writer.ok()
+                }
+                "HSETNX" -> {
+                    arity(4, 4)
+                    val hash = keyspace.hashOrCreate(string(1))
+                    val absent = string(2) !in hash
+                    if (absent) {
+                        hash[string(2)] = arguments[3]
+                    }
+                    writer.integer(if (absent) 1 else 0)
+                }
+                "HGET" -> {
+                    arity(3, 3)
+                    writer.bulk(keyspace.hash(string(1))?.get(string(2)))
+                }
+                "HMGET" -> {
+                    arity(3)
+                    val hash = keyspace.hash(string(1))
+                    writer.array(arguments.size - 2)
+                    for (i in 2 until arguments.size) {
+                        writer.bulk(hash?.get(string(i)))
+                    }
+                }
+                "HDEL" -> {
+                    arity(3)
+                    val hash = keyspace.hash(string(1))
+                    val removed = (2 until arguments.size).count { hash?.remove(string(it)) != null }
+                    hash?.let { keyspace.removeIfEmpty(string(1), it) }
+                    writer.integer(removed)
+                }
+                "HGETALL" -> {
+                    arity(2, 2)
+                    val hash = keyspace.hash(string(1)).orEmpty()
+                    writer.map(hash.size)
+                    for ((field, value) in hash) {
+                        writer.bulk(field)
+                        writer.bulk(value)
+                    }
+                }
+                "HEXISTS" -> {
+                    arity(3, 3)
+                    writer.integer(if (keyspace.hash(string(1))?.containsKey(string(2)) == true) 1 else 0)
+                }
+                "HLEN" -> {
+                    arity(2, 2)
+                    writer.integer(keyspace.hash(string(1))?.size ?: 0)
+                }
+                "HKEYS" -> {
+                    arity(2, 2)
+                    bulks(keyspace.hash(string(1))?.keys.orEmpty())
+                }
+                "HVALS" -> {
+                    arity(2, 2)
+                    val values = keyspace.hash(string(1))?.values.orEmpty()
+                    writer.array(values.size)
+                    values.forEach { writer.bulk(it) }
+                }
+                "HINCRBY" -> {
+                    arity(4, 4)
+                    val hash = keyspace.hashOrCreate(string(1))
+                    val current = hash[string(2)]?.let { parseLong(it) } ?: 0
+                    val value = current + long(3)
+                    hash[string(2)] = value.toString().toByteArray(Charsets.ISO_8859_1)
+                    writer.integer(value)
+                }
+
+                // Lists
+                "LPUSH", "RPUSH" -> {
+                    arity(3)
+                    val list = keyspace.listOrCreate(string(1))
+                    for (i in 2 until arguments.size) {
+                        if (name == "LPUSH") list.addFirst(arguments[i]) else list.addLast(arguments[i])
+                    }
+                    writer.integer(list.size)
+                }
+                "LPOP", "RPOP" -> pop()
+                "LLEN" -> {
+                    arity(2, 2)
+                    writer.integer(keyspace.list(string(1))?.size ?: 0)
+                }
+                "LINDEX" -> {
+                    arity(3, 3)
+                    val list = keyspace.list(string(1)).orEmpty()
+                    val index = long(2).let { if (it < 0) list.size + it else it }
+                    writer.bulk(if (index in list.indices) list[index.toInt()] else null)
+                }
+                "LRANGE" -> {
+                    arity(4, 4)
+                    val list = keyspace.list(string(1)).orEmpty()
+                    val range = range(list.size, long(2), long(3))
+                    writer.array(range.count())
+                    range.forEach { writer.bulk(list[it]) }
+                }
+                "LTRIM" -> {
+                    arity(4, 4)
+                    keyspace.list(string(1))?.let { list ->
+                        val kept = range(list.size, long(2), long(3)).map { list[it] }
+                        list.clear()
+                        list.addAll(kept)
+                        keyspace.removeIfEmpty(string(1), list)
+                    }
+                    writer.ok()
+                }
+
+                // Sets
+                "SADD" -> {
+                    arity(3)
+                    val set = keyspace.setOrCreate(string(1))
+                    writer.integer((2 until arguments.size).count { set.add(string(it)) })
+                }
+                "SREM" -> {
+                    arity(3)
+                    val set = keyspace.set(string(1))
+                    val removed = (2 until arguments.size).count { set?.remove(string(it)) == true }
+                    set?.let { keyspace.removeIfEmpty(string(1), it) }
+                    writer.integer(removed)
+                }
+                "SMEMBERS" -> {
+                    arity(2, 2)
+                    val set = keyspace.set(string(1)).orEmpty()
+                    writer.set(set.size)
+                    set.forEach { writer.bulk(it) }
+                }
+                "SISMEMBER" -> {
+                    arity(3, 3)
+                    writer.integer(if (keyspace.set(string(1))?.contains(string(2)) == true) 1 else 0)
+                }
+                "SMISMEMBER" -> {
+                    arity(3)
+                    val set = keyspace.set(string(1)).orEmpty()
+                    writer.array(arguments.size - 2)
+                    for (i in 2 until arguments.size) {
+                        writer.integer(if (string(i) in set) 1 else 0)
+                    }
+                }
+                "SCARD" -> {
+                    arity(2, 2)
+                    writer.integer(keyspace.set(string(1))?.size ?: 0)
+                }
+
+                // Sorted sets
+                "ZADD" -> zadd()
+                "ZREM" -> {
+                    arity(3)
+                    val zset = keyspace.zset(string(1))
+                    val removed = (2 until arguments.size).count { zset?.remove(string(it)) == true }
+                    if (zset != null && zset.isEmpty()) {
+                        keyspace.remove(string(1))
+                    }
+                    writer.integer(removed)
+                }
+                "ZSCORE" -> {
+                    arity(3, 3)
+                    val score = keyspace.zset(string(1))?.score(string(2))
+                    if (score == null) writer.nil() else writer.double(score)
+                }
+                "ZINCRBY" -> {
+                    arity(4, 4)
+                    val zset = keyspace.zsetOrCreate(string(1))
+                    val score = (zset.score(string(3)) ?: 0.0) + double(2)
+                    zset.put(string(3), score)
+                    writer.double(score)
+                }
+                "ZCARD" -> {
+                    arity(2, 2)
+                    writer.integer(keyspace.zset(string(1))?.size ?: 0)
+                }
+                "ZRANK" -> {
+                    arity(3, 3)
+                    val rank = keyspace.zset(string(1))?.rank(string(2))
+                    if (rank == null) writer.nil() else writer.integer(rank)
+                }
+                "ZRANGE", "ZREVRANGE" -> zrange()
+                "ZRANGEBYSCORE" -> zrangeByScore()
+
+                // Pub/sub
+                "SUBSCRIBE" -> subscribe(channels = true)
+                "PSUBSCRIBE" -> subscribe(channels = false)
+                "UNSUBSCRIBE" -> unsubscribe(channels = true)
+                "PUNSUBSCRIBE" -> unsubscribe(channels = false)
+                "PUBLISH" -> {
+                    arity(3, 3)
+                    writer.integer(server.pubSub.publish(server, connection, string(1), arguments[2]))
+                }
+                "PUBSUB" -> pubsub()
+
+                else -> throw CommandException(
+                    "ERR unknown command '${name.lowercase()}', with args beginning with: " +
+                        arguments.drop(1).take(1).joinToString(" ") { "'${latin1(it)}'" }
+                )
+            }
+        }
+
+        private fun keysInSlot(slot: Int): List<String> =
+            keyspace.keys("*").filter { ClusterSlots.slot(it.toByteArray(Charsets.ISO_8859_1)) == slot }
+
+        private fun bulks(values: Collection<String>) {
+            writer.array(values.size)
+            values.forEach { writer.bulk(it) }
+        }
+
+        private fun ping() {
+            arity(1, 2)
+            if (connection.protocolIs2() && connection.subscriptions > 0) {
+                writer.array(2)
+                writer.bulk("pong")
+                writer.bulk(if (arguments.size > 1) arguments[1] else ByteArray(0))
+            } else if (arguments.size > 1) {
+                writer.bulk(arguments[1])
+            } else {
+                writer.simple("PONG")
+            }
+        }
+
+        private fun hello() {
+            var protocol = connection.writer.protocol
+            var index = 1
+            if (arguments.size > 1) {
+                protocol = string(1).toIntOrNull()
+                    ?: throw CommandException("ERR Protocol version is not an integer or out of range")
+                if (protocol !in 2..3 || (protocol == 3 && !server.resp3)) {
+                    throw CommandException("NOPROTO unsupported protocol version")
+                }
+                index = 2
+            }
+            while (index < arguments.size) {
+                when (string(index).uppercase()) {
+                    "AUTH" -> {
+                        arity(index + 3)
+                        authenticate(string(index + 2))
+                        index += 3
+                    }
+                    "SETNAME" -> {
+                        arity(index + 2)
+                        connection.name = string(index + 1)
+                        index += 2
+                    }
+                    else -> throw CommandException("ERR Syntax error in HELLO option '${string(index)}'")
+                }
+            }
+            if (!connection.authenticated) {
+                throw CommandException("NOAUTH HELLO must be called with the client already authenticated")
+            }
+            writer.protocol = protocol
+            writer.map(HELLO_FIELDS)
+            writer.bulk("server")
+            writer.bulk("redis")
+            writer.bulk("version")
+            writer.bulk(VERSION)
+            writer.bulk("proto")
+            writer.integer(protocol)
+            writer.bulk("id")
+            writer.integer(connection.id)
+            writer.bulk("mode")
+            writer.bulk(if (server.cluster != null) "cluster" else "standalone")
+            writer.bulk("role")
+            writer.bulk("master")
+            writer.bulk("modules")
+            writer.array(0)
+        }
+
+        private fun auth() {
+            arity(2, 3)
+            authenticate(string(arguments.size - 1))
+            writer.ok()
+        }
+
+        private fun authenticate(password: String) {
+            if (server.password == null) {
+                throw CommandException(
+                    "ERR AUTH <password> called without any password configured for the default user. " +
+                        "Are you sure your configuration is correct?"
+                )
+            }
+            if (password != server.password) {
+                throw CommandException("WRONGPASS invalid username-password pair or user is disabled.")
+            }
+            connection.authenticated = true
+        }
+
+        private fun select() {
+            arity(2, 2)
+            val db = int(1)
+            if (db !in server.databases.indices) {
+                throw CommandException("ERR DB index is out of range")
+            }
+            if (server.cluster != null && db != 0) {
+                throw CommandException("ERR SELECT is not allowed in cluster mode")
+            }
+            connection.db = db
+            writer.ok()
+        }
+
+        private fun reset() {
+            server.pubSub.unsubscribeAll(connection)
+            connection.db = 0
+            connection.name = null
+            connection.writer.protocol = 2
+            connection.authenticated = server.password == null
+            writer.simple("RESET")
+        }
+
+        private fun client() {
+            arity(2)
+            when (string(1).uppercase()) {
+                "SETNAME" -> {
+                    arity(3, 3)
+                    connection.name = string(2)
+                    writer.ok()
+                }
+                "GETNAME" -> writer.bulk(connection.name)
+                "ID" -> writer.integer(connection.id)
+                "SETINFO" -> writer.ok()
+                "LIST", "INFO" -> {
+                    val address = connection.channel.remoteAddress as InetSocketAddress
+                    writer.bulk(
+                        "id=${connection.id} addr=${address.address.hostAddress}:${address.port} " +
+                            "name=${connection.name.orEmpty()} db=${connection.db} resp=${connection.writer.protocol}\n"
+                    )
+                }
+                else -> throw CommandException("ERR unknown subcommand '${string(1)}'. Try CLIENT HELP.")
+            }
+        }
+
+        private fun info() {
+            val mode = if (server.cluster != null) "cluster" else "standalone"
+            writer.bulk(
+                "# Server\r\nredis_version:$VERSION\r\nredis_mode:$mode\r\ntcp_port:${server.port}\r\n" +
+                    "# Replication\r\nrole:master\r\nconnected_slaves:0\r\n" +
+                    "# Cluster\r\ncluster_enabled:${if (server.cluster != null) 1 else 0}\r\n" +
+                    "# Keyspace\r\n" +
+                    server.databases.withIndex().filter { it.value.size > 0 }
+                        .joinToString("") { "db${it.index}:keys=${it.value.size},expires=0,avg_ttl=0\r\n" }
+            )
+        }
+
+        private fun time() {
+            val micros = System.currentTimeMillis() * 1000
+            writer.array(2)
+            writer.bulk((micros / 1_000_000).toString())
+            writer.bulk((micros % 1_000_000).toString())
+        }
+
+        private fun expire(unitMs: Long, relative: Boolean) {
+            arity(3, 3)
+            val at = if (relative) System.currentTimeMillis() + long(2) * unitMs else long(2) * unitMs
+            writer.integer(if (keyspace.expireAt(string(1), at)) 1 else 0)
+        }
+
+        private fun ttl(unitMs: Long) {
+            arity(2, 2)
+            val ttl = keyspace.ttlMs(string(1))
+            writer.integer(if (ttl < 0) ttl else (ttl + unitMs - 1) / unitMs)
+        }
+
+        private fun scan() {
+            arity(2)
+            var pattern = "*"
+            var index = 2
+            while (index + 1 < arguments.size) {
+                when (string(index).uppercase()) {
+                    "MATCH" -> pattern = string(index + 1)
+                    "COUNT", "TYPE" -> Unit
+                    else -> throw CommandException("ERR syntax error")
+                }
+                index += 2
+            }
+            // Every key is returned in one batch, so the cursor is always 0
+            writer.array(2)
+            writer.bulk("0")
+            bulks(keyspace.keys(pattern))
+        }
+
+        private fun set() {
+            arity(3)
+            val key = string(1)
+            var expireAt: Long? = null
+            var onlyIfAbsent = false
+            var onlyIfPresent = false
+            var keepTtl = false
+            var returnOld = false
+            var index = 3
+            while (index < arguments.size) {
+                when (string(index).uppercase()) {
+                    "NX" -> onlyIfAbsent = true
+                    "XX" -> onlyIfPresent = true
+                    "KEEPTTL" -> keepTtl = true
+                    "GET" -> returnOld = true
+                    "EX", "PX", "EXAT", "PXAT" -> {
+                        if (index + 1 >= arguments.size) throw CommandException("ERR syntax error")
+                        val value = long(index + 1)
+                        if (value <= 0) {
+                            throw CommandException("ERR invalid expire time in 'set' command")
+                        }
+                        expireAt = when (string(index).uppercase()) {
+                            "EX" -> System.currentTimeMillis() + value * 1000
+                            "PX" -> System.currentTimeMillis() + value
+                            "EXAT" -> value * 1000
+                            else -> value
+                        }
+                        index++
+                    }
+                    else -> throw CommandException("ERR syntax error")
+                }
+                index++
+            }
+            if (onlyIfAbsent && onlyIfPresent) {
+                throw CommandException("ERR syntax error")
+            }
+            val old = if (returnOld) keyspace.string(key) else null
+            val exists = keyspace.exists(key)
+            if ((onlyIfAbsent && exists) || (onlyIfPresent && !exists)) {
+                if (returnOld) writer.bulk(old) else writer.nil()
+                return
+            }
+            keyspace.putString(key, arguments[2], keepTtl)
+            expireAt?.let { keyspace.expireAt(key, it) }
+            if (returnOld) writer.bulk(old) else writer.ok()
+        }
+
+        private fun incrementBy(delta: Long) {
+            arity(2, 3)
+            val current = keyspace.string(string(1))?.let { parseLong(it) } ?: 0
+            val value = try {
+                Math.addExact(current, delta)
+            } catch (e: ArithmeticException) {
+                throw CommandException("ERR increment or decrement would overflow")
+            }
+            keyspace.putString(string(1), value.toString().toByteArray(Charsets.ISO_8859_1), keepTtl = true)
+            writer.integer(value)
+        }
+
+        private fun pop() {
+            arity(2, 3)
+            val list = keyspace.list(string(1))
+            if (arguments.size == 2) {
+                val value = list?.let { if (name == "LPOP") it.removeFirstOrNull() else it.removeLastOrNull() }
+                list?.let { keyspace.removeIfEmpty(string(1), it) }
+                writer.bulk(value)
+                return
+            }
+            val count = long(2)
+            if (count < 0) {
+                throw CommandException("ERR value is out of range, must be positive")
+            }
+            if (list == null) {
+                writer.nilArray()
+                return
+            }
+            val popped = (0 until minOf(count, list.size.toLong())).map {
+                if (name == "LPOP") list.removeFirst() else list.removeLast()
+            }
+            keyspace.removeIfEmpty(string(1), list)
+            writer.array(popped.size)
+            popped.forEach { writer.bulk(it) }
+        }
+
+        private fun zadd() {
+            arity(4)
+            var onlyIfAbsent = false
+            var onlyIfPresent = false
+            var changed = false
+            var index = 2
+            while (index < arguments.size) {
+                when (string(index).uppercase()) {
+                    "NX" -> onlyIfAbsent = true
+                    "XX" -> onlyIfPresent = true
+                    "CH" -> changed = true
+                    "GT", "LT", "INCR" ->
+                        throw CommandException("ERR ${string(index).uppercase()} is not supported by this server")
+                    else -> break
+                }
+                index++
+            }
+            if ((arguments.size - index) % 2 != 0 || index == arguments.size) {
+                throw CommandException("ERR syntax error")
+            }
+            val scores = (index until arguments.size step 2).map { double(it) to string(it + 1) }
+            val zset = keyspace.zsetOrCreate(string(1))
+            var count = 0
+            for ((score, member) in scores) {
+                val previous = zset.score(member)
+                if ((onlyIfAbsent && previous != null) || (onlyIfPresent && previous == null)) {
+                    continue
+                }
+                zset.put(member, score)
+                if (previous == null || (changed && previous != score)) {
+                    count++
+                }
+            }
+            if (zset.isEmpty()) {
+                keyspace.remove(string(1))
+            }
+            writer.integer(count)
+        }
+
+        private fun zrange() {
+            arity(4, 5)
+            val withScores = arguments.size == 5 && string(4).uppercase() == "WITHSCORES"
+            if (arguments.size == 5 && !withScores) {
+                throw CommandException("ERR syntax error")
+            }
+            val members = keyspace.zset(string(1))?.ascending().orEmpty()
+                .let { if (name == "ZREVRANGE") it.asReversed() else it }
+            scored(range(members.size, long(2), long(3)).map { members[it] }, withScores)
+        }
+
+        private fun zrangeByScore() {
+            arity(4)
+            val min = bound(string(2))
+            val max = bound(string(3))
+            var withScores = false
+            var offset = 0
+            var limit = Int.MAX_VALUE
+            var index = 4
+            while (index < arguments.size) {
+                when (string(index).uppercase()) {
+                    "WITHSCORES" -> withScores = true
+                    "LIMIT" -> {
+                        if (index + 2 >= arguments.size) throw CommandException("ERR syntax error")
+                        offset = int(index + 1)
+                        limit = int(index + 2).let { if (it < 0) Int.MAX_VALUE else it }
+                        index += 2
+                    }
+                    else -> throw CommandException("ERR syntax error")
+                }
+                index++
+            }
+            val members = keyspace.zset(string(1))?.ascending().orEmpty()
+                .filter { (_, score) -> min.admitsAbove(score) && max.admitsBelow(score) }
+                .drop(offset)
+                .take(limit)
+            scored(members, withScores)
+        }
+
+        /**
+         * Writes sorted set members, with their scores as pairs in RESP3 or interleaved in RESP2.
+         */
+        private fun scored(members: List<Pair<String, Double>>, withScores: Boolean) {
+            if (!withScores) {
+                bulks(members.map { it.first })
+                return
+            }
+            if (connection.protocolIs2()) {
+                writer.array(members.size * 2)
+                members.forEach { (member, score) ->
+                    writer.bulk(member)
+                    writer.double(score)
+                }
+            } else {
+                writer.array(members.size)
+                members.forEach { (member, score) ->
+                    writer.array(2)
+                    writer.bulk(member)
+                    writer.double(score)
+                }
+            }
+        }
+
+        private fun subscribe(channels: Boolean) {
+            arity(2)
+            for (i in 1 until arguments.size) {
+                val name = string(i)
+                if (channels) server.pubSub.subscribe(connection, name) else server.pubSub.psubscribe(connection, name)
+                writer.push(3)
+                writer.bulk(if (channels) "subscribe" else "psubscribe")
+                writer.bulk(name)
+                writer.integer(connection.subscriptions)
+            }
+        }
+
+        private fun unsubscribe(channels: Boolean) {
+            val names = if (arguments.size > 1) {
+                (1 until arguments.size).map { string(it) }
+            } else if (channels) {
+                connection.channels.toList()
+            } else {
+                connection.patterns.toList()
+            }
+            val kind = if (channels) "unsubscribe" else "punsubscribe"
+            if (names.isEmpty()) {
+                writer.push(3)
+                writer.bulk(kind)
+                writer.nil()
+                writer.integer(connection.subscriptions)
+                return
+            }
+            for (name in names) {
+                if (channels) {
+                    server.pubSub.unsubscribe(connection, name)
+                } else {
+                    server.pubSub.punsubscribe(connection, name)
+                }
+                writer.push(3)
+                writer.bulk(kind)
+                writer.bulk(name)
+                writer.integer(connection.subscriptions)
+            }
+        }
+
+        private fun pubsub() {
+            arity(2)
+            when (string(1).uppercase()) {
+                "CHANNELS" -> {
+                    val pattern = if (arguments.size > 2) string(2) else "*"
+                    bulks(server.pubSub.activeChannels().filter { Glob.matches(pattern, it) })
+                }
+                "NUMSUB" -> {
+                    writer.array((arguments.size - 2) * 2)
+                    for (i in 2 until arguments.size) {
+                        writer.bulk(string(i))
+                        writer.integer(server.pubSub.subscribers(string(i)))
+                    }
+                }
+                else -> throw CommandException("ERR unknown subcommand '${string(1)}'. Try PUBSUB HELP.")
+            }
+        }
+
+        private fun cluster() {
+            arity(2)
+            val view = server.cluster ?: throw CommandException("ERR This instance has cluster support disabled")
+            val subcommand = string(1).uppercase()
+            if (subcommand == "SLOTS" || subcommand == "SHARDS" || subcommand == "NODES") {
+                server.topologyQueried()
+                view.topologyQueried()
+            }
+            when (subcommand) {
+                "SLOTS" -> ClusterReplies.slots(writer, view)
+                "SHARDS" -> ClusterReplies.shards(writer, view)
+                "NODES" -> writer.bulk(ClusterReplies.nodes(view))
+                "INFO" -> writer.bulk(ClusterReplies.info(view))
+                "MYID" -> writer.bulk(view.myself.id)
+                "KEYSLOT" -> {
+                    arity(3, 3)
+                    writer.integer(ClusterSlots.slot(arguments[2]))
+                }
+                "COUNTKEYSINSLOT" -> {
+                    arity(3, 3)
+                    writer.integer(keysInSlot(int(2)).size)
+                }
+                "GETKEYSINSLOT" -> {
+                    arity(4, 4)
+                    bulks(keysInSlot(int(2)).take(int(3)))
+                }
+                else -> throw CommandException("ERR unknown subcommand '${string(1)}'. Try CLUSTER HELP.")
+            }
+        }
+    }
+
+    /**
+     * One end of a score range: inclusive unless prefixed with `(`, and `-inf` or `+inf` for no limit.
+     */
+    private class ScoreBound(val value: Double, val exclusive: Boolean) {
+        fun admitsAbove(score: Double): Boolean = if (exclusive) score > value else score >= value
+
+        fun admitsBelow(score: Double): Boolean = if (exclusive) score < value else score <= value
+    }
+
+    private fun bound(text: String): ScoreBound =
+        if (text.startsWith("(")) {
+            ScoreBound(parseDouble(text.substring(1)), true)
+        } else {
+            ScoreBound(parseDouble(text), false)
+        }
+
+    /**
+     * Resolves a start and stop index, either of which may count from the end, to the indices they cover.
+     */
+    private fun range(size: Int, start: Long, stop: Long): IntRange {
+        val from = (if (start < 0) size + start else start).coerceAtLeast(0)
+        val to = (if (stop < 0) size + stop else stop).coerceAtMost(size - 1L)
+        return if (from > to) IntRange.EMPTY else from.toInt()..to.toInt()
+    }
+
+    private fun latin1(bytes: ByteArray): String = String(bytes, Charsets.ISO_8859_1)
+
+    private fun parseLong(bytes: ByteArray): Long =
+        latin1(bytes).toLongOrNull() ?: throw CommandException("ERR value is not an integer or out of range")
+
+    private fun parseDouble(text: String): Double =
+        when (text.lowercase()) {
+            "inf", "+inf" -> Double.POSITIVE_INFINITY
+            "-inf" -> Double.NEGATIVE_INFINITY
+            else -> text.toDoubleOrNull()?.takeIf { !it.isNaN() }
+                ?: throw CommandException("ERR value is not a valid float")
+        }
+
+    private companion object {
+        const val VERSION = "7.2.0"
+        const val HELLO_FIELDS = 7
+
+        // Commands without keys, which any node of a cluster serves
+        val KEYLESS_COMMANDS = setOf(
+            "PING", "ECHO", "HELLO", "AUTH", "SELECT", "QUIT", "RESET", "CLIENT", "INFO", "COMMAND", "TIME",
+            "DBSIZE", "FLUSHDB", "FLUSHALL", "READONLY", "READWRITE", "ASKING", "CLUSTER", "KEYS", "SCAN",
+            "SUBSCRIBE", "PSUBSCRIBE", "UNSUBSCRIBE", "PUNSUBSCRIBE", "PUBLISH", "PUBSUB"
+        )
+
+        // The commands a RESP2 connection may send while it is subscribed
+        val SUBSCRIBED_COMMANDS =
+            setOf("SUBSCRIBE", "PSUBSCRIBE", "UNSUBSCRIBE", "PUNSUBSCRIBE", "PING", "QUIT", "RESET")
+    }
+}
@@ -0,0 +1,557 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import java.io.IOException
+import java.net.InetAddress
+import java.net.InetSocketAddress
+import java.nio.ByteBuffer
+import java.nio.channels.SelectionKey
+import java.nio.channels.Selector
+import java.nio.channels.ServerSocketChannel
+import java.nio.channels.SocketChannel
+import java.util.Random
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * An in-process Redis stand-in for tests and benchmarks that cannot start a real server.
+ * It speaks RESP2 and, after HELLO 3, RESP3, and implements the common string, key, hash, list, set,
+ * sorted set, pub/sub and server commands, plus the CLUSTER commands of a single node that serves every
+ * slot. Clients built by the builders connect to it like to Redis.
+ *
+ * All connections are served by one thread with a NIO selector, so commands run one at a time like they
+ * do in Redis. The server can inject faults into its replies:
+ *
+ * - [latencyMs] delays every reply, and [jitterMs] adds a uniformly random delay on top. Replies on a
+ *   connection keep their order, so a pipeline waits for its slowest reply.
+ * - [errorRate] answers that fraction of data commands with an `ERR injected fault` error instead of
+ *   running them. Connection setup commands such as HELLO, AUTH and SELECT are never failed.
+ *
+ * The fault settings can be changed while clients are connected.
+ *
+ * ```kotlin
+ * RespServer.builder().latency(2).jitter(1).errorRate(0.01).build().use { server ->
+ *     val jedis = JedisPooled("localhost", server.port)
+ * }
+ * ```
+ */
+class RespServer private constructor(builder: Builder) : AutoCloseable {
+    private val selector: Selector = Selector.open()
+    private val serverChannel: ServerSocketChannel = ServerSocketChannel.open()
+    private val random = builder.seed?.let { Random(it) } ?: Random()
+    private val tasks = ConcurrentLinkedQueue<Runnable>()
+    private val connections = LinkedHashSet<Connection>()
+    private val nextConnectionId = AtomicLong()
+    private val readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_BYTES)
+    private val thread: Thread
+
+    @Volatile
+    private var running = true
+
+    internal val password: String? = builder.password
+    internal val resp3: Boolean = builder.resp3
+    internal val databases = Array(builder.databases) { Keyspace() }
+    internal val pubSub = PubSub()
+    internal val cluster: ClusterView?
+    private val commands = RespCommands(this)
+
+    private val openConnections = AtomicLong()
+    private val commandCount = LongAdder()
+    private val injectedErrors = LongAdder()
+    private val moved = LongAdder()
+    private val asked = LongAdder()
+    private val topologyQueries = LongAdder()
+
+    /**
+     * The delay added to every reply in milliseconds.
+     */
+    @Volatile
+    var latencyMs: Long = builder.latencyMs
+        set(value) {
+            require(value >= 0) { "latencyMs must not be negative" }
+            field = value
+        }
+
+    /**
+     * The maximum random delay added on top of [latencyMs] in milliseconds.
+     */
+    @Volatile
+    var jitterMs: Long = builder.jitterMs
+        set(value) {
+            require(value >= 0) { "jitterMs must not be negative" }
+            field = value
+        }
+
+    /**
+     * The fraction of data commands answered with an injected error, from 0 to 1.
+     */
+    @Volatile
+    var errorRate: Double = builder.errorRate
+        set(value) {
+            require(value in 0.0..1.0) { "errorRate must be between 0 and 1" }
+            field = value
+        }
+
+    /**
+     * The host the server listens on.
+     */
+    val host: String
+
+    /**
+     * The port the server listens on.
+     */
+    val port: Int
+
+    /**
+     * Counters of the commands the server ran.
+     */
+    interface Metrics {
+        /**
+         * The number of open client connections.
+         */
+        val connections: Int
+
+        /**
+         * The number of commands received, including those answered with an injected error.
+         */
+        val commands: Long
+
+        /**
+         * The number of commands answered with an injected error.
+         */
+        val injectedErrors: Long
+
+        /**
+         * The number of commands answered with a MOVED redirect, because another node serves their slot.
+         */
+        val moved: Long
+
+        /**
+         * The number of commands answered with an ASK redirect, because their slot is being migrated.
+         */
+        val asked: Long
+
+        /**
+         * The number of CLUSTER SLOTS, SHARDS and NODES commands, with which clients refresh their topology.
+         */
+        val topologyQueries: Long
+    }
+
+    /**
+     * The metrics of this server.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val connections: Int
+            get() = openConnections.get().toInt()
+        override val commands: Long
+            get() = commandCount.sum()
+        override val injectedErrors: Long
+            get() = this@RespServer.injectedErrors.sum()
+        override val moved: Long
+            get() = this@RespServer.moved.sum()
+        override val asked: Long
+            get() = this@RespServer.asked.sum()
+        override val topologyQueries: Long
+            get() = this@RespServer.topologyQueries.sum()
+    }
+
+    init {
+        serverChannel.bind(InetSocketAddress(builder.bindAddress, builder.port), BACKLOG)
+        serverChannel.configureBlocking(false)
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT)
+        host = builder.bindAddress.hostAddress
+        port = serverChannel.socket().localPort
+        val node = ClusterNode(randomNodeId(random), host, port)
+        cluster = builder.clusterView?.invoke(node) ?: if (builder.cluster) SingleNodeView(node) else null
+        thread = Thread({ loop() }, "resp-server-$port").apply { isDaemon = true }
+        thread.start()
+    }
+
+    /**
+     * The node this server answers as in CLUSTER replies, or null if cluster support is disabled.
+     */
+    val clusterNode: ClusterNode?
+        get() = cluster?.myself
+
+    /**
+     * Removes all keys from all databases.
+     */
+    fun flushAll() {
+        submit { databases.forEach { it.clear() } }.get(TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+    }
+
+    internal fun redirected(ask: Boolean) = if (ask) asked.increment() else moved.increment()
+
+    internal fun topologyQueried() = topologyQueries.increment()
+
+    /**
+     * Runs a task on the server's thread, between commands.
+     */
+    internal fun <T> submit(task: () -> T): CompletableFuture<T> {
+        val future = CompletableFuture<T>()
+        tasks.add(Runnable {
+            try {
+                future.complete(task())
+            } catch (e: Exception) {
+                future.completeExceptionally(e)
+            }
+        })
+        selector.wakeup()
+        return future
+    }
+
+    /**
+     * Stops accepting connections and closes the open ones. Clients see their connections reset.
+     */
+    override fun close() {
+        if (!running) {
+            return
+        }
+        running = false
+        selector.wakeup()
+        thread.join(TimeUnit.SECONDS.toMillis(TASK_TIMEOUT_SECONDS))
+    }
+
+    private fun loop() {
+        try {
+            while (running) {
+                val now = System.nanoTime()
+                val nextDue = connections.minOfOrNull { it.nextDue() } ?: Long.MAX_VALUE
+                when {
+                    nextDue <= now -> selector.selectNow()
+                    nextDue == Long.MAX_VALUE -> selector.select()
+                    else -> selector.select(maxOf(1, TimeUnit.NANOSECONDS.toMillis(nextDue - now)))
+                }
+                val selected = selector.selectedKeys().iterator()
+                while (selected.hasNext()) {
+                    val key = selected.next()
+                    selected.remove()
+                    handle(key)
+                }
+                while (true) {
+                    tasks.poll()?.run() ?: break
+                }
+                val flushedAt = System.nanoTime()
+                connections.toList().forEach { flush(it, flushedAt) }
+            }
+        } finally {
+            connections.toList().forEach { close(it) }
+            serverChannel.close()
+            selector.close()
+        }
+    }
+
+    private fun handle(key: SelectionKey) {
+        if (!key.isValid) {
+            return
+        }
+        if (key.isAcceptable) {
+            accept()
+            return
+        }
+        val connection = key.attachment() as Connection
+        try {
+            if (key.isReadable) {
+                read(connection)
+            }
+            if (key.isValid && key.isWritable) {
+                flush(connection, System.nanoTime())
+            }
+        } catch (e: IOException) {
+            close(connection)
+        }
+    }
+
+    private fun accept() {
+        val channel = serverChannel.accept() ?: return
+        channel.configureBlocking(false)
+        channel.socket().tcpNoDelay = true
+        val connection = Connection(channel, nextConnectionId.incrementAndGet(), password == null)
+        connection.key = channel.register(selector, SelectionKey.OP_READ, connection)
+        connections.add(connection)
+        openConnections.incrementAndGet()
+    }
+
+    private fun read(connection: Connection) {
+        readBuffer.clear()
+        if (connection.channel.read(readBuffer) < 0) {
+            close(connection)
+            return
+        }
+        readBuffer.flip()
+        connection.reader.feed(readBuffer)
+        while (!connection.closing) {
+            val arguments = try {
+                connection.reader.next() ?: return
+            } catch (e: RespProtocolException) {
+                connection.writer.error("ERR Protocol error: ${e.message}")
+                connection.closing = true
+                enqueue(connection, connection.writer.take(), 0)
+                return
+            }
+            if (arguments.isNotEmpty()) {
+                run(connection, arguments)
+            }
+        }
+    }
+
+    private fun run(connection: Connection, arguments: List<ByteArray>) {
+        commandCount.increment()
+        val name = String(arguments[0], Charsets.ISO_8859_1).uppercase()
+        val rate = errorRate
+        if (rate > 0 && name !in SETUP_COMMANDS && random.nextDouble() < rate) {
+            injectedErrors.increment()
+            connection.writer.error("ERR injected fault")
+        } else {
+            commands.execute(connection, name, arguments)
+        }
+        if (!connection.writer.isEmpty) {
+            enqueue(connection, connection.writer.take(), replyDelayNanos())
+        }
+    }
+
+    private fun replyDelayNanos(): Long {
+        val jitter = jitterMs
+        val delayMs = latencyMs + if (jitter > 0) random.nextLong(jitter + 1) else 0
+        return TimeUnit.MILLISECONDS.toNanos(delayMs)
+    }
+
+    /**
+     * Queues a reply, or a message to a subscriber, to be written once its delay has passed.
+     */
+    internal fun enqueue(connection: Connection, bytes: ByteBuffer, delayNanos: Long = replyDelayNanos()) {
+        // Never before an earlier reply, so replies keep their order
+        val due = maxOf(System.nanoTime() + delayNanos, connection.lastDue)
+        connection.lastDue = due
+        connection.outbound.addLast(Outbound(due, bytes))
+    }
+
+    private fun flush(connection: Connection, now: Long) {
+        val key = connection.key ?: return
+        try {
+            while (true) {
+                val head = connection.outbound.firstOrNull() ?: break
+                if (head.due > now) {
+                    break
+                }
+                connection.channel.write(head.bytes)
+                if (head.bytes.hasRemaining()) {
+                    key.interestOps(SelectionKey.OP_READ or SelectionKey.OP_WRITE)
+                    return
+                }
+                connection.outbound.removeFirst()
+            }
+            if (key.isValid) {
+                key.interestOps(SelectionKey.OP_READ)
+            }
+            if (connection.closing && connection.outbound.isEmpty()) {
+                close(connection)
+            }
+        } catch (e: IOException) {
+            close(connection)
+        }
+    }
+
+    private fun close(connection: Connection) {
+        if (!connections.remove(connection)) {
+            return
+        }
+        openConnections.decrementAndGet()
+        pubSub.unsubscribeAll(connection)
+        connection.key?.cancel()
+        try {
+            connection.channel.close()
+        } catch (e: IOException) {
+            // Already closed by the client
+        }
+    }
+
+    /**
+     * A reply waiting for its injected delay.
+     */
+    internal class Outbound(val due: Long, val bytes: ByteBuffer)
+
+    /**
+     * The state of one client connection.
+     */
+    internal class Connection(val channel: SocketChannel, val id: Long, var authenticated: Boolean) {
+        var key: SelectionKey? = null
+        val reader = RespReader()
+        val writer = RespWriter()
+        val outbound = ArrayDeque<Outbound>()
+        var lastDue = 0L
+        var db = 0
+        var name: String? = null
+        var closing = false
+        var asking = false
+        val channels = LinkedHashSet<String>()
+        val patterns = LinkedHashSet<String>()
+
+        val subscriptions: Int
+            get() = channels.size + patterns.size
+
+        /**
+         * The time the next reply is due, or Long.MAX_VALUE if there is none or the socket is full.
+         */
+        fun nextDue(): Long {
+            val head = outbound.firstOrNull() ?: return Long.MAX_VALUE
+            return if (head.bytes.position() > 0) Long.MAX_VALUE else head.due
+        }
+    }
+
+    /**
+     * Builder for [RespServer].
+     */
+    class Builder internal constructor() {
+        internal var bindAddress: InetAddress = InetAddress.getLoopbackAddress()
+        internal var port = 0
+        internal var password: String? = null
+        internal var resp3 = true
+        internal var databases = DEFAULT_DATABASES
+        internal var cluster = false
+        internal var clusterView: ((ClusterNode) -> ClusterView)? = null
+        internal var latencyMs = 0L
+        internal var jitterMs = 0L
+        internal var errorRate = 0.0
+        internal var seed: Long? = null
+
+        /**
+         * Sets the port to listen on, or 0 for a free port.
+         *
+         * @param port The port
+         * @return The builder instance
+         */
+        fun port(port: Int): Builder = apply {
+            require(port in 0..MAX_PORT) { "port must be between 0 and $MAX_PORT" }
+            this.port = port
+        }
+
+        /**
+         * Sets the address to listen on. Defaults to the loopback address.
+         *
+         * @param address The address
+         * @return The builder instance
+         */
+        fun bindAddress(address: InetAddress): Builder = apply { this.bindAddress = address }
+
+        /**
+         * Requires clients to authenticate with AUTH or HELLO before running commands.
+         *
+         * @param password The password of the default user
+         * @return The builder instance
+         */
+        fun password(password: String): Builder = apply { this.password = password }
+
+        /**
+         * Sets whether HELLO 3 switches a connection to RESP3. When disabled the server answers HELLO 3 like
+         * a Redis 5 server would, and clients fall back to RESP2. Enabled by default.
+         *
+         * @param enabled Whether RESP3 is supported
+         * @return The builder instance
+         */
+        fun resp3(enabled: Boolean): Builder = apply { this.resp3 = enabled }
+
+        /**
+         * Sets the number of databases SELECT can choose from. Defaults to 16.
+         *
+         * @param databases The number of databases
+         * @return The builder instance
+         */
+        fun databases(databases: Int): Builder = apply {
+            require(databases > 0) { "databases must be positive" }
+            this.databases = databases
+        }
+
+        /**
+         * Answers CLUSTER commands as a cluster of this one node, which serves every slot, so cluster
+         * clients can connect to it.
+         *
+         * @param enabled Whether cluster support is enabled
+         * @return The builder instance
+         */
+        fun cluster(enabled: Boolean): Builder = apply { this.cluster = enabled }
+
+        /**
+         * Sets the delay added to every reply.
+         *
+         * @param latencyMs The delay in milliseconds
+         * @return The builder instance
+         */
+        fun latency(latencyMs: Long): Builder = apply {
+            require(latencyMs >= 0) { "latencyMs must not be negative" }
+            this.latencyMs = latencyMs
+        }
+
+        /**
+         * Sets the maximum random delay added on top of the latency.
+         *
+         * @param jitterMs The maximum delay in milliseconds
+         * @return The builder instance
+         */
+        fun jitter(jitterMs: Long): Builder = apply {
+            require(jitterMs >= 0) { "jitterMs must not be negative" }
+            this.jitterMs = jitterMs
+        }
+
+        /**
+         * Sets the fraction of data commands answered with an injected error.
+         *
+         * @param errorRate The fraction, from 0 to 1
+         * @return The builder instance
+         */
+        fun errorRate(errorRate: Double): Builder = apply {
+            require(errorRate in 0.0..1.0) { "errorRate must be between 0 and 1" }
+            this.errorRate = errorRate
+        }
+
+        /**
+         * Seeds the random source of jitter and injected errors, so that runs are repeatable.
+         *
+         * @param seed The seed
+         * @return The builder instance
+         */
+        fun seed(seed: Long): Builder = apply { this.seed = seed }
+
+        /**
+         * Starts the server.
+         *
+         * @return A new RespServer, listening and serving
+         */
+        fun build(): RespServer = RespServer(this)
+    }
+
+    companion object {
+        private const val BACKLOG = 128
+        private const val READ_BUFFER_BYTES = 64 * 1024
+        private const val DEFAULT_DATABASES = 16
+        private const val MAX_PORT = 65535
+        private const val TASK_TIMEOUT_SECONDS = 10L
+        private const val NODE_ID_LENGTH = 40
+
+        // Commands clients send while connecting, which injected errors would turn into connection failures
+        private val SETUP_COMMANDS = setOf(
+            "HELLO", "AUTH", "CLIENT", "SELECT", "QUIT", "RESET", "COMMAND", "READONLY", "READWRITE", "ASKING"
+        )
+
+        /**
+         * Creates a builder for a server on a free port of the loopback address.
+         *
+         * @return A new Builder
+         */
+        @JvmStatic
+        fun builder(): Builder = Builder()
+
+        /**
+         * Starts a server with the default settings and no injected faults.
+         *
+         * @return A new RespServer
+         */
+        @JvmStatic
+        fun start(): RespServer = builder().build()
+
+        internal fun randomNodeId(random: Random): String =
+            buildString { repeat(NODE_ID_LENGTH) { append("0123456789abcdef"[random.nextInt(16)]) } }
+    }
+}
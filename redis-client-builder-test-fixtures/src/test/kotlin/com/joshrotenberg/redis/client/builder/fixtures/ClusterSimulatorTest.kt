@@ -0,0 +1,106 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertNotNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.exceptions.JedisException
+
+class ClusterSimulatorTest {
+    private val cluster = ClusterSimulator.builder().nodes(3).seed(1).build()
+
+    private fun client(nodes: List<ClusterNode> = cluster.nodes): JedisCluster =
+        JedisCluster(nodes.map { HostAndPort(it.host, it.port) }.toSet(), TIMEOUT_MS, MAX_ATTEMPTS)
+
+    @AfterEach
+    fun tearDown() {
+        cluster.close()
+    }
+
+    @Test
+    fun `test slots are split between the nodes`() {
+        assertEquals(listOf(0..5460), cluster.slots(cluster.nodes[0]))
+        assertEquals(listOf(5461..10921), cluster.slots(cluster.nodes[1]))
+        assertEquals(listOf(10922..16383), cluster.slots(cluster.nodes[2]))
+
+        client().use { jedis ->
+            repeat(100) { jedis.set("key$it", "value$it") }
+            repeat(100) { assertEquals("value$it", jedis.get("key$it")) }
+            assertEquals(3, jedis.clusterNodes.size)
+        }
+        cluster.nodes.forEach { assertEquals(0, cluster.server(it).metrics.moved) }
+    }
+
+    @Test
+    fun `test clients follow moved after a migration`() {
+        val owner = cluster.nodeFor("foo")
+        val target = cluster.nodes.first { it != owner }
+        client().use { jedis ->
+            jedis.set("foo", "bar")
+            cluster.migrateSlot(ClusterSlots.slot("foo"), target)
+            assertEquals(target, cluster.nodeFor("foo"))
+
+            assertEquals("bar", jedis.get("foo"))
+            assertEquals("bar", jedis.get("foo"))
+        }
+        assertEquals(1, cluster.server(owner).metrics.moved)
+        assertNotNull(cluster.topologyRefreshLatencyNanos)
+    }
+
+    @Test
+    fun `test clients follow ask during a migration`() {
+        val slot = ClusterSlots.slot("{user}:a")
+        val owner = cluster.nodeForSlot(slot)
+        val target = cluster.nodes.first { it != owner }
+        client().use { jedis ->
+            jedis.set("{user}:a", "1")
+            jedis.set("{user}:b", "2")
+            cluster.beginMigration(slot, target)
+            assertEquals(1, cluster.migrateKeys(slot, 1))
+
+            assertEquals("1", jedis.get("{user}:a"))
+            assertEquals("2", jedis.get("{user}:b"))
+            assertEquals(1, cluster.server(owner).metrics.asked)
+            assertEquals(owner, cluster.nodeForSlot(slot))
+
+            assertThrows(IllegalStateException::class.java) { cluster.finishMigration(slot) }
+            assertEquals(1, cluster.migrateKeys(slot, 10))
+            assertEquals(0, cluster.migrateKeys(slot, 10))
+            cluster.finishMigration(slot)
+
+            assertEquals("2", jedis.get("{user}:b"))
+            assertEquals(1, cluster.server(owner).metrics.moved)
+        }
+    }
+
+    @Test
+    fun `test slots of a killed node fail until they are reassigned`() {
+        val dead = cluster.nodeFor("foo")
+        val survivor = cluster.nodes.first { it != dead }
+        val survivors = cluster.nodes - dead
+        cluster.kill(dead)
+
+        client(survivors).use { jedis ->
+            assertThrows(JedisException::class.java) { jedis.set("foo", "bar") }
+        }
+        assertTrue(cluster.server(survivor).metrics.commands > 0)
+
+        cluster.slots(dead).forEach { cluster.assignSlots(it, survivor) }
+        assertEquals(emptyList<IntRange>(), cluster.slots(dead))
+        client(survivors).use { jedis ->
+            jedis.set("foo", "bar")
+            assertEquals("bar", jedis.get("foo"))
+            assertNotEquals(dead, cluster.nodeFor("foo"))
+        }
+    }
+
+    private companion object {
+        const val TIMEOUT_MS = 2000
+        const val MAX_ATTEMPTS = 2
+    }
+}
@@ -0,0 +1,125 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.Jedis
+import redis.clients.jedis.exceptions.JedisConnectionException
+import java.time.Duration
+import java.util.Random
+import java.util.concurrent.TimeUnit
+
+class FaultProxyTest {
+    private val server = RespServer.start()
+    private val proxy = FaultProxy.forServer(server)
+
+    private fun jedis(): Jedis = Jedis(proxy.host, proxy.port, TIMEOUT_MS)
+
+    private fun elapsedMs(block: () -> Unit): Long {
+        val started = System.nanoTime()
+        block()
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+    }
+
+    @AfterEach
+    fun tearDown() {
+        proxy.close()
+        server.close()
+    }
+
+    @Test
+    fun `test commands pass through the proxy`() {
+        jedis().use { jedis ->
+            assertEquals("OK", jedis.set("key", "value"))
+            assertEquals("value", jedis.get("key"))
+        }
+        assertEquals(1, proxy.metrics.accepted)
+        assertTrue(proxy.metrics.bytesForwarded > 0)
+    }
+
+    @Test
+    fun `test latency delays replies`() {
+        jedis().use { jedis ->
+            jedis.ping()
+            proxy.latency = LatencyDistribution.fixed(Duration.ofMillis(50))
+            val elapsed = elapsedMs { jedis.get("key") }
+            assertTrue(elapsed >= 50, "Reply took $elapsed ms")
+        }
+    }
+
+    @Test
+    fun `test stall holds replies`() {
+        jedis().use { jedis ->
+            jedis.ping()
+            proxy.stall(Duration.ofMillis(100))
+            val elapsed = elapsedMs { jedis.get("key") }
+            assertTrue(elapsed >= 100, "Reply took $elapsed ms")
+        }
+    }
+
+    @Test
+    fun `test bandwidth cap slows large replies`() {
+        jedis().use { jedis ->
+            jedis.set("key", "x".repeat(2000))
+            proxy.bandwidthBytesPerSecond = 10_000
+            val elapsed = elapsedMs { assertEquals(2000, jedis.get("key").length) }
+            assertTrue(elapsed >= 150, "Reply took $elapsed ms")
+        }
+    }
+
+    @Test
+    fun `test reset connections fail the next command`() {
+        jedis().use { jedis ->
+            jedis.ping()
+            assertEquals(1, proxy.resetConnections())
+            assertThrows(JedisConnectionException::class.java) { jedis.get("key") }
+        }
+        jedis().use { assertEquals("PONG", it.ping()) }
+        assertEquals(1, proxy.metrics.resets)
+    }
+
+    @Test
+    fun `test half-open connections time out`() {
+        jedis().use { jedis ->
+            jedis.ping()
+            assertEquals(1, proxy.halfOpenConnections())
+            val elapsed = elapsedMs {
+                assertThrows(JedisConnectionException::class.java) { jedis.get("key") }
+            }
+            assertTrue(elapsed >= TIMEOUT_MS, "Command failed after $elapsed ms")
+            assertEquals(1, proxy.metrics.connections)
+        }
+        assertEquals(1, proxy.metrics.halfOpened)
+    }
+
+    @Test
+    fun `test faults run on a schedule`() {
+        jedis().use { jedis ->
+            jedis.ping()
+            proxy.schedule(Duration.ofMillis(20)) { it.resetConnections() }.get(5, TimeUnit.SECONDS)
+            assertThrows(JedisConnectionException::class.java) { jedis.get("key") }
+        }
+        assertEquals(1, proxy.metrics.resets)
+    }
+
+    @Test
+    fun `test latency distributions`() {
+        val random = Random(1)
+        val samples = List(10_000) {
+            LatencyDistribution.logNormal(Duration.ofMillis(1), 1.0).sampleNanos(random)
+        }.sorted()
+        val median = samples[samples.size / 2]
+        assertTrue(median in 900_000L..1_100_000L, "Median was $median ns")
+        assertTrue(samples[samples.size * 99 / 100] > 5 * median)
+
+        assertTrue(List(1000) { LatencyDistribution.pareto(Duration.ofMillis(1), 1.5).sampleNanos(random) }
+            .all { it >= 1_000_000L })
+        assertEquals(2_000_000L, LatencyDistribution.fixed(Duration.ofMillis(2)).sampleNanos(random))
+    }
+
+    private companion object {
+        const val TIMEOUT_MS = 200
+    }
+}
@@ -0,0 +1,186 @@
+package com.joshrotenberg.redis.client.builder.fixtures
+
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisURI
+import io.lettuce.core.ScoredValue
+import io.lettuce.core.pubsub.RedisPubSubAdapter
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.DefaultJedisClientConfig
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.exceptions.JedisDataException
+import redis.clients.jedis.params.SetParams
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class RespServerTest {
+    private val servers = mutableListOf<RespServer>()
+
+    private fun start(builder: RespServer.Builder = RespServer.builder()): RespServer =
+        builder.build().also { servers.add(it) }
+
+    @AfterEach
+    fun tearDown() {
+        servers.forEach { it.close() }
+    }
+
+    @Test
+    fun `test jedis runs commands of each data type`() {
+        val server = start()
+        JedisPooled(server.host, server.port).use { jedis ->
+            assertEquals("OK", jedis.set("string", "value"))
+            assertEquals("value", jedis.get("string"))
+            assertEquals(listOf("value", null), jedis.mget("string", "missing"))
+            assertNull(jedis.set("string", "other", SetParams.setParams().nx()))
+            assertEquals(3, jedis.incrBy("counter", 3))
+
+            assertEquals(2, jedis.hset("hash", mapOf("a" to "1", "b" to "2")))
+            assertEquals(mapOf("a" to "1", "b" to "2"), jedis.hgetAll("hash"))
+
+            assertEquals(3, jedis.rpush("list", "a", "b", "c"))
+            assertEquals(listOf("b", "c"), jedis.lrange("list", 1, -1))
+            assertEquals("a", jedis.lpop("list"))
+
+            assertEquals(2, jedis.sadd("set", "a", "b"))
+            assertEquals(setOf("a", "b"), jedis.smembers("set"))
+
+            jedis.zadd("zset", mapOf("a" to 2.0, "b" to 1.0))
+            assertEquals(listOf("b", "a"), jedis.zrange("zset", 0, -1))
+            assertEquals(2.0, jedis.zscore("zset", "a"))
+
+            assertEquals("list", jedis.type("list"))
+            assertThrows(JedisDataException::class.java) { jedis.hget("string", "field") }
+            assertEquals(1, jedis.del("string"))
+            assertFalse(jedis.exists("string"))
+        }
+    }
+
+    @Test
+    fun `test keys expire`() {
+        val server = start()
+        JedisPooled(server.host, server.port).use { jedis ->
+            jedis.set("key", "value", SetParams.setParams().px(50))
+            assertTrue(jedis.pttl("key") in 1..50)
+            Thread.sleep(100)
+            assertNull(jedis.get("key"))
+            assertEquals(-2, jedis.ttl("key"))
+        }
+    }
+
+    @Test
+    fun `test lettuce negotiates resp3`() {
+        val server = start()
+        val client = RedisClient.create(RedisURI.create(server.host, server.port))
+        try {
+            client.connect().use { connection ->
+                val commands = connection.sync()
+                commands.hset("hash", mapOf("a" to "1"))
+                assertEquals(mapOf("a" to "1"), commands.hgetall("hash"))
+                commands.zadd("zset", 1.5, "a")
+                assertEquals(listOf(ScoredValue.just(1.5, "a")), commands.zrangeWithScores("zset", 0, -1))
+                assertTrue(commands.clientList().contains("resp=3"))
+            }
+        } finally {
+            client.shutdown()
+        }
+    }
+
+    @Test
+    fun `test lettuce falls back to resp2 when resp3 is disabled`() {
+        val server = start(RespServer.builder().resp3(false))
+        val client = RedisClient.create(RedisURI.create(server.host, server.port))
+        try {
+            client.connect().use { connection ->
+                assertEquals("PONG", connection.sync().ping())
+                assertTrue(connection.sync().clientList().contains("resp=2"))
+            }
+        } finally {
+            client.shutdown()
+        }
+    }
+
+    @Test
+    fun `test subscribers receive published messages`() {
+        val server = start()
+        val client = RedisClient.create(RedisURI.create(server.host, server.port))
+        try {
+            val messages = LinkedBlockingQueue<String>()
+            client.connectPubSub().use { subscriber ->
+                subscriber.addListener(object : RedisPubSubAdapter<String, String>() {
+                    override fun message(channel: String, message: String) {
+                        messages.add("$channel:$message")
+                    }
+
+                    override fun message(pattern: String, channel: String, message: String) {
+                        messages.add("$pattern:$channel:$message")
+                    }
+                })
+                subscriber.sync().subscribe("news")
+                subscriber.sync().psubscribe("n*")
+
+                JedisPooled(server.host, server.port).use { assertEquals(2, it.publish("news", "hello")) }
+
+                val received = setOf(messages.poll(5, TimeUnit.SECONDS), messages.poll(5, TimeUnit.SECONDS))
+                assertEquals(setOf("news:hello", "n*:news:hello"), received)
+            }
+        } finally {
+            client.shutdown()
+        }
+    }
+
+    @Test
+    fun `test password is required`() {
+        val server = start(RespServer.builder().password("secret"))
+        JedisPooled(server.host, server.port).use { jedis ->
+            assertThrows(JedisDataException::class.java) { jedis.get("key") }
+        }
+        val config = DefaultJedisClientConfig.builder().password("secret").build()
+        JedisPooled(HostAndPort(server.host, server.port), config).use { jedis ->
+            assertEquals("OK", jedis.set("key", "value"))
+        }
+    }
+
+    @Test
+    fun `test injected errors fail data commands only`() {
+        val server = start(RespServer.builder().errorRate(1.0))
+        JedisPooled(server.host, server.port).use { jedis ->
+            val error = assertThrows(JedisDataException::class.java) { jedis.get("key") }
+            assertEquals("ERR injected fault", error.message)
+
+            server.errorRate = 0.0
+            assertNull(jedis.get("key"))
+        }
+        assertEquals(1, server.metrics.injectedErrors)
+    }
+
+    @Test
+    fun `test injected latency delays replies`() {
+        val server = start(RespServer.builder().latency(50).jitter(10).seed(1))
+        JedisPooled(server.host, server.port).use { jedis ->
+            jedis.ping()
+            val started = System.nanoTime()
+            jedis.get("key")
+            val elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started)
+            assertTrue(elapsedMs >= 50, "Reply took $elapsedMs ms")
+        }
+    }
+
+    @Test
+    fun `test cluster clients discover the single node`() {
+        val server = start(RespServer.builder().cluster(true))
+        JedisCluster(HostAndPort(server.host, server.port)).use { cluster ->
+            cluster.set("foo", "bar")
+            assertEquals("bar", cluster.get("foo"))
+            assertEquals(setOf("${server.host}:${server.port}"), cluster.clusterNodes.keys)
+        }
+        assertEquals(12182, ClusterSlots.slot("foo"))
+        assertEquals(ClusterSlots.slot("{user}:a"), ClusterSlots.slot("{user}:b"))
+    }
+}
@@ -115,6 +115,14 @@ interface RedisClientBuilder<T> {
      */
     fun withRateLimiter(configurer: (RedisRateLimiter<T>) -> RedisRateLimiter<T>): RedisClientBuilder<T>
 
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     * Builders configured alike return equal specs, with which [RedisClientRegistry] shares one client.
+     *
+     * @return The spec of the client that [build] returns
+     */
+    fun spec(): RedisClientSpec
+
     /**
      * Builds and returns the Redis client instance.
      *
@@ -9,21 +9,37 @@ import com.joshrotenberg.redis.client.builder.lettuce.LettuceClientBuilder
 import com.joshrotenberg.redis.client.builder.lettuce.LettuceClusterClientBuilder
 import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
 import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
-import io.lettuce.core.RedisClient
-import io.lettuce.core.cluster.RedisClusterClient
-import redis.clients.jedis.JedisCluster
-import redis.clients.jedis.JedisPool
-import redis.clients.jedis.JedisPooled
-import redis.clients.jedis.JedisSentinelPool
-import redis.clients.jedis.UnifiedJedis
+import java.util.ServiceLoader
+import java.util.concurrent.ConcurrentHashMap
+import java.util.function.Supplier
 
 /**
  * Factory class for creating Redis client builder instances.
  * This class provides static methods for creating instances of each Redis client builder,
  * making it easier for users to instantiate the appropriate builder without having to know
  * the specific implementation details.
+ *
+ * The generic [builder], [clusterBuilder] and [sentinelBuilder] methods find their builders through the
+ * [RedisClientProvider]s on the classpath, which are loaded on first use. The provider lookup is cached per
+ * client type, and does not load the classes of drivers other than the one asked for.
  */
 object RedisClientBuilderFactory {
+    private val providers: List<RedisClientProvider> by lazy {
+        ServiceLoader.load(RedisClientProvider::class.java, RedisClientProvider::class.java.classLoader).toList()
+    }
+
+    private val clientBuilders by lazy { providers.flatMap { it.builders().entries }.associate { it.toPair() } }
+    private val clusterBuilders by lazy {
+        providers.flatMap { it.clusterBuilders().entries }.associate { it.toPair() }
+    }
+    private val sentinelBuilders by lazy {
+        providers.flatMap { it.sentinelBuilders().entries }.associate { it.toPair() }
+    }
+
+    private val resolvedClientBuilders = ConcurrentHashMap<Class<*>, Supplier<out RedisClientBuilder<*>>>()
+    private val resolvedClusterBuilders = ConcurrentHashMap<Class<*>, Supplier<out RedisClusterClientBuilder<*>>>()
+    private val resolvedSentinelBuilders = ConcurrentHashMap<Class<*>, Supplier<out RedisSentinelClientBuilder<*>>>()
+
     /**
      * Creates a new JedisClientBuilder instance.
      *
@@ -80,8 +96,17 @@ object RedisClientBuilderFactory {
     @JvmStatic
     fun jedisSentinel(): JedisSentinelClientBuilder = JedisSentinelClientBuilder.create()
 
+    /**
+     * Returns the driver providers found on the classpath.
+     *
+     * @return The providers, in the order [ServiceLoader] found them
+     */
+    @JvmStatic
+    fun providers(): List<RedisClientProvider> = providers
+
     /**
      * Creates a new builder instance for the specified Redis client type.
+     * The builder of the most specific class or interface of the type that a provider supports is used.
      *
      * @param type The Redis client type
      * @return A new builder instance for the specified Redis client type
@@ -89,13 +114,8 @@ object RedisClientBuilderFactory {
      */
     @JvmStatic
     fun <T> builder(type: Class<T>): RedisClientBuilder<*> =
-        when {
-            JedisPool::class.java.isAssignableFrom(type) -> jedis()
-            UnifiedJedis::class.java.isAssignableFrom(type) -> unifiedJedis()
-            JedisPooled::class.java.isAssignableFrom(type) -> jedisPooled()
-            RedisClient::class.java.isAssignableFrom(type) -> lettuce()
-            else -> throw IllegalArgumentException("Unsupported Redis client type: ${type.name}")
-        }
+        resolve(type, clientBuilders, resolvedClientBuilders)?.get()
+            ?: throw IllegalArgumentException("Unsupported Redis client type: ${type.name}")
 
     /**
      * Creates a new cluster builder instance for the specified Redis cluster client type.
@@ -106,11 +126,8 @@ object RedisClientBuilderFactory {
      */
     @JvmStatic
     fun <T> clusterBuilder(type: Class<T>): RedisClusterClientBuilder<*> =
-        when {
-            JedisCluster::class.java.isAssignableFrom(type) -> jedisCluster()
-            RedisClusterClient::class.java.isAssignableFrom(type) -> lettuceCluster()
-            else -> throw IllegalArgumentException("Unsupported Redis cluster client type: ${type.name}")
-        }
+        resolve(type, clusterBuilders, resolvedClusterBuilders)?.get()
+            ?: throw IllegalArgumentException("Unsupported Redis cluster client type: ${type.name}")
 
     /**
      * Creates a new sentinel builder instance for the specified Redis sentinel client type.
@@ -121,10 +138,28 @@ object RedisClientBuilderFactory {
      */
     @JvmStatic
     fun <T> sentinelBuilder(type: Class<T>): RedisSentinelClientBuilder<*> =
-        when {
-            JedisSentinelPool::class.java.isAssignableFrom(type) -> jedisSentinel()
-            else -> throw IllegalArgumentException("Unsupported Redis sentinel client type: ${type.name}")
-        }
+        resolve(type, sentinelBuilders, resolvedSentinelBuilders)?.get()
+            ?: throw IllegalArgumentException("Unsupported Redis sentinel client type: ${type.name}")
+
+    /**
+     * Finds the builder of a client type by the names of its classes and interfaces, most specific first,
+     * and caches it. Types no provider supports are not cached, since they are errors.
+     */
+    private fun <B> resolve(
+        type: Class<*>,
+        builders: Map<String, Supplier<out B>>,
+        resolved: ConcurrentHashMap<Class<*>, Supplier<out B>>
+    ): Supplier<out B>? =
+        resolved[type] ?: hierarchy(type).firstNotNullOfOrNull { builders[it.name] }?.also { resolved[type] = it }
+
+    /**
+     * Returns a type's superclasses, starting with the type itself, followed by the interfaces they implement.
+     */
+    private fun hierarchy(type: Class<*>): Sequence<Class<*>> {
+        val classes = generateSequence(type) { it.superclass }
+        val interfaces = classes.flatMap { it.interfaces.asSequence() }
+        return classes + interfaces
+    }
 
     /**
      * Creates a new RedisCircuitBreaker instance.
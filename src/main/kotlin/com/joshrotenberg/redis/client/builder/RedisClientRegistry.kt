@@ -0,0 +1,174 @@
+package com.joshrotenberg.redis.client.builder
+
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Shares clients between the parts of an application that configure the same client.
+ * Each call to a builder's `build()` creates a new client with its own pool, connections and threads, so
+ * building the same configuration in several places multiplies them. The registry instead builds one client
+ * per [RedisClientSpec] and hands out leases to it. The client is closed when the last lease is released.
+ *
+ * ```kotlin
+ * val registry = RedisClientRegistry()
+ * registry.acquire(JedisPooledClientBuilder.create().host("redis")).use { lease ->
+ *     lease.client.set("key", "value")
+ * }
+ * ```
+ *
+ * Clients are built while the registry is locked, so that a spec is never built twice.
+ */
+class RedisClientRegistry : AutoCloseable {
+    private val entries = HashMap<RedisClientSpec, Entry<*>>()
+    private var closed = false
+
+    /**
+     * A shared client and the number of its leases.
+     */
+    private class Entry<T>(val client: T, val closer: (T) -> Unit) {
+        var references = 0
+
+        fun close() = closer(client)
+    }
+
+    /**
+     * A reference to a shared client. Closing the lease releases the reference; it does not close the client
+     * unless it was the last one.
+     *
+     * @property spec The spec of the client
+     * @property client The shared client, which must not be closed directly
+     */
+    class Lease<T> internal constructor(
+        private val registry: RedisClientRegistry,
+        val spec: RedisClientSpec,
+        val client: T
+    ) : AutoCloseable {
+        private val released = AtomicBoolean()
+
+        /**
+         * Releases the reference to the client, once.
+         */
+        override fun close() {
+            if (released.compareAndSet(false, true)) {
+                registry.release(spec)
+            }
+        }
+    }
+
+    /**
+     * The number of clients the registry holds.
+     */
+    val size: Int
+        @Synchronized get() = entries.size
+
+    /**
+     * Returns a lease to the client of a builder's spec, building the client if the registry holds none.
+     *
+     * @param builder The builder
+     * @return A lease to the shared client
+     */
+    fun <T> acquire(builder: RedisClientBuilder<T>): Lease<T> = acquire(builder.spec(), builder::build)
+
+    /**
+     * Returns a lease to the cluster client of a builder's spec, building the client if the registry holds none.
+     *
+     * @param builder The builder
+     * @return A lease to the shared client
+     */
+    fun <T> acquire(builder: RedisClusterClientBuilder<T>): Lease<T> = acquire(builder.spec(), builder::build)
+
+    /**
+     * Returns a lease to the sentinel client of a builder's spec, building the client if the registry holds none.
+     *
+     * @param builder The builder
+     * @return A lease to the shared client
+     */
+    fun <T> acquire(builder: RedisSentinelClientBuilder<T>): Lease<T> = acquire(builder.spec(), builder::build)
+
+    /**
+     * Returns a lease to the client of a spec, building the client if the registry holds none.
+     *
+     * @param spec The spec of the client
+     * @param factory Builds the client
+     * @param closer Closes the client when its last lease is released. Defaults to closing an [AutoCloseable]
+     * @return A lease to the shared client
+     * @throws IllegalStateException if the registry is closed
+     * @throws IllegalArgumentException if the default closer is used and the client is not [AutoCloseable]
+     */
+    @JvmOverloads
+    @Synchronized
+    fun <T> acquire(spec: RedisClientSpec, factory: () -> T, closer: (T) -> Unit = CLOSE): Lease<T> {
+        check(!closed) { "Client registry is closed" }
+        @Suppress("UNCHECKED_CAST")
+        val entry = entries[spec] as Entry<T>? ?: run {
+            // Checked before building when the client class is known, so a rejected client is never built
+            require(closer !== CLOSE || isAutoCloseable(spec) != false) {
+                "${spec.clientType} is not AutoCloseable, so a closer is required"
+            }
+            val client = factory()
+            require(closer !== CLOSE || client is AutoCloseable) {
+                "${spec.clientType} is not AutoCloseable, so a closer is required"
+            }
+            Entry(client, closer).also { entries[spec] = it }
+        }
+        entry.references++
+        return Lease(this, spec, entry.client)
+    }
+
+    /**
+     * Returns the number of leases to the client of a spec.
+     *
+     * @param spec The spec of the client
+     * @return The number of leases, 0 if the registry holds no client for the spec
+     */
+    @Synchronized
+    fun referenceCount(spec: RedisClientSpec): Int = entries[spec]?.references ?: 0
+
+    /**
+     * Closes all clients the registry holds, whether or not they are still leased, and rejects new leases.
+     */
+    override fun close() {
+        val clients = synchronized(this) {
+            closed = true
+            entries.values.toList().also { entries.clear() }
+        }
+        clients.forEach { entry ->
+            try {
+                entry.close()
+            } catch (e: Exception) {
+                logger.log(System.Logger.Level.WARNING, "Closing a shared client failed", e)
+            }
+        }
+    }
+
+    private fun release(spec: RedisClientSpec) {
+        val entry = synchronized(this) {
+            val entry = entries[spec] ?: return
+            entry.references--
+            if (entry.references > 0) {
+                return
+            }
+            entries.remove(spec)
+            entry
+        }
+        entry.close()
+    }
+
+    /**
+     * Returns whether the client class a spec names is [AutoCloseable], or null if the class cannot be loaded.
+     */
+    private fun isAutoCloseable(spec: RedisClientSpec): Boolean? {
+        val loader = Thread.currentThread().contextClassLoader ?: javaClass.classLoader
+        return try {
+            AutoCloseable::class.java.isAssignableFrom(Class.forName(spec.clientType, false, loader))
+        } catch (e: ClassNotFoundException) {
+            null
+        }
+    }
+
+    companion object {
+        private val logger = System.getLogger(RedisClientRegistry::class.java.name)
+
+        // The default closer, compared by identity to check that the client can be closed with it
+        private val CLOSE: (Any?) -> Unit = { (it as AutoCloseable).close() }
+    }
+}
@@ -0,0 +1,85 @@
+package com.joshrotenberg.redis.client.builder
+
+import java.util.Collections
+import java.util.TreeMap
+
+/**
+ * Immutable snapshot of a builder's configuration, returned by the builders' `spec()` methods.
+ * Two builders configured alike return equal specs with equal hash codes, so a spec can be used as a map key,
+ * as [RedisClientRegistry] does to share one client between the builders.
+ *
+ * Settings are compared by value. Collections are copied when the spec is built, so changing a builder
+ * afterwards does not change its specs. Objects without value equality, such as client resources or
+ * custom resilience policies, are compared by identity: builders given the same instance have equal specs.
+ *
+ * @property clientType The name of the client class the builder builds
+ * @property settings The settings, by name, in name order
+ */
+class RedisClientSpec private constructor(
+    val clientType: String,
+    val settings: Map<String, Any?>
+) {
+    /**
+     * Returns the value of a setting.
+     *
+     * @param name The name of the setting
+     * @return The value, or null if it is not set
+     */
+    operator fun get(name: String): Any? = settings[name]
+
+    override fun equals(other: Any?): Boolean =
+        this === other || other is RedisClientSpec && clientType == other.clientType && settings == other.settings
+
+    override fun hashCode(): Int = 31 * clientType.hashCode() + settings.hashCode()
+
+    override fun toString(): String =
+        settings.entries.joinToString(", ", "$clientType(", ")") { (name, value) ->
+            // Never print secrets, which may end up in logs
+            if (value != null && SECRETS.any { name.contains(it, ignoreCase = true) }) "$name=****" else "$name=$value"
+        }
+
+    /**
+     * Builder for [RedisClientSpec].
+     */
+    class Builder internal constructor(private val clientType: String) {
+        private val settings = TreeMap<String, Any?>()
+
+        /**
+         * Sets a setting. Collections, maps and arrays are copied.
+         *
+         * @param name The name of the setting
+         * @param value The value
+         * @return The builder instance
+         */
+        fun set(name: String, value: Any?): Builder = apply { settings[name] = freeze(value) }
+
+        /**
+         * Builds the spec.
+         *
+         * @return A new RedisClientSpec
+         */
+        fun build(): RedisClientSpec = RedisClientSpec(clientType, Collections.unmodifiableMap(TreeMap(settings)))
+
+        private fun freeze(value: Any?): Any? =
+            when (value) {
+                is Set<*> -> Collections.unmodifiableSet(value.mapTo(LinkedHashSet()) { freeze(it) })
+                is Collection<*> -> Collections.unmodifiableList(value.map { freeze(it) })
+                is Map<*, *> -> Collections.unmodifiableMap(value.entries.associate { it.key to freeze(it.value) })
+                is Array<*> -> Collections.unmodifiableList(value.map { freeze(it) })
+                else -> value
+            }
+    }
+
+    companion object {
+        private val SECRETS = listOf("password", "secret", "token")
+
+        /**
+         * Creates a builder for the spec of a client class.
+         *
+         * @param clientType The client class the builder builds
+         * @return A new Builder
+         */
+        @JvmStatic
+        fun builder(clientType: Class<*>): Builder = Builder(clientType.name)
+    }
+}
@@ -66,6 +66,8 @@ interface RedisClusterClientBuilder<T> {
     /**
      * Configures a circuit breaker for the Redis cluster client.
      * The provided function will be used to configure the circuit breaker.
+     * Each cluster node gets its own breaker with these settings, so an unhealthy shard fails fast
+     * without rejecting commands for the other shards.
      *
      * @param configurer A function that configures the circuit breaker
      * @return This builder instance
@@ -108,6 +110,14 @@ interface RedisClusterClientBuilder<T> {
      */
     fun withRateLimiter(configurer: (RedisRateLimiter<T>) -> RedisRateLimiter<T>): RedisClusterClientBuilder<T>
 
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     * Builders configured alike return equal specs, with which [RedisClientRegistry] shares one client.
+     *
+     * @return The spec of the cluster client that [build] returns
+     */
+    fun spec(): RedisClientSpec
+
     /**
      * Builds and returns the Redis cluster client instance.
      *
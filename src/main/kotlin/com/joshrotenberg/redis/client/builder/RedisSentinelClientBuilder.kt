@@ -116,6 +116,14 @@ interface RedisSentinelClientBuilder<T> {
      */
     fun withRateLimiter(configurer: (RedisRateLimiter<T>) -> RedisRateLimiter<T>): RedisSentinelClientBuilder<T>
 
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     * Builders configured alike return equal specs, with which [RedisClientRegistry] shares one client.
+     *
+     * @return The spec of the client that [build] returns
+     */
+    fun spec(): RedisClientSpec
+
     /**
      * Builds and returns the Redis client instance configured with sentinel support.
      *
@@ -0,0 +1,16 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * The order in which a bounded client-side cache evicts entries when it is full.
+ */
+enum class CacheEvictionPolicy {
+    /**
+     * Evicts the entry that was read or written least recently.
+     */
+    LRU,
+
+    /**
+     * Evicts the entry that was written first, regardless of reads.
+     */
+    FIFO
+}
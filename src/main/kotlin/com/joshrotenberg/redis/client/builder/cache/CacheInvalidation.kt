@@ -0,0 +1,23 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * How a [RedisTieredCache] learns that other processes changed a key it holds in its L1.
+ */
+enum class CacheInvalidation {
+    /**
+     * No invalidation: an L1 entry is only replaced when it expires, is refreshed or is written locally.
+     */
+    NONE,
+
+    /**
+     * Writes and invalidations are announced on a pub/sub channel that every cache instance subscribes to.
+     * Only changes made through a tiered cache are seen.
+     */
+    PUBSUB,
+
+    /**
+     * Redis reports changes of tracked key prefixes with CLIENT TRACKING in broadcast mode, so changes made
+     * by any client are seen. The store must support key tracking.
+     */
+    TRACKING
+}
@@ -0,0 +1,31 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * Metrics of a client-side cache.
+ */
+interface ClientSideCacheMetrics {
+    /**
+     * The number of reads answered from the cache.
+     */
+    val hits: Long
+
+    /**
+     * The number of reads that went to Redis.
+     */
+    val misses: Long
+
+    /**
+     * The number of entries removed because Redis reported that their key changed.
+     */
+    val invalidations: Long
+
+    /**
+     * The number of entries removed to stay within the cache's bounds or because they expired.
+     */
+    val evictions: Long
+
+    /**
+     * The number of entries in the cache.
+     */
+    val size: Long
+}
@@ -0,0 +1,100 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * Count-Min sketch of 4-bit counters that estimates how often keys were accessed recently, for TinyLFU
+ * admission. Each key has one counter in each of four rows, and its frequency is the smallest of them.
+ * Sixteen counters are packed into each long, so the sketch takes about 8 bytes per cached entry.
+ *
+ * After a sample of ten accesses per entry, every counter is halved, so old popularity fades and keys
+ * that were hot a while ago do not keep newer ones out of the cache.
+ *
+ * The sketch is not thread-safe; callers hold the lock of the cache that owns it.
+ *
+ * @param maximumSize The expected maximum number of entries
+ */
+internal class FrequencySketch(maximumSize: Long) {
+    private val table: LongArray
+    private val tableMask: Int
+    private val sampleSize: Long
+    private var size = 0L
+
+    init {
+        val capacity = maximumSize.coerceIn(MIN_CAPACITY, MAX_CAPACITY).toInt()
+        table = LongArray(Integer.highestOneBit(capacity - 1) shl 1)
+        tableMask = table.size - 1
+        sampleSize = SAMPLE_FACTOR * capacity
+    }
+
+    /**
+     * Returns the estimated number of recent accesses of a key, at most 15.
+     *
+     * @param hash The hash code of the key
+     */
+    fun frequency(hash: Int): Int {
+        val spread = spread(hash)
+        val start = (spread and 3) shl 2
+        var frequency = Int.MAX_VALUE
+        for (row in 0 until ROWS) {
+            val offset = (start + row) shl 2
+            val count = ((table[indexOf(spread, row)] ushr offset) and COUNTER_MASK).toInt()
+            frequency = minOf(frequency, count)
+        }
+        return frequency
+    }
+
+    /**
+     * Records an access of a key, halving all counters once the sample is full.
+     *
+     * @param hash The hash code of the key
+     */
+    fun increment(hash: Int) {
+        val spread = spread(hash)
+        val start = (spread and 3) shl 2
+        var added = false
+        for (row in 0 until ROWS) {
+            val index = indexOf(spread, row)
+            val offset = (start + row) shl 2
+            if (((table[index] ushr offset) and COUNTER_MASK) != COUNTER_MASK) {
+                table[index] += 1L shl offset
+                added = true
+            }
+        }
+        if (added && ++size == sampleSize) {
+            reset()
+        }
+    }
+
+    private fun reset() {
+        for (i in table.indices) {
+            table[i] = (table[i] ushr 1) and RESET_MASK
+        }
+        size /= 2
+    }
+
+    private fun indexOf(spread: Int, row: Int): Int {
+        var h = (spread.toLong() + SEEDS[row]) * SEEDS[row]
+        h += h ushr 32
+        return h.toInt() and tableMask
+    }
+
+    private fun spread(hash: Int): Int {
+        var h = hash * -0x61c88647
+        h = h xor (h ushr 17)
+        return h * -0x3361d2af
+    }
+
+    private companion object {
+        const val ROWS = 4
+        const val SAMPLE_FACTOR = 10L
+        const val MIN_CAPACITY = 16L
+        const val MAX_CAPACITY = 1L shl 30
+        const val COUNTER_MASK = 0xFL
+        const val RESET_MASK = 0x7777777777777777L
+        val SEEDS = longArrayOf(
+            0xc3a5c85c97cb3127uL.toLong(),
+            0xb492b66fbe98f273uL.toLong(),
+            0x9ae16a3b2f90404fuL.toLong(),
+            0xcbf29ce484222325uL.toLong()
+        )
+    }
+}
@@ -0,0 +1,182 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Bounded in-process cache of values read from Redis, for client-side caching.
+ * The cache is bounded by its number of entries and, optionally, by the total weight of its entries in
+ * bytes as estimated by a weigher. An entry can also expire a fixed time after it was written, which
+ * bounds how stale a value can get if an invalidation from Redis is lost, for example during a reconnect.
+ *
+ * All operations take the cache's lock, which keeps eviction order and weights consistent; reads are
+ * short map lookups, so the lock is held only briefly.
+ *
+ * @param K The key type
+ * @param V The value type
+ * @property maxEntries The maximum number of entries
+ * @property maxBytes The maximum total weight of the entries, or 0 for no limit
+ * @param ttlMs The time after which an entry expires, or 0 to keep it until it is evicted or invalidated
+ * @param evictionPolicy The order in which entries are evicted when the cache is full
+ * @property weigher Estimates the size of an entry in bytes
+ * @property clock The time source in nanoseconds
+ */
+class LocalCache<K : Any, V : Any> @JvmOverloads constructor(
+    private val maxEntries: Int,
+    private val maxBytes: Long,
+    ttlMs: Long,
+    evictionPolicy: CacheEvictionPolicy,
+    private val weigher: (K, V) -> Int,
+    private val clock: () -> Long = System::nanoTime
+) : ClientSideCacheStorage<K, V> {
+    private class Entry<V>(val value: V, val weight: Int, val writtenAt: Long)
+
+    private val ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs)
+    private val entries = LinkedHashMap<K, Entry<V>>(16, 0.75f, evictionPolicy == CacheEvictionPolicy.LRU)
+    private var bytes = 0L
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+    private val invalidations = LongAdder()
+    private val evictions = LongAdder()
+
+    init {
+        require(maxEntries > 0) { "maxEntries must be positive" }
+        require(maxBytes >= 0) { "maxBytes must not be negative" }
+        require(ttlMs >= 0) { "ttlMs must not be negative" }
+    }
+
+    /**
+     * The metrics of this cache.
+     */
+    override val metrics: ClientSideCacheMetrics = object : ClientSideCacheMetrics {
+        override val hits: Long
+            get() = this@LocalCache.hits.sum()
+        override val misses: Long
+            get() = this@LocalCache.misses.sum()
+        override val invalidations: Long
+            get() = this@LocalCache.invalidations.sum()
+        override val evictions: Long
+            get() = this@LocalCache.evictions.sum()
+        override val size: Long
+            get() = synchronized(this@LocalCache) { entries.size.toLong() }
+    }
+
+    /**
+     * The total weight of the entries in bytes.
+     */
+    val weight: Long
+        @Synchronized get() = bytes
+
+    /**
+     * Returns the cached value of a key, counting a hit or a miss.
+     *
+     * @param key The key to look up
+     * @return The value, or null if the key is not cached or has expired
+     */
+    override fun get(key: K): V? {
+        val value = synchronized(this) {
+            val entry = entries[key]
+            if (entry != null && isExpired(entry)) {
+                remove(key)
+                evictions.increment()
+                null
+            } else {
+                entry?.value
+            }
+        }
+        if (value == null) misses.increment() else hits.increment()
+        return value
+    }
+
+    /**
+     * Caches the value of a key, evicting other entries if the cache is over its bounds.
+     * A value heavier than the whole cache is not cached.
+     *
+     * @param key The key
+     * @param value The value read from Redis
+     */
+    override fun put(key: K, value: V) {
+        val weight = weigher(key, value)
+        synchronized(this) {
+            if (maxBytes > 0 && weight > maxBytes) {
+                remove(key)
+                return
+            }
+            entries.put(key, Entry(value, weight, clock()))?.let { bytes -= it.weight }
+            bytes += weight
+            evictOverflow()
+        }
+    }
+
+    /**
+     * Removes a key because Redis reported that it changed.
+     *
+     * @param key The key to remove
+     */
+    override fun invalidate(key: K) {
+        val removed = synchronized(this) { remove(key) }
+        if (removed) {
+            invalidations.increment()
+        }
+    }
+
+    /**
+     * Removes all keys, for example when Redis flushed its database or the tracking connection reconnected.
+     */
+    override fun invalidateAll() {
+        val removed = synchronized(this) {
+            val size = entries.size
+            entries.clear()
+            bytes = 0
+            size
+        }
+        invalidations.add(removed.toLong())
+    }
+
+    private fun isExpired(entry: Entry<V>): Boolean =
+        ttlNanos > 0 && clock() - entry.writtenAt >= ttlNanos
+
+    private fun remove(key: K): Boolean {
+        val entry = entries.remove(key) ?: return false
+        bytes -= entry.weight
+        return true
+    }
+
+    /**
+     * Evicts entries in policy order until the cache is within its bounds.
+     */
+    private fun evictOverflow() {
+        val iterator = entries.values.iterator()
+        while ((entries.size > maxEntries || (maxBytes > 0 && bytes > maxBytes)) && iterator.hasNext()) {
+            bytes -= iterator.next().weight
+            iterator.remove()
+            evictions.increment()
+        }
+    }
+
+    companion object {
+        // Object headers, references and the map entry of a cached String pair
+        private const val STRING_ENTRY_OVERHEAD = 96
+
+        /**
+         * Creates a cache of String keys and values, weighed as UTF-16 characters plus the object overhead.
+         *
+         * @param maxEntries The maximum number of entries
+         * @param maxBytes The maximum total weight of the entries, or 0 for no limit
+         * @param ttlMs The time after which an entry expires, or 0 to keep it until it is evicted or invalidated
+         * @param evictionPolicy The order in which entries are evicted when the cache is full
+         * @return A new LocalCache
+         */
+        @JvmStatic
+        fun forStrings(
+            maxEntries: Int,
+            maxBytes: Long,
+            ttlMs: Long,
+            evictionPolicy: CacheEvictionPolicy
+        ): LocalCache<String, String> =
+            LocalCache(maxEntries, maxBytes, ttlMs, evictionPolicy, { key, value ->
+                STRING_ENTRY_OVERHEAD + 2 * (key.length + value.length)
+            })
+    }
+}
@@ -0,0 +1,508 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import java.nio.ByteBuffer
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Client-side cache storage that keeps keys and values in direct memory, outside the Java heap.
+ * A near cache of several gigabytes on the heap lengthens garbage collection pauses, because the
+ * collector has to trace and copy every cached value. Here, the heap only holds an index of primitive
+ * arrays, about 16 bytes per entry, and the collector sees a few large buffers instead of many values.
+ *
+ * Memory is allocated in pages of [pageBytes], up to [maxBytes] in total. Each page serves one size
+ * class and is split into slots of that size, a power of two from 64 bytes up to the page size, so an
+ * entry wastes less than half its slot and freed slots are reused without compaction. A slot holds a
+ * small header, the key and the value.
+ *
+ * Keys are found through an open-addressing hash table with linear probing, whose entries are the hash
+ * of a key and the handle of its slot. When a size class has no free slot and no page is left, pages are
+ * rebalanced before entries are evicted, so that a change in the sizes of the values does not leave the
+ * memory with the size classes that were used first. A clock sweeps all pages: a page read since the
+ * hand last passed it gets a second chance, and a page of another size class that was not read is
+ * emptied and handed to the size class that needs a slot. A size class with pages of its own only looks
+ * at a few pages before a clock sweeps its own slots instead and evicts the first slot that was not read
+ * since the last sweep; a size class without pages keeps looking until it gets one.
+ *
+ * Direct memory is counted against `-XX:MaxDirectMemorySize` and released when the cache is garbage
+ * collected. All operations take the cache's lock; reads copy the value out of direct memory under it.
+ *
+ * @property maxBytes The maximum amount of direct memory to allocate
+ * @param ttlMs The time after which an entry expires, or 0 to keep it until it is evicted or invalidated
+ * @property pageBytes The size of a page, and of the largest entry that can be cached
+ * @property clock The time source in nanoseconds
+ */
+class OffHeapCache @JvmOverloads constructor(
+    private val maxBytes: Long,
+    ttlMs: Long = 0,
+    private val pageBytes: Int = DEFAULT_PAGE_BYTES,
+    private val clock: () -> Long = System::nanoTime
+) : ClientSideCacheStorage<String, String> {
+
+    /**
+     * The pages of one slot size, the handles of the slots that are free and the position of the clock hand.
+     * Slots are numbered across the pages of the class for the clock hand.
+     */
+    private inner class SizeClass(val index: Int, val slotBytes: Int) {
+        val slotsPerPage = pageBytes / slotBytes
+        var pages = IntArray(INITIAL_ARRAY_SIZE)
+        var pageCount = 0
+        var free = LongArray(INITIAL_ARRAY_SIZE)
+        var freeCount = 0
+        var hand = 0
+
+        val slotCount: Int
+            get() = pageCount * slotsPerPage
+
+        fun addPage(page: Int) {
+            if (pageCount == pages.size) pages = pages.copyOf(pageCount * 2)
+            pageClass[page] = index
+            pageOrdinal[page] = pageCount
+            pages[pageCount++] = page
+            val buffer = this@OffHeapCache.pages[page]!!
+            for (slot in slotsPerPage - 1 downTo 0) {
+                // A page taken from another size class still holds that class's slots
+                buffer.putInt(slot * slotBytes + FLAGS, 0)
+                pushFree(handle(page, slot))
+            }
+        }
+
+        /**
+         * Removes a page whose entries have been evicted, moving the last page of the class into its place.
+         */
+        fun removePage(page: Int) {
+            var kept = 0
+            for (i in 0 until freeCount) {
+                if (pageOf(free[i]) != page) free[kept++] = free[i]
+            }
+            freeCount = kept
+            val ordinal = pageOrdinal[page]
+            val last = pages[--pageCount]
+            pages[ordinal] = last
+            pageOrdinal[last] = ordinal
+            if (hand >= slotCount) hand = 0
+        }
+
+        fun pushFree(handle: Long) {
+            if (freeCount == free.size) free = free.copyOf(freeCount * 2)
+            free[freeCount++] = handle
+        }
+
+        fun popFree(): Long = if (freeCount == 0) NO_SLOT else free[--freeCount]
+
+        fun handleOf(ordinal: Int): Long = handle(pages[ordinal / slotsPerPage], ordinal % slotsPerPage)
+    }
+
+    private val ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs)
+    private val maxPages: Int
+    private val pages: Array<ByteBuffer?>
+    private val pageClass: IntArray
+    private val pageOrdinal: IntArray
+    private val pageReferenced: BooleanArray
+    private var pageCount = 0
+    private var pageHand = 0
+    private val classes: Array<SizeClass>
+
+    // Index: the hash and slot handle of each key, 0 marking an empty position
+    private var hashes = IntArray(INITIAL_INDEX_SIZE)
+    private var handles = LongArray(INITIAL_INDEX_SIZE)
+    private var mask = INITIAL_INDEX_SIZE - 1
+    private var size = 0
+
+    private val hits = LongAdder()
+    private val misses = LongAdder()
+    private val invalidations = LongAdder()
+    private val evictions = LongAdder()
+
+    init {
+        require(pageBytes >= MIN_SLOT_BYTES) { "pageBytes must be at least $MIN_SLOT_BYTES" }
+        require(maxBytes >= pageBytes) { "maxBytes must be at least pageBytes" }
+        require(ttlMs >= 0) { "ttlMs must not be negative" }
+        maxPages = minOf(maxBytes / pageBytes, Int.MAX_VALUE.toLong()).toInt()
+        pages = arrayOfNulls(maxPages)
+        pageClass = IntArray(maxPages)
+        pageOrdinal = IntArray(maxPages)
+        pageReferenced = BooleanArray(maxPages)
+        val slotSizes = generateSequence(MIN_SLOT_BYTES) { it * 2 }.takeWhile { it <= pageBytes }.toList()
+        classes = Array(slotSizes.size) { SizeClass(it, slotSizes[it]) }
+    }
+
+    override val metrics: ClientSideCacheMetrics = object : ClientSideCacheMetrics {
+        override val hits: Long
+            get() = this@OffHeapCache.hits.sum()
+        override val misses: Long
+            get() = this@OffHeapCache.misses.sum()
+        override val invalidations: Long
+            get() = this@OffHeapCache.invalidations.sum()
+        override val evictions: Long
+            get() = this@OffHeapCache.evictions.sum()
+        override val size: Long
+            get() = synchronized(this@OffHeapCache) { this@OffHeapCache.size.toLong() }
+    }
+
+    /**
+     * The amount of direct memory allocated so far.
+     */
+    val allocatedBytes: Long
+        @Synchronized get() = pageCount.toLong() * pageBytes
+
+    override fun get(key: String): String? = getBytes(key.toByteArray(Charsets.UTF_8))?.toString(Charsets.UTF_8)
+
+    override fun put(key: String, value: String) =
+        putBytes(key.toByteArray(Charsets.UTF_8), value.toByteArray(Charsets.UTF_8))
+
+    override fun invalidate(key: String) {
+        if (remove(key.toByteArray(Charsets.UTF_8))) {
+            invalidations.increment()
+        }
+    }
+
+    override fun invalidateAll() {
+        val removed = synchronized(this) {
+            val removed = size
+            hashes.fill(0)
+            handles.fill(0)
+            size = 0
+            pageReferenced.fill(false)
+            for (sizeClass in classes) {
+                sizeClass.freeCount = 0
+                sizeClass.hand = 0
+                for (ordinal in sizeClass.slotCount - 1 downTo 0) {
+                    val handle = sizeClass.handleOf(ordinal)
+                    bufferOf(handle).putInt(offsetOf(handle) + FLAGS, 0)
+                    sizeClass.pushFree(handle)
+                }
+            }
+            removed
+        }
+        invalidations.add(removed.toLong())
+    }
+
+    /**
+     * Returns a copy of the cached value of a key, counting a hit or a miss.
+     *
+     * @param key The key bytes
+     * @return The value bytes, or null if the key is not cached or has expired
+     */
+    fun getBytes(key: ByteArray): ByteArray? {
+        val value = read(key, true)
+        if (value == null) misses.increment() else hits.increment()
+        return value
+    }
+
+    /**
+     * Returns a copy of the cached value of a key without counting it or marking it as recently read.
+     *
+     * @param key The key bytes
+     * @return The value bytes, or null if the key is not cached or has expired
+     */
+    fun peekBytes(key: ByteArray): ByteArray? = read(key, false)
+
+    /**
+     * Caches the value of a key, taking a cold page from another size class or evicting entries of the
+     * same size class if needed. An entry larger than a page is not cached.
+     *
+     * @param key The key bytes
+     * @param value The value bytes
+     */
+    fun putBytes(key: ByteArray, value: ByteArray) {
+        val hash = hash(key)
+        val needed = HEADER_BYTES.toLong() + key.size + value.size
+        synchronized(this) {
+            val existing = find(key, hash)
+            if (existing >= 0) {
+                removeAt(existing)
+            }
+            val sizeClass = classes.firstOrNull { it.slotBytes >= needed } ?: return
+            val handle = allocate(sizeClass) ?: return
+            val buffer = bufferOf(handle)
+            val offset = offsetOf(handle)
+            buffer.putInt(offset + HASH, hash)
+            buffer.putInt(offset + KEY_LENGTH, key.size)
+            buffer.putInt(offset + VALUE_LENGTH, value.size)
+            buffer.putInt(offset + FLAGS, USED)
+            buffer.putLong(offset + WRITTEN_AT, clock())
+            buffer.put(offset + HEADER_BYTES, key)
+            buffer.put(offset + HEADER_BYTES + key.size, value)
+            pageReferenced[pageOf(handle)] = true
+            insert(hash, handle)
+        }
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key bytes
+     * @return true if the key was cached
+     */
+    fun remove(key: ByteArray): Boolean {
+        val hash = hash(key)
+        synchronized(this) {
+            val index = find(key, hash)
+            if (index < 0) {
+                return false
+            }
+            removeAt(index)
+            return true
+        }
+    }
+
+    private fun read(key: ByteArray, reference: Boolean): ByteArray? {
+        val hash = hash(key)
+        synchronized(this) {
+            val index = find(key, hash)
+            if (index < 0) {
+                return null
+            }
+            val handle = handles[index]
+            val buffer = bufferOf(handle)
+            val offset = offsetOf(handle)
+            if (ttlNanos > 0 && clock() - buffer.getLong(offset + WRITTEN_AT) >= ttlNanos) {
+                removeAt(index)
+                evictions.increment()
+                return null
+            }
+            if (reference) {
+                buffer.putInt(offset + FLAGS, USED or REFERENCED)
+                pageReferenced[pageOf(handle)] = true
+            }
+            val keyLength = buffer.getInt(offset + KEY_LENGTH)
+            val value = ByteArray(buffer.getInt(offset + VALUE_LENGTH))
+            buffer.get(offset + HEADER_BYTES + keyLength, value)
+            return value
+        }
+    }
+
+    /**
+     * Takes a free slot of a size class, allocating a new page if the budget allows, and otherwise taking a
+     * cold page from another size class or evicting from this one.
+     *
+     * @return The handle of the slot, or null if the class has no slots and no page could be taken
+     */
+    private fun allocate(sizeClass: SizeClass): Long? {
+        var handle = sizeClass.popFree()
+        if (handle == NO_SLOT && pageCount < maxPages) {
+            pages[pageCount] = ByteBuffer.allocateDirect(pageBytes)
+            sizeClass.addPage(pageCount++)
+            handle = sizeClass.popFree()
+        }
+        if (handle == NO_SLOT && reassignPage(sizeClass)) {
+            handle = sizeClass.popFree()
+        }
+        if (handle == NO_SLOT && evictFrom(sizeClass)) {
+            handle = sizeClass.popFree()
+        }
+        return if (handle == NO_SLOT) null else handle
+    }
+
+    /**
+     * Advances the page clock until it finds a page of another size class that was not read or written
+     * since the hand last passed it, clearing the referenced mark of the pages it skips, and moves that
+     * page to a size class. A size class with pages looks at no more than [PAGE_SCAN_LIMIT] pages, so
+     * pages only move when another size class has gone cold; one without pages sweeps twice if needed.
+     *
+     * @return true if a page was moved
+     */
+    private fun reassignPage(sizeClass: SizeClass): Boolean {
+        val limit = if (sizeClass.pageCount == 0) 2 * pageCount else minOf(pageCount, PAGE_SCAN_LIMIT)
+        repeat(limit) {
+            val page = pageHand
+            pageHand = (pageHand + 1) % pageCount
+            if (pageClass[page] == sizeClass.index) {
+                return@repeat
+            }
+            if (pageReferenced[page]) {
+                pageReferenced[page] = false
+                return@repeat
+            }
+            movePage(page, sizeClass)
+            return true
+        }
+        return false
+    }
+
+    /**
+     * Evicts the entries of a page and hands the page to another size class.
+     */
+    private fun movePage(page: Int, target: SizeClass) {
+        val source = classes[pageClass[page]]
+        val buffer = pages[page]!!
+        for (slot in 0 until source.slotsPerPage) {
+            val offset = slot * source.slotBytes
+            if (buffer.getInt(offset + FLAGS) and USED != 0) {
+                removeAt(indexOf(handle(page, slot), buffer.getInt(offset + HASH)))
+                evictions.increment()
+            }
+        }
+        source.removePage(page)
+        target.addPage(page)
+    }
+
+    /**
+     * Advances the clock hand of a size class until it finds a slot that was not read since the hand last
+     * passed it, clearing the referenced bit of the slots it skips, and evicts that slot's entry.
+     *
+     * @return true if an entry was evicted
+     */
+    private fun evictFrom(sizeClass: SizeClass): Boolean {
+        val slotCount = sizeClass.slotCount
+        repeat(2 * slotCount) {
+            val handle = sizeClass.handleOf(sizeClass.hand)
+            sizeClass.hand = (sizeClass.hand + 1) % slotCount
+            val buffer = bufferOf(handle)
+            val offset = offsetOf(handle)
+            val flags = buffer.getInt(offset + FLAGS)
+            if (flags and REFERENCED != 0) {
+                buffer.putInt(offset + FLAGS, flags and REFERENCED.inv())
+            } else if (flags and USED != 0) {
+                removeAt(indexOf(handle, buffer.getInt(offset + HASH)))
+                evictions.increment()
+                return true
+            }
+        }
+        return false
+    }
+
+    private fun find(key: ByteArray, hash: Int): Int {
+        var index = hash and mask
+        while (true) {
+            val handle = handles[index]
+            if (handle == 0L) {
+                return -1
+            }
+            if (hashes[index] == hash && keyEquals(handle, key)) {
+                return index
+            }
+            index = (index + 1) and mask
+        }
+    }
+
+    private fun indexOf(handle: Long, hash: Int): Int {
+        var index = hash and mask
+        while (handles[index] != handle) {
+            index = (index + 1) and mask
+        }
+        return index
+    }
+
+    private fun keyEquals(handle: Long, key: ByteArray): Boolean {
+        val buffer = bufferOf(handle)
+        val offset = offsetOf(handle)
+        if (buffer.getInt(offset + KEY_LENGTH) != key.size) {
+            return false
+        }
+        for (i in key.indices) {
+            if (buffer.get(offset + HEADER_BYTES + i) != key[i]) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private fun insert(hash: Int, handle: Long) {
+        if ((size + 1) * LOAD_FACTOR_DENOMINATOR > handles.size * LOAD_FACTOR_NUMERATOR) {
+            resize()
+        }
+        var index = hash and mask
+        while (handles[index] != 0L) {
+            index = (index + 1) and mask
+        }
+        hashes[index] = hash
+        handles[index] = handle
+        size++
+    }
+
+    private fun resize() {
+        val oldHashes = hashes
+        val oldHandles = handles
+        hashes = IntArray(oldHandles.size * 2)
+        handles = LongArray(oldHandles.size * 2)
+        mask = handles.size - 1
+        for (i in oldHandles.indices) {
+            if (oldHandles[i] != 0L) {
+                var index = oldHashes[i] and mask
+                while (handles[index] != 0L) {
+                    index = (index + 1) and mask
+                }
+                hashes[index] = oldHashes[i]
+                handles[index] = oldHandles[i]
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of the entry at an index position, and shifts later entries of the same probe
+     * sequence back so that lookups never need tombstones.
+     */
+    private fun removeAt(index: Int) {
+        val handle = handles[index]
+        bufferOf(handle).putInt(offsetOf(handle) + FLAGS, 0)
+        classes[pageClass[pageOf(handle)]].pushFree(handle)
+
+        var hole = index
+        var next = index
+        while (true) {
+            next = (next + 1) and mask
+            if (handles[next] == 0L) {
+                break
+            }
+            val home = hashes[next] and mask
+            val reachable = if (hole <= next) home in (hole + 1)..next else home > hole || home <= next
+            if (!reachable) {
+                hashes[hole] = hashes[next]
+                handles[hole] = handles[next]
+                hole = next
+            }
+        }
+        hashes[hole] = 0
+        handles[hole] = 0
+        size--
+    }
+
+    private fun handle(page: Int, slot: Int): Long = ((page + 1).toLong() shl 32) or slot.toLong()
+
+    private fun pageOf(handle: Long): Int = (handle ushr 32).toInt() - 1
+
+    private fun slotOf(handle: Long): Int = handle.toInt()
+
+    private fun bufferOf(handle: Long): ByteBuffer = pages[pageOf(handle)]!!
+
+    private fun offsetOf(handle: Long): Int = slotOf(handle) * classes[pageClass[pageOf(handle)]].slotBytes
+
+    private fun hash(key: ByteArray): Int {
+        var h = key.contentHashCode()
+        h = h xor (h ushr 16)
+        h *= MIX_1
+        h = h xor (h ushr 13)
+        h *= MIX_2
+        return h xor (h ushr 16)
+    }
+
+    companion object {
+        /**
+         * The default page size, 1 MiB.
+         */
+        const val DEFAULT_PAGE_BYTES = 1 shl 20
+
+        private const val MIN_SLOT_BYTES = 64
+        private const val PAGE_SCAN_LIMIT = 16
+        private const val NO_SLOT = 0L
+        private const val INITIAL_ARRAY_SIZE = 16
+        private const val INITIAL_INDEX_SIZE = 1024
+        private const val LOAD_FACTOR_NUMERATOR = 3
+        private const val LOAD_FACTOR_DENOMINATOR = 4
+        private val MIX_1 = 0x85ebca6bL.toInt()
+        private val MIX_2 = 0xc2b2ae35L.toInt()
+
+        // Slot header: the key's hash, the key and value lengths, the flags and the time the entry was written
+        private const val HASH = 0
+        private const val KEY_LENGTH = 4
+        private const val VALUE_LENGTH = 8
+        private const val FLAGS = 12
+        private const val WRITTEN_AT = 16
+        private const val HEADER_BYTES = 24
+
+        private const val USED = 1
+        private const val REFERENCED = 2
+    }
+}
@@ -0,0 +1,117 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import java.nio.ByteBuffer
+
+/**
+ * A value in the L1 of a [RedisTieredCache], with the times it is due for refresh and expires and how
+ * long it took to load, in nanoseconds.
+ */
+internal class TieredEntry(
+    val value: String,
+    val refreshAt: Long,
+    val expiresAt: Long,
+    val loadNanos: Long
+)
+
+/**
+ * The storage of the L1 of a [RedisTieredCache]. Callers hold the cache's L1 lock around every operation.
+ */
+internal interface TieredL1 {
+    /** The number of entries. */
+    val size: Int
+
+    /** The number of entries evicted to stay within the storage's bounds. */
+    val evictions: Long
+
+    /** Returns the entry of a key and records the access, or null if the key is not cached. */
+    fun get(key: String): TieredEntry?
+
+    /** Caches the entry of a key. */
+    fun put(key: String, entry: TieredEntry)
+
+    /** Removes a key, returning true if it was cached. */
+    fun remove(key: String): Boolean
+
+    /** Removes a key if it still holds the given entry, returning true if it did. */
+    fun removeIfSame(key: String, entry: TieredEntry): Boolean
+
+    /** Removes all keys, returning how many there were. */
+    fun clear(): Int
+}
+
+/**
+ * L1 on the heap, bounded by weight with Window TinyLFU eviction.
+ */
+internal class HeapL1(maxWeight: Long, weigher: (String, String) -> Int) : TieredL1 {
+    private val cache = TinyLfuCache<String, TieredEntry>(maxWeight) { key, entry -> weigher(key, entry.value) }
+
+    override val size: Int
+        get() = cache.size
+
+    override val evictions: Long
+        get() = cache.evictions
+
+    override fun get(key: String): TieredEntry? = cache.get(key)
+
+    override fun put(key: String, entry: TieredEntry) = cache.put(key, entry)
+
+    override fun remove(key: String): Boolean = cache.remove(key)
+
+    override fun removeIfSame(key: String, entry: TieredEntry): Boolean = cache.peek(key) === entry && cache.remove(key)
+
+    override fun clear(): Int = cache.clear()
+}
+
+/**
+ * L1 in direct memory, bounded by bytes with clock eviction, see [OffHeapCache].
+ * An entry is stored as its three times followed by its value in UTF-8.
+ */
+internal class OffHeapL1(private val cache: OffHeapCache) : TieredL1 {
+    override val size: Int
+        get() = cache.metrics.size.toInt()
+
+    override val evictions: Long
+        get() = cache.metrics.evictions
+
+    override fun get(key: String): TieredEntry? = cache.getBytes(key.toByteArray(Charsets.UTF_8))?.let(::decode)
+
+    override fun put(key: String, entry: TieredEntry) {
+        val value = entry.value.toByteArray(Charsets.UTF_8)
+        val bytes = ByteBuffer.allocate(TIMES_BYTES + value.size)
+            .putLong(entry.refreshAt)
+            .putLong(entry.expiresAt)
+            .putLong(entry.loadNanos)
+            .put(value)
+            .array()
+        cache.putBytes(key.toByteArray(Charsets.UTF_8), bytes)
+    }
+
+    override fun remove(key: String): Boolean = cache.remove(key.toByteArray(Charsets.UTF_8))
+
+    override fun removeIfSame(key: String, entry: TieredEntry): Boolean {
+        val keyBytes = key.toByteArray(Charsets.UTF_8)
+        val stored = cache.peekBytes(keyBytes) ?: return false
+        // Entries are copied out of direct memory, so they are compared by their expiry rather than identity
+        return ByteBuffer.wrap(stored).getLong(Long.SIZE_BYTES) == entry.expiresAt && cache.remove(keyBytes)
+    }
+
+    override fun clear(): Int {
+        val size = this.size
+        cache.invalidateAll()
+        return size
+    }
+
+    private fun decode(bytes: ByteArray): TieredEntry {
+        val buffer = ByteBuffer.wrap(bytes)
+        return TieredEntry(
+            String(bytes, TIMES_BYTES, bytes.size - TIMES_BYTES, Charsets.UTF_8),
+            buffer.getLong(),
+            buffer.getLong(),
+            buffer.getLong()
+        )
+    }
+
+    private companion object {
+        const val TIMES_BYTES = 3 * Long.SIZE_BYTES
+    }
+}
@@ -0,0 +1,239 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+/**
+ * Bounded map with Window TinyLFU eviction, the L1 of a [RedisTieredCache].
+ * New entries enter a small LRU window, about 1% of the capacity. Entries leaving the window compete for
+ * the main space, a segmented LRU split into probation and protected segments: a candidate is admitted
+ * only if a [FrequencySketch] estimates it was accessed more often than the entry it would evict. The
+ * window absorbs bursts of new keys, and the admission filter keeps one-off reads, such as a scan, from
+ * flushing the keys that are read all the time.
+ *
+ * The cache is bounded by the total weight of its entries. Entries are kept in intrusive linked lists,
+ * so moving an entry between segments allocates nothing.
+ *
+ * The cache is not thread-safe; callers hold a lock around every operation.
+ *
+ * @param K The key type
+ * @param V The value type
+ * @property maxWeight The maximum total weight of the entries
+ * @property weigher Computes the weight of an entry
+ */
+internal class TinyLfuCache<K : Any, V : Any>(
+    private val maxWeight: Long,
+    private val weigher: (K, V) -> Int
+) {
+    private class Node<K, V>(val key: K, var value: V, var weight: Int) {
+        var segment: Segment? = null
+        var previous: Node<*, *>? = null
+        var next: Node<*, *>? = null
+    }
+
+    /**
+     * Entries in LRU order, from the least recently used at the head to the most recently used at the tail.
+     */
+    private class Segment {
+        var head: Node<*, *>? = null
+        var tail: Node<*, *>? = null
+        var weight = 0L
+
+        fun addLast(node: Node<*, *>) {
+            node.segment = this
+            node.previous = tail
+            node.next = null
+            tail?.next = node
+            tail = node
+            if (head == null) head = node
+            weight += node.weight
+        }
+
+        fun remove(node: Node<*, *>) {
+            val previous = node.previous
+            val next = node.next
+            if (previous == null) head = next else previous.next = next
+            if (next == null) tail = previous else next.previous = previous
+            node.previous = null
+            node.next = null
+            node.segment = null
+            weight -= node.weight
+        }
+
+        fun moveToBack(node: Node<*, *>) {
+            if (tail !== node) {
+                remove(node)
+                addLast(node)
+            }
+        }
+    }
+
+    private val data = HashMap<K, Node<K, V>>()
+    private val sketch = FrequencySketch(maxOf(maxWeight / ESTIMATED_ENTRY_WEIGHT, 1))
+    private val window = Segment()
+    private val probation = Segment()
+    private val protected = Segment()
+    private val windowMax = maxOf(maxWeight / WINDOW_DIVISOR, 1)
+    private val protectedMax = (maxWeight - windowMax) * PROTECTED_PERCENT / 100
+
+    /**
+     * The number of entries evicted to stay within the maximum weight.
+     */
+    var evictions = 0L
+        private set
+
+    /**
+     * The number of entries.
+     */
+    val size: Int
+        get() = data.size
+
+    /**
+     * The total weight of the entries.
+     */
+    val weight: Long
+        get() = window.weight + probation.weight + protected.weight
+
+    init {
+        require(maxWeight > 0) { "maxWeight must be positive" }
+    }
+
+    /**
+     * Returns the value of a key and records the access.
+     *
+     * @param key The key to look up
+     * @return The value, or null if the key is not cached
+     */
+    fun get(key: K): V? {
+        sketch.increment(key.hashCode())
+        val node = data[key] ?: return null
+        onHit(node)
+        return node.value
+    }
+
+    /**
+     * Returns the value of a key without recording an access.
+     *
+     * @param key The key to look up
+     * @return The value, or null if the key is not cached
+     */
+    fun peek(key: K): V? = data[key]?.value
+
+    /**
+     * Caches the value of a key, evicting entries if the cache is over its maximum weight.
+     * A value heavier than the whole cache is not cached.
+     *
+     * @param key The key
+     * @param value The value
+     */
+    fun put(key: K, value: V) {
+        val weight = weigher(key, value)
+        if (weight > maxWeight) {
+            remove(key)
+            return
+        }
+        sketch.increment(key.hashCode())
+        val existing = data[key]
+        if (existing != null) {
+            val segment = existing.segment!!
+            segment.weight += weight - existing.weight
+            existing.value = value
+            existing.weight = weight
+            onHit(existing)
+        } else {
+            val node = Node(key, value, weight)
+            data[key] = node
+            window.addLast(node)
+        }
+        evict()
+    }
+
+    /**
+     * Removes a key.
+     *
+     * @param key The key to remove
+     * @return true if the key was cached
+     */
+    fun remove(key: K): Boolean {
+        val node = data.remove(key) ?: return false
+        node.segment!!.remove(node)
+        return true
+    }
+
+    /**
+     * Removes all keys.
+     *
+     * @return The number of keys removed
+     */
+    fun clear(): Int {
+        val removed = data.size
+        for (node in data.values) {
+            node.previous = null
+            node.next = null
+            node.segment = null
+        }
+        data.clear()
+        for (segment in arrayOf(window, probation, protected)) {
+            segment.head = null
+            segment.tail = null
+            segment.weight = 0
+        }
+        return removed
+    }
+
+    private fun onHit(node: Node<K, V>) {
+        when (node.segment) {
+            probation -> {
+                probation.remove(node)
+                protected.addLast(node)
+                demoteProtected()
+            }
+            else -> node.segment!!.moveToBack(node)
+        }
+    }
+
+    /**
+     * Moves the least recently used protected entries back to probation while the segment is too heavy.
+     */
+    private fun demoteProtected() {
+        while (protected.weight > protectedMax) {
+            val node = protected.head ?: return
+            protected.remove(node)
+            probation.addLast(node)
+        }
+    }
+
+    /**
+     * Moves entries that overflow the window into probation, then evicts until the cache is within its
+     * maximum weight. A candidate fresh from the window competes with the probation entry that has gone
+     * longest without an access, and the one the sketch considers less frequent is evicted.
+     */
+    @Suppress("UNCHECKED_CAST")
+    private fun evict() {
+        while (window.weight > windowMax) {
+            val node = window.head!!
+            window.remove(node)
+            probation.addLast(node)
+        }
+        while (weight > maxWeight) {
+            val victim = (probation.head ?: protected.head ?: window.head) as Node<K, V>
+            val candidate = probation.tail as Node<K, V>?
+            val evicted = if (candidate != null && candidate !== victim && victim.segment === probation) {
+                if (sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())) {
+                    victim
+                } else {
+                    candidate
+                }
+            } else {
+                victim
+            }
+            remove(evicted.key)
+            evictions++
+        }
+    }
+
+    private companion object {
+        const val WINDOW_DIVISOR = 100L
+        const val PROTECTED_PERCENT = 80L
+
+        // Sizes the sketch from the maximum weight, assuming entries of about this many bytes
+        const val ESTIMATED_ENTRY_WEIGHT = 256L
+    }
+}
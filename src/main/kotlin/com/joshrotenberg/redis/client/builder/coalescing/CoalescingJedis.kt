@@ -0,0 +1,177 @@
+package com.joshrotenberg.redis.client.builder.coalescing
+
+import redis.clients.jedis.CommandArguments
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.args.Rawable
+import redis.clients.jedis.csc.Cache
+import redis.clients.jedis.executors.CommandExecutor
+import redis.clients.jedis.providers.PooledConnectionProvider
+
+/**
+ * JedisPooled decorator that coalesces concurrent identical reads into one request.
+ * Reads are forwarded to the wrapped client, so policies it applies, such as resilience guards, still
+ * apply to the one request that is sent. The decorator shares the connection pool of the wrapped client,
+ * and closing either one closes the pool. It reports the client-side cache of the wrapped client, if any.
+ *
+ * @property delegate The JedisPooled client that executes the commands
+ */
+class CoalescingJedisPooled(
+    private val delegate: JedisPooled
+) : JedisPooled(PooledConnectionProvider(delegate.pool)) {
+
+    private val coalescer = ReadCoalescer()
+
+    /**
+     * The metrics of the reads of this client.
+     */
+    val metrics: ReadCoalescer.Metrics
+        get() = coalescer.metrics
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T =
+        coalesce(coalescer, commandObject) { delegate.executeCommand(it) }
+
+    override fun getCache(): Cache? = delegate.cache
+}
+
+/**
+ * UnifiedJedis decorator that coalesces concurrent identical reads into one request.
+ * Reads are forwarded to the wrapped client, so policies it applies still apply to the one request that
+ * is sent. Closing the decorator closes the wrapped client, and the decorator reports the client-side cache
+ * of the wrapped client, if any.
+ *
+ * @param executor The executor that coalesces reads for the wrapped client
+ */
+class CoalescingUnifiedJedis private constructor(
+    private val executor: CoalescingCommandExecutor
+) : UnifiedJedis(executor) {
+
+    /**
+     * @param delegate The UnifiedJedis client to decorate
+     */
+    constructor(delegate: UnifiedJedis) : this(CoalescingCommandExecutor(delegate))
+
+    /**
+     * The metrics of the reads of this client.
+     */
+    val metrics: ReadCoalescer.Metrics
+        get() = executor.coalescer.metrics
+
+    override fun getCache(): Cache? = executor.delegate.cache
+}
+
+/**
+ * Command executor that forwards commands to a UnifiedJedis client, coalescing identical reads.
+ *
+ * @property delegate The UnifiedJedis client that executes the commands
+ */
+internal class CoalescingCommandExecutor(val delegate: UnifiedJedis) : CommandExecutor {
+    val coalescer = ReadCoalescer()
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T =
+        coalesce(coalescer, commandObject) { delegate.executeCommand(it) }
+
+    override fun close() {
+        delegate.close()
+    }
+}
+
+/**
+ * Runs a Jedis command through a coalescer if it is a read, and directly otherwise.
+ * A write is reported to the coalescer when it returns or fails, so that reads issued after it are not
+ * answered by reads sent before it.
+ */
+internal inline fun <T> coalesce(
+    coalescer: ReadCoalescer,
+    commandObject: CommandObject<T>,
+    crossinline call: (CommandObject<T>) -> T
+): T {
+    val arguments = commandObject.arguments
+    if (ReadCommands.isRead(arguments.command.raw)) {
+        val keyHash = if (ReadCommands.isMultiKeyRead(arguments.command.raw)) null else singleKeyHash(arguments)
+        return coalescer.execute(JedisReadKey(commandObject), keyHash) { call(commandObject) }
+    }
+    try {
+        return call(commandObject)
+    } finally {
+        written(coalescer, arguments)
+    }
+}
+
+/**
+ * Reports a Jedis write to a coalescer, key by key when the command names every key it changes.
+ */
+internal fun written(coalescer: ReadCoalescer, arguments: CommandArguments) {
+    val keys = arguments.keys
+    if (keys.isEmpty() || ReadCommands.isMultiKeyWrite(arguments.command.raw)) {
+        coalescer.written(null)
+        return
+    }
+    for (key in keys) {
+        coalescer.written(keyHash(key))
+    }
+}
+
+/**
+ * The hash of the only key of a Jedis command, or null if it has several.
+ */
+internal fun singleKeyHash(arguments: CommandArguments): Int? {
+    val keys = arguments.keys
+    return if (keys.size == 1) keyHash(keys[0]) else null
+}
+
+/**
+ * Hashes a Jedis key as the bytes sent on the wire, so a key given as a String and as a byte array hash
+ * alike. ASCII strings are hashed without encoding them.
+ */
+internal fun keyHash(key: Any): Int? =
+    when (key) {
+        is ByteArray -> key.contentHashCode()
+        is Rawable -> key.raw.contentHashCode()
+        is String -> {
+            var h = 1
+            for (c in key) {
+                if (c.code >= ASCII_LIMIT) return key.toByteArray(Charsets.UTF_8).contentHashCode()
+                h = 31 * h + c.code
+            }
+            h
+        }
+        else -> null
+    }
+
+private const val ASCII_LIMIT = 0x80
+
+/**
+ * Identifies a Jedis read by its arguments and the builder that decodes its reply.
+ * The same arguments read through `get(String)` and `get(byte[])` are decoded differently, so the builder,
+ * a shared constant per reply type, is compared by identity. The arguments are referenced rather than
+ * copied, and the hash is computed once.
+ *
+ * @property commandObject The read
+ */
+internal class JedisReadKey(private val commandObject: CommandObject<*>) {
+    private val hash: Int = run {
+        var h = System.identityHashCode(commandObject.builder)
+        for (argument in commandObject.arguments) {
+            h = 31 * h + argument.raw.contentHashCode()
+        }
+        h
+    }
+
+    override fun hashCode(): Int = hash
+
+    override fun equals(other: Any?): Boolean {
+        if (this === other) return true
+        if (other !is JedisReadKey || hash != other.hash) return false
+        if (commandObject.builder !== other.commandObject.builder) return false
+        val arguments = commandObject.arguments
+        val otherArguments = other.commandObject.arguments
+        if (arguments.size() != otherArguments.size()) return false
+        val otherIterator = otherArguments.iterator()
+        for (argument in arguments) {
+            if (!argument.raw.contentEquals(otherIterator.next().raw)) return false
+        }
+        return true
+    }
+}
@@ -0,0 +1,213 @@
+package com.joshrotenberg.redis.client.builder.coalescing
+
+import com.joshrotenberg.redis.client.builder.resilience.DelegateChannelType
+import io.lettuce.core.ConnectionBuilder
+import io.lettuce.core.ConnectionPoint
+import io.lettuce.core.RedisChannelWriter
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisURI
+import io.lettuce.core.StatefulRedisConnectionImpl
+import io.lettuce.core.codec.RedisCodec
+import io.lettuce.core.protocol.AsyncCommand
+import io.lettuce.core.protocol.CommandWrapper
+import io.lettuce.core.protocol.PushHandler
+import io.lettuce.core.protocol.RedisCommand
+import io.netty.buffer.ByteBufAllocator
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * RedisClient decorator whose connections coalesce concurrent identical reads into one command.
+ * A Lettuce connection is shared by many callers, so a popular key read by all of them at once is
+ * otherwise written, executed and answered once per caller. Here, a read dispatched while an identical
+ * read is in flight on the same connection is not written; it completes with the reply of the first one.
+ *
+ * Reads inside a MULTI transaction, and commands dispatched as a batch, are always written. A read does not
+ * join a read sent before a write to its key that completed on a connection of the client, see [ReadCoalescer].
+ *
+ * The decorator uses the client resources, options and transport of the wrapped client, and shutting
+ * it down also shuts down the wrapped client.
+ *
+ * @property delegate The RedisClient to decorate
+ * @param redisURI The default URI of the wrapped client
+ */
+class CoalescingRedisClient private constructor(
+    private val delegate: RedisClient,
+    redisURI: RedisURI
+) : RedisClient(delegate.resources, redisURI) {
+
+    private val coalescer = ReadCoalescer()
+
+    init {
+        options = delegate.options
+    }
+
+    /**
+     * The metrics of the reads of all connections of this client.
+     */
+    val metrics: ReadCoalescer.Metrics
+        get() = coalescer.metrics
+
+    override fun <K, V> newStatefulRedisConnection(
+        channelWriter: RedisChannelWriter,
+        pushHandler: PushHandler,
+        codec: RedisCodec<K, V>,
+        timeout: Duration
+    ): StatefulRedisConnectionImpl<K, V> =
+        CoalescingStatefulRedisConnection(channelWriter, pushHandler, codec, timeout, coalescer)
+
+    override fun channelType(connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint) =
+        DelegateChannelType.apply(delegate, connectionBuilder, connectionPoint)
+
+    override fun shutdownAsync(quietPeriod: Long, timeout: Long, timeUnit: TimeUnit): CompletableFuture<Void> =
+        super.shutdownAsync(quietPeriod, timeout, timeUnit)
+            .thenCompose { delegate.shutdownAsync(quietPeriod, timeout, timeUnit) }
+
+    companion object {
+        /**
+         * Wraps a RedisClient so that its connections coalesce identical reads.
+         *
+         * @param client The RedisClient to decorate
+         * @return A RedisClient whose connections coalesce reads
+         */
+        @JvmStatic
+        fun wrap(client: RedisClient): CoalescingRedisClient = CoalescingRedisClient(client, redisUriOf(client))
+
+        /**
+         * Reads the default URI of a RedisClient.
+         * RedisClient keeps it private, so it is looked up once here rather than on the command path.
+         */
+        private fun redisUriOf(client: RedisClient): RedisURI {
+            val field = RedisClient::class.java.getDeclaredField("redisURI")
+            field.isAccessible = true
+            return field.get(client) as RedisURI
+        }
+    }
+}
+
+/**
+ * Lettuce connection that answers a read from an identical read already in flight on the connection.
+ * Connections of a client may point at different servers or databases, so reads are keyed by connection.
+ *
+ * @property coalescer The reads in flight on the connections of the client
+ */
+internal class CoalescingStatefulRedisConnection<K, V>(
+    channelWriter: RedisChannelWriter,
+    pushHandler: PushHandler,
+    codec: RedisCodec<K, V>,
+    timeout: Duration,
+    private val coalescer: ReadCoalescer
+) : StatefulRedisConnectionImpl<K, V>(channelWriter, pushHandler, codec, timeout) {
+
+    @Suppress("UNCHECKED_CAST")
+    override fun <T> dispatch(command: RedisCommand<K, V, T>): RedisCommand<K, V, T> {
+        val type = command.type.bytes
+        if (!ReadCommands.isRead(type)) {
+            return super.dispatch(WrittenCommand(command, coalescer))
+        }
+        // Only commands from the command API complete a future the follower can be answered from
+        if (command !is AsyncCommand<K, V, T> || isMulti) {
+            return super.dispatch(command)
+        }
+        val key = LettuceReadKey.of(this, command)
+        val keyHash = if (ReadCommands.isMultiKeyRead(type)) null else command.args?.firstEncodedKey?.hashCode()
+        val leader = coalescer.lead(key, keyHash, command)
+        if (leader != null) {
+            leader.whenComplete { reply, error ->
+                if (error != null) command.completeExceptionally(error) else command.complete(reply as T)
+            }
+            return command
+        }
+        return try {
+            super.dispatch(command)
+        } catch (e: RuntimeException) {
+            coalescer.abandon(key, command)
+            throw e
+        }
+    }
+
+    override fun dispatch(commands: Collection<RedisCommand<K, V, *>>): Collection<RedisCommand<K, V, *>> =
+        super.dispatch(
+            commands.map { if (ReadCommands.isRead(it.type.bytes)) it else WrittenCommand(it, coalescer) }
+        )
+}
+
+/**
+ * Lettuce write that reports itself to a [ReadCoalescer] when it completes, before its caller sees the
+ * reply, so that reads issued after it are not answered by reads sent before it.
+ *
+ * @property coalescer The coalescer of the connection
+ */
+internal class WrittenCommand<K, V, T>(
+    command: RedisCommand<K, V, T>,
+    private val coalescer: ReadCoalescer
+) : CommandWrapper<K, V, T>(command) {
+
+    // The hash of the only key the write changes, or null if it may change several
+    private val keyHash: Int? =
+        if (ReadCommands.isMultiKeyWrite(command.type.bytes)) null else command.args?.firstEncodedKey?.hashCode()
+
+    override fun complete() {
+        coalescer.written(keyHash)
+        super.complete()
+    }
+
+    override fun completeExceptionally(throwable: Throwable): Boolean {
+        coalescer.written(keyHash)
+        return super.completeExceptionally(throwable)
+    }
+
+    override fun cancel() {
+        coalescer.written(keyHash)
+        super.cancel()
+    }
+}
+
+/**
+ * Identifies a Lettuce read by its connection, its command type, the class of its output and its encoded
+ * arguments. The output decides how the reply is decoded, so reads with the same arguments and different
+ * outputs are not coalesced. The connection is compared by identity, and the hash is computed once.
+ */
+internal class LettuceReadKey private constructor(
+    private val connection: Any,
+    private val type: ByteArray,
+    private val output: Class<*>?,
+    private val arguments: ByteArray
+) {
+    private val hash: Int = ((31 * System.identityHashCode(connection) + type.contentHashCode()) * 31 +
+        output.hashCode()) * 31 + arguments.contentHashCode()
+
+    override fun hashCode(): Int = hash
+
+    override fun equals(other: Any?): Boolean =
+        this === other || (
+            other is LettuceReadKey &&
+                hash == other.hash &&
+                connection === other.connection &&
+                output == other.output &&
+                type.contentEquals(other.type) &&
+                arguments.contentEquals(other.arguments)
+            )
+
+    companion object {
+        /**
+         * Creates the key of a read, encoding its arguments into a pooled buffer and copying them out.
+         */
+        fun of(connection: Any, command: RedisCommand<*, *, *>): LettuceReadKey {
+            val output = command.output?.javaClass
+            val arguments = command.args ?: return LettuceReadKey(connection, command.type.bytes, output, EMPTY)
+            val buffer = ByteBufAllocator.DEFAULT.buffer()
+            try {
+                arguments.encode(buffer)
+                val bytes = ByteArray(buffer.readableBytes())
+                buffer.readBytes(bytes)
+                return LettuceReadKey(connection, command.type.bytes, output, bytes)
+            } finally {
+                buffer.release()
+            }
+        }
+
+        private val EMPTY = ByteArray(0)
+    }
+}
@@ -0,0 +1,198 @@
+package com.joshrotenberg.redis.client.builder.coalescing
+
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLongArray
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Single-flight table of the reads a client has in flight.
+ * The first caller to issue a read becomes its leader and sends it to Redis; callers that issue the same
+ * read while it is in flight wait for the leader's reply instead of sending their own. When the reply
+ * arrives, the read leaves the table, so a later read goes to Redis again and sees later writes.
+ *
+ * A read in flight may have been sent before a write that has since completed, so a caller that wrote a
+ * key must not be answered from it. The client reports every write it sends, once it completes and before
+ * its caller sees the reply, and the coalescer counts the writes per key: a read only joins a read in
+ * flight if no write to its key has completed since that read was registered, and otherwise leads a new
+ * one. Writes are counted in [KEY_STRIPES] stripes by key hash, so a write may also send reads of other keys
+ * in its stripe to Redis again, which only costs a request. Writes made by other clients are not seen.
+ *
+ * The table is a [ConcurrentHashMap] updated with `putIfAbsent`, `replace` and `remove(key, value)`, so
+ * joining or leaving a read never takes a lock.
+ *
+ * Followers receive the same reply object as the leader. Replies are usually immutable; callers that
+ * modify a returned array or collection affect the other callers of the same read.
+ */
+class ReadCoalescer {
+
+    /**
+     * Counters of the reads seen by a coalescer.
+     */
+    interface Metrics {
+        /** The number of reads that could be coalesced, whether they led or followed. */
+        val reads: Long
+
+        /** The number of reads that were answered by another caller's request. */
+        val coalesced: Long
+
+        /** The number of distinct reads in flight. */
+        val inFlight: Int
+    }
+
+    /**
+     * A read in flight, with the write counts of its keys when it was registered.
+     */
+    private class Flight(
+        val reply: CompletableFuture<Any?>,
+        val stripe: Int,
+        val writes: Long,
+        val multiKeyWrites: Long
+    )
+
+    private val inFlight = ConcurrentHashMap<Any, Flight>()
+    private val keyWrites = AtomicLongArray(KEY_STRIPES)
+    private val multiKeyWrites = LongAdder()
+    private val allWrites = LongAdder()
+    private val reads = LongAdder()
+    private val coalesced = LongAdder()
+
+    /**
+     * The metrics of this coalescer.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val reads: Long
+            get() = this@ReadCoalescer.reads.sum()
+        override val coalesced: Long
+            get() = this@ReadCoalescer.coalesced.sum()
+        override val inFlight: Int
+            get() = this@ReadCoalescer.inFlight.size
+    }
+
+    /**
+     * Runs a blocking read, or waits for an identical read that is already in flight.
+     *
+     * @param key Identifies the read; equal keys must produce equal replies
+     * @param keyHash The hash of the one Redis key the read depends on, or null if it may read several keys
+     * @param call Sends the read to Redis
+     * @return The reply
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> execute(key: Any, keyHash: Int?, call: () -> T): T {
+        reads.increment()
+        val flight = flight(CompletableFuture(), keyHash)
+        val leader = join(key, flight)
+        if (leader != null) {
+            coalesced.increment()
+            return await(leader) as T
+        }
+        try {
+            val reply = call()
+            flight.reply.complete(reply)
+            return reply
+        } catch (e: Throwable) {
+            flight.reply.completeExceptionally(e)
+            throw e
+        } finally {
+            inFlight.remove(key, flight)
+        }
+    }
+
+    /**
+     * Registers an asynchronous read as the leader of its key, unless an identical read is in flight.
+     * A registered leader leaves the table when it completes.
+     *
+     * @param key Identifies the read; equal keys must produce equal replies
+     * @param keyHash The hash of the one Redis key the read depends on, or null if it may read several keys
+     * @param command The future of the read, not yet sent
+     * @return The future of the identical read in flight, or null if [command] is now the leader and must be sent
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun lead(key: Any, keyHash: Int?, command: CompletableFuture<*>): CompletableFuture<*>? {
+        reads.increment()
+        val flight = flight(command as CompletableFuture<Any?>, keyHash)
+        val leader = join(key, flight)
+        if (leader != null) {
+            coalesced.increment()
+            return leader
+        }
+        command.whenComplete { _, _ -> inFlight.remove(key, flight) }
+        return null
+    }
+
+    /**
+     * Removes a leader that could not be sent, so later reads do not wait for it.
+     *
+     * @param key The key the leader was registered with
+     * @param command The leader
+     */
+    fun abandon(key: Any, command: CompletableFuture<*>) {
+        inFlight.computeIfPresent(key) { _, flight -> if (flight.reply === command) null else flight }
+    }
+
+    /**
+     * Records a completed write, so that later reads of the keys it changed are not answered by reads
+     * sent before it. Must be called before the caller of the write sees its reply.
+     *
+     * @param keyHash The hash of the one Redis key the write changed, or null if it may have changed several keys
+     */
+    fun written(keyHash: Int?) {
+        if (keyHash == null) {
+            multiKeyWrites.increment()
+        } else {
+            keyWrites.incrementAndGet(stripeOf(keyHash))
+        }
+        allWrites.increment()
+    }
+
+    /**
+     * Registers a read as the leader of its key, or returns the reply of the leader it can join.
+     * A leader registered before a write to its keys completed is replaced rather than joined.
+     */
+    private fun join(key: Any, flight: Flight): CompletableFuture<Any?>? {
+        while (true) {
+            val leader = inFlight.putIfAbsent(key, flight) ?: return null
+            if (isCurrent(leader)) {
+                return leader.reply
+            }
+            if (inFlight.replace(key, leader, flight)) {
+                return null
+            }
+        }
+    }
+
+    private fun flight(reply: CompletableFuture<Any?>, keyHash: Int?): Flight {
+        if (keyHash == null) {
+            return Flight(reply, ANY_KEY, allWrites.sum(), 0)
+        }
+        val stripe = stripeOf(keyHash)
+        return Flight(reply, stripe, keyWrites.get(stripe), multiKeyWrites.sum())
+    }
+
+    private fun isCurrent(flight: Flight): Boolean =
+        if (flight.stripe == ANY_KEY) {
+            allWrites.sum() == flight.writes
+        } else {
+            keyWrites.get(flight.stripe) == flight.writes && multiKeyWrites.sum() == flight.multiKeyWrites
+        }
+
+    private fun await(leader: CompletableFuture<Any?>): Any? =
+        try {
+            leader.join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
+        }
+
+    companion object {
+        /**
+         * The number of stripes the writes are counted in.
+         */
+        const val KEY_STRIPES = 1024
+
+        // The stripe of reads that may read several keys, which any write affects
+        private const val ANY_KEY = -1
+
+        private fun stripeOf(keyHash: Int): Int = (keyHash xor (keyHash ushr 16)) and (KEY_STRIPES - 1)
+    }
+}
@@ -0,0 +1,102 @@
+package com.joshrotenberg.redis.client.builder.coalescing
+
+/**
+ * Read-only commands whose concurrent identical requests can share one reply.
+ * Only commands that read keys are listed: their reply depends on nothing but the key and the
+ * arguments, so two callers asking the same question at the same time can be given the same answer.
+ */
+internal object ReadCommands {
+    private val READS = CommandNames(
+        // Strings
+        "GET", "MGET", "STRLEN", "GETRANGE", "SUBSTR", "GETBIT", "BITCOUNT", "BITPOS", "LCS",
+        // Hashes
+        "HGET", "HMGET", "HGETALL", "HKEYS", "HVALS", "HLEN", "HEXISTS", "HSTRLEN", "HRANDFIELD",
+        // Lists
+        "LRANGE", "LINDEX", "LLEN", "LPOS",
+        // Sets
+        "SMEMBERS", "SISMEMBER", "SMISMEMBER", "SCARD", "SINTER", "SUNION", "SDIFF", "SINTERCARD",
+        // Sorted sets
+        "ZRANGE", "ZRANGEBYSCORE", "ZRANGEBYLEX", "ZREVRANGE", "ZREVRANGEBYSCORE", "ZREVRANGEBYLEX",
+        "ZSCORE", "ZMSCORE", "ZCARD", "ZCOUNT", "ZLEXCOUNT", "ZRANK", "ZREVRANK",
+        // Streams
+        "XRANGE", "XREVRANGE", "XLEN",
+        // Keys
+        "EXISTS", "TYPE", "TTL", "PTTL", "EXPIRETIME", "PEXPIRETIME",
+        // Geo and HyperLogLog
+        "GEOPOS", "GEODIST", "GEOHASH", "GEOSEARCH", "PFCOUNT"
+    )
+
+    // Reads whose reply may depend on keys other than their first one
+    private val MULTI_KEY_READS = CommandNames(
+        "MGET", "LCS", "SINTER", "SUNION", "SDIFF", "SINTERCARD", "EXISTS", "PFCOUNT"
+    )
+
+    // Writes that may change keys other than their first one, or keys they do not name
+    private val MULTI_KEY_WRITES = CommandNames(
+        "DEL", "UNLINK", "MSET", "MSETNX", "RENAME", "RENAMENX", "COPY", "MOVE", "SWAPDB", "FLUSHDB", "FLUSHALL",
+        "SMOVE", "LMOVE", "BLMOVE", "RPOPLPUSH", "BRPOPLPUSH", "LMPOP", "BLMPOP", "BLPOP", "BRPOP",
+        "ZMPOP", "BZMPOP", "BZPOPMIN", "BZPOPMAX", "SINTERSTORE", "SUNIONSTORE", "SDIFFSTORE",
+        "ZUNIONSTORE", "ZINTERSTORE", "ZDIFFSTORE", "ZRANGESTORE", "GEOSEARCHSTORE", "GEORADIUS",
+        "GEORADIUSBYMEMBER", "SORT", "BITOP", "PFMERGE", "EVAL", "EVALSHA", "FCALL", "EXEC", "MIGRATE"
+    )
+
+    /**
+     * Returns whether concurrent identical requests of a command can share one reply.
+     *
+     * @param command The name of the command as sent on the wire, in any case
+     * @return true if the command is a key read
+     */
+    fun isRead(command: ByteArray): Boolean = READS.contains(command)
+
+    /**
+     * Returns whether the reply of a read may depend on keys other than its first one.
+     *
+     * @param command The name of the command as sent on the wire, in any case
+     * @return true if the read may read several keys
+     */
+    fun isMultiKeyRead(command: ByteArray): Boolean = MULTI_KEY_READS.contains(command)
+
+    /**
+     * Returns whether a write may change keys other than its first one.
+     *
+     * @param command The name of the command as sent on the wire, in any case
+     * @return true if the write may change several keys
+     */
+    fun isMultiKeyWrite(command: ByteArray): Boolean = MULTI_KEY_WRITES.contains(command)
+}
+
+/**
+ * A set of upper-case command names, as bytes grouped by length, so a command is checked without allocating.
+ */
+private class CommandNames(vararg names: String) {
+    private val byLength: Array<Array<ByteArray>> = Array(names.maxOf { it.length } + 1) { length ->
+        names.filter { it.length == length }.map { it.toByteArray(Charsets.US_ASCII) }.toTypedArray()
+    }
+
+    fun contains(command: ByteArray): Boolean {
+        if (command.size >= byLength.size) {
+            return false
+        }
+        return byLength[command.size].any { equalsIgnoreCase(it, command) }
+    }
+
+    /**
+     * Compares an upper-case name with a command name in any case, byte by byte.
+     */
+    private fun equalsIgnoreCase(name: ByteArray, command: ByteArray): Boolean {
+        for (i in name.indices) {
+            val b = command[i].toInt()
+            val upper = if (b in LOWER_A..LOWER_Z) b - CASE_OFFSET else b
+            if (upper != name[i].toInt()) {
+                return false
+            }
+        }
+        return true
+    }
+
+    private companion object {
+        const val LOWER_A = 'a'.code
+        const val LOWER_Z = 'z'.code
+        const val CASE_OFFSET = 'a'.code - 'A'.code
+    }
+}
@@ -0,0 +1,339 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.Connection
+import redis.clients.jedis.JedisPool
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.exceptions.JedisDataException
+import redis.clients.jedis.executors.CommandExecutor
+import redis.clients.jedis.util.Pool
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionException
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+import java.util.concurrent.locks.LockSupport
+
+/**
+ * Thread-safe UnifiedJedis whose commands are written to Redis in pipelines over a few dedicated connections.
+ * A Jedis client normally borrows a connection per command and waits for the reply before the connection
+ * can be used again, so throughput is bounded by round trips and the number of sockets. Here, commands
+ * issued concurrently from many threads are collected into a lock-free queue. Each connection has a writer
+ * thread that takes up to `maxBatch` queued commands, waits up to `maxDelayMicros` for a batch to fill,
+ * writes the batch as one pipeline and hands each reply back to the thread that issued the command.
+ * A caller still blocks until its own reply arrives, so the Jedis API is unchanged.
+ *
+ * Commands that hold a connection or change its state cannot share a pipelined connection: blocking
+ * commands such as BLPOP stall every command behind them, and MULTI, WATCH, SELECT and SUBSCRIBE would
+ * affect other callers. Use a pooled client for those.
+ *
+ * @property multiplexer The executor that batches the commands
+ */
+class AutoPipeliningJedis private constructor(
+    private val multiplexer: PipelineMultiplexer
+) : UnifiedJedis(multiplexer) {
+
+    /**
+     * Metrics of an auto-pipelining client.
+     */
+    interface Metrics {
+        /**
+         * The number of commands written.
+         */
+        val commands: Long
+
+        /**
+         * The number of pipelines written.
+         */
+        val batches: Long
+
+        /**
+         * The average number of commands per pipeline.
+         */
+        val averageBatchSize: Double
+
+        /**
+         * The number of commands waiting to be written.
+         */
+        val queued: Long
+    }
+
+    /**
+     * The metrics of this client.
+     */
+    val metrics: Metrics
+        get() = multiplexer.metrics
+
+    companion object {
+        /**
+         * Creates an auto-pipelining client over connections borrowed from a connection pool, such as the
+         * pool of a JedisPooled client. The connections are returned when the client is closed; the pool
+         * is not closed.
+         *
+         * @param pool The pool to borrow the connections from
+         * @param maxBatch The maximum number of commands per pipeline
+         * @param maxDelayMicros The time a writer waits for more commands before writing a partial batch
+         * @param connections The number of connections, each with its own writer thread
+         * @return A new auto-pipelining client
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun create(
+            pool: Pool<Connection>,
+            maxBatch: Int,
+            maxDelayMicros: Long,
+            connections: Int = 1
+        ): AutoPipeliningJedis =
+            create(maxBatch, maxDelayMicros, connections) {
+                val connection = pool.resource
+                PipelineConnection(connection) { connection.close() }
+            }
+
+        /**
+         * Creates an auto-pipelining client over connections borrowed from a JedisPool. The connections are
+         * returned when the client is closed; the pool is not closed.
+         *
+         * @param pool The pool to borrow the connections from
+         * @param maxBatch The maximum number of commands per pipeline
+         * @param maxDelayMicros The time a writer waits for more commands before writing a partial batch
+         * @param connections The number of connections, each with its own writer thread
+         * @return A new auto-pipelining client
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun create(
+            pool: JedisPool,
+            maxBatch: Int,
+            maxDelayMicros: Long,
+            connections: Int = 1
+        ): AutoPipeliningJedis =
+            create(maxBatch, maxDelayMicros, connections) {
+                val jedis = pool.resource
+                PipelineConnection(jedis.connection) { jedis.close() }
+            }
+
+        /**
+         * Creates an auto-pipelining client whose writers open their connections with [connect].
+         */
+        internal fun create(
+            maxBatch: Int,
+            maxDelayMicros: Long,
+            connections: Int,
+            connect: () -> PipelineConnection
+        ): AutoPipeliningJedis {
+            require(maxBatch > 0) { "maxBatch must be positive" }
+            require(maxDelayMicros >= 0) { "maxDelayMicros must not be negative" }
+            require(connections > 0) { "connections must be positive" }
+            val multiplexer = PipelineMultiplexer(
+                connect,
+                maxBatch,
+                TimeUnit.MICROSECONDS.toNanos(maxDelayMicros),
+                connections
+            )
+            return AutoPipeliningJedis(multiplexer)
+        }
+    }
+}
+
+/**
+ * A connection used by a writer thread, and how to give it back.
+ *
+ * @property connection The connection commands are written to
+ * @property release Returns the connection to its pool, or closes it
+ */
+internal class PipelineConnection(val connection: Connection, val release: () -> Unit)
+
+/**
+ * Command executor that queues commands and writes them in batches from one writer thread per connection.
+ * A writer with nothing to do parks and is unparked by the next command. A connection that fails is
+ * released and replaced before the next batch; the commands of the failed batch fail with the error.
+ *
+ * @property connect Opens a connection for a writer
+ * @property maxBatch The maximum number of commands per pipeline
+ * @property maxDelayNanos The time a writer waits for a batch to fill
+ */
+internal class PipelineMultiplexer(
+    private val connect: () -> PipelineConnection,
+    private val maxBatch: Int,
+    private val maxDelayNanos: Long,
+    connections: Int
+) : CommandExecutor {
+
+    private val queue = ConcurrentLinkedQueue<PendingCommand<*>>()
+    private val idleWriters = ConcurrentLinkedQueue<Thread>()
+    private val queued = AtomicLong()
+    private val commands = LongAdder()
+    private val batches = LongAdder()
+
+    @Volatile
+    private var closed = false
+
+    private val writers: List<Thread> = List(connections) { index ->
+        Thread(::writeLoop, "redis-auto-pipelining-$index").apply {
+            isDaemon = true
+            start()
+        }
+    }
+
+    val metrics: AutoPipeliningJedis.Metrics = object : AutoPipeliningJedis.Metrics {
+        override val commands: Long
+            get() = this@PipelineMultiplexer.commands.sum()
+        override val batches: Long
+            get() = this@PipelineMultiplexer.batches.sum()
+        override val averageBatchSize: Double
+            get() = batches.let { if (it == 0L) 0.0 else commands.toDouble() / it }
+        override val queued: Long
+            get() = this@PipelineMultiplexer.queued.get()
+    }
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+        check(!closed) { "Auto-pipelining client is closed" }
+        val pending = PendingCommand(commandObject)
+        queue.offer(pending)
+        queued.incrementAndGet()
+        idleWriters.poll()?.let(LockSupport::unpark)
+        if (closed) {
+            // A close that raced with the offer may already have drained the queue
+            failQueued()
+        }
+        return pending.await()
+    }
+
+    private fun writeLoop() {
+        val writer = Thread.currentThread()
+        val batch = ArrayList<PendingCommand<*>>(maxBatch)
+        var current: PipelineConnection? = null
+        try {
+            while (!closed) {
+                val first = queue.poll()
+                if (first == null) {
+                    idleWriters.offer(writer)
+                    // Re-check after registering, so a command queued in between is not missed
+                    if (queue.isEmpty() && !closed) {
+                        LockSupport.park(this)
+                    }
+                    idleWriters.remove(writer)
+                    continue
+                }
+                batch.add(first)
+                fill(batch)
+                queued.addAndGet(-batch.size.toLong())
+                current = write(current, batch)
+                batch.clear()
+            }
+        } finally {
+            current?.release?.invoke()
+        }
+    }
+
+    /**
+     * Takes queued commands until the batch is full or the delay has passed since its first command.
+     */
+    private fun fill(batch: MutableList<PendingCommand<*>>) {
+        val deadline = System.nanoTime() + maxDelayNanos
+        while (batch.size < maxBatch) {
+            val next = queue.poll()
+            if (next != null) {
+                batch.add(next)
+                continue
+            }
+            val remaining = deadline - System.nanoTime()
+            if (remaining <= 0 || closed) {
+                return
+            }
+            LockSupport.parkNanos(minOf(remaining, MAX_FILL_PARK_NANOS))
+        }
+    }
+
+    /**
+     * Writes a batch as one pipeline and completes its commands with their replies.
+     *
+     * @return The connection for the next batch, or null if it failed and was released
+     */
+    private fun write(connection: PipelineConnection?, batch: List<PendingCommand<*>>): PipelineConnection? {
+        val current = try {
+            connection ?: connect()
+        } catch (e: Exception) {
+            batch.forEach { it.fail(e) }
+            return null
+        }
+        try {
+            for (pending in batch) {
+                current.connection.sendCommand(pending.commandObject.arguments)
+            }
+            // Error replies are returned in place as JedisDataException, so one error does not fail the batch
+            val replies = current.connection.getMany(batch.size)
+            for (i in batch.indices) {
+                batch[i].complete(replies[i])
+            }
+        } catch (e: Exception) {
+            // The replies of the batch can no longer be matched to their commands
+            batch.forEach { it.fail(e) }
+            current.release()
+            return null
+        } finally {
+            commands.add(batch.size.toLong())
+            batches.increment()
+        }
+        return current
+    }
+
+    private fun failQueued() {
+        while (true) {
+            val pending = queue.poll() ?: return
+            queued.decrementAndGet()
+            pending.fail(IllegalStateException("Auto-pipelining client is closed"))
+        }
+    }
+
+    override fun close() {
+        if (closed) {
+            return
+        }
+        closed = true
+        writers.forEach(LockSupport::unpark)
+        writers.forEach { it.join(CLOSE_TIMEOUT_MS) }
+        failQueued()
+    }
+
+    companion object {
+        private const val MAX_FILL_PARK_NANOS = 10_000L
+        private const val CLOSE_TIMEOUT_MS = 5_000L
+    }
+}
+
+/**
+ * A queued command and the future its caller waits on.
+ *
+ * @property commandObject The command and the builder of its reply
+ */
+internal class PendingCommand<T>(val commandObject: CommandObject<T>) {
+    private val result = CompletableFuture<T>()
+
+    fun complete(reply: Any?) {
+        if (reply is JedisDataException) {
+            result.completeExceptionally(reply)
+            return
+        }
+        try {
+            result.complete(commandObject.builder.build(reply))
+        } catch (e: Exception) {
+            result.completeExceptionally(e)
+        }
+    }
+
+    fun fail(error: Throwable) {
+        result.completeExceptionally(error)
+    }
+
+    /**
+     * Waits for the reply and rethrows a failure as the caller would get it from a plain Jedis client.
+     */
+    fun await(): T =
+        try {
+            result.join()
+        } catch (e: CompletionException) {
+            throw e.cause ?: e
+        }
+}
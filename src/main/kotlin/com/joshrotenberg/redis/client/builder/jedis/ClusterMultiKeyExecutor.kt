@@ -0,0 +1,213 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import redis.clients.jedis.ClusterCommandObjects
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.exceptions.JedisClusterOperationException
+import redis.clients.jedis.exceptions.JedisRedirectionException
+import redis.clients.jedis.providers.ClusterConnectionProvider
+import redis.clients.jedis.util.JedisClusterCRC16
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Future
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.ThreadPoolExecutor
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+/**
+ * Runs multi-key commands against a JedisCluster across any number of slots.
+ * JedisCluster rejects MGET, MSET and DEL with keys in different slots, so callers otherwise issue one
+ * command per key. Here, keys are grouped by slot into commands of at most `maxBatch` keys, the commands
+ * are grouped by the node that owns their slot, and each node's commands are written as one pipeline.
+ * The pipelines run in parallel, so a fan-out over many keys costs one round trip per node, and results
+ * are put back in the order of the keys.
+ *
+ * Slots are resolved with the client's slot cache. A command answered with a MOVED or ASK redirect, for
+ * example while a slot is being migrated, is retried through the cluster client, which follows the
+ * redirect and refreshes its cache. Resilience policies of the cluster client do not apply to pipelined
+ * commands.
+ *
+ * Pipelines run on at most one thread per node the cluster had when the executor was created; threads
+ * that stay idle for a minute are stopped.
+ *
+ * @property cluster The cluster client whose slot cache and connection pools are used
+ * @property maxBatch The maximum number of keys per command
+ * @property nodeTimeoutMs The time to wait for the pipelines of all nodes in milliseconds
+ */
+class ClusterMultiKeyExecutor private constructor(
+    private val cluster: JedisCluster,
+    private val maxBatch: Int,
+    private val nodeTimeoutMs: Long
+) : AutoCloseable {
+
+    private val provider: ClusterConnectionProvider = providerOf(cluster)
+    // Cluster command arguments carry their slot, which the cluster client needs to route a fallback
+    private val commandObjects = ClusterCommandObjects()
+    private val executor: ExecutorService = maxOf(1, cluster.clusterNodes.size).let { threads ->
+        ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS, LinkedBlockingQueue()) { runnable ->
+            Thread(runnable, "redis-cluster-multi-key").apply { isDaemon = true }
+        }.apply { allowCoreThreadTimeOut(true) }
+    }
+
+    /**
+     * The keys of one slot in a single command, and their positions in the caller's list.
+     */
+    private class SlotCommand<T>(val slot: Int, val positions: IntArray, val command: CommandObject<T>) {
+        var result: T? = null
+    }
+
+    /**
+     * Gets the values of keys in any slots.
+     *
+     * @param keys The keys to get
+     * @return The values in the order of [keys], with null for missing keys
+     */
+    fun mget(keys: List<String>): List<String?> {
+        val values = arrayOfNulls<String>(keys.size)
+        for (command in execute(keys) { slotKeys -> commandObjects.mget(*slotKeys) }) {
+            val slotValues = command.result!!
+            for (i in command.positions.indices) {
+                values[command.positions[i]] = slotValues[i]
+            }
+        }
+        return values.asList()
+    }
+
+    /**
+     * Sets the values of keys in any slots. Keys in the same slot are set atomically, keys in different
+     * slots are not.
+     *
+     * @param values The values to set by key
+     */
+    fun mset(values: Map<String, String>) {
+        val keys = values.keys.toList()
+        execute(keys) { slotKeys ->
+            val keysValues = ArrayList<String>(slotKeys.size * 2)
+            for (key in slotKeys) {
+                keysValues.add(key)
+                keysValues.add(values.getValue(key))
+            }
+            commandObjects.mset(*keysValues.toTypedArray())
+        }
+    }
+
+    /**
+     * Deletes keys in any slots.
+     *
+     * @param keys The keys to delete
+     * @return The number of keys that were deleted
+     */
+    fun del(keys: Collection<String>): Long =
+        execute(keys.toList()) { slotKeys -> commandObjects.del(*slotKeys) }.sumOf { it.result!! }
+
+    /**
+     * Groups keys into per-slot commands and runs each node's commands as one pipeline, in parallel.
+     *
+     * @return The commands, each holding its result
+     */
+    private fun <T> execute(keys: List<String>, command: (Array<String>) -> CommandObject<T>): List<SlotCommand<T>> {
+        val slotPositions = LinkedHashMap<Int, MutableList<Int>>()
+        for (i in keys.indices) {
+            slotPositions.getOrPut(JedisClusterCRC16.getSlot(keys[i])) { ArrayList() }.add(i)
+        }
+
+        val commands = ArrayList<SlotCommand<T>>()
+        val byNode = LinkedHashMap<HostAndPort?, MutableList<SlotCommand<T>>>()
+        for ((slot, positions) in slotPositions) {
+            for (chunk in positions.chunked(maxBatch)) {
+                val slotKeys = Array(chunk.size) { keys[chunk[it]] }
+                val slotCommand = SlotCommand(slot, chunk.toIntArray(), command(slotKeys))
+                commands.add(slotCommand)
+                byNode.getOrPut(provider.getNode(slot)) { ArrayList() }.add(slotCommand)
+            }
+        }
+
+        // Slots missing from the cache are left to the cluster client, which discovers their owner
+        byNode.remove(null)?.forEach { it.result = cluster.executeCommand(it.command) }
+
+        val pipelines = byNode.map { (node, nodeCommands) ->
+            node!! to executor.submit(Callable { pipeline(nodeCommands) })
+        }
+        val deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(nodeTimeoutMs)
+        try {
+            for ((node, pipeline) in pipelines) {
+                await(node, pipeline, deadline)
+            }
+        } finally {
+            pipelines.forEach { (_, pipeline) -> pipeline.cancel(true) }
+        }
+        return commands
+    }
+
+    /**
+     * Writes the commands of one node as a pipeline and stores their results.
+     */
+    private fun <T> pipeline(commands: List<SlotCommand<T>>) {
+        val replies = cluster.getConnectionFromSlot(commands.first().slot).use { connection ->
+            for (slotCommand in commands) {
+                connection.sendCommand(slotCommand.command.arguments)
+            }
+            // Error replies are returned in place, so one redirected slot does not fail the pipeline
+            connection.getMany(commands.size)
+        }
+        for (i in commands.indices) {
+            val slotCommand = commands[i]
+            slotCommand.result = when (val reply = replies[i]) {
+                is JedisRedirectionException -> cluster.executeCommand(slotCommand.command)
+                is Exception -> throw reply
+                else -> slotCommand.command.builder.build(reply)
+            }
+        }
+    }
+
+    private fun await(node: HostAndPort, pipeline: Future<*>, deadline: Long) {
+        try {
+            pipeline.get(maxOf(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+        } catch (e: TimeoutException) {
+            val message = "Multi-key command timed out on node $node after $nodeTimeoutMs ms"
+            throw JedisClusterOperationException(message, e)
+        } catch (e: ExecutionException) {
+            throw e.cause ?: e
+        }
+    }
+
+    /**
+     * Stops the threads that run the pipelines. The cluster client is not closed.
+     */
+    override fun close() {
+        executor.shutdownNow()
+    }
+
+    companion object {
+        private const val IDLE_THREAD_SECONDS = 60L
+
+        /**
+         * Creates a multi-key executor for a cluster client.
+         *
+         * @param cluster The cluster client, usually built by [JedisClusterClientBuilder]
+         * @param maxBatch The maximum number of keys per command
+         * @param nodeTimeoutMs The time to wait for the pipelines of all nodes in milliseconds
+         * @return A new ClusterMultiKeyExecutor
+         */
+        @JvmStatic
+        fun create(cluster: JedisCluster, maxBatch: Int, nodeTimeoutMs: Long): ClusterMultiKeyExecutor {
+            require(maxBatch > 0) { "maxBatch must be positive" }
+            require(nodeTimeoutMs > 0) { "nodeTimeoutMs must be positive" }
+            return ClusterMultiKeyExecutor(cluster, maxBatch, nodeTimeoutMs)
+        }
+
+        /**
+         * Reads the connection provider of a JedisCluster.
+         * UnifiedJedis keeps it protected, so it is looked up once here rather than on the command path.
+         */
+        private fun providerOf(cluster: JedisCluster): ClusterConnectionProvider {
+            val field = UnifiedJedis::class.java.getDeclaredField("provider")
+            field.isAccessible = true
+            return field.get(cluster) as ClusterConnectionProvider
+        }
+    }
+}
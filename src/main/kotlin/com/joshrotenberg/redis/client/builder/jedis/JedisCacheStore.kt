@@ -0,0 +1,114 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import com.joshrotenberg.redis.client.builder.cache.RedisCacheStore
+import redis.clients.jedis.JedisPubSub
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.exceptions.JedisException
+import redis.clients.jedis.params.SetParams
+
+/**
+ * The L2 of a [com.joshrotenberg.redis.client.builder.cache.RedisTieredCache] over a UnifiedJedis client,
+ * such as a JedisPooled or JedisCluster client built by this library.
+ *
+ * Each subscription holds a connection and a daemon thread, and subscribes again if its connection drops.
+ * Key tracking is not supported, because Jedis only tracks keys for its own client-side cache.
+ *
+ * @property client The client to read and write through
+ */
+class JedisCacheStore private constructor(private val client: UnifiedJedis) : RedisCacheStore {
+
+    override fun get(key: String): String? = client.get(key)
+
+    override fun set(key: String, value: String, ttlMs: Long) {
+        if (ttlMs > 0) {
+            client.set(key, value, SetParams.setParams().px(ttlMs))
+        } else {
+            client.set(key, value)
+        }
+    }
+
+    override fun delete(key: String) {
+        client.del(key)
+    }
+
+    override fun publish(channel: String, message: String) {
+        client.publish(channel, message)
+    }
+
+    override fun subscribe(channel: String, listener: (String?) -> Unit): AutoCloseable =
+        Subscription(client, channel, listener).apply { start() }
+
+    /**
+     * A subscription to one channel, served by its own thread until it is closed.
+     */
+    private class Subscription(
+        private val client: UnifiedJedis,
+        private val channel: String,
+        private val listener: (String?) -> Unit
+    ) : JedisPubSub(), AutoCloseable {
+
+        @Volatile
+        private var closed = false
+
+        @Volatile
+        private var subscribedBefore = false
+
+        fun start() {
+            Thread(::run, "redis-cache-store-subscriber").apply { isDaemon = true }.start()
+        }
+
+        private fun run() {
+            while (!closed) {
+                try {
+                    client.subscribe(this, channel)
+                } catch (e: JedisException) {
+                    if (!closed) {
+                        logger.log(System.Logger.Level.WARNING, "Subscription to $channel dropped, resubscribing", e)
+                        Thread.sleep(RESUBSCRIBE_DELAY_MS)
+                    }
+                }
+            }
+        }
+
+        override fun onSubscribe(channel: String, subscribedChannels: Int) {
+            if (closed) {
+                unsubscribe()
+                return
+            }
+            // Messages published while the connection was down are lost
+            if (subscribedBefore) {
+                listener(null)
+            }
+            subscribedBefore = true
+        }
+
+        override fun onMessage(channel: String, message: String) {
+            listener(message)
+        }
+
+        override fun close() {
+            closed = true
+            try {
+                if (isSubscribed) {
+                    unsubscribe()
+                }
+            } catch (e: JedisException) {
+                // Not subscribed yet; the thread sees closed when it returns
+            }
+        }
+    }
+
+    companion object {
+        private val logger = System.getLogger(JedisCacheStore::class.java.name)
+        private const val RESUBSCRIBE_DELAY_MS = 1000L
+
+        /**
+         * Creates a store over a client. Closing the store does not close the client.
+         *
+         * @param client The client to read and write through
+         * @return A new JedisCacheStore
+         */
+        @JvmStatic
+        fun create(client: UnifiedJedis): JedisCacheStore = JedisCacheStore(client)
+    }
+}
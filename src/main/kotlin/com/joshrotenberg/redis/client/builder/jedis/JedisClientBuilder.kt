@@ -1,6 +1,22 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
 import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.ResilientJedisPool
+import redis.clients.jedis.DefaultJedisClientConfig
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisClientConfig
 import redis.clients.jedis.JedisPool
 import redis.clients.jedis.JedisPoolConfig
 import redis.clients.jedis.Protocol
@@ -27,6 +43,13 @@ class JedisClientBuilder : RedisClientBuilder<JedisPool> {
     private var timeBetweenEvictionRunsMs: Long = JedisPoolConfig.DEFAULT_TIME_BETWEEN_EVICTION_RUNS.toMillis()
     private var blockWhenExhausted: Boolean = JedisPoolConfig.DEFAULT_BLOCK_WHEN_EXHAUSTED
     private var jmxEnabled: Boolean = true // Default JMX enabled value
+    private var prewarmCount: Int = 0
+    private var prewarmTimeoutMs: Long = 0
+    private var prewarmRequired: Boolean = true
+    private var autoPipeliningMaxBatch: Int? = null
+    private var autoPipeliningMaxDelayMicros: Long = 0
+    private var autoPipeliningConnections: Int = 1
+    private val resilience = RedisResiliencePipeline.create<JedisPool>()
 
     override fun host(host: String): JedisClientBuilder {
         this.host = host
@@ -162,8 +185,120 @@ class JedisClientBuilder : RedisClientBuilder<JedisPool> {
         return this
     }
 
+    /**
+     * Opens connections in parallel while the client is built, so the first requests find a warm pool
+     * instead of paying for connection handshakes inline.
+     *
+     * @param count The number of connections to open per pool, capped at the pool's maximum size
+     * @param timeoutMs The time build() waits for the connections in milliseconds
+     * @param required Whether build() fails if the pools are not warm in time, instead of logging a warning
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun prewarm(count: Int, timeoutMs: Long, required: Boolean = true): JedisClientBuilder {
+        require(count >= 0) { "count must not be negative" }
+        require(timeoutMs > 0) { "timeoutMs must be positive" }
+        this.prewarmCount = count
+        this.prewarmTimeoutMs = timeoutMs
+        this.prewarmRequired = required
+        return this
+    }
+
+    /**
+     * Enables auto-pipelining: commands issued concurrently from many threads are queued and written
+     * to Redis in pipelines over a few dedicated connections, see [AutoPipeliningJedis].
+     * The built pool is unchanged; use [autoPipelined] to create the auto-pipelining client from it.
+     *
+     * @param maxBatch The maximum number of commands per pipeline
+     * @param maxDelayMicros The time a writer waits for more commands before writing a partial batch
+     * @param connections The number of pipelined connections
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun autoPipelining(maxBatch: Int, maxDelayMicros: Long, connections: Int = 1): JedisClientBuilder {
+        require(maxBatch > 0) { "maxBatch must be positive" }
+        require(maxDelayMicros >= 0) { "maxDelayMicros must not be negative" }
+        require(connections > 0) { "connections must be positive" }
+        this.autoPipeliningMaxBatch = maxBatch
+        this.autoPipeliningMaxDelayMicros = maxDelayMicros
+        this.autoPipeliningConnections = connections
+        return this
+    }
+
+    /**
+     * Creates an auto-pipelining client with the configured settings, over connections borrowed from a pool.
+     * Closing the auto-pipelining client returns its connections, but does not close the pool.
+     *
+     * @param pool The pool to borrow connections from, usually built by this builder
+     * @return A new AutoPipeliningJedis
+     * @throws IllegalStateException if auto-pipelining is not enabled
+     */
+    fun autoPipelined(pool: JedisPool): AutoPipeliningJedis {
+        val maxBatch = checkNotNull(autoPipeliningMaxBatch) { "Auto-pipelining is not enabled" }
+        return AutoPipeliningJedis.create(pool, maxBatch, autoPipeliningMaxDelayMicros, autoPipeliningConnections)
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<JedisPool>) -> RedisCircuitBreaker<JedisPool>): JedisClientBuilder {
+        resilience.circuitBreaker(configurer(RedisCircuitBreakerImpl.create()))
+        return this
+    }
+
+    override fun withRetry(configurer: (RedisRetry<JedisPool>) -> RedisRetry<JedisPool>): JedisClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<JedisPool>) -> RedisTimeLimiter<JedisPool>): JedisClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<JedisPool>) -> RedisBulkhead<JedisPool>): JedisClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<JedisPool>) -> RedisRateLimiter<JedisPool>): JedisClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the JedisPool that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(JedisPool::class.java)
+            .set("host", host)
+            .set("port", port)
+            .set("password", password)
+            .set("database", database)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("ssl", ssl)
+            .set("maxTotal", maxTotal)
+            .set("maxIdle", maxIdle)
+            .set("minIdle", minIdle)
+            .set("testOnBorrow", testOnBorrow)
+            .set("testOnReturn", testOnReturn)
+            .set("testWhileIdle", testWhileIdle)
+            .set("timeBetweenEvictionRunsMs", timeBetweenEvictionRunsMs)
+            .set("blockWhenExhausted", blockWhenExhausted)
+            .set("jmxEnabled", jmxEnabled)
+            .set("prewarmCount", prewarmCount)
+            .set("prewarmTimeoutMs", prewarmTimeoutMs)
+            .set("prewarmRequired", prewarmRequired)
+            .set("autoPipeliningMaxBatch", autoPipeliningMaxBatch)
+            .set("autoPipeliningMaxDelayMicros", autoPipeliningMaxDelayMicros)
+            .set("autoPipeliningConnections", autoPipeliningConnections)
+            .set("resilience", resilience.settings())
+            .build()
+
     /**
      * Builds and returns a JedisPool instance with the configured settings.
+     * If resilience policies are configured, the returned pool is a [ResilientJedisPool], whose Jedis
+     * instances apply them to every command. If pre-warming is enabled, the pool is filled before it is returned.
      *
      * @return A configured JedisPool instance
      */
@@ -181,22 +316,50 @@ class JedisClientBuilder : RedisClientBuilder<JedisPool> {
                 jmxEnabled = this@JedisClientBuilder.jmxEnabled
             }
 
-        return JedisPool(
-            poolConfig,
-            host,
-            port,
-            connectionTimeoutMs,
-            socketTimeoutMs,
-            password,
-            database,
-            null, // clientName
-            ssl,
-            null, // sslSocketFactory
-            null, // sslParameters
-            null // hostnameVerifier
-        )
+        val guard = resilience.createGuard()
+        val pool = if (guard != null) {
+            ResilientJedisPool(poolConfig, HostAndPort(host, port), createJedisClientConfig(), guard)
+        } else {
+            JedisPool(
+                poolConfig,
+                host,
+                port,
+                connectionTimeoutMs,
+                socketTimeoutMs,
+                password,
+                database,
+                null, // clientName
+                ssl,
+                null, // sslSocketFactory
+                null, // sslParameters
+                null // hostnameVerifier
+            )
+        }
+        if (prewarmCount > 0) {
+            try {
+                PoolPrewarmer.prewarm(mapOf("$host:$port" to pool), prewarmCount, prewarmTimeoutMs, prewarmRequired)
+            } catch (e: IllegalStateException) {
+                pool.close()
+                throw e
+            }
+        }
+        return try {
+            resilience.wrapExternal(pool)
+        } catch (e: RuntimeException) {
+            pool.close()
+            throw e
+        }
     }
 
+    private fun createJedisClientConfig(): JedisClientConfig =
+        DefaultJedisClientConfig.builder()
+            .connectionTimeoutMillis(connectionTimeoutMs)
+            .socketTimeoutMillis(socketTimeoutMs)
+            .database(database)
+            .password(password)
+            .ssl(ssl)
+            .build()
+
     companion object {
         /**
          * Creates a new JedisClientBuilder instance.
@@ -0,0 +1,28 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientProvider
+import com.joshrotenberg.redis.client.builder.RedisClusterClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisSentinelClientBuilder
+import java.util.function.Supplier
+
+/**
+ * Offers the Jedis builders to [com.joshrotenberg.redis.client.builder.RedisClientBuilderFactory].
+ * The client classes are named rather than referenced, so that resolving a Lettuce builder does not load Jedis.
+ */
+class JedisClientProvider : RedisClientProvider {
+    override val name: String = "jedis"
+
+    override fun builders(): Map<String, Supplier<out RedisClientBuilder<*>>> =
+        mapOf(
+            "redis.clients.jedis.JedisPool" to Supplier { JedisClientBuilder.create() },
+            "redis.clients.jedis.JedisPooled" to Supplier { JedisPooledClientBuilder.create() },
+            "redis.clients.jedis.UnifiedJedis" to Supplier { UnifiedJedisClientBuilder.create() }
+        )
+
+    override fun clusterBuilders(): Map<String, Supplier<out RedisClusterClientBuilder<*>>> =
+        mapOf("redis.clients.jedis.JedisCluster" to Supplier { JedisClusterClientBuilder.create() })
+
+    override fun sentinelBuilders(): Map<String, Supplier<out RedisSentinelClientBuilder<*>>> =
+        mapOf("redis.clients.jedis.JedisSentinelPool" to Supplier { JedisSentinelClientBuilder.create() })
+}
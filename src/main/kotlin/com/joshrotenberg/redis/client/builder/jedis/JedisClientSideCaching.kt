@@ -0,0 +1,62 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import com.joshrotenberg.redis.client.builder.cache.CacheEvictionPolicy
+import com.joshrotenberg.redis.client.builder.cache.ClientSideCacheMetrics
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.csc.Cache
+import redis.clients.jedis.csc.CacheConfig
+
+/**
+ * Server-assisted client-side caching for Jedis clients, using the cache built into Jedis.
+ * A client with a cache speaks RESP3 and enables CLIENT TRACKING on each pooled connection. Replies to
+ * read commands are cached locally, and Redis pushes an invalidation when one of the keys changes.
+ * Jedis flushes the cache when a connection reconnects.
+ *
+ * The Jedis cache is bounded by its number of entries and evicts the least recently used entry. It
+ * tracks the keys each connection read, so Redis's broadcast mode is not available here.
+ */
+object JedisClientSideCaching {
+
+    /**
+     * Creates the Jedis cache configuration for the given settings.
+     *
+     * @throws IllegalArgumentException if a setting is not supported by the Jedis cache
+     */
+    internal fun cacheConfig(
+        maxEntries: Int,
+        maxBytes: Long,
+        ttlMs: Long,
+        evictionPolicy: CacheEvictionPolicy
+    ): CacheConfig {
+        require(maxEntries > 0) { "maxEntries must be positive" }
+        require(maxBytes == 0L) { "The Jedis client-side cache is bounded by entries only; maxBytes must be 0" }
+        require(ttlMs == 0L) { "The Jedis client-side cache relies on invalidations; ttlMs must be 0" }
+        require(evictionPolicy == CacheEvictionPolicy.LRU) { "The Jedis client-side cache supports LRU eviction only" }
+        return CacheConfig.builder().maxSize(maxEntries).build()
+    }
+
+    /**
+     * Returns the metrics of the client-side cache of a Jedis client.
+     *
+     * @param client A client built with client-side caching enabled, including one wrapped by resilience
+     *        policies or read coalescing
+     * @return The metrics of the client's cache
+     * @throws IllegalStateException if the client has no cache
+     */
+    @JvmStatic
+    fun metrics(client: UnifiedJedis): ClientSideCacheMetrics {
+        val cache: Cache = checkNotNull(client.cache) { "Client-side caching is not enabled for this client" }
+        return object : ClientSideCacheMetrics {
+            override val hits: Long
+                get() = cache.stats.hitCount
+            override val misses: Long
+                get() = cache.stats.missCount
+            override val invalidations: Long
+                get() = cache.stats.invalidationCount
+            override val evictions: Long
+                get() = cache.stats.evictCount
+            override val size: Long
+                get() = cache.size.toLong()
+        }
+    }
+}
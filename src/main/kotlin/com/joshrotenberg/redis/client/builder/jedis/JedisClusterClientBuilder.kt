@@ -1,6 +1,19 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
 import com.joshrotenberg.redis.client.builder.RedisClusterClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.ResilientJedisCluster
 import redis.clients.jedis.ConnectionPoolConfig
 import redis.clients.jedis.HostAndPort
 import redis.clients.jedis.JedisCluster
@@ -28,6 +41,15 @@ class JedisClusterClientBuilder : RedisClusterClientBuilder<JedisCluster> {
     private var timeBetweenEvictionRunsMs: Long = 30000
     private var blockWhenExhausted: Boolean = true
     private var jmxEnabled: Boolean = true
+    private var prewarmCount: Int = 0
+    private var prewarmTimeoutMs: Long = 0
+    private var prewarmRequired: Boolean = true
+    private var multiKeyMaxBatch: Int? = null
+    private var multiKeyNodeTimeoutMs: Long = 0
+
+    // Resilience policies applied to the built client; circuit breakers are kept per node
+    private val resilience = RedisResiliencePipeline.create<JedisCluster>()
+    private var nodeCircuitBreaker: RedisCircuitBreakerImpl<JedisCluster>? = null
 
     override fun addNode(host: String, port: Int): JedisClusterClientBuilder {
         nodes.add(HostAndPort(host, port))
@@ -169,8 +191,123 @@ class JedisClusterClientBuilder : RedisClusterClientBuilder<JedisCluster> {
         return this
     }
 
+    /**
+     * Opens connections in parallel while the client is built, so the first requests find a warm pool
+     * instead of paying for connection handshakes inline. The pool of every node discovered from the
+     * cluster's slot map is warmed, not just the seed nodes.
+     *
+     * @param count The number of connections to open per pool, capped at the pool's maximum size
+     * @param timeoutMs The time build() waits for the connections in milliseconds
+     * @param required Whether build() fails if the pools are not warm in time, instead of logging a warning
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun prewarm(count: Int, timeoutMs: Long, required: Boolean = true): JedisClusterClientBuilder {
+        require(count >= 0) { "count must not be negative" }
+        require(timeoutMs > 0) { "timeoutMs must be positive" }
+        this.prewarmCount = count
+        this.prewarmTimeoutMs = timeoutMs
+        this.prewarmRequired = required
+        return this
+    }
+
+    /**
+     * Enables slot-aware multi-key commands: MGET, MSET and DEL over keys in any slots, run as one
+     * pipeline per node in parallel, see [ClusterMultiKeyExecutor].
+     * The built client is unchanged; use [multiKeyExecutor] to create the executor for it.
+     *
+     * @param maxBatch The maximum number of keys per command
+     * @param nodeTimeoutMs The time to wait for the pipelines of all nodes in milliseconds
+     * @return This builder instance
+     */
+    fun multiKey(maxBatch: Int, nodeTimeoutMs: Long): JedisClusterClientBuilder {
+        require(maxBatch > 0) { "maxBatch must be positive" }
+        require(nodeTimeoutMs > 0) { "nodeTimeoutMs must be positive" }
+        this.multiKeyMaxBatch = maxBatch
+        this.multiKeyNodeTimeoutMs = nodeTimeoutMs
+        return this
+    }
+
+    /**
+     * Creates a multi-key executor with the configured settings. Closing the executor does not close
+     * the cluster client.
+     *
+     * @param cluster The cluster client, usually built by this builder
+     * @return A new ClusterMultiKeyExecutor
+     * @throws IllegalStateException if multi-key commands are not enabled
+     */
+    fun multiKeyExecutor(cluster: JedisCluster): ClusterMultiKeyExecutor {
+        val maxBatch = checkNotNull(multiKeyMaxBatch) { "Multi-key commands are not enabled" }
+        return ClusterMultiKeyExecutor.create(cluster, maxBatch, multiKeyNodeTimeoutMs)
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<JedisCluster>) -> RedisCircuitBreaker<JedisCluster>): JedisClusterClientBuilder {
+        val circuitBreaker = configurer(RedisCircuitBreakerImpl.create())
+        if (circuitBreaker is RedisCircuitBreakerImpl<JedisCluster>) {
+            nodeCircuitBreaker = circuitBreaker
+        } else {
+            resilience.circuitBreaker(circuitBreaker)
+        }
+        return this
+    }
+
+    override fun withRetry(configurer: (RedisRetry<JedisCluster>) -> RedisRetry<JedisCluster>): JedisClusterClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<JedisCluster>) -> RedisTimeLimiter<JedisCluster>): JedisClusterClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<JedisCluster>) -> RedisBulkhead<JedisCluster>): JedisClusterClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<JedisCluster>) -> RedisRateLimiter<JedisCluster>): JedisClusterClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the JedisCluster that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(JedisCluster::class.java)
+            .set("nodes", nodes)
+            .set("password", password)
+            .set("clientName", clientName)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("ssl", ssl)
+            .set("maxRedirections", maxRedirections)
+            .set("maxTotal", maxTotal)
+            .set("maxIdle", maxIdle)
+            .set("minIdle", minIdle)
+            .set("testOnBorrow", testOnBorrow)
+            .set("testOnReturn", testOnReturn)
+            .set("testWhileIdle", testWhileIdle)
+            .set("timeBetweenEvictionRunsMs", timeBetweenEvictionRunsMs)
+            .set("blockWhenExhausted", blockWhenExhausted)
+            .set("jmxEnabled", jmxEnabled)
+            .set("prewarmCount", prewarmCount)
+            .set("prewarmTimeoutMs", prewarmTimeoutMs)
+            .set("prewarmRequired", prewarmRequired)
+            .set("multiKeyMaxBatch", multiKeyMaxBatch)
+            .set("multiKeyNodeTimeoutMs", multiKeyNodeTimeoutMs)
+            .set("resilience", resilience.settings())
+            .set("nodeCircuitBreaker", nodeCircuitBreaker?.settings())
+            .build()
+
     /**
      * Builds and returns a JedisCluster instance with the configured settings.
+     * If resilience policies are configured, the returned client applies them to every command,
+     * with one circuit breaker per cluster node. If pre-warming is enabled, the pool of every node is
+     * filled before the client is returned.
      *
      * @return A configured JedisCluster instance
      */
@@ -192,9 +329,22 @@ class JedisClusterClientBuilder : RedisClusterClientBuilder<JedisCluster> {
                 jmxEnabled = this@JedisClusterClientBuilder.jmxEnabled
             }
 
-        // If there's only one node, use the single node constructor
-        if (nodes.size == 1) {
-            return JedisCluster(
+        val client = if (!resilience.isEmpty() || nodeCircuitBreaker != null) {
+            ResilientJedisCluster(
+                nodes,
+                connectionTimeoutMs,
+                socketTimeoutMs,
+                maxRedirections,
+                password ?: "",
+                clientName ?: "",
+                poolConfig,
+                ssl,
+                resilience.createGuard(),
+                nodeCircuitBreaker?.createNodeCircuitBreakers()
+            )
+        } else if (nodes.size == 1) {
+            // If there's only one node, use the single node constructor
+            JedisCluster(
                 nodes.first(),
                 connectionTimeoutMs,
                 socketTimeoutMs,
@@ -206,7 +356,7 @@ class JedisClusterClientBuilder : RedisClusterClientBuilder<JedisCluster> {
             )
         } else {
             // For multiple nodes, use the set of nodes constructor
-            return JedisCluster(
+            JedisCluster(
                 nodes,
                 connectionTimeoutMs,
                 socketTimeoutMs,
@@ -217,6 +367,21 @@ class JedisClusterClientBuilder : RedisClusterClientBuilder<JedisCluster> {
                 ssl
             )
         }
+
+        if (prewarmCount > 0) {
+            try {
+                PoolPrewarmer.prewarm(client.clusterNodes, prewarmCount, prewarmTimeoutMs, prewarmRequired)
+            } catch (e: IllegalStateException) {
+                client.close()
+                throw e
+            }
+        }
+        return try {
+            resilience.wrapExternal(client)
+        } catch (e: RuntimeException) {
+            client.close()
+            throw e
+        }
     }
 
     companion object {
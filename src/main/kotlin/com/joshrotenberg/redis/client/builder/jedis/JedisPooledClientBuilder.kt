@@ -1,11 +1,28 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
 import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.cache.CacheEvictionPolicy
+import com.joshrotenberg.redis.client.builder.coalescing.CoalescingJedisPooled
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
 import redis.clients.jedis.DefaultJedisClientConfig
 import redis.clients.jedis.HostAndPort
 import redis.clients.jedis.JedisClientConfig
 import redis.clients.jedis.JedisPooled
 import redis.clients.jedis.Protocol
+import redis.clients.jedis.RedisProtocol
+import redis.clients.jedis.csc.CacheConfig
+import redis.clients.jedis.util.JedisURIHelper
 import java.net.URI
 import javax.net.ssl.HostnameVerifier
 import javax.net.ssl.SSLParameters
@@ -40,6 +57,20 @@ class JedisPooledClientBuilder : RedisClientBuilder<JedisPooled> {
 
     private var connectionMode: ConnectionMode = ConnectionMode.DIRECT
 
+    // Client-side cache settings
+    private var cacheConfig: CacheConfig? = null
+
+    // Auto-pipelining settings
+    private var autoPipeliningMaxBatch: Int? = null
+    private var autoPipeliningMaxDelayMicros: Long = 0
+    private var autoPipeliningConnections: Int = 1
+
+    // Read coalescing
+    private var coalesceReads: Boolean = false
+
+    // Resilience policies applied to the built client
+    private val resilience = RedisResiliencePipeline.create<JedisPooled>()
+
     override fun host(host: String): JedisPooledClientBuilder {
         this.host = host
         return this
@@ -154,25 +185,159 @@ class JedisPooledClientBuilder : RedisClientBuilder<JedisPooled> {
         return uri(URI.create(uri))
     }
 
+    /**
+     * Enables server-assisted client-side caching with the Jedis cache, see [JedisClientSideCaching].
+     * The built client speaks RESP3 and answers repeated reads of unchanged keys from local memory.
+     *
+     * @param maxEntries The maximum number of cached replies
+     * @param maxBytes Must be 0; the Jedis cache is bounded by entries only
+     * @param ttlMs Must be 0; entries stay cached until they are invalidated or evicted
+     * @param evictionPolicy Must be [CacheEvictionPolicy.LRU]
+     * @return This builder instance
+     * @throws IllegalArgumentException if a setting is not supported by the Jedis cache
+     */
+    @JvmOverloads
+    fun clientSideCache(
+        maxEntries: Int,
+        maxBytes: Long = 0,
+        ttlMs: Long = 0,
+        evictionPolicy: CacheEvictionPolicy = CacheEvictionPolicy.LRU
+    ): JedisPooledClientBuilder {
+        this.cacheConfig = JedisClientSideCaching.cacheConfig(maxEntries, maxBytes, ttlMs, evictionPolicy)
+        return this
+    }
+
+    /**
+     * Enables auto-pipelining: commands issued concurrently from many threads are queued and written
+     * to Redis in pipelines over a few dedicated connections, see [AutoPipeliningJedis].
+     * The built client is unchanged; use [autoPipelined] to create the auto-pipelining client from it.
+     *
+     * @param maxBatch The maximum number of commands per pipeline
+     * @param maxDelayMicros The time a writer waits for more commands before writing a partial batch
+     * @param connections The number of pipelined connections
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun autoPipelining(maxBatch: Int, maxDelayMicros: Long, connections: Int = 1): JedisPooledClientBuilder {
+        require(maxBatch > 0) { "maxBatch must be positive" }
+        require(maxDelayMicros >= 0) { "maxDelayMicros must not be negative" }
+        require(connections > 0) { "connections must be positive" }
+        this.autoPipeliningMaxBatch = maxBatch
+        this.autoPipeliningMaxDelayMicros = maxDelayMicros
+        this.autoPipeliningConnections = connections
+        return this
+    }
+
+    /**
+     * Creates an auto-pipelining client with the configured settings, over connections borrowed from
+     * the pool of a JedisPooled client. Closing the auto-pipelining client returns its connections, but
+     * does not close the pool. Resilience policies of the JedisPooled client do not apply to it.
+     *
+     * @param client The client whose pool to borrow connections from, usually built by this builder
+     * @return A new AutoPipeliningJedis
+     * @throws IllegalStateException if auto-pipelining is not enabled
+     */
+    fun autoPipelined(client: JedisPooled): AutoPipeliningJedis {
+        val maxBatch = checkNotNull(autoPipeliningMaxBatch) { "Auto-pipelining is not enabled" }
+        return AutoPipeliningJedis.create(client.pool, maxBatch, autoPipeliningMaxDelayMicros, autoPipeliningConnections)
+    }
+
+    /**
+     * Enables read coalescing: concurrent identical reads, the same command with the same key and
+     * arguments, share one request to Redis and its reply, see [CoalescingJedisPooled].
+     * This collapses stampedes on hot keys, for example when a popular cached value expires and many
+     * threads read it at once. Callers of a shared read receive the same reply object. A read issued after
+     * a write to its key made through this client returns does not share a read sent before the write.
+     *
+     * @param enabled Whether to coalesce reads
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun coalesceReads(enabled: Boolean = true): JedisPooledClientBuilder {
+        this.coalesceReads = enabled
+        return this
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<JedisPooled>) -> RedisCircuitBreaker<JedisPooled>): JedisPooledClientBuilder {
+        resilience.circuitBreaker(configurer(RedisCircuitBreakerImpl.create()))
+        return this
+    }
+
+    override fun withRetry(configurer: (RedisRetry<JedisPooled>) -> RedisRetry<JedisPooled>): JedisPooledClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<JedisPooled>) -> RedisTimeLimiter<JedisPooled>): JedisPooledClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<JedisPooled>) -> RedisBulkhead<JedisPooled>): JedisPooledClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<JedisPooled>) -> RedisRateLimiter<JedisPooled>): JedisPooledClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the JedisPooled that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(JedisPooled::class.java)
+            .set("host", host)
+            .set("port", port)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("database", database)
+            .set("clientName", clientName)
+            .set("password", password)
+            .set("user", user)
+            .set("ssl", ssl)
+            .set("sslSocketFactory", sslSocketFactory)
+            .set("sslParameters", sslParameters)
+            .set("hostnameVerifier", hostnameVerifier)
+            .set("uri", uri)
+            .set("connectionMode", connectionMode)
+            .set("cacheConfig", cacheConfig)
+            .set("autoPipeliningMaxBatch", autoPipeliningMaxBatch)
+            .set("autoPipeliningMaxDelayMicros", autoPipeliningMaxDelayMicros)
+            .set("autoPipeliningConnections", autoPipeliningConnections)
+            .set("coalesceReads", coalesceReads)
+            .set("resilience", resilience.settings())
+            .build()
+
     /**
      * Builds and returns a JedisPooled instance with the configured settings.
+     * If resilience policies are configured, the returned client applies them to every command.
+     * If read coalescing is enabled, the returned client is a [CoalescingJedisPooled] over it.
      *
      * @return A configured JedisPooled instance
      */
     override fun build(): JedisPooled {
-        return when (connectionMode) {
+        val client = when (connectionMode) {
             ConnectionMode.URI -> buildFromUri()
             ConnectionMode.DIRECT -> buildDirectConnection()
         }
+        val resilient = resilience.wrap(client)
+        return if (coalesceReads) CoalescingJedisPooled(resilient) else resilient
     }
 
     private fun buildFromUri(): JedisPooled {
-        return uri?.let { JedisPooled(it) } ?: throw IllegalStateException("URI is not set")
+        val uri = uri ?: throw IllegalStateException("URI is not set")
+        val cacheConfig = cacheConfig ?: return JedisPooled(uri)
+        return JedisPooled(JedisURIHelper.getHostAndPort(uri), createJedisClientConfig(uri), cacheConfig)
     }
 
     private fun buildDirectConnection(): JedisPooled {
         val config = createJedisClientConfig()
-        return JedisPooled(HostAndPort(host, port), config)
+        val cacheConfig = cacheConfig ?: return JedisPooled(HostAndPort(host, port), config)
+        return JedisPooled(HostAndPort(host, port), config, cacheConfig)
     }
 
     private fun createJedisClientConfig(): JedisClientConfig {
@@ -187,7 +352,27 @@ class JedisPooledClientBuilder : RedisClientBuilder<JedisPooled> {
             .sslSocketFactory(sslSocketFactory)
             .sslParameters(sslParameters)
             .hostnameVerifier(hostnameVerifier)
-            .build()
+            .apply {
+                if (cacheConfig != null) {
+                    protocol(RedisProtocol.RESP3)
+                }
+            }.build()
+    }
+
+    private fun createJedisClientConfig(uri: URI): JedisClientConfig {
+        return DefaultJedisClientConfig.builder()
+            .connectionTimeoutMillis(connectionTimeoutMs)
+            .socketTimeoutMillis(socketTimeoutMs)
+            .database(JedisURIHelper.getDBIndex(uri))
+            .clientName(clientName)
+            .password(JedisURIHelper.getPassword(uri))
+            .user(JedisURIHelper.getUser(uri))
+            .ssl(JedisURIHelper.isRedisSSLScheme(uri))
+            .apply {
+                if (cacheConfig != null) {
+                    protocol(RedisProtocol.RESP3)
+                }
+            }.build()
     }
 
     companion object {
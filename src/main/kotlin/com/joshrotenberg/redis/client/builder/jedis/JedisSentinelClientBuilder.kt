@@ -1,6 +1,21 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
 import com.joshrotenberg.redis.client.builder.RedisSentinelClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.ResilientJedisSentinelPool
+import redis.clients.jedis.DefaultJedisClientConfig
+import redis.clients.jedis.HostAndPort
 import redis.clients.jedis.JedisPoolConfig
 import redis.clients.jedis.JedisSentinelPool
 import redis.clients.jedis.Protocol
@@ -29,6 +44,10 @@ class JedisSentinelClientBuilder : RedisSentinelClientBuilder<JedisSentinelPool>
     private var blockWhenExhausted: Boolean = JedisPoolConfig.DEFAULT_BLOCK_WHEN_EXHAUSTED
     private var jmxEnabled: Boolean = true // Default JMX enabled value
     private var clientName: String? = null
+    private var prewarmCount: Int = 0
+    private var prewarmTimeoutMs: Long = 0
+    private var prewarmRequired: Boolean = true
+    private val resilience = RedisResiliencePipeline.create<JedisSentinelPool>()
 
     override fun addSentinel(host: String, port: Int): JedisSentinelClientBuilder {
         sentinels.add("$host:$port")
@@ -175,8 +194,84 @@ class JedisSentinelClientBuilder : RedisSentinelClientBuilder<JedisSentinelPool>
         return this
     }
 
+    /**
+     * Opens connections in parallel while the client is built, so the first requests find a warm pool
+     * instead of paying for connection handshakes inline. The pool of the current master is warmed.
+     *
+     * @param count The number of connections to open per pool, capped at the pool's maximum size
+     * @param timeoutMs The time build() waits for the connections in milliseconds
+     * @param required Whether build() fails if the pools are not warm in time, instead of logging a warning
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun prewarm(count: Int, timeoutMs: Long, required: Boolean = true): JedisSentinelClientBuilder {
+        require(count >= 0) { "count must not be negative" }
+        require(timeoutMs > 0) { "timeoutMs must be positive" }
+        this.prewarmCount = count
+        this.prewarmTimeoutMs = timeoutMs
+        this.prewarmRequired = required
+        return this
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<JedisSentinelPool>) -> RedisCircuitBreaker<JedisSentinelPool>): JedisSentinelClientBuilder {
+        resilience.circuitBreaker(configurer(RedisCircuitBreakerImpl.create()))
+        return this
+    }
+
+    override fun withRetry(configurer: (RedisRetry<JedisSentinelPool>) -> RedisRetry<JedisSentinelPool>): JedisSentinelClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<JedisSentinelPool>) -> RedisTimeLimiter<JedisSentinelPool>): JedisSentinelClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<JedisSentinelPool>) -> RedisBulkhead<JedisSentinelPool>): JedisSentinelClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<JedisSentinelPool>) -> RedisRateLimiter<JedisSentinelPool>): JedisSentinelClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the JedisSentinelPool that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(JedisSentinelPool::class.java)
+            .set("sentinels", sentinels)
+            .set("masterName", masterName)
+            .set("password", password)
+            .set("database", database)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("ssl", ssl)
+            .set("maxTotal", maxTotal)
+            .set("maxIdle", maxIdle)
+            .set("minIdle", minIdle)
+            .set("testOnBorrow", testOnBorrow)
+            .set("testOnReturn", testOnReturn)
+            .set("testWhileIdle", testWhileIdle)
+            .set("timeBetweenEvictionRunsMs", timeBetweenEvictionRunsMs)
+            .set("blockWhenExhausted", blockWhenExhausted)
+            .set("jmxEnabled", jmxEnabled)
+            .set("clientName", clientName)
+            .set("prewarmCount", prewarmCount)
+            .set("prewarmTimeoutMs", prewarmTimeoutMs)
+            .set("prewarmRequired", prewarmRequired)
+            .set("resilience", resilience.settings())
+            .build()
+
     /**
      * Builds and returns a JedisSentinelPool instance with the configured settings.
+     * If resilience policies are configured, the returned pool is a [ResilientJedisSentinelPool], whose Jedis
+     * instances apply them to every command. If pre-warming is enabled, the pool is filled before it is returned.
      *
      * @return A configured JedisSentinelPool instance
      */
@@ -202,16 +297,52 @@ class JedisSentinelClientBuilder : RedisSentinelClientBuilder<JedisSentinelPool>
                 jmxEnabled = this@JedisSentinelClientBuilder.jmxEnabled
             }
 
-        return JedisSentinelPool(
-            masterName,
-            sentinels,
-            poolConfig,
-            connectionTimeoutMs,
-            socketTimeoutMs,
-            password,
-            database,
-            clientName
-        )
+        val guard = resilience.createGuard()
+        val pool = if (guard != null) {
+            ResilientJedisSentinelPool(
+                masterName,
+                sentinels.map { HostAndPort.from(it) }.toSet(),
+                poolConfig,
+                DefaultJedisClientConfig.builder()
+                    .connectionTimeoutMillis(connectionTimeoutMs)
+                    .socketTimeoutMillis(socketTimeoutMs)
+                    .password(password)
+                    .database(database)
+                    .clientName(clientName)
+                    .build(),
+                DefaultJedisClientConfig.builder()
+                    .connectionTimeoutMillis(connectionTimeoutMs)
+                    .socketTimeoutMillis(socketTimeoutMs)
+                    .build(),
+                guard
+            )
+        } else {
+            JedisSentinelPool(
+                masterName,
+                sentinels,
+                poolConfig,
+                connectionTimeoutMs,
+                socketTimeoutMs,
+                password,
+                database,
+                clientName
+            )
+        }
+        if (prewarmCount > 0) {
+            try {
+                val pools = mapOf("$masterName@${pool.currentHostMaster}" to pool)
+                PoolPrewarmer.prewarm(pools, prewarmCount, prewarmTimeoutMs, prewarmRequired)
+            } catch (e: IllegalStateException) {
+                pool.close()
+                throw e
+            }
+        }
+        return try {
+            resilience.wrapExternal(pool)
+        } catch (e: RuntimeException) {
+            pool.close()
+            throw e
+        }
     }
 
     companion object {
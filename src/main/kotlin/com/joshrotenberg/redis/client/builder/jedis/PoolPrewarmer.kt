@@ -0,0 +1,75 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import org.apache.commons.pool2.impl.GenericObjectPool
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * Fills Jedis connection pools with idle connections before a client is handed out.
+ * commons-pool creates connections lazily, so without pre-warming the first requests after startup pay
+ * for the TCP connect, TLS, AUTH and SELECT round trips inline. Connections are opened in parallel on
+ * short-lived daemon threads, across all pools at once.
+ */
+internal object PoolPrewarmer {
+    private const val MAX_THREADS = 32
+    private val logger = System.getLogger(PoolPrewarmer::class.java.name)
+
+    /**
+     * Opens up to [count] idle connections in each pool, bounded by the pool's maximum size.
+     *
+     * @param pools The pools to warm, keyed by a name used in the failure message
+     * @param count The number of connections to open per pool
+     * @param timeoutMs The time to wait for all connections in milliseconds
+     * @param required Whether missing the target fails instead of logging a warning
+     * @throws IllegalStateException if [required] is set and a pool did not reach the target in time
+     */
+    fun prewarm(pools: Map<String, GenericObjectPool<*>>, count: Int, timeoutMs: Long, required: Boolean) {
+        val targets = pools.mapValues { (_, pool) -> if (pool.maxTotal < 0) count else minOf(count, pool.maxTotal) }
+        val tasks = targets.values.sum()
+        if (tasks == 0) {
+            return
+        }
+
+        val opened = pools.mapValues { AtomicInteger() }
+        val failure = AtomicReference<Exception>()
+        val done = CountDownLatch(tasks)
+        val executor = Executors.newFixedThreadPool(minOf(tasks, MAX_THREADS)) { runnable ->
+            Thread(runnable, "redis-pool-prewarm").apply { isDaemon = true }
+        }
+        try {
+            for ((name, pool) in pools) {
+                repeat(targets.getValue(name)) {
+                    executor.execute {
+                        try {
+                            pool.addObject()
+                            opened.getValue(name).incrementAndGet()
+                        } catch (e: Exception) {
+                            failure.compareAndSet(null, e)
+                        } finally {
+                            done.countDown()
+                        }
+                    }
+                }
+            }
+            done.await(timeoutMs, TimeUnit.MILLISECONDS)
+        } finally {
+            // Connections still being opened are abandoned; the pool keeps any that complete later
+            executor.shutdownNow()
+        }
+
+        val cold = targets.filter { (name, target) -> opened.getValue(name).get() < target }
+        if (cold.isEmpty()) {
+            return
+        }
+        val message = cold.entries.joinToString(
+            prefix = "Connection pools not warmed within $timeoutMs ms: "
+        ) { (name, target) -> "$name ${opened.getValue(name).get()}/$target" }
+        if (required) {
+            throw IllegalStateException(message, failure.get())
+        }
+        logger.log(System.Logger.Level.WARNING, message, failure.get())
+    }
+}
@@ -1,11 +1,29 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
 import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.cache.CacheEvictionPolicy
+import com.joshrotenberg.redis.client.builder.coalescing.CoalescingUnifiedJedis
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
+import redis.clients.jedis.Connection
 import redis.clients.jedis.DefaultJedisClientConfig
 import redis.clients.jedis.HostAndPort
 import redis.clients.jedis.JedisClientConfig
 import redis.clients.jedis.Protocol
+import redis.clients.jedis.RedisProtocol
 import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.csc.CacheConfig
+import redis.clients.jedis.util.JedisURIHelper
 import java.net.URI
 import javax.net.ssl.HostnameVerifier
 import javax.net.ssl.SSLParameters
@@ -40,6 +58,20 @@ class UnifiedJedisClientBuilder : RedisClientBuilder<UnifiedJedis> {
 
     private var connectionMode: ConnectionMode = ConnectionMode.DIRECT
 
+    // Client-side cache settings
+    private var cacheConfig: CacheConfig? = null
+
+    // Auto-pipelining settings
+    private var autoPipeliningMaxBatch: Int? = null
+    private var autoPipeliningMaxDelayMicros: Long = 0
+    private var autoPipeliningConnections: Int = 1
+
+    // Read coalescing
+    private var coalesceReads: Boolean = false
+
+    // Resilience policies applied to the built client
+    private val resilience = RedisResiliencePipeline.create<UnifiedJedis>()
+
     override fun host(host: String): UnifiedJedisClientBuilder {
         this.host = host
         return this
@@ -154,25 +186,173 @@ class UnifiedJedisClientBuilder : RedisClientBuilder<UnifiedJedis> {
         return uri(URI.create(uri))
     }
 
+    /**
+     * Enables server-assisted client-side caching with the Jedis cache, see [JedisClientSideCaching].
+     * The built client speaks RESP3 and answers repeated reads of unchanged keys from local memory.
+     *
+     * @param maxEntries The maximum number of cached replies
+     * @param maxBytes Must be 0; the Jedis cache is bounded by entries only
+     * @param ttlMs Must be 0; entries stay cached until they are invalidated or evicted
+     * @param evictionPolicy Must be [CacheEvictionPolicy.LRU]
+     * @return This builder instance
+     * @throws IllegalArgumentException if a setting is not supported by the Jedis cache
+     */
+    @JvmOverloads
+    fun clientSideCache(
+        maxEntries: Int,
+        maxBytes: Long = 0,
+        ttlMs: Long = 0,
+        evictionPolicy: CacheEvictionPolicy = CacheEvictionPolicy.LRU
+    ): UnifiedJedisClientBuilder {
+        this.cacheConfig = JedisClientSideCaching.cacheConfig(maxEntries, maxBytes, ttlMs, evictionPolicy)
+        return this
+    }
+
+    /**
+     * Enables auto-pipelining: commands issued concurrently from many threads are queued and written
+     * to Redis in pipelines over a few dedicated connections, see [AutoPipeliningJedis].
+     * AutoPipeliningJedis is a UnifiedJedis, so [build] returns it directly, with its own connections.
+     *
+     * @param maxBatch The maximum number of commands per pipeline
+     * @param maxDelayMicros The time a writer waits for more commands before writing a partial batch
+     * @param connections The number of pipelined connections
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun autoPipelining(maxBatch: Int, maxDelayMicros: Long, connections: Int = 1): UnifiedJedisClientBuilder {
+        require(maxBatch > 0) { "maxBatch must be positive" }
+        require(maxDelayMicros >= 0) { "maxDelayMicros must not be negative" }
+        require(connections > 0) { "connections must be positive" }
+        this.autoPipeliningMaxBatch = maxBatch
+        this.autoPipeliningMaxDelayMicros = maxDelayMicros
+        this.autoPipeliningConnections = connections
+        return this
+    }
+
+    /**
+     * Enables read coalescing: concurrent identical reads, the same command with the same key and
+     * arguments, share one request to Redis and its reply, see [CoalescingUnifiedJedis].
+     * This collapses stampedes on hot keys, for example when a popular cached value expires and many
+     * threads read it at once. Callers of a shared read receive the same reply object. A read issued after
+     * a write to its key made through this client returns does not share a read sent before the write.
+     *
+     * @param enabled Whether to coalesce reads
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun coalesceReads(enabled: Boolean = true): UnifiedJedisClientBuilder {
+        this.coalesceReads = enabled
+        return this
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<UnifiedJedis>) -> RedisCircuitBreaker<UnifiedJedis>): UnifiedJedisClientBuilder {
+        resilience.circuitBreaker(configurer(RedisCircuitBreakerImpl.create()))
+        return this
+    }
+
+    override fun withRetry(configurer: (RedisRetry<UnifiedJedis>) -> RedisRetry<UnifiedJedis>): UnifiedJedisClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<UnifiedJedis>) -> RedisTimeLimiter<UnifiedJedis>): UnifiedJedisClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<UnifiedJedis>) -> RedisBulkhead<UnifiedJedis>): UnifiedJedisClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<UnifiedJedis>) -> RedisRateLimiter<UnifiedJedis>): UnifiedJedisClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the UnifiedJedis that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(UnifiedJedis::class.java)
+            .set("host", host)
+            .set("port", port)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("database", database)
+            .set("clientName", clientName)
+            .set("password", password)
+            .set("user", user)
+            .set("ssl", ssl)
+            .set("sslSocketFactory", sslSocketFactory)
+            .set("sslParameters", sslParameters)
+            .set("hostnameVerifier", hostnameVerifier)
+            .set("uri", uri)
+            .set("connectionMode", connectionMode)
+            .set("cacheConfig", cacheConfig)
+            .set("autoPipeliningMaxBatch", autoPipeliningMaxBatch)
+            .set("autoPipeliningMaxDelayMicros", autoPipeliningMaxDelayMicros)
+            .set("autoPipeliningConnections", autoPipeliningConnections)
+            .set("coalesceReads", coalesceReads)
+            .set("resilience", resilience.settings())
+            .build()
+
     /**
      * Builds and returns a UnifiedJedis instance with the configured settings.
+     * If resilience policies are configured, the returned client applies them to every command.
+     * If read coalescing is enabled, the returned client is a [CoalescingUnifiedJedis] over it.
+     * If auto-pipelining is enabled, the commands are written by an [AutoPipeliningJedis], which is
+     * returned directly unless resilience policies or read coalescing wrap it.
      *
      * @return A configured UnifiedJedis instance
      */
     override fun build(): UnifiedJedis {
-        return when (connectionMode) {
-            ConnectionMode.URI -> buildFromUri()
-            ConnectionMode.DIRECT -> buildDirectConnection()
+        val client = when {
+            autoPipeliningMaxBatch != null -> buildAutoPipelined()
+            connectionMode == ConnectionMode.URI -> buildFromUri()
+            else -> buildDirectConnection()
+        }
+        val resilient = try {
+            resilience.wrap(client)
+        } catch (e: RuntimeException) {
+            // The client may already hold connections and writer threads
+            client.close()
+            throw e
+        }
+        return if (coalesceReads) CoalescingUnifiedJedis(resilient) else resilient
+    }
+
+    private fun buildAutoPipelined(): UnifiedJedis {
+        check(cacheConfig == null) { "Auto-pipelining cannot be combined with client-side caching" }
+        val (hostAndPort, config) = when (connectionMode) {
+            ConnectionMode.URI -> {
+                val uri = uri ?: throw IllegalStateException("URI is not set")
+                JedisURIHelper.getHostAndPort(uri) to createJedisClientConfig(uri)
+            }
+            ConnectionMode.DIRECT -> HostAndPort(host, port) to createJedisClientConfig()
+        }
+        return AutoPipeliningJedis.create(
+            autoPipeliningMaxBatch!!,
+            autoPipeliningMaxDelayMicros,
+            autoPipeliningConnections
+        ) {
+            val connection = Connection(hostAndPort, config)
+            PipelineConnection(connection) { connection.close() }
         }
     }
 
     private fun buildFromUri(): UnifiedJedis {
-        return uri?.let { UnifiedJedis(it) } ?: throw IllegalStateException("URI is not set")
+        val uri = uri ?: throw IllegalStateException("URI is not set")
+        val cacheConfig = cacheConfig ?: return UnifiedJedis(uri)
+        return UnifiedJedis(JedisURIHelper.getHostAndPort(uri), createJedisClientConfig(uri), cacheConfig)
     }
 
     private fun buildDirectConnection(): UnifiedJedis {
         val config = createJedisClientConfig()
-        return UnifiedJedis(HostAndPort(host, port), config)
+        val cacheConfig = cacheConfig ?: return UnifiedJedis(HostAndPort(host, port), config)
+        return UnifiedJedis(HostAndPort(host, port), config, cacheConfig)
     }
 
     private fun createJedisClientConfig(): JedisClientConfig {
@@ -187,7 +367,27 @@ class UnifiedJedisClientBuilder : RedisClientBuilder<UnifiedJedis> {
             .sslSocketFactory(sslSocketFactory)
             .sslParameters(sslParameters)
             .hostnameVerifier(hostnameVerifier)
-            .build()
+            .apply {
+                if (cacheConfig != null) {
+                    protocol(RedisProtocol.RESP3)
+                }
+            }.build()
+    }
+
+    private fun createJedisClientConfig(uri: URI): JedisClientConfig {
+        return DefaultJedisClientConfig.builder()
+            .connectionTimeoutMillis(connectionTimeoutMs)
+            .socketTimeoutMillis(socketTimeoutMs)
+            .database(JedisURIHelper.getDBIndex(uri))
+            .clientName(clientName)
+            .password(JedisURIHelper.getPassword(uri))
+            .user(JedisURIHelper.getUser(uri))
+            .ssl(JedisURIHelper.isRedisSSLScheme(uri))
+            .apply {
+                if (cacheConfig != null) {
+                    protocol(RedisProtocol.RESP3)
+                }
+            }.build()
     }
 
     companion object {
@@ -0,0 +1,205 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import com.joshrotenberg.redis.client.builder.resilience.RetryBudget
+import io.lettuce.core.ReadFrom
+import io.lettuce.core.RedisFuture
+import io.lettuce.core.cluster.RedisClusterClient
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands
+import io.lettuce.core.codec.RedisCodec
+import io.netty.util.Timer
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Issues read-only commands against a Redis cluster with hedging.
+ * A read is sent to the primary connection first. If it has not completed after the hedge delay,
+ * the same read is sent through a second connection that reads from replicas, and whichever reply
+ * arrives first completes the result.
+ *
+ * The hedge delay is either fixed or tracks the 95th percentile of recent primary read latencies.
+ * Hedges are scheduled on the timer wheel of the client resources and are limited by a budget that
+ * grows with every read, so they never exceed the configured share of traffic.
+ *
+ * Only pass read-only commands to [read]: a hedged command may be executed twice.
+ *
+ * @param K The key type
+ * @param V The value type
+ * @property primary The connection the first attempt of every read is sent through
+ * @property replicas The connection hedges are sent through, reading from replicas
+ * @property timer The timer used to schedule hedges
+ * @param hedgeDelayNanos The fixed hedge delay in nanoseconds, or 0 to use the observed 95th percentile
+ * @param maxHedgePercent The maximum number of hedges per 100 reads
+ */
+class HedgedClusterReader<K, V>(
+    private val primary: StatefulRedisClusterConnection<K, V>,
+    private val replicas: StatefulRedisClusterConnection<K, V>,
+    private val timer: Timer,
+    private val hedgeDelayNanos: Long,
+    maxHedgePercent: Double
+) : AutoCloseable {
+
+    /**
+     * Metrics of a hedged reader.
+     */
+    interface Metrics {
+        /**
+         * The number of reads issued.
+         */
+        val reads: Long
+
+        /**
+         * The number of reads that sent a hedge.
+         */
+        val hedges: Long
+
+        /**
+         * The number of hedges that answered before the primary read.
+         */
+        val hedgeWins: Long
+
+        /**
+         * The share of reads that sent a hedge.
+         */
+        val hedgeRate: Double
+
+        /**
+         * The share of hedges that answered before the primary read.
+         */
+        val winRate: Double
+
+        /**
+         * The current hedge delay in nanoseconds.
+         */
+        val hedgeDelayNanos: Long
+    }
+
+    private val budget = RetryBudget(maxHedgePercent / 100, MAX_HEDGE_BURST)
+    private val reads = LongAdder()
+    private val hedges = LongAdder()
+    private val hedgeWins = LongAdder()
+
+    // Racy updates are fine: the estimate only has to stay close to the percentile
+    @Volatile
+    private var p95Nanos: Long = INITIAL_DELAY_NANOS
+
+    init {
+        require(maxHedgePercent in 0.0..100.0) { "maxHedgePercent must be between 0 and 100" }
+    }
+
+    /**
+     * The metrics of this reader.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val reads: Long
+            get() = this@HedgedClusterReader.reads.sum()
+        override val hedges: Long
+            get() = this@HedgedClusterReader.hedges.sum()
+        override val hedgeWins: Long
+            get() = this@HedgedClusterReader.hedgeWins.sum()
+        override val hedgeRate: Double
+            get() = ratio(hedges, reads)
+        override val winRate: Double
+            get() = ratio(hedgeWins, hedges)
+        override val hedgeDelayNanos: Long
+            get() = currentHedgeDelay()
+    }
+
+    /**
+     * Issues a read-only command with hedging.
+     *
+     * @param command Issues the command on the given async API and returns its future
+     * @return A future completed by the first reply, or by the primary read's error
+     */
+    fun <T> read(command: (RedisAdvancedClusterAsyncCommands<K, V>) -> RedisFuture<T>): CompletableFuture<T> {
+        reads.increment()
+        budget.onSuccess()
+        val result = CompletableFuture<T>()
+        val start = System.nanoTime()
+        val hedge = timer.newTimeout({ sendHedge(command, result) }, currentHedgeDelay(), TimeUnit.NANOSECONDS)
+        command(primary.async()).whenComplete { value, error ->
+            hedge.cancel()
+            if (error != null) {
+                result.completeExceptionally(error)
+            } else {
+                recordLatency(System.nanoTime() - start)
+                result.complete(value)
+            }
+        }
+        return result
+    }
+
+    private fun <T> sendHedge(
+        command: (RedisAdvancedClusterAsyncCommands<K, V>) -> RedisFuture<T>,
+        result: CompletableFuture<T>
+    ) {
+        if (result.isDone || !budget.tryWithdraw()) {
+            return
+        }
+        hedges.increment()
+        command(replicas.async()).whenComplete { value, error ->
+            // A failed hedge is ignored; the primary read still decides the outcome
+            if (error == null && result.complete(value)) {
+                hedgeWins.increment()
+            }
+        }
+    }
+
+    private fun currentHedgeDelay(): Long = if (hedgeDelayNanos > 0) hedgeDelayNanos else p95Nanos
+
+    /**
+     * Moves the percentile estimate towards a latency sample. Samples above the estimate push it up
+     * 19 times as hard as samples below push it down, so it settles where 5% of samples exceed it.
+     */
+    private fun recordLatency(latencyNanos: Long) {
+        val estimate = p95Nanos
+        val step = maxOf(1, estimate / STEP_DIVISOR)
+        p95Nanos = if (latencyNanos > estimate) estimate + step * 19 else maxOf(1, estimate - step)
+    }
+
+    private fun ratio(part: Long, total: Long): Double = if (total == 0L) 0.0 else part.toDouble() / total
+
+    /**
+     * Closes both connections of this reader.
+     */
+    override fun close() {
+        primary.close()
+        replicas.close()
+    }
+
+    companion object {
+        private const val MAX_HEDGE_BURST = 10
+        private const val STEP_DIVISOR = 64
+        private val INITIAL_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(10)
+
+        /**
+         * Connects a hedged reader to a Redis cluster.
+         * The primary connection keeps the client's read preference, and hedges read from replicas.
+         *
+         * @param client The cluster client to connect with
+         * @param codec The codec of both connections
+         * @param hedgeDelayMs The fixed hedge delay in milliseconds, or 0 to use the observed 95th percentile
+         * @param maxHedgePercent The maximum number of hedges per 100 reads
+         * @return A new HedgedClusterReader
+         */
+        @JvmStatic
+        fun <K, V> connect(
+            client: RedisClusterClient,
+            codec: RedisCodec<K, V>,
+            hedgeDelayMs: Long,
+            maxHedgePercent: Double
+        ): HedgedClusterReader<K, V> {
+            val primary = client.connect(codec)
+            val replicas = client.connect(codec)
+            replicas.readFrom = ReadFrom.REPLICA
+            return HedgedClusterReader(
+                primary,
+                replicas,
+                client.resources.timer(),
+                TimeUnit.MILLISECONDS.toNanos(hedgeDelayMs),
+                maxHedgePercent
+            )
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import com.joshrotenberg.redis.client.builder.cache.RedisCacheStore
+import io.lettuce.core.RedisChannelHandler
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisConnectionStateListener
+import io.lettuce.core.SetArgs
+import io.lettuce.core.TrackingArgs
+import io.lettuce.core.api.StatefulRedisConnection
+import io.lettuce.core.api.push.PushListener
+import io.lettuce.core.codec.StringCodec
+import io.lettuce.core.pubsub.RedisPubSubAdapter
+import java.net.SocketAddress
+
+/**
+ * The L2 of a [com.joshrotenberg.redis.client.builder.cache.RedisTieredCache] over a Lettuce RedisClient.
+ * Reads and writes share one connection. Key tracking is enabled on that same connection, so with NOLOOP
+ * the cache is not told about its own writes; the connection must speak RESP3, which Lettuce negotiates
+ * by default with Redis 6 and later.
+ *
+ * Redis forgets tracking and subscriptions when a connection drops. Lettuce subscribes again on reconnect,
+ * and tracking is enabled again here; in both cases listeners are told that changes may have been missed.
+ *
+ * @property client The client that owns the connections
+ * @property connection The connection for reads, writes and key tracking
+ */
+class LettuceCacheStore private constructor(
+    private val client: RedisClient,
+    private val connection: StatefulRedisConnection<String, String>
+) : RedisCacheStore {
+
+    override fun get(key: String): String? = connection.sync().get(key)
+
+    override fun set(key: String, value: String, ttlMs: Long) {
+        if (ttlMs > 0) {
+            connection.sync().set(key, value, SetArgs.Builder.px(ttlMs))
+        } else {
+            connection.sync().set(key, value)
+        }
+    }
+
+    override fun delete(key: String) {
+        connection.sync().del(key)
+    }
+
+    override fun publish(channel: String, message: String) {
+        connection.sync().publish(channel, message)
+    }
+
+    override fun subscribe(channel: String, listener: (String?) -> Unit): AutoCloseable {
+        val pubSub = client.connectPubSub()
+        pubSub.addListener(object : RedisPubSubAdapter<String, String>() {
+            override fun message(channel: String, message: String) = listener(message)
+        })
+        val reconnectListener = reconnectListener(pubSub) { listener(null) }
+        client.addListener(reconnectListener)
+        try {
+            pubSub.sync().subscribe(channel)
+        } catch (e: Exception) {
+            client.removeListener(reconnectListener)
+            pubSub.close()
+            throw e
+        }
+        return AutoCloseable {
+            client.removeListener(reconnectListener)
+            pubSub.close()
+        }
+    }
+
+    override fun track(prefixes: List<String>, listener: (String?) -> Unit): AutoCloseable {
+        val trackingArgs = TrackingArgs.Builder.enabled().bcast().noloop().apply {
+            if (prefixes.isNotEmpty()) {
+                prefixes(*prefixes.toTypedArray())
+            }
+        }
+        val pushListener = PushListener { message ->
+            if (message.type == "invalidate") {
+                // The keys are null when Redis flushed its keyspace
+                val keys = message.getContent(StringCodec.UTF8::decodeKey).getOrNull(1) as List<*>?
+                if (keys == null) listener(null) else keys.forEach { listener(it as String) }
+            }
+        }
+        val reconnectListener = reconnectListener(connection) {
+            listener(null)
+            connection.async().clientTracking(trackingArgs)
+        }
+        connection.addListener(pushListener)
+        client.addListener(reconnectListener)
+        connection.sync().clientTracking(trackingArgs)
+        return AutoCloseable {
+            client.removeListener(reconnectListener)
+            connection.removeListener(pushListener)
+            connection.sync().clientTracking(TrackingArgs.Builder.enabled(false))
+        }
+    }
+
+    /**
+     * Closes the connection of the store. The client is not shut down.
+     */
+    override fun close() {
+        connection.close()
+    }
+
+    private fun reconnectListener(handler: Any, onReconnect: () -> Unit) = object : RedisConnectionStateListener {
+        override fun onRedisConnected(connected: RedisChannelHandler<*, *>, address: SocketAddress) {
+            if (connected === handler) {
+                onReconnect()
+            }
+        }
+    }
+
+    companion object {
+        /**
+         * Opens a connection and creates a store over it.
+         *
+         * @param client The client to connect with
+         * @return A new LettuceCacheStore
+         */
+        @JvmStatic
+        fun create(client: RedisClient): LettuceCacheStore = LettuceCacheStore(client, client.connect())
+    }
+}
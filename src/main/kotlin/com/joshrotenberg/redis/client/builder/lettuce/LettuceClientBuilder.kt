@@ -1,11 +1,29 @@
 package com.joshrotenberg.redis.client.builder.lettuce
 
 import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.cache.CacheEvictionPolicy
+import com.joshrotenberg.redis.client.builder.cache.LocalCache
+import com.joshrotenberg.redis.client.builder.cache.OffHeapCache
+import com.joshrotenberg.redis.client.builder.coalescing.CoalescingRedisClient
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
 import io.lettuce.core.ClientOptions
 import io.lettuce.core.RedisClient
 import io.lettuce.core.RedisURI
 import io.lettuce.core.SocketOptions
 import io.lettuce.core.TimeoutOptions
+import io.lettuce.core.codec.StringCodec
+import io.lettuce.core.protocol.ProtocolVersion
 import java.time.Duration
 
 /**
@@ -24,6 +42,24 @@ class LettuceClientBuilder : RedisClientBuilder<RedisClient> {
     private var requestQueueSize: Int = 2147483647 // Integer.MAX_VALUE
     private var publishOnScheduler: Boolean = false
     private var disconnectedBehavior: ClientOptions.DisconnectedBehavior = ClientOptions.DisconnectedBehavior.DEFAULT
+    private var ioThreadPoolSize: Int = 0
+    private var computationThreadPoolSize: Int = 0
+    private var transport: LettuceTransport = LettuceTransport.AUTO
+    private var poolMinIdle: Int = 0
+    private var poolMaxTotal: Int? = null
+    private var poolIdleTimeoutMs: Long = 60000
+    private var cacheMaxEntries: Int? = null
+    private var cacheMaxBytes: Long = 0
+    private var cacheTtlMs: Long = 0
+    private var cacheEvictionPolicy: CacheEvictionPolicy = CacheEvictionPolicy.LRU
+    private var cacheOffHeapBytes: Long? = null
+    private var trackingPrefixes: Array<out String> = emptyArray()
+    private var coalesceReads: Boolean = false
+    private var clientResources: SharedClientResources? = null
+    private var ownedResources: SharedClientResources? = null
+
+    // Resilience policies applied to the built client
+    private val resilience = RedisResiliencePipeline.create<RedisClient>()
 
     override fun host(host: String): LettuceClientBuilder {
         this.host = host
@@ -104,27 +140,273 @@ class LettuceClientBuilder : RedisClientBuilder<RedisClient> {
         return this
     }
 
+    /**
+     * Sets the client resources shared by the built clients.
+     * Clients built with the same resources share their Netty event loops and computation threads,
+     * and the resources are shut down when the last of these clients shuts down.
+     *
+     * @param clientResources The shared client resources
+     * @return This builder instance
+     */
+    fun clientResources(clientResources: SharedClientResources): LettuceClientBuilder {
+        this.clientResources = clientResources
+        return this
+    }
+
+    /**
+     * Sets the number of Netty I/O threads.
+     * Unless [clientResources] is set, all clients built by this builder share one set of resources of this size.
+     *
+     * @param ioThreadPoolSize The number of I/O threads, or 0 for Lettuce's default
+     * @return This builder instance
+     */
+    fun ioThreadPoolSize(ioThreadPoolSize: Int): LettuceClientBuilder {
+        require(ioThreadPoolSize >= 0) { "ioThreadPoolSize must not be negative" }
+        this.ioThreadPoolSize = ioThreadPoolSize
+        this.ownedResources = null
+        return this
+    }
+
+    /**
+     * Sets the number of computation threads.
+     * Unless [clientResources] is set, all clients built by this builder share one set of resources of this size.
+     *
+     * @param computationThreadPoolSize The number of computation threads, or 0 for Lettuce's default
+     * @return This builder instance
+     */
+    fun computationThreadPoolSize(computationThreadPoolSize: Int): LettuceClientBuilder {
+        require(computationThreadPoolSize >= 0) { "computationThreadPoolSize must not be negative" }
+        this.computationThreadPoolSize = computationThreadPoolSize
+        this.ownedResources = null
+        return this
+    }
+
+    /**
+     * Sets the Netty transport of the built clients' connections.
+     * A native transport that is not available falls back to NIO with a warning. Unless [clientResources]
+     * is set, all clients built by this builder share one set of resources with this transport.
+     *
+     * @param transport The transport
+     * @return This builder instance
+     */
+    fun transport(transport: LettuceTransport): LettuceClientBuilder {
+        this.transport = transport
+        this.ownedResources = null
+        return this
+    }
+
+    /**
+     * Enables a pool of dedicated connections, for MULTI/EXEC transactions and blocking commands.
+     * The built client itself is unchanged and its connections stay multiplexed; use [connectionPool]
+     * to create the pool for a client built by this builder.
+     *
+     * @param minIdle The number of idle connections opened up front and kept open
+     * @param maxTotal The maximum number of connections
+     * @param idleTimeoutMs The time after which an idle connection above [minIdle] is closed, or 0 to keep it
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun pooled(minIdle: Int, maxTotal: Int, idleTimeoutMs: Long = 60000): LettuceClientBuilder {
+        require(minIdle >= 0) { "minIdle must not be negative" }
+        require(maxTotal > 0 && maxTotal >= minIdle) { "maxTotal must be positive and at least minIdle" }
+        require(idleTimeoutMs >= 0) { "idleTimeoutMs must not be negative" }
+        this.poolMinIdle = minIdle
+        this.poolMaxTotal = maxTotal
+        this.poolIdleTimeoutMs = idleTimeoutMs
+        return this
+    }
+
+    /**
+     * Creates a pool of dedicated connections with the configured pool settings, and waits until its
+     * idle connections are open. Closing the pool closes its connections, but not the client.
+     *
+     * @param client The client to connect with, usually built by this builder
+     * @return A new LettuceConnectionPool using String keys and values
+     * @throws IllegalStateException if pooling is not enabled
+     */
+    fun connectionPool(client: RedisClient): LettuceConnectionPool<String, String> {
+        val maxTotal = checkNotNull(poolMaxTotal) { "Pooling is not enabled" }
+        return LettuceConnectionPool
+            .create(client, StringCodec.UTF8, redisURI(), poolMinIdle, maxTotal, poolIdleTimeoutMs)
+            .join()
+    }
+
+    /**
+     * Enables server-assisted client-side caching, see [LettuceClientSideCache]. Connections of the built
+     * client speak RESP3, which carries the invalidation messages of CLIENT TRACKING; use
+     * [clientSideCacheFrontend] to create the cache for a client built by this builder.
+     *
+     * @param maxEntries The maximum number of cached keys
+     * @param maxBytes The maximum estimated size of the cached entries in bytes, or 0 for no limit
+     * @param ttlMs The time after which a cached entry expires, or 0 to rely on invalidations alone
+     * @param evictionPolicy The order in which entries are evicted when the cache is full
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun clientSideCache(
+        maxEntries: Int,
+        maxBytes: Long = 0,
+        ttlMs: Long = 0,
+        evictionPolicy: CacheEvictionPolicy = CacheEvictionPolicy.LRU
+    ): LettuceClientBuilder {
+        require(maxEntries > 0) { "maxEntries must be positive" }
+        require(maxBytes >= 0) { "maxBytes must not be negative" }
+        require(ttlMs >= 0) { "ttlMs must not be negative" }
+        this.cacheMaxEntries = maxEntries
+        this.cacheMaxBytes = maxBytes
+        this.cacheTtlMs = ttlMs
+        this.cacheEvictionPolicy = evictionPolicy
+        this.cacheOffHeapBytes = null
+        return this
+    }
+
+    /**
+     * Enables server-assisted client-side caching like [clientSideCache], but keeps the cached keys and
+     * values in direct memory, outside the Java heap, see [OffHeapCache]. Use this for caches large enough
+     * to lengthen garbage collection pauses; entries are evicted in clock order.
+     *
+     * @param maxBytes The maximum amount of direct memory to allocate for cached entries
+     * @param ttlMs The time after which a cached entry expires, or 0 to rely on invalidations alone
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun offHeapClientSideCache(maxBytes: Long, ttlMs: Long = 0): LettuceClientBuilder {
+        require(maxBytes >= OffHeapCache.DEFAULT_PAGE_BYTES) {
+            "maxBytes must be at least ${OffHeapCache.DEFAULT_PAGE_BYTES}"
+        }
+        require(ttlMs >= 0) { "ttlMs must not be negative" }
+        this.cacheOffHeapBytes = maxBytes
+        this.cacheTtlMs = ttlMs
+        this.cacheMaxEntries = null
+        return this
+    }
+
+    /**
+     * Tracks keys for client-side caching in broadcast mode: Redis sends invalidations for every key with
+     * one of the prefixes, instead of remembering which keys the connection read. This costs Redis no
+     * memory per key, at the price of invalidations for keys that are not cached.
+     *
+     * @param prefixes The key prefixes to track, or none to return to default tracking
+     * @return This builder instance
+     */
+    fun trackingPrefixes(vararg prefixes: String): LettuceClientBuilder {
+        this.trackingPrefixes = prefixes
+        return this
+    }
+
+    /**
+     * Creates a client-side cache with the configured settings, on a new tracking connection.
+     * Closing the cache closes its connection, but not the client.
+     *
+     * @param client The client to connect with, usually built by this builder
+     * @return A new LettuceClientSideCache
+     * @throws IllegalStateException if client-side caching is not enabled
+     */
+    fun clientSideCacheFrontend(client: RedisClient): LettuceClientSideCache {
+        val offHeapBytes = cacheOffHeapBytes
+        val cache = if (offHeapBytes != null) {
+            OffHeapCache(offHeapBytes, cacheTtlMs)
+        } else {
+            val maxEntries = checkNotNull(cacheMaxEntries) { "Client-side caching is not enabled" }
+            LocalCache.forStrings(maxEntries, cacheMaxBytes, cacheTtlMs, cacheEvictionPolicy)
+        }
+        return LettuceClientSideCache.create(client, cache, *trackingPrefixes)
+    }
+
+    /**
+     * Enables read coalescing: a read dispatched on a connection while an identical read, the same
+     * command with the same key and arguments, is in flight on it is not written to Redis and completes
+     * with the reply of the first one, see [CoalescingRedisClient]. A read dispatched after a write to its
+     * key made through this client completed does not share a read sent before the write.
+     * Read coalescing cannot be combined with resilience policies on Lettuce clients, because both
+     * replace the connections of the client.
+     *
+     * @param enabled Whether to coalesce reads
+     * @return This builder instance
+     */
+    @JvmOverloads
+    fun coalesceReads(enabled: Boolean = true): LettuceClientBuilder {
+        this.coalesceReads = enabled
+        return this
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<RedisClient>) -> RedisCircuitBreaker<RedisClient>): LettuceClientBuilder {
+        resilience.circuitBreaker(configurer(RedisCircuitBreakerImpl.create()))
+        return this
+    }
+
+    /**
+     * Retry is not supported for Lettuce clients: their commands complete asynchronously and are not
+     * re-sent by the resilience guards, so [build] rejects a builder with a retry policy.
+     */
+    override fun withRetry(configurer: (RedisRetry<RedisClient>) -> RedisRetry<RedisClient>): LettuceClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<RedisClient>) -> RedisTimeLimiter<RedisClient>): LettuceClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<RedisClient>) -> RedisBulkhead<RedisClient>): LettuceClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<RedisClient>) -> RedisRateLimiter<RedisClient>): LettuceClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the RedisClient that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(RedisClient::class.java)
+            .set("host", host)
+            .set("port", port)
+            .set("password", password)
+            .set("database", database)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("ssl", ssl)
+            .set("autoReconnect", autoReconnect)
+            .set("requestQueueSize", requestQueueSize)
+            .set("publishOnScheduler", publishOnScheduler)
+            .set("disconnectedBehavior", disconnectedBehavior)
+            .set("ioThreadPoolSize", ioThreadPoolSize)
+            .set("computationThreadPoolSize", computationThreadPoolSize)
+            .set("transport", transport)
+            .set("poolMinIdle", poolMinIdle)
+            .set("poolMaxTotal", poolMaxTotal)
+            .set("poolIdleTimeoutMs", poolIdleTimeoutMs)
+            .set("cacheMaxEntries", cacheMaxEntries)
+            .set("cacheMaxBytes", cacheMaxBytes)
+            .set("cacheTtlMs", cacheTtlMs)
+            .set("cacheEvictionPolicy", cacheEvictionPolicy)
+            .set("cacheOffHeapBytes", cacheOffHeapBytes)
+            .set("trackingPrefixes", trackingPrefixes)
+            .set("coalesceReads", coalesceReads)
+            .set("clientResources", clientResources)
+            .set("resilience", resilience.settings())
+            .build()
+
     /**
      * Builds and returns a RedisClient instance with the configured settings.
+     * Clients built with shared resources release them when they shut down.
+     * If resilience policies are configured, connections of the returned client apply them to every command.
+     * If read coalescing is enabled, the returned client is a [CoalescingRedisClient].
      *
      * @return A configured RedisClient instance
+     * @throws IllegalStateException if read coalescing is combined with resilience policies, or a retry is configured
      */
     override fun build(): RedisClient {
-        val redisURI =
-            RedisURI
-                .builder()
-                .withHost(host)
-                .withPort(port)
-                .withDatabase(database)
-                .withTimeout(Duration.ofMillis(connectionTimeoutMs.toLong()))
-                .apply {
-                    if (password != null) {
-                        withPassword(password!!.toCharArray())
-                    }
-                    if (ssl) {
-                        withSsl(ssl)
-                    }
-                }.build()
+        check(!coalesceReads || resilience.isEmpty()) { "Read coalescing cannot be combined with resilience policies" }
+        check(!resilience.hasRetry()) { "Retry is not supported for Lettuce clients" }
+        val redisURI = redisURI()
 
         val socketOptions =
             SocketOptions
@@ -152,12 +434,49 @@ class LettuceClientBuilder : RedisClientBuilder<RedisClient> {
                 .disconnectedBehavior(disconnectedBehavior)
                 .socketOptions(socketOptions)
                 .timeoutOptions(timeoutOptions)
-                .build()
+                .apply {
+                    if (cacheMaxEntries != null || cacheOffHeapBytes != null) {
+                        protocolVersion(ProtocolVersion.RESP3)
+                    }
+                }.build()
 
-        val client = RedisClient.create(redisURI)
+        val client = sharedResources()?.newClient(redisURI) ?: RedisClient.create(redisURI)
         client.options = clientOptions
 
-        return client
+        if (coalesceReads) {
+            return CoalescingRedisClient.wrap(client)
+        }
+        return resilience.wrap(client)
+    }
+
+    private fun redisURI(): RedisURI =
+        RedisURI
+            .builder()
+            .withHost(host)
+            .withPort(port)
+            .withDatabase(database)
+            .withTimeout(Duration.ofMillis(connectionTimeoutMs.toLong()))
+            .apply {
+                if (password != null) {
+                    withPassword(password!!.toCharArray())
+                }
+                if (ssl) {
+                    withSsl(ssl)
+                }
+            }.build()
+
+    /**
+     * Returns the shared resources for the next client, or null to let the client create its own.
+     * Resources created by this builder are replaced once their last client has shut them down.
+     */
+    private fun sharedResources(): SharedClientResources? {
+        clientResources?.let { return it }
+        if (ioThreadPoolSize == 0 && computationThreadPoolSize == 0 && transport == LettuceTransport.AUTO) {
+            return null
+        }
+        ownedResources?.takeUnless { it.isShutdown }?.let { return it }
+        return SharedClientResources.create(ioThreadPoolSize, computationThreadPoolSize, transport)
+            .also { ownedResources = it }
     }
 
     companion object {
@@ -0,0 +1,21 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import com.joshrotenberg.redis.client.builder.RedisClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientProvider
+import com.joshrotenberg.redis.client.builder.RedisClusterClientBuilder
+import java.util.function.Supplier
+
+/**
+ * Offers the Lettuce builders to [com.joshrotenberg.redis.client.builder.RedisClientBuilderFactory].
+ * The client classes are named rather than referenced, so that resolving a Jedis builder does not load
+ * Lettuce or Netty.
+ */
+class LettuceClientProvider : RedisClientProvider {
+    override val name: String = "lettuce"
+
+    override fun builders(): Map<String, Supplier<out RedisClientBuilder<*>>> =
+        mapOf("io.lettuce.core.RedisClient" to Supplier { LettuceClientBuilder.create() })
+
+    override fun clusterBuilders(): Map<String, Supplier<out RedisClusterClientBuilder<*>>> =
+        mapOf("io.lettuce.core.cluster.RedisClusterClient" to Supplier { LettuceClusterClientBuilder.create() })
+}
@@ -0,0 +1,135 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import com.joshrotenberg.redis.client.builder.cache.ClientSideCacheMetrics
+import com.joshrotenberg.redis.client.builder.cache.ClientSideCacheStorage
+import io.lettuce.core.RedisChannelHandler
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisConnectionStateListener
+import io.lettuce.core.TrackingArgs
+import io.lettuce.core.api.StatefulRedisConnection
+import io.lettuce.core.api.push.PushListener
+import io.lettuce.core.api.push.PushMessage
+import io.lettuce.core.support.caching.CacheAccessor
+import io.lettuce.core.support.caching.CacheFrontend
+import io.lettuce.core.support.caching.ClientSideCaching
+import java.net.SocketAddress
+import java.util.concurrent.Callable
+
+/**
+ * Reads through a local cache that Redis keeps consistent with server-assisted client-side caching.
+ * The cache's connection speaks RESP3 and enables CLIENT TRACKING, either in default mode, where Redis
+ * remembers the keys this connection read, or in broadcast mode for a set of key prefixes. Redis then
+ * pushes an invalidation whenever a tracked key changes, and the key is removed from the local cache.
+ *
+ * Redis forgets the tracked keys when the connection drops, so the local cache is cleared and tracking
+ * is enabled again whenever the connection reconnects.
+ *
+ * @property client The client that owns the connection
+ * @property connection The tracking connection, used for reads that miss the cache
+ * @property cache The local cache, on the heap or off it
+ * @property trackingArgs The CLIENT TRACKING arguments of the connection
+ */
+class LettuceClientSideCache private constructor(
+    private val client: RedisClient,
+    private val connection: StatefulRedisConnection<String, String>,
+    private val cache: ClientSideCacheStorage<String, String>,
+    private val trackingArgs: TrackingArgs
+) : AutoCloseable {
+
+    private val frontend: CacheFrontend<String, String> =
+        ClientSideCaching.enable(Accessor(cache), connection, trackingArgs)
+
+    // Invalidations without keys are sent when Redis flushes its keyspace
+    private val flushListener = PushListener { message: PushMessage ->
+        if (message.type == "invalidate" && message.content.getOrNull(1) == null) {
+            cache.invalidateAll()
+        }
+    }
+
+    private val reconnectListener = object : RedisConnectionStateListener {
+        override fun onRedisConnected(handler: RedisChannelHandler<*, *>, address: SocketAddress) {
+            if (handler === connection) {
+                cache.invalidateAll()
+                connection.async().clientTracking(trackingArgs)
+            }
+        }
+    }
+
+    init {
+        connection.addListener(flushListener)
+        client.addListener(reconnectListener)
+    }
+
+    /**
+     * The metrics of the local cache.
+     */
+    val metrics: ClientSideCacheMetrics
+        get() = cache.metrics
+
+    /**
+     * Returns the value of a key from the local cache, reading it from Redis and caching it on a miss.
+     *
+     * @param key The key to read
+     * @return The value, or null if the key does not exist
+     */
+    fun get(key: String): String? = frontend.get(key)
+
+    /**
+     * Returns the value of a key from the local cache or Redis, and loads and caches it if neither has it.
+     *
+     * @param key The key to read
+     * @param loader Loads the value if the key does not exist in Redis; it is also written to Redis
+     * @return The value
+     */
+    fun get(key: String, loader: Callable<String>): String = frontend.get(key, loader)
+
+    /**
+     * Stops caching and closes the tracking connection. The client is not shut down.
+     */
+    override fun close() {
+        client.removeListener(reconnectListener)
+        connection.removeListener(flushListener)
+        frontend.close()
+    }
+
+    /**
+     * Adapts the local cache to Lettuce's caching support, which reads, fills and invalidates it.
+     */
+    private class Accessor(private val cache: ClientSideCacheStorage<String, String>) : CacheAccessor<String, String> {
+        override fun get(key: String): String? = cache.get(key)
+
+        override fun put(key: String, value: String) = cache.put(key, value)
+
+        override fun evict(key: String) = cache.invalidate(key)
+    }
+
+    companion object {
+        /**
+         * Opens a tracking connection and creates a client-side cache on it.
+         *
+         * @param client The client to connect with; its connections must speak RESP3
+         * @param cache The local cache to fill
+         * @param prefixes The key prefixes to track in broadcast mode, or none to track the keys that are read
+         * @return A new LettuceClientSideCache
+         */
+        @JvmStatic
+        fun create(
+            client: RedisClient,
+            cache: ClientSideCacheStorage<String, String>,
+            vararg prefixes: String
+        ): LettuceClientSideCache {
+            val trackingArgs = TrackingArgs.Builder.enabled().apply {
+                if (prefixes.isNotEmpty()) {
+                    bcast().prefixes(*prefixes)
+                }
+            }
+            val connection = client.connect()
+            return try {
+                LettuceClientSideCache(client, connection, cache, trackingArgs)
+            } catch (e: Exception) {
+                connection.close()
+                throw e
+            }
+        }
+    }
+}
@@ -1,12 +1,29 @@
 package com.joshrotenberg.redis.client.builder.lettuce
 
 import com.joshrotenberg.redis.client.builder.RedisClusterClientBuilder
+import com.joshrotenberg.redis.client.builder.RedisClientSpec
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkhead
+import com.joshrotenberg.redis.client.builder.resilience.RedisBulkheadImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreaker
+import com.joshrotenberg.redis.client.builder.resilience.RedisCircuitBreakerImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisRateLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisResiliencePipeline
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetry
+import com.joshrotenberg.redis.client.builder.resilience.RedisRetryImpl
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiter
+import com.joshrotenberg.redis.client.builder.resilience.RedisTimeLimiterImpl
+import com.joshrotenberg.redis.client.builder.resilience.ResilientRedisClusterClient
 import io.lettuce.core.ClientOptions
+import io.lettuce.core.ReadFrom
 import io.lettuce.core.RedisURI
 import io.lettuce.core.SocketOptions
 import io.lettuce.core.TimeoutOptions
 import io.lettuce.core.cluster.ClusterClientOptions
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions.RefreshTrigger
 import io.lettuce.core.cluster.RedisClusterClient
+import io.lettuce.core.codec.StringCodec
 import java.time.Duration
 import java.util.ArrayList
 
@@ -25,6 +42,25 @@ class LettuceClusterClientBuilder : RedisClusterClientBuilder<RedisClusterClient
     private var requestQueueSize: Int = 2147483647 // Integer.MAX_VALUE
     private var publishOnScheduler: Boolean = false
     private var disconnectedBehavior: ClientOptions.DisconnectedBehavior = ClientOptions.DisconnectedBehavior.DEFAULT
+    private var ioThreadPoolSize: Int = 0
+    private var computationThreadPoolSize: Int = 0
+    private var transport: LettuceTransport = LettuceTransport.AUTO
+    private var periodicRefreshMs: Long = 0
+    private var adaptiveRefreshTriggers: Set<RefreshTrigger> = emptySet()
+    private var adaptiveRefreshRateLimitMs: Long =
+        ClusterTopologyRefreshOptions.DEFAULT_ADAPTIVE_REFRESH_TIMEOUT_DURATION.toMillis()
+    private var refreshTriggersReconnectAttempts: Int =
+        ClusterTopologyRefreshOptions.DEFAULT_REFRESH_TRIGGERS_RECONNECT_ATTEMPTS
+    private var dynamicRefreshSources: Boolean = ClusterTopologyRefreshOptions.DEFAULT_DYNAMIC_REFRESH_SOURCES
+    private var readFrom: ReadFrom? = null
+    private var clientResources: SharedClientResources? = null
+    private var ownedResources: SharedClientResources? = null
+    private var hedgeDelayMs: Long = 0
+    private var maxHedgePercent: Double? = null
+
+    // Resilience policies applied to the built client; circuit breakers are kept per node
+    private val resilience = RedisResiliencePipeline.create<RedisClusterClient>()
+    private var nodeCircuitBreaker: RedisCircuitBreakerImpl<RedisClusterClient>? = null
 
     override fun addNode(host: String, port: Int): LettuceClusterClientBuilder {
         val redisURI = RedisURI.builder()
@@ -124,15 +160,245 @@ class LettuceClusterClientBuilder : RedisClusterClientBuilder<RedisClusterClient
         return this
     }
 
+    /**
+     * Enables periodic topology refresh, so slot moves are picked up even without redirects.
+     *
+     * @param periodMs The refresh period in milliseconds, or 0 to disable periodic refresh
+     * @return This builder instance
+     */
+    fun periodicTopologyRefresh(periodMs: Long): LettuceClusterClientBuilder {
+        require(periodMs >= 0) { "periodMs must not be negative" }
+        this.periodicRefreshMs = periodMs
+        return this
+    }
+
+    /**
+     * Enables adaptive topology refresh, which reloads the slot map as soon as a trigger such as a
+     * MOVED redirect or repeated reconnects is observed, instead of redirecting every command until the
+     * next periodic refresh.
+     *
+     * @param triggers The events that trigger a refresh, or none to enable all triggers
+     * @return This builder instance
+     */
+    fun adaptiveTopologyRefresh(vararg triggers: RefreshTrigger): LettuceClusterClientBuilder {
+        this.adaptiveRefreshTriggers = if (triggers.isEmpty()) RefreshTrigger.values().toSet() else triggers.toSet()
+        return this
+    }
+
+    /**
+     * Sets the minimum time between two adaptive topology refreshes, so a burst of triggers causes one refresh.
+     *
+     * @param minIntervalMs The minimum interval in milliseconds
+     * @return This builder instance
+     */
+    fun adaptiveTopologyRefreshRateLimit(minIntervalMs: Long): LettuceClusterClientBuilder {
+        require(minIntervalMs > 0) { "minIntervalMs must be positive" }
+        this.adaptiveRefreshRateLimitMs = minIntervalMs
+        return this
+    }
+
+    /**
+     * Sets the number of reconnect attempts after which the persistent reconnects trigger fires.
+     *
+     * @param attempts The number of reconnect attempts
+     * @return This builder instance
+     */
+    fun refreshTriggersReconnectAttempts(attempts: Int): LettuceClusterClientBuilder {
+        require(attempts > 0) { "attempts must be positive" }
+        this.refreshTriggersReconnectAttempts = attempts
+        return this
+    }
+
+    /**
+     * Sets whether topology is refreshed from all nodes discovered in the cluster, rather than only
+     * from the seed nodes added to this builder.
+     *
+     * @param dynamicRefreshSources Whether to use discovered nodes as refresh sources
+     * @return This builder instance
+     */
+    fun dynamicRefreshSources(dynamicRefreshSources: Boolean): LettuceClusterClientBuilder {
+        this.dynamicRefreshSources = dynamicRefreshSources
+        return this
+    }
+
+    /**
+     * Sets the read preference of the built clients' connections, for example [ReadFrom.REPLICA_PREFERRED],
+     * [ReadFrom.LOWEST_LATENCY], [ReadFrom.ANY] or a custom [ReadFrom].
+     *
+     * @param readFrom The read preference
+     * @return This builder instance
+     */
+    fun readFrom(readFrom: ReadFrom): LettuceClusterClientBuilder {
+        this.readFrom = readFrom
+        return this
+    }
+
+    /**
+     * Enables hedged reads.
+     * A read that has not completed after the hedge delay is also sent to a replica, and the first
+     * reply wins. Use [hedgedReader] to connect a reader for a client built by this builder.
+     *
+     * @param hedgeDelayMs The hedge delay in milliseconds, or 0 to use the observed 95th percentile latency
+     * @param maxHedgePercent The maximum number of hedges per 100 reads
+     * @return This builder instance
+     */
+    fun hedgedReads(hedgeDelayMs: Long, maxHedgePercent: Double): LettuceClusterClientBuilder {
+        require(hedgeDelayMs >= 0) { "hedgeDelayMs must not be negative" }
+        require(maxHedgePercent in 0.0..100.0) { "maxHedgePercent must be between 0 and 100" }
+        this.hedgeDelayMs = hedgeDelayMs
+        this.maxHedgePercent = maxHedgePercent
+        return this
+    }
+
+    /**
+     * Connects a hedged reader with the configured hedging settings.
+     * Closing the reader closes its connections, but not the client.
+     *
+     * @param client The client to connect with, usually built by this builder
+     * @return A new HedgedClusterReader using String keys and values
+     * @throws IllegalStateException if hedged reads are not enabled
+     */
+    fun hedgedReader(client: RedisClusterClient): HedgedClusterReader<String, String> {
+        val percent = checkNotNull(maxHedgePercent) { "Hedged reads are not enabled" }
+        return HedgedClusterReader.connect(client, StringCodec.UTF8, hedgeDelayMs, percent)
+    }
+
+    /**
+     * Sets the client resources shared by the built clients.
+     * Clients built with the same resources share their Netty event loops and computation threads,
+     * and the resources are shut down when the last of these clients shuts down.
+     *
+     * @param clientResources The shared client resources
+     * @return This builder instance
+     */
+    fun clientResources(clientResources: SharedClientResources): LettuceClusterClientBuilder {
+        this.clientResources = clientResources
+        return this
+    }
+
+    /**
+     * Sets the number of Netty I/O threads.
+     * Unless [clientResources] is set, all clients built by this builder share one set of resources of this size.
+     *
+     * @param ioThreadPoolSize The number of I/O threads, or 0 for Lettuce's default
+     * @return This builder instance
+     */
+    fun ioThreadPoolSize(ioThreadPoolSize: Int): LettuceClusterClientBuilder {
+        require(ioThreadPoolSize >= 0) { "ioThreadPoolSize must not be negative" }
+        this.ioThreadPoolSize = ioThreadPoolSize
+        this.ownedResources = null
+        return this
+    }
+
+    /**
+     * Sets the number of computation threads.
+     * Unless [clientResources] is set, all clients built by this builder share one set of resources of this size.
+     *
+     * @param computationThreadPoolSize The number of computation threads, or 0 for Lettuce's default
+     * @return This builder instance
+     */
+    fun computationThreadPoolSize(computationThreadPoolSize: Int): LettuceClusterClientBuilder {
+        require(computationThreadPoolSize >= 0) { "computationThreadPoolSize must not be negative" }
+        this.computationThreadPoolSize = computationThreadPoolSize
+        this.ownedResources = null
+        return this
+    }
+
+    /**
+     * Sets the Netty transport of the built clients' connections.
+     * A native transport that is not available falls back to NIO with a warning. Unless [clientResources]
+     * is set, all clients built by this builder share one set of resources with this transport.
+     *
+     * @param transport The transport
+     * @return This builder instance
+     */
+    fun transport(transport: LettuceTransport): LettuceClusterClientBuilder {
+        this.transport = transport
+        this.ownedResources = null
+        return this
+    }
+
+    override fun withCircuitBreaker(configurer: (RedisCircuitBreaker<RedisClusterClient>) -> RedisCircuitBreaker<RedisClusterClient>): LettuceClusterClientBuilder {
+        val circuitBreaker = configurer(RedisCircuitBreakerImpl.create())
+        if (circuitBreaker is RedisCircuitBreakerImpl<RedisClusterClient>) {
+            nodeCircuitBreaker = circuitBreaker
+        } else {
+            resilience.circuitBreaker(circuitBreaker)
+        }
+        return this
+    }
+
+    /**
+     * Retry is not supported for Lettuce clients: their commands complete asynchronously and are not
+     * re-sent by the resilience guards, so [build] rejects a builder with a retry policy.
+     */
+    override fun withRetry(configurer: (RedisRetry<RedisClusterClient>) -> RedisRetry<RedisClusterClient>): LettuceClusterClientBuilder {
+        resilience.retry(configurer(RedisRetryImpl.create()))
+        return this
+    }
+
+    override fun withTimeLimiter(configurer: (RedisTimeLimiter<RedisClusterClient>) -> RedisTimeLimiter<RedisClusterClient>): LettuceClusterClientBuilder {
+        resilience.timeLimiter(configurer(RedisTimeLimiterImpl.create()))
+        return this
+    }
+
+    override fun withBulkhead(configurer: (RedisBulkhead<RedisClusterClient>) -> RedisBulkhead<RedisClusterClient>): LettuceClusterClientBuilder {
+        resilience.bulkhead(configurer(RedisBulkheadImpl.create()))
+        return this
+    }
+
+    override fun withRateLimiter(configurer: (RedisRateLimiter<RedisClusterClient>) -> RedisRateLimiter<RedisClusterClient>): LettuceClusterClientBuilder {
+        resilience.rateLimiter(configurer(RedisRateLimiterImpl.create()))
+        return this
+    }
+
+    /**
+     * Returns an immutable snapshot of this builder's configuration.
+     *
+     * @return The spec of the RedisClusterClient that [build] returns
+     */
+    override fun spec(): RedisClientSpec =
+        RedisClientSpec.builder(RedisClusterClient::class.java)
+            .set("nodes", nodes)
+            .set("password", password)
+            .set("connectionTimeoutMs", connectionTimeoutMs)
+            .set("socketTimeoutMs", socketTimeoutMs)
+            .set("ssl", ssl)
+            .set("maxRedirections", maxRedirections)
+            .set("autoReconnect", autoReconnect)
+            .set("requestQueueSize", requestQueueSize)
+            .set("publishOnScheduler", publishOnScheduler)
+            .set("disconnectedBehavior", disconnectedBehavior)
+            .set("ioThreadPoolSize", ioThreadPoolSize)
+            .set("computationThreadPoolSize", computationThreadPoolSize)
+            .set("transport", transport)
+            .set("periodicRefreshMs", periodicRefreshMs)
+            .set("adaptiveRefreshTriggers", adaptiveRefreshTriggers)
+            .set("adaptiveRefreshRateLimitMs", adaptiveRefreshRateLimitMs)
+            .set("refreshTriggersReconnectAttempts", refreshTriggersReconnectAttempts)
+            .set("dynamicRefreshSources", dynamicRefreshSources)
+            .set("readFrom", readFrom)
+            .set("clientResources", clientResources)
+            .set("hedgeDelayMs", hedgeDelayMs)
+            .set("maxHedgePercent", maxHedgePercent)
+            .set("resilience", resilience.settings())
+            .set("nodeCircuitBreaker", nodeCircuitBreaker?.settings())
+            .build()
+
     /**
      * Builds and returns a RedisClusterClient instance with the configured settings.
+     * Clients built with shared resources release them when they shut down.
+     * If resilience policies are configured, connections of the returned client apply them to every command,
+     * with one circuit breaker per cluster node.
      *
      * @return A configured RedisClusterClient instance
+     * @throws IllegalStateException if no node was added, or a retry is configured
      */
     override fun build(): RedisClusterClient {
         if (nodes.isEmpty()) {
             throw IllegalStateException("At least one cluster node must be added")
         }
+        check(!resilience.hasRetry()) { "Retry is not supported for Lettuce clients" }
 
         val socketOptions =
             SocketOptions
@@ -151,6 +417,21 @@ class LettuceClusterClientBuilder : RedisClusterClientBuilder<RedisClusterClient
                 .fixedTimeout(Duration.ofMillis(socketTimeoutMs.toLong()))
                 .build()
 
+        val topologyRefreshOptions =
+            ClusterTopologyRefreshOptions
+                .builder()
+                .apply {
+                    if (periodicRefreshMs > 0) {
+                        enablePeriodicRefresh(Duration.ofMillis(periodicRefreshMs))
+                    }
+                    if (adaptiveRefreshTriggers.isNotEmpty()) {
+                        enableAdaptiveRefreshTrigger(*adaptiveRefreshTriggers.toTypedArray())
+                    }
+                }.adaptiveRefreshTriggersTimeout(Duration.ofMillis(adaptiveRefreshRateLimitMs))
+                .refreshTriggersReconnectAttempts(refreshTriggersReconnectAttempts)
+                .dynamicRefreshSources(dynamicRefreshSources)
+                .build()
+
         val clientOptions =
             ClusterClientOptions
                 .builder()
@@ -161,12 +442,34 @@ class LettuceClusterClientBuilder : RedisClusterClientBuilder<RedisClusterClient
                 .socketOptions(socketOptions)
                 .timeoutOptions(timeoutOptions)
                 .maxRedirects(maxRedirections)
+                .topologyRefreshOptions(topologyRefreshOptions)
                 .build()
 
-        val client = RedisClusterClient.create(nodes)
+        // A read preference is applied to each connection, which needs a client of our own
+        val resources = sharedResources() ?: readFrom?.let { SharedClientResources.create(0, 0) }
+        val client = resources?.newClusterClient(nodes, readFrom) ?: RedisClusterClient.create(nodes)
         client.setOptions(clientOptions)
 
-        return client
+        val guard = resilience.createGuard()
+        val nodeBreakers = nodeCircuitBreaker?.createNodeCircuitBreakers()
+        if (guard == null && nodeBreakers == null) {
+            return resilience.wrapExternal(client)
+        }
+        return resilience.wrapExternal(ResilientRedisClusterClient.wrap(client, guard, nodeBreakers, readFrom))
+    }
+
+    /**
+     * Returns the shared resources for the next client, or null to let the client create its own.
+     * Resources created by this builder are replaced once their last client has shut them down.
+     */
+    private fun sharedResources(): SharedClientResources? {
+        clientResources?.let { return it }
+        if (ioThreadPoolSize == 0 && computationThreadPoolSize == 0 && transport == LettuceTransport.AUTO) {
+            return null
+        }
+        ownedResources?.takeUnless { it.isShutdown }?.let { return it }
+        return SharedClientResources.create(ioThreadPoolSize, computationThreadPoolSize, transport)
+            .also { ownedResources = it }
     }
 
     companion object {
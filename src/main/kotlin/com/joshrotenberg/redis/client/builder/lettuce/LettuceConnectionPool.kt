@@ -0,0 +1,233 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisURI
+import io.lettuce.core.api.StatefulRedisConnection
+import io.lettuce.core.codec.RedisCodec
+import io.lettuce.core.support.AsyncConnectionPoolSupport
+import io.lettuce.core.support.BoundedAsyncPool
+import io.lettuce.core.support.BoundedPoolConfig
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.CompletionStage
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.LongAdder
+
+/**
+ * Pool of dedicated Lettuce connections, for traffic that cannot share the multiplexed connection of a
+ * client, such as MULTI/EXEC transactions and blocking commands.
+ * The pool is a Lettuce [BoundedAsyncPool] that is filled with its minimum number of idle connections
+ * when it is created. On top of it, connections that stay idle for longer than the idle timeout are closed
+ * by a task on the client's event executor, down to the minimum, and the time spent acquiring
+ * connections is recorded.
+ *
+ * Ordinary commands should keep using a single connection from [RedisClient.connect], which multiplexes
+ * commands from all threads.
+ *
+ * @param K The key type
+ * @param V The value type
+ * @property pool The underlying pool, whose connections are released explicitly rather than closed
+ * @property idleTimeoutNanos The time after which an idle connection above the minimum is closed
+ */
+class LettuceConnectionPool<K, V> private constructor(
+    private val pool: BoundedAsyncPool<StatefulRedisConnection<K, V>>,
+    private val idleTimeoutNanos: Long
+) : AutoCloseable {
+
+    /**
+     * Metrics of a connection pool.
+     */
+    interface Metrics {
+        /**
+         * The number of connections acquired.
+         */
+        val acquisitions: Long
+
+        /**
+         * The average time to acquire a connection in nanoseconds.
+         */
+        val averageAcquireNanos: Long
+
+        /**
+         * The longest time to acquire a connection in nanoseconds.
+         */
+        val maxAcquireNanos: Long
+
+        /**
+         * The number of idle connections.
+         */
+        val idle: Int
+
+        /**
+         * The number of connections in use.
+         */
+        val active: Int
+
+        /**
+         * The number of idle connections closed by the idle timeout.
+         */
+        val evictions: Long
+    }
+
+    private val acquisitions = LongAdder()
+    private val acquireNanos = LongAdder()
+    private val maxAcquireNanos = AtomicLong()
+    private val evictions = LongAdder()
+    private val releasedAt = ConcurrentHashMap<StatefulRedisConnection<K, V>, Long>()
+
+    @Volatile
+    private var evictionTask: ScheduledFuture<*>? = null
+
+    /**
+     * The metrics of this pool.
+     */
+    val metrics: Metrics = object : Metrics {
+        override val acquisitions: Long
+            get() = this@LettuceConnectionPool.acquisitions.sum()
+        override val averageAcquireNanos: Long
+            get() = acquisitions.let { if (it == 0L) 0 else acquireNanos.sum() / it }
+        override val maxAcquireNanos: Long
+            get() = this@LettuceConnectionPool.maxAcquireNanos.get()
+        override val idle: Int
+            get() = pool.idle
+        override val active: Int
+            get() = pool.objectCount - pool.idle
+        override val evictions: Long
+            get() = this@LettuceConnectionPool.evictions.sum()
+    }
+
+    /**
+     * Acquires a connection, creating one if none is idle and the pool is not full.
+     * The connection must be given back with [release].
+     *
+     * @return A future completed with the connection
+     */
+    fun acquire(): CompletableFuture<StatefulRedisConnection<K, V>> {
+        val start = System.nanoTime()
+        return pool.acquire().whenComplete { connection, _ ->
+            if (connection != null) {
+                recordAcquire(System.nanoTime() - start)
+                releasedAt.remove(connection)
+            }
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool. A connection that has been closed is discarded.
+     *
+     * @param connection The connection to release
+     * @return A future completed when the connection is back in the pool
+     */
+    fun release(connection: StatefulRedisConnection<K, V>): CompletableFuture<Void> {
+        releasedAt[connection] = System.nanoTime()
+        return pool.release(connection)
+    }
+
+    /**
+     * Runs an operation on a dedicated connection and releases the connection when the operation completes.
+     *
+     * @param operation The operation, returning a stage that completes when it no longer needs the connection
+     * @return A future completed with the result of the operation
+     */
+    fun <T> withConnection(
+        operation: (StatefulRedisConnection<K, V>) -> CompletionStage<T>
+    ): CompletableFuture<T> =
+        acquire().thenCompose { connection ->
+            val result = try {
+                operation(connection)
+            } catch (e: Exception) {
+                CompletableFuture.failedFuture(e)
+            }
+            result.whenComplete { _, _ -> release(connection) }
+        }
+
+    /**
+     * Closes idle connections above the minimum that have been idle for longer than the idle timeout.
+     * Idle connections are handed out oldest first, so the scan stops at the first connection that is
+     * still fresh.
+     */
+    internal fun evictIdle() {
+        val now = System.nanoTime()
+        while (pool.idle > pool.minIdle) {
+            val acquired = pool.acquire()
+            val connection = acquired.getNow(null)
+            if (connection == null) {
+                // The idle connections were taken meanwhile and a new one is being created; give it back
+                acquired.thenAccept { pool.release(it) }
+                return
+            }
+            val since = releasedAt[connection]
+            if (since == null || now - since < idleTimeoutNanos) {
+                pool.release(connection)
+                return
+            }
+            // Released connections are validated, so the closed connection is removed from the pool
+            releasedAt.remove(connection)
+            connection.close()
+            pool.release(connection)
+            evictions.increment()
+        }
+    }
+
+    private fun recordAcquire(nanos: Long) {
+        acquisitions.increment()
+        acquireNanos.add(nanos)
+        maxAcquireNanos.accumulateAndGet(nanos) { current, sample -> maxOf(current, sample) }
+    }
+
+    /**
+     * Closes all connections of the pool. The client that created them is not shut down.
+     */
+    override fun close() {
+        evictionTask?.cancel(false)
+        pool.close()
+    }
+
+    companion object {
+        /**
+         * Creates a connection pool and fills it with its minimum number of idle connections.
+         *
+         * @param client The client that creates the connections
+         * @param codec The codec of the connections
+         * @param redisURI The URI to connect to
+         * @param minIdle The number of idle connections to keep open
+         * @param maxTotal The maximum number of connections
+         * @param idleTimeoutMs The time after which an idle connection above [minIdle] is closed, or 0 to keep it
+         * @return A future completed with the pool once its idle connections are open
+         */
+        @JvmStatic
+        fun <K, V> create(
+            client: RedisClient,
+            codec: RedisCodec<K, V>,
+            redisURI: RedisURI,
+            minIdle: Int,
+            maxTotal: Int,
+            idleTimeoutMs: Long
+        ): CompletableFuture<LettuceConnectionPool<K, V>> {
+            val config = BoundedPoolConfig.builder()
+                .minIdle(minIdle)
+                .maxIdle(maxTotal)
+                .maxTotal(maxTotal)
+                .testOnRelease(true)
+                .build()
+            return AsyncConnectionPoolSupport.createBoundedObjectPoolAsync(
+                { client.connectAsync(codec, redisURI) },
+                config,
+                false
+            ).toCompletableFuture().thenApply { pool ->
+                val idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs)
+                LettuceConnectionPool(pool, idleTimeoutNanos).apply {
+                    if (idleTimeoutMs > 0) {
+                        val period = maxOf(MIN_EVICTION_PERIOD_MS, idleTimeoutMs / 2)
+                        evictionTask = client.resources.eventExecutorGroup()
+                            .scheduleAtFixedRate(::evictIdle, period, period, TimeUnit.MILLISECONDS)
+                    }
+                }
+            }
+        }
+
+        private const val MIN_EVICTION_PERIOD_MS = 100L
+    }
+}
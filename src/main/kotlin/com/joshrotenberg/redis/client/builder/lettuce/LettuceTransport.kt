@@ -0,0 +1,117 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import io.netty.channel.Channel
+import io.netty.channel.EventLoopGroup
+import io.netty.channel.nio.NioEventLoopGroup
+import io.netty.channel.socket.nio.NioSocketChannel
+
+/**
+ * The Netty transport used by Lettuce clients for TCP connections.
+ * Native transports need their Netty library on the classpath and a supported OS. A client that asks for
+ * an unavailable native transport falls back to NIO, so the same configuration runs everywhere.
+ */
+enum class LettuceTransport {
+    /**
+     * Leaves the choice to Lettuce, which uses a native transport when one is on the classpath.
+     */
+    AUTO,
+
+    /**
+     * Java NIO, available everywhere.
+     */
+    NIO,
+
+    /**
+     * Linux epoll, from `io.netty:netty-transport-native-epoll`.
+     */
+    EPOLL,
+
+    /**
+     * Linux io_uring, from `io.netty.incubator:netty-incubator-transport-native-io_uring`.
+     */
+    IO_URING
+}
+
+/**
+ * The event loop group and channel classes of a transport that is available in this process.
+ *
+ * @property transport The resolved transport, never [LettuceTransport.AUTO]
+ * @property eventLoopGroupClass The event loop group class of the transport
+ * @property socketChannelClass The TCP channel class of the transport
+ */
+internal class ResolvedTransport private constructor(
+    val transport: LettuceTransport,
+    val eventLoopGroupClass: Class<EventLoopGroup>,
+    val socketChannelClass: Class<out Channel>
+) {
+    companion object {
+        private val logger = System.getLogger(ResolvedTransport::class.java.name)
+
+        @Suppress("UNCHECKED_CAST")
+        private val NIO = ResolvedTransport(
+            LettuceTransport.NIO,
+            NioEventLoopGroup::class.java as Class<EventLoopGroup>,
+            NioSocketChannel::class.java
+        )
+
+        /**
+         * Resolves a requested transport, falling back to NIO with a warning if it is unavailable.
+         *
+         * @param transport The requested transport
+         * @return The transport to use, or null to let Lettuce choose
+         */
+        fun resolve(transport: LettuceTransport): ResolvedTransport? =
+            when (transport) {
+                LettuceTransport.AUTO -> null
+                LettuceTransport.NIO -> NIO
+                LettuceTransport.EPOLL -> native(
+                    transport,
+                    "io.netty.channel.epoll.Epoll",
+                    "io.netty.channel.epoll.EpollEventLoopGroup",
+                    "io.netty.channel.epoll.EpollSocketChannel"
+                )
+                LettuceTransport.IO_URING -> native(
+                    transport,
+                    "io.netty.incubator.channel.uring.IOUring",
+                    "io.netty.incubator.channel.uring.IOUringEventLoopGroup",
+                    "io.netty.incubator.channel.uring.IOUringSocketChannel"
+                )
+            }
+
+        /**
+         * Loads a native transport by class name, so its library stays an optional dependency.
+         * Netty's availability check also fails if the native library cannot be loaded on this OS.
+         */
+        @Suppress("UNCHECKED_CAST")
+        private fun native(
+            transport: LettuceTransport,
+            availabilityClass: String,
+            eventLoopGroupClass: String,
+            socketChannelClass: String
+        ): ResolvedTransport {
+            val classLoader = ResolvedTransport::class.java.classLoader
+            val unavailability = try {
+                Class.forName(availabilityClass, true, classLoader)
+                    .getMethod("unavailabilityCause")
+                    .invoke(null) as Throwable?
+            } catch (e: ReflectiveOperationException) {
+                e
+            } catch (e: LinkageError) {
+                e
+            }
+            if (unavailability != null) {
+                logger.log(
+                    System.Logger.Level.WARNING,
+                    "$transport transport is not available, falling back to NIO",
+                    unavailability
+                )
+                return NIO
+            }
+            return ResolvedTransport(
+                transport,
+                Class.forName(eventLoopGroupClass, false, classLoader) as Class<EventLoopGroup>,
+                Class.forName(socketChannelClass, false, classLoader) as Class<out Channel>
+            )
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import io.lettuce.core.ConnectionBuilder
+import io.lettuce.core.ConnectionPoint
+import io.lettuce.core.ReadFrom
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisURI
+import io.lettuce.core.cluster.RedisClusterClient
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection
+import io.lettuce.core.codec.RedisCodec
+import io.lettuce.core.resource.ClientResources
+import io.lettuce.core.resource.DefaultClientResources
+import io.netty.channel.EventLoopGroup
+import io.netty.util.concurrent.Future
+import io.netty.util.concurrent.GenericFutureListener
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Reference-counted Lettuce [ClientResources] shared by several clients.
+ * Every Lettuce client created without resources starts its own Netty event loops and computation threads,
+ * so a process with many clients ends up with many idle threads. Clients built from the same
+ * SharedClientResources use one set of threads instead. Each client holds a reference while it is open,
+ * and the resources are shut down when the last of them shuts down.
+ *
+ * Clients created from shared resources open TCP connections with the resources' [transport].
+ *
+ * @property resources The shared client resources
+ * @property transport The requested Netty transport
+ */
+class SharedClientResources private constructor(
+    val resources: ClientResources,
+    val transport: LettuceTransport
+) {
+    internal val resolvedTransport: ResolvedTransport? = ResolvedTransport.resolve(transport)
+
+    private var references = 0
+    private var shutdown = false
+
+    /**
+     * The number of open clients using these resources.
+     */
+    val referenceCount: Int
+        @Synchronized get() = references
+
+    /**
+     * Whether the resources have been shut down because their last client shut down.
+     */
+    val isShutdown: Boolean
+        @Synchronized get() = shutdown
+
+    /**
+     * Takes a reference to the resources for a new client.
+     *
+     * @return The shared client resources
+     * @throws IllegalStateException if the resources have already been shut down
+     */
+    @Synchronized
+    fun retain(): ClientResources {
+        check(!shutdown) { "Shared client resources have been shut down" }
+        references++
+        return resources
+    }
+
+    /**
+     * Releases a reference to the resources, shutting them down if it was the last one.
+     *
+     * @return A future completed when the resources are shut down, or right away if they are still in use
+     */
+    fun release(): CompletableFuture<Void> {
+        synchronized(this) {
+            check(references > 0) { "Shared client resources are not retained" }
+            references--
+            if (references > 0) {
+                return CompletableFuture.completedFuture(null)
+            }
+            shutdown = true
+        }
+        val result = CompletableFuture<Void>()
+        resources.shutdown(0, SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+            .addListener(GenericFutureListener<Future<Boolean>> { future ->
+                if (future.isSuccess) result.complete(null) else result.completeExceptionally(future.cause())
+            })
+        return result
+    }
+
+    /**
+     * Creates a RedisClient that holds a reference to these resources until it shuts down.
+     *
+     * @param redisURI The default URI of the client
+     * @return A new RedisClient using these resources
+     */
+    fun newClient(redisURI: RedisURI): RedisClient = SharedResourcesRedisClient(this, redisURI)
+
+    /**
+     * Creates a RedisClusterClient that holds a reference to these resources until it shuts down.
+     *
+     * @param initialUris The seed URIs of the cluster
+     * @param readFrom The read preference set on each connection, or null for Lettuce's default
+     * @return A new RedisClusterClient using these resources
+     */
+    @JvmOverloads
+    fun newClusterClient(initialUris: Iterable<RedisURI>, readFrom: ReadFrom? = null): RedisClusterClient =
+        SharedResourcesRedisClusterClient(this, initialUris, readFrom)
+
+    companion object {
+        private const val SHUTDOWN_TIMEOUT_SECONDS = 2L
+
+        /**
+         * Creates shared client resources with the given thread pool sizes and transport.
+         *
+         * @param ioThreadPoolSize The number of Netty I/O threads, or 0 for Lettuce's default
+         * @param computationThreadPoolSize The number of computation threads, or 0 for Lettuce's default
+         * @param transport The Netty transport of the clients' connections
+         * @return New shared client resources
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun create(
+            ioThreadPoolSize: Int,
+            computationThreadPoolSize: Int,
+            transport: LettuceTransport = LettuceTransport.AUTO
+        ): SharedClientResources {
+            require(ioThreadPoolSize >= 0) { "ioThreadPoolSize must not be negative" }
+            require(computationThreadPoolSize >= 0) { "computationThreadPoolSize must not be negative" }
+            val resources = DefaultClientResources.builder()
+                .apply {
+                    if (ioThreadPoolSize > 0) {
+                        ioThreadPoolSize(ioThreadPoolSize)
+                    }
+                    if (computationThreadPoolSize > 0) {
+                        computationThreadPoolSize(computationThreadPoolSize)
+                    }
+                }.build()
+            return SharedClientResources(resources, transport)
+        }
+
+        /**
+         * Shares existing client resources. They are shut down when the last client using them shuts down.
+         *
+         * @param resources The client resources to share
+         * @param transport The Netty transport of the clients' connections
+         * @return New shared client resources
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun of(resources: ClientResources, transport: LettuceTransport = LettuceTransport.AUTO): SharedClientResources =
+            SharedClientResources(resources, transport)
+    }
+}
+
+/**
+ * RedisClient that releases its reference to [SharedClientResources] when it shuts down.
+ */
+internal class SharedResourcesRedisClient(
+    shared: SharedClientResources,
+    redisURI: RedisURI
+) : RedisClient(shared.retain(), redisURI) {
+    private val transport = TransportSelection(shared)
+
+    override fun channelType(connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint) {
+        if (!transport.apply(connectionBuilder, connectionPoint)) {
+            super.channelType(connectionBuilder, connectionPoint)
+        }
+    }
+
+    override fun shutdownAsync(quietPeriod: Long, timeout: Long, timeUnit: TimeUnit): CompletableFuture<Void> =
+        super.shutdownAsync(quietPeriod, timeout, timeUnit)
+            .thenCompose { transport.release(quietPeriod, timeout, timeUnit) }
+}
+
+/**
+ * RedisClusterClient that releases its reference to [SharedClientResources] when it shuts down,
+ * and sets its read preference on every connection it opens.
+ */
+internal class SharedResourcesRedisClusterClient(
+    shared: SharedClientResources,
+    initialUris: Iterable<RedisURI>,
+    private val readFrom: ReadFrom?
+) : RedisClusterClient(shared.retain(), initialUris) {
+    private val transport = TransportSelection(shared)
+
+    // Lettuce resets the read preference of a new connection at the end of connecting
+    override fun <K, V> connect(codec: RedisCodec<K, V>): StatefulRedisClusterConnection<K, V> =
+        super.connect(codec).also { connection -> readFrom?.let { connection.readFrom = it } }
+
+    override fun <K, V> connectAsync(codec: RedisCodec<K, V>): CompletableFuture<StatefulRedisClusterConnection<K, V>> =
+        super.connectAsync(codec).thenApply { connection ->
+            connection.also { readFrom?.let { connection.readFrom = it } }
+        }
+
+    override fun channelType(connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint) {
+        if (!transport.apply(connectionBuilder, connectionPoint)) {
+            super.channelType(connectionBuilder, connectionPoint)
+        }
+    }
+
+    override fun shutdownAsync(quietPeriod: Long, timeout: Long, timeUnit: TimeUnit): CompletableFuture<Void> =
+        super.shutdownAsync(quietPeriod, timeout, timeUnit)
+            .thenCompose { transport.release(quietPeriod, timeout, timeUnit) }
+}
+
+/**
+ * The transport of one client built from [SharedClientResources].
+ * Lettuce picks the event loop group and channel class of a connection in `channelType`, so the clients
+ * override it to use the resolved transport. The client allocates its event loop group from the shared
+ * provider once and releases it, together with its reference to the resources, when it shuts down.
+ *
+ * @property shared The shared client resources of the client
+ */
+internal class TransportSelection(private val shared: SharedClientResources) {
+    private val released = AtomicBoolean()
+    private var eventLoopGroup: EventLoopGroup? = null
+
+    /**
+     * Sets up a TCP connection with the resolved transport.
+     *
+     * @return false if Lettuce should choose the transport, for [LettuceTransport.AUTO] and Unix domain sockets
+     */
+    fun apply(connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint): Boolean {
+        val transport = shared.resolvedTransport ?: return false
+        if (connectionPoint.socket != null) {
+            return false
+        }
+        connectionBuilder.bootstrap()
+            .group(eventLoopGroup(transport))
+            .channel(transport.socketChannelClass)
+        return true
+    }
+
+    @Synchronized
+    private fun eventLoopGroup(transport: ResolvedTransport): EventLoopGroup =
+        eventLoopGroup ?: shared.resources.eventLoopGroupProvider()
+            .allocate(transport.eventLoopGroupClass)
+            .also { eventLoopGroup = it }
+
+    /**
+     * Releases the event loop group and the reference to the shared resources, once.
+     */
+    fun release(quietPeriod: Long, timeout: Long, timeUnit: TimeUnit): CompletableFuture<Void> {
+        if (!released.compareAndSet(false, true)) {
+            return CompletableFuture.completedFuture(null)
+        }
+        val group = synchronized(this) { eventLoopGroup }
+        if (group == null) {
+            return shared.release()
+        }
+        val groupReleased = CompletableFuture<Void>()
+        shared.resources.eventLoopGroupProvider().release(group, quietPeriod, timeout, timeUnit)
+            .addListener(GenericFutureListener<Future<Boolean>> { groupReleased.complete(null) })
+        return groupReleased.thenCompose { shared.release() }
+    }
+}
@@ -47,4 +47,48 @@ interface RedisBulkhead<T> : RedisResilience<T> {
      * @return This bulkhead instance
      */
     fun fairSemaphore(fairSemaphore: Boolean): RedisBulkhead<T>
-}
\ No newline at end of file
+
+    /**
+     * Enables an adaptive concurrency limit.
+     * Instead of a fixed number of concurrent calls, the limit starts at the configured maximum number of
+     * concurrent calls and is adjusted from the measured round-trip time of each Redis command.
+     * Calls beyond the current limit are rejected immediately rather than queued.
+     *
+     * @param algorithm The algorithm used to adjust the limit
+     * @return This bulkhead instance
+     */
+    fun adaptiveLimit(algorithm: AdaptiveLimitAlgorithm): RedisBulkhead<T>
+
+    /**
+     * Sets the bounds of an adaptive concurrency limit.
+     * This is only used if an adaptive limit is enabled.
+     *
+     * @param minLimit The lowest limit the algorithm may choose
+     * @param maxLimit The highest limit the algorithm may choose
+     * @return This bulkhead instance
+     */
+    fun adaptiveLimitBounds(minLimit: Int, maxLimit: Int): RedisBulkhead<T>
+}
+
+/**
+ * Algorithms for adjusting an adaptive concurrency limit from measured command round-trip times.
+ */
+enum class AdaptiveLimitAlgorithm {
+    /**
+     * Additive increase, multiplicative decrease.
+     * The limit grows by one while calls succeed and shrinks by a fixed ratio when a call times out.
+     */
+    AIMD,
+
+    /**
+     * Compares the round-trip time with the lowest round-trip time seen to estimate the number of queued calls,
+     * in the style of TCP Vegas. The limit grows while the estimated queue is short and shrinks when it grows.
+     */
+    VEGAS,
+
+    /**
+     * Scales the limit by the ratio of a long-term to a short-term average round-trip time,
+     * so the limit shrinks as soon as latency rises above its usual level.
+     */
+    GRADIENT
+}
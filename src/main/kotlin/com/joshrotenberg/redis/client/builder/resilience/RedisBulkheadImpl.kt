@@ -21,6 +21,10 @@ class RedisBulkheadImpl<T>(
     private var maxWaitingCalls: Int = 50
     private var waitTime: Long = 1000 // 1 second
     private var fairSemaphore: Boolean = true
+    private var adaptiveAlgorithm: AdaptiveLimitAlgorithm? = null
+    private var minLimit: Int = 1
+    private var maxLimit: Int = 200
+    private var limiter: AdaptiveConcurrencyLimiter? = null
 
     /**
      * Sets the name of the bulkhead.
@@ -30,7 +34,7 @@ class RedisBulkheadImpl<T>(
      */
     override fun name(name: String): RedisBulkhead<T> {
         this.name = name
-        return this
+        return reconfigured()
     }
 
     /**
@@ -41,7 +45,7 @@ class RedisBulkheadImpl<T>(
      */
     override fun maxConcurrentCalls(maxConcurrentCalls: Int): RedisBulkhead<T> {
         this.maxConcurrentCalls = maxConcurrentCalls
-        return this
+        return reconfigured()
     }
 
     /**
@@ -52,7 +56,7 @@ class RedisBulkheadImpl<T>(
      */
     override fun maxWaitingCalls(maxWaitingCalls: Int): RedisBulkhead<T> {
         this.maxWaitingCalls = maxWaitingCalls
-        return this
+        return reconfigured()
     }
 
     /**
@@ -63,7 +67,7 @@ class RedisBulkheadImpl<T>(
      */
     override fun waitTime(waitTimeMs: Long): RedisBulkhead<T> {
         this.waitTime = waitTimeMs
-        return this
+        return reconfigured()
     }
 
     /**
@@ -75,18 +79,76 @@ class RedisBulkheadImpl<T>(
      */
     override fun fairSemaphore(fairSemaphore: Boolean): RedisBulkhead<T> {
         this.fairSemaphore = fairSemaphore
+        return reconfigured()
+    }
+
+    /**
+     * Enables an adaptive concurrency limit.
+     * The configured maximum number of concurrent calls becomes the initial limit, and the wait time
+     * and maximum number of waiting calls no longer apply, since calls beyond the limit are rejected
+     * with a [ConcurrencyLimitExceededException].
+     *
+     * @param algorithm The algorithm used to adjust the limit
+     * @return This bulkhead instance
+     */
+    override fun adaptiveLimit(algorithm: AdaptiveLimitAlgorithm): RedisBulkhead<T> {
+        this.adaptiveAlgorithm = algorithm
+        return reconfigured()
+    }
+
+    /**
+     * Sets the bounds of an adaptive concurrency limit.
+     *
+     * @param minLimit The lowest limit the algorithm may choose
+     * @param maxLimit The highest limit the algorithm may choose
+     * @return This bulkhead instance
+     */
+    override fun adaptiveLimitBounds(minLimit: Int, maxLimit: Int): RedisBulkhead<T> {
+        require(minLimit in 1..maxLimit) { "minLimit must be between 1 and maxLimit" }
+        this.minLimit = minLimit
+        this.maxLimit = maxLimit
+        return reconfigured()
+    }
+
+    /**
+     * Drops the shared adaptive limiter after a setting changed, so clients wrapped from now on get one
+     * with the new settings. Clients wrapped before keep the previous one.
+     */
+    private fun reconfigured(): RedisBulkhead<T> {
+        synchronized(this) {
+            limiter = null
+        }
         return this
     }
 
+    /**
+     * Returns the metrics of the adaptive concurrency limit, such as the current limit,
+     * the round-trip time estimates and the number of rejected calls.
+     *
+     * @return The metrics, or null if no adaptive limit is enabled or no client has been wrapped since the
+     * last change of a setting
+     */
+    fun metrics(): AdaptiveConcurrencyLimiter.Metrics? = limiter?.metrics
+
+    /**
+     * The configured settings, compared by value in the specs of the builders using this policy.
+     */
+    internal fun settings(): List<Any?> =
+        listOf(
+            name, maxConcurrentCalls, maxWaitingCalls, waitTime, fairSemaphore, adaptiveAlgorithm,
+            minLimit, maxLimit
+        )
+
     /**
      * Creates a bulkhead with the configured settings.
      *
      * @return The created bulkhead
      */
-    private fun createBulkhead(): Bulkhead {
+    internal fun createBulkhead(): Bulkhead {
         val configBuilder = BulkheadConfig.custom()
             .maxConcurrentCalls(maxConcurrentCalls)
             .maxWaitDuration(Duration.ofMillis(waitTime))
+            .fairCallHandlingStrategyEnabled(fairSemaphore)
 
         // In resilience4j 2.2.0, we need to use the builder pattern correctly
         val config = configBuilder.build()
@@ -94,28 +156,33 @@ class RedisBulkheadImpl<T>(
         return registry.bulkhead(name, config)
     }
 
+    /**
+     * Creates the guard applied to every command of a wrapped client.
+     * An adaptive limiter is created once and shared by all clients wrapped by this instance until a
+     * setting changes.
+     *
+     * @return The guard for the configured bulkhead
+     */
+    internal fun createGuard(): RedisCommandGuard {
+        val algorithm = adaptiveAlgorithm ?: return BulkheadGuard(createBulkhead(), maxWaitingCalls)
+        return synchronized(this) {
+            limiter ?: AdaptiveConcurrencyLimiter(name, algorithm, maxConcurrentCalls, minLimit, maxLimit)
+                .also { limiter = it }
+        }
+    }
+
     /**
      * Wraps the Redis client with bulkhead functionality.
-     * This method creates a dynamic proxy that intercepts all method calls to the Redis client
-     * and applies bulkhead functionality to them.
+     * Every command of the returned client holds a bulkhead permit until it completes,
+     * so commands are rejected with a BulkheadFullException once the limit is reached and the
+     * maximum number of calls are already waiting. With an adaptive limit, commands beyond the
+     * current limit are rejected immediately with a ConcurrencyLimitExceededException.
      *
      * @param client The Redis client to wrap
      * @return The wrapped Redis client with bulkhead functionality
+     * @throws IllegalArgumentException if the client type cannot be decorated
      */
-    @Suppress("UNCHECKED_CAST")
-    override fun wrap(client: T): T {
-        val bulkhead = createBulkhead()
-
-        // For now, we'll return the client as-is
-        // In a real implementation, we would create a dynamic proxy or decorator
-        // that wraps all methods with bulkhead functionality
-
-        // This is a placeholder implementation
-        // The actual implementation would depend on the specific Redis client type
-        // and would require reflection or code generation to create a proper wrapper
-
-        return client
-    }
+    override fun wrap(client: T): T = RedisClientDecorators.decorate(client, createGuard())
 
     companion object {
         /**
@@ -0,0 +1,94 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+/**
+ * Per-command hook used by the Redis client decorators returned from [RedisResilience.wrap].
+ * A guard is consulted before and after every Redis command, which lets the decorators apply
+ * resilience without allocating a callback or a reflective invocation per call.
+ */
+interface RedisCommandGuard {
+    /**
+     * Acquires permission to execute a Redis command.
+     *
+     * @return The start time of the call in nanoseconds, to be passed back to [onSuccess] or [onError]
+     * @throws Exception if the call is not permitted
+     */
+    fun acquirePermission(): Long
+
+    /**
+     * Records a successful Redis command.
+     *
+     * @param startNanos The value returned by [acquirePermission]
+     * @throws Exception if the call should be reported as failed despite completing
+     */
+    fun onSuccess(startNanos: Long)
+
+    /**
+     * Records a failed Redis command.
+     *
+     * @param startNanos The value returned by [acquirePermission]
+     * @param error The error raised by the command
+     */
+    fun onError(startNanos: Long, error: Throwable)
+
+    /**
+     * Returns the delay before the given failed attempt is retried.
+     *
+     * @param attempt The number of the attempt that failed, starting at 1
+     * @param error The error raised by the attempt
+     * @param idempotent Whether the command can safely be executed more than once
+     * @param previousDelay The delay before the failed attempt in milliseconds, or 0 for the first attempt
+     * @return The delay in milliseconds, or [NO_RETRY] if the error should be propagated
+     */
+    fun retryDelay(attempt: Int, error: Throwable, idempotent: Boolean, previousDelay: Long): Long = NO_RETRY
+
+    /**
+     * Returns the time after which a command that is still running should be failed.
+     * Decorators of asynchronous clients use it to expire commands without waiting for them to complete.
+     *
+     * @return The timeout in nanoseconds, or [NO_TIMEOUT] if commands are not expired
+     */
+    fun commandTimeoutNanos(): Long = NO_TIMEOUT
+
+    companion object {
+        /**
+         * Returned by [retryDelay] when a failed command should not be retried.
+         */
+        const val NO_RETRY: Long = -1
+
+        /**
+         * Returned by [commandTimeoutNanos] when commands are not expired.
+         */
+        const val NO_TIMEOUT: Long = 0
+    }
+}
+
+/**
+ * Executes a Redis command under this guard.
+ * The function is inlined into the decorators, so neither block allocates a lambda.
+ *
+ * @param idempotent Returns whether the command can safely be retried; only evaluated after a failure
+ * @param command The Redis command to execute
+ * @return The result of the command
+ */
+inline fun <R> RedisCommandGuard.execute(idempotent: () -> Boolean, command: () -> R): R {
+    var attempt = 1
+    var delay = 0L
+    while (true) {
+        val start = acquirePermission()
+        val result = try {
+            command()
+        } catch (e: Exception) {
+            onError(start, e)
+            delay = retryDelay(attempt++, e, idempotent(), delay)
+            if (delay < 0) {
+                throw e
+            }
+            if (delay > 0) {
+                Thread.sleep(delay)
+            }
+            continue
+        }
+        onSuccess(start)
+        return result
+    }
+}
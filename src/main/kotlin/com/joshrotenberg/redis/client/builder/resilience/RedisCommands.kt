@@ -0,0 +1,85 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+/**
+ * Classification of Redis commands by whether they can safely be executed more than once.
+ * A command is idempotent if repeating it leaves the data unchanged and does not change a reply the
+ * caller acts on, which covers all read-only commands and writes such as SET, HSET or EXPIRE. Commands
+ * such as INCR, LPUSH or SPOP change their effect on every execution, so a retry after a failure that
+ * reached the server would apply them twice. Conditional writes such as SETNX, SET NX or DEL leave the
+ * data unchanged on a retry but report that they did nothing, so a caller acquiring or releasing a lock
+ * would see its own successful call as a failure; they are treated as non-idempotent as well. Replies
+ * that only count changes, such as those of HSET or SADD, may still differ on a retry.
+ * Scripts, functions and transactions are treated as non-idempotent, since their effect is unknown to
+ * the client.
+ */
+internal object RedisCommands {
+    private val NON_IDEMPOTENT = setOf(
+        // Counters
+        "INCR", "INCRBY", "INCRBYFLOAT", "DECR", "DECRBY", "HINCRBY", "HINCRBYFLOAT", "ZINCRBY", "BITFIELD",
+        // Strings
+        "APPEND", "GETDEL", "GETSET", "GETEX", "SETNX", "MSETNX",
+        // Hashes
+        "HSETNX",
+        // Lists
+        "LPUSH", "RPUSH", "LPUSHX", "RPUSHX", "LINSERT", "LPOP", "RPOP", "BLPOP", "BRPOP",
+        "LMOVE", "BLMOVE", "RPOPLPUSH", "BRPOPLPUSH", "LMPOP", "BLMPOP", "LREM",
+        // Sets and sorted sets
+        "SPOP", "SMOVE", "ZPOPMIN", "ZPOPMAX", "BZPOPMIN", "BZPOPMAX", "ZMPOP", "BZMPOP", "ZREMRANGEBYRANK",
+        // Streams
+        "XADD", "XREADGROUP", "XCLAIM", "XAUTOCLAIM",
+        // Keys
+        "DEL", "UNLINK", "RENAME", "RENAMENX", "MOVE", "COPY", "RESTORE",
+        // Pub/sub
+        "PUBLISH", "SPUBLISH",
+        // Scripts, functions and transactions
+        "EVAL", "EVALSHA", "FCALL", "MULTI", "EXEC"
+    )
+
+    // Options of SET that make its reply depend on the previous value
+    private val SET_CONDITIONAL_OPTIONS = setOf("NX", "GET")
+
+    // Options that can precede the first score of ZADD
+    private val ZADD_OPTIONS = setOf("NX", "XX", "GT", "LT", "CH", "INCR")
+
+    /**
+     * Returns whether the command can safely be executed more than once.
+     * Options are not known, so SET and ZADD are classified as if they had none.
+     *
+     * @param command The name of the command
+     * @return true if the command is idempotent
+     */
+    fun isIdempotent(command: String): Boolean = command.uppercase() !in NON_IDEMPOTENT
+
+    /**
+     * Returns whether the command can safely be executed more than once.
+     * Options are not known, so SET and ZADD are classified as if they had none.
+     *
+     * @param command The name of the command as sent on the wire
+     * @return true if the command is idempotent
+     */
+    fun isIdempotent(command: ByteArray): Boolean = isIdempotent(String(command, Charsets.US_ASCII))
+
+    /**
+     * Returns whether the command with the given arguments can safely be executed more than once.
+     * SET with NX or GET and ZADD with INCR are non-idempotent; other commands are classified by name.
+     *
+     * @param command The name of the command
+     * @param arguments The arguments following the command name
+     * @return true if the command is idempotent
+     */
+    fun isIdempotent(command: String, arguments: List<String>): Boolean {
+        val name = command.uppercase()
+        if (name in NON_IDEMPOTENT) {
+            return false
+        }
+        return when (name) {
+            // SET key value [options]
+            "SET" -> arguments.drop(2).none { it.uppercase() in SET_CONDITIONAL_OPTIONS }
+            // ZADD key [options] score member [score member ...]
+            "ZADD" -> arguments.drop(1)
+                .takeWhile { it.uppercase() in ZADD_OPTIONS }
+                .none { it.equals("INCR", ignoreCase = true) }
+            else -> true
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker
+import io.github.resilience4j.timelimiter.TimeLimiter
+import java.util.concurrent.TimeUnit
+
+/**
+ * Composite resilience configuration that applies every configured policy in a single decorator.
+ * Instead of stacking one decorator per policy, the policies are fused into one [RedisCommandGuard],
+ * so a command passes through one decorator regardless of how many policies are configured.
+ *
+ * Policies are applied in a fixed order, from the outermost to the innermost:
+ * 1. Retry: a failed attempt is retried through the rest of the pipeline
+ * 2. Circuit breaker: rejects the attempt while open, before any other permit is taken
+ * 3. Rate limiter
+ * 4. Time limiter
+ * 5. Bulkhead: held only while the command executes
+ *
+ * This is the same order as resilience4j's `Decorators`. Calls rejected by the circuit breaker,
+ * rate limiter or bulkhead are not retried. Policies that are not one of this module's implementations
+ * are applied as separate decorators around the fused one.
+ *
+ * @param T The type of Redis client that will be wrapped
+ */
+class RedisResiliencePipeline<T> : RedisResilience<T> {
+
+    private var circuitBreaker: RedisCircuitBreaker<T>? = null
+    private var retry: RedisRetry<T>? = null
+    private var timeLimiter: RedisTimeLimiter<T>? = null
+    private var bulkhead: RedisBulkhead<T>? = null
+    private var rateLimiter: RedisRateLimiter<T>? = null
+
+    /**
+     * Sets the circuit breaker of the pipeline.
+     *
+     * @param circuitBreaker The circuit breaker
+     * @return This pipeline instance
+     */
+    fun circuitBreaker(circuitBreaker: RedisCircuitBreaker<T>): RedisResiliencePipeline<T> {
+        this.circuitBreaker = circuitBreaker
+        return this
+    }
+
+    /**
+     * Sets the retry of the pipeline.
+     *
+     * @param retry The retry
+     * @return This pipeline instance
+     */
+    fun retry(retry: RedisRetry<T>): RedisResiliencePipeline<T> {
+        this.retry = retry
+        return this
+    }
+
+    /**
+     * Sets the time limiter of the pipeline.
+     *
+     * @param timeLimiter The time limiter
+     * @return This pipeline instance
+     */
+    fun timeLimiter(timeLimiter: RedisTimeLimiter<T>): RedisResiliencePipeline<T> {
+        this.timeLimiter = timeLimiter
+        return this
+    }
+
+    /**
+     * Sets the bulkhead of the pipeline.
+     *
+     * @param bulkhead The bulkhead
+     * @return This pipeline instance
+     */
+    fun bulkhead(bulkhead: RedisBulkhead<T>): RedisResiliencePipeline<T> {
+        this.bulkhead = bulkhead
+        return this
+    }
+
+    /**
+     * Sets the rate limiter of the pipeline.
+     *
+     * @param rateLimiter The rate limiter
+     * @return This pipeline instance
+     */
+    fun rateLimiter(rateLimiter: RedisRateLimiter<T>): RedisResiliencePipeline<T> {
+        this.rateLimiter = rateLimiter
+        return this
+    }
+
+    /**
+     * Returns whether no policy has been configured.
+     *
+     * @return true if wrapping a client would return it unchanged
+     */
+    fun isEmpty(): Boolean =
+        circuitBreaker == null && retry == null && timeLimiter == null && bulkhead == null && rateLimiter == null
+
+    /**
+     * Returns whether a retry policy has been configured, for builders of clients that cannot apply one.
+     */
+    internal fun hasRetry(): Boolean = retry != null
+
+    /**
+     * The configuration of the policies, for the specs of the builders using this pipeline.
+     * This module's implementations are compared by their settings, other policies by identity.
+     */
+    internal fun settings(): List<Any?> =
+        listOf(circuitBreaker, retry, timeLimiter, bulkhead, rateLimiter).map { policy ->
+            when (policy) {
+                is RedisCircuitBreakerImpl<*> -> policy.settings()
+                is RedisRetryImpl<*> -> policy.settings()
+                is RedisTimeLimiterImpl<*> -> policy.settings()
+                is RedisBulkheadImpl<*> -> policy.settings()
+                is RedisRateLimiterImpl<*> -> policy.settings()
+                else -> policy
+            }
+        }
+
+    /**
+     * Wraps the Redis client with all configured policies.
+     * If no policy is configured, the client is returned unchanged.
+     *
+     * @param client The Redis client to wrap
+     * @return The wrapped Redis client
+     * @throws IllegalArgumentException if the client type cannot be decorated
+     */
+    override fun wrap(client: T): T {
+        if (isEmpty()) {
+            return client
+        }
+
+        val guard = createGuard()
+        return wrapExternal(if (guard == null) client else RedisClientDecorators.decorate(client, guard))
+    }
+
+    /**
+     * Fuses the configured policies from this module's implementations into one guard.
+     *
+     * @return The fused guard, or null if none of the configured policies can be fused
+     */
+    internal fun createGuard(): RedisCommandGuard? {
+        val guard = FusedGuard(
+            retry = (retry as? RedisRetryImpl<T>)?.createGuard(),
+            circuitBreaker = (circuitBreaker as? RedisCircuitBreakerImpl<T>)?.createCircuitBreaker(),
+            rateLimiter = (rateLimiter as? RedisRateLimiterImpl<T>)?.createGuard(),
+            timeLimiter = (timeLimiter as? RedisTimeLimiterImpl<T>)?.createTimeLimiter(),
+            bulkhead = (bulkhead as? RedisBulkheadImpl<T>)?.createGuard()
+        )
+        return if (guard.isEmpty()) null else guard
+    }
+
+    /**
+     * Applies the configured policies that cannot be fused as separate decorators.
+     *
+     * @param client The Redis client, already decorated with the fused guard if there is one
+     * @return The wrapped Redis client
+     */
+    internal fun wrapExternal(client: T): T {
+        // Policies from other implementations cannot be fused; apply them innermost first
+        val external = listOfNotNull<RedisResilience<T>>(
+            bulkhead.takeUnless { it is RedisBulkheadImpl<T> },
+            timeLimiter.takeUnless { it is RedisTimeLimiterImpl<T> },
+            rateLimiter.takeUnless { it is RedisRateLimiterImpl<T> },
+            circuitBreaker.takeUnless { it is RedisCircuitBreakerImpl<T> },
+            retry.takeUnless { it is RedisRetryImpl<T> }
+        )
+        var wrapped = client
+        for (policy in external) {
+            wrapped = policy.wrap(wrapped)
+        }
+        return wrapped
+    }
+
+    companion object {
+        /**
+         * Creates a new, empty RedisResiliencePipeline instance.
+         *
+         * @return A new RedisResiliencePipeline instance
+         */
+        @JvmStatic
+        fun <T> create(): RedisResiliencePipeline<T> = RedisResiliencePipeline()
+    }
+}
+
+/**
+ * Guard that applies several resilience4j components in the order documented on [RedisResiliencePipeline].
+ * The rate limiter and bulkhead stages are guards themselves, so each of their algorithms is handled alike.
+ * Absent components are skipped with a null check, so the success path performs no allocation.
+ */
+internal class FusedGuard(
+    private val retry: RetryGuard?,
+    private val circuitBreaker: CircuitBreaker?,
+    private val rateLimiter: RedisCommandGuard?,
+    private val timeLimiter: TimeLimiter?,
+    private val bulkhead: RedisCommandGuard?
+) : RedisCommandGuard {
+    private val timeoutNanos = timeLimiter?.timeLimiterConfig?.timeoutDuration?.toNanos() ?: Long.MAX_VALUE
+
+    fun isEmpty(): Boolean =
+        retry == null && circuitBreaker == null && rateLimiter == null && timeLimiter == null && bulkhead == null
+
+    override fun acquirePermission(): Long {
+        circuitBreaker?.acquirePermission()
+        try {
+            rateLimiter?.acquirePermission()
+            bulkhead?.acquirePermission()
+        } catch (e: Exception) {
+            // The attempt never ran, so it must not count towards the circuit breaker
+            circuitBreaker?.releasePermission()
+            throw e
+        }
+        return System.nanoTime()
+    }
+
+    override fun onSuccess(startNanos: Long) {
+        val duration = System.nanoTime() - startNanos
+        bulkhead?.onSuccess(startNanos)
+        if (duration > timeoutNanos) {
+            // The command succeeded and may have been a write, so it is only recorded as late: failing it
+            // would make callers retry it. Deadlines are enforced by the Lettuce timer and the socket timeout.
+            val timeout = TimeLimiter.createdTimeoutExceptionWithName(timeLimiter!!.name, null)
+            timeLimiter.onError(timeout)
+            rateLimiter?.onError(startNanos, timeout)
+            circuitBreaker?.onError(duration, TimeUnit.NANOSECONDS, timeout)
+        } else {
+            timeLimiter?.onSuccess()
+            rateLimiter?.onSuccess(startNanos)
+            circuitBreaker?.onSuccess(duration, TimeUnit.NANOSECONDS)
+        }
+        retry?.onSuccess(startNanos)
+    }
+
+    override fun onError(startNanos: Long, error: Throwable) {
+        val duration = System.nanoTime() - startNanos
+        bulkhead?.onError(startNanos, error)
+        timeLimiter?.onError(error)
+        rateLimiter?.onError(startNanos, error)
+        circuitBreaker?.onError(duration, TimeUnit.NANOSECONDS, error)
+    }
+
+    override fun retryDelay(attempt: Int, error: Throwable, idempotent: Boolean, previousDelay: Long): Long =
+        retry?.retryDelay(attempt, error, idempotent, previousDelay) ?: RedisCommandGuard.NO_RETRY
+
+    override fun commandTimeoutNanos(): Long =
+        if (timeLimiter == null) RedisCommandGuard.NO_TIMEOUT else timeoutNanos
+}
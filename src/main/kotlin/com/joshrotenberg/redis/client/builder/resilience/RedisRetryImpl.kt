@@ -23,6 +23,11 @@ class RedisRetryImpl<T>(
     private var enableExponentialBackoff: Boolean = false
     private var exponentialBackoffMultiplier: Double = 1.5
     private var retryOnResultValue: Any? = null
+    private var retryNonIdempotent: Boolean = false
+    private var retryBudgetRatio: Double? = null
+    private var maxRetryBurst: Int = 10
+    private var jitterMaxWaitDuration: Long = 0
+    private var budget: RetryBudget? = null
 
     /**
      * Sets the name of the retry.
@@ -93,12 +98,60 @@ class RedisRetryImpl<T>(
         return this
     }
 
+    /**
+     * Sets whether non-idempotent commands, such as INCR or LPUSH, are retried.
+     *
+     * @param enabled Whether to retry non-idempotent commands
+     * @return This retry instance
+     */
+    override fun retryNonIdempotent(enabled: Boolean): RedisRetry<T> {
+        this.retryNonIdempotent = enabled
+        return this
+    }
+
+    /**
+     * Limits retries to a share of successful commands.
+     * The budget is shared by all clients wrapped by this instance.
+     *
+     * @param percentOfSuccesses The number of retries permitted per 100 successful commands
+     * @param maxRetryBurst The maximum number of retries that can be saved up
+     * @return This retry instance
+     */
+    override fun retryBudget(percentOfSuccesses: Double, maxRetryBurst: Int): RedisRetry<T> {
+        require(percentOfSuccesses >= 0) { "percentOfSuccesses must not be negative" }
+        require(maxRetryBurst > 0) { "maxRetryBurst must be positive" }
+        this.retryBudgetRatio = percentOfSuccesses / 100
+        this.maxRetryBurst = maxRetryBurst
+        return this
+    }
+
+    /**
+     * Enables decorrelated jitter backoff, starting from the configured wait duration.
+     *
+     * @param maxWaitDurationMs The maximum wait duration in milliseconds
+     * @return This retry instance
+     */
+    override fun decorrelatedJitter(maxWaitDurationMs: Long): RedisRetry<T> {
+        require(maxWaitDurationMs > 0) { "maxWaitDurationMs must be positive" }
+        this.jitterMaxWaitDuration = maxWaitDurationMs
+        return this
+    }
+
+    /**
+     * The configured settings, compared by value in the specs of the builders using this policy.
+     */
+    internal fun settings(): List<Any?> =
+        listOf(
+            name, maxAttempts, waitDuration, enableExponentialBackoff, exponentialBackoffMultiplier,
+            retryOnResultValue, retryNonIdempotent, retryBudgetRatio, maxRetryBurst, jitterMaxWaitDuration
+        )
+
     /**
      * Creates a retry with the configured settings.
      *
      * @return The created retry
      */
-    private fun createRetry(): Retry {
+    internal fun createRetry(): Retry {
         val configBuilder = RetryConfig.custom<Any>()
             .maxAttempts(maxAttempts)
             .waitDuration(Duration.ofMillis(waitDuration))
@@ -120,28 +173,31 @@ class RedisRetryImpl<T>(
         return registry.retry(name, configBuilder.build())
     }
 
+    /**
+     * Creates the guard applied to every command of a wrapped client.
+     *
+     * @return The guard for the configured retry
+     */
+    internal fun createGuard(): RetryGuard {
+        val ratio = retryBudgetRatio
+        val retryBudget = if (ratio == null) null else synchronized(this) {
+            budget ?: RetryBudget(ratio, maxRetryBurst).also { budget = it }
+        }
+        return RetryGuard(createRetry(), retryNonIdempotent, retryBudget, waitDuration, jitterMaxWaitDuration)
+    }
+
     /**
      * Wraps the Redis client with retry functionality.
-     * This method creates a dynamic proxy that intercepts all method calls to the Redis client
-     * and applies retry functionality to them.
+     * Failed commands of JedisPooled and UnifiedJedis clients are retried in place using the configured
+     * backoff, unless they are non-idempotent or the retry budget is spent. Lettuce commands cannot be
+     * re-dispatched, so a wrapped RedisClient is returned without retries, and [retryOnResult] is not
+     * applied by the decorators.
      *
      * @param client The Redis client to wrap
      * @return The wrapped Redis client with retry functionality
+     * @throws IllegalArgumentException if the client type cannot be decorated
      */
-    @Suppress("UNCHECKED_CAST")
-    override fun wrap(client: T): T {
-        val retry = createRetry()
-
-        // For now, we'll return the client as-is
-        // In a real implementation, we would create a dynamic proxy or decorator
-        // that wraps all methods with retry functionality
-
-        // This is a placeholder implementation
-        // The actual implementation would depend on the specific Redis client type
-        // and would require reflection or code generation to create a proper wrapper
-
-        return client
-    }
+    override fun wrap(client: T): T = RedisClientDecorators.decorate(client, createGuard())
 
     companion object {
         /**
@@ -0,0 +1,78 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig
+import redis.clients.jedis.ClusterCommandArguments
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.Connection
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.providers.ClusterConnectionProvider
+
+/**
+ * JedisCluster that runs every command through a [RedisCommandGuard] and the circuit breaker of the node
+ * owning its slot.
+ * Like [ResilientJedisPooled], it overrides [executeCommand], which every JedisCluster command funnels into.
+ * The node is looked up in the client's slot cache on each attempt, so after a MOVED redirect refreshes
+ * the cache, later attempts are charged to the slot's new owner. Keyless commands skip the node breakers.
+ * Breakers of nodes that are no longer in the slot cache are dropped when a command fails.
+ *
+ * The guard wraps the node breakers, so a retried attempt picks its node again.
+ *
+ * @param nodes The seed nodes of the cluster
+ * @param connectionTimeout The connection timeout in milliseconds
+ * @param soTimeout The socket timeout in milliseconds
+ * @param maxAttempts The maximum number of attempts, including redirects
+ * @param password The password, or an empty string
+ * @param clientName The client name, or an empty string
+ * @param poolConfig The configuration of the per-node connection pools
+ * @param ssl Whether to use SSL
+ * @property guard The guard applied to every command, if any
+ * @property nodeBreakers The circuit breakers of the cluster nodes, if any
+ */
+class ResilientJedisCluster(
+    nodes: Set<HostAndPort>,
+    connectionTimeout: Int,
+    soTimeout: Int,
+    maxAttempts: Int,
+    password: String,
+    clientName: String,
+    poolConfig: GenericObjectPoolConfig<Connection>,
+    ssl: Boolean,
+    private val guard: RedisCommandGuard?,
+    private val nodeBreakers: NodeCircuitBreakers?
+) : JedisCluster(nodes, connectionTimeout, soTimeout, maxAttempts, password, clientName, poolConfig, ssl) {
+
+    override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+        val guard = guard ?: return executeOnNode(commandObject)
+        return guard.execute({ isIdempotent(commandObject.arguments) }) {
+            executeOnNode(commandObject)
+        }
+    }
+
+    private fun <T> executeOnNode(commandObject: CommandObject<T>): T {
+        val nodeBreakers = nodeBreakers ?: return super.executeCommand(commandObject)
+        val node = nodeOf(commandObject) ?: return super.executeCommand(commandObject)
+        val breaker = nodeBreakers.guardFor(node)
+        val startNanos = breaker.acquirePermission()
+        val result = try {
+            super.executeCommand(commandObject)
+        } catch (e: Exception) {
+            breaker.onError(startNanos, e)
+            nodeBreakers.retainNodes(clusterNodes.keys)
+            throw e
+        }
+        breaker.onSuccess(startNanos)
+        return result
+    }
+
+    /**
+     * Resolves the node that currently owns the slot of a command, or null for keyless commands.
+     */
+    private fun nodeOf(commandObject: CommandObject<*>): String? {
+        val slot = (commandObject.arguments as? ClusterCommandArguments)?.commandHashSlot ?: return null
+        if (slot < 0) {
+            return null
+        }
+        return (provider as ClusterConnectionProvider).getNode(slot)?.toString()
+    }
+}
@@ -0,0 +1,237 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.lettuce.core.ConnectionBuilder
+import io.lettuce.core.ConnectionPoint
+import io.lettuce.core.ReadFrom
+import io.lettuce.core.RedisChannelWriter
+import io.lettuce.core.RedisURI
+import io.lettuce.core.cluster.ClusterClientOptions
+import io.lettuce.core.cluster.ClusterPushHandler
+import io.lettuce.core.cluster.RedisClusterClient
+import io.lettuce.core.cluster.SlotHash
+import io.lettuce.core.cluster.StatefulRedisClusterConnectionImpl
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection
+import io.lettuce.core.cluster.event.ClusterTopologyChangedEvent
+import io.lettuce.core.codec.RedisCodec
+import io.lettuce.core.protocol.RedisCommand
+import reactor.core.Disposable
+import java.time.Duration
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.TimeUnit
+
+/**
+ * RedisClusterClient decorator whose connections run every command through a [RedisCommandGuard].
+ * Commands issued through a cluster connection are dispatched by [StatefulRedisClusterConnectionImpl.dispatch]
+ * before they are routed to a node, so the decorator hands out cluster connections that override it.
+ * Like [ResilientRedisClient], it does not retry commands, and it expires commands on the timer wheel of
+ * the client resources if the guard has a command timeout.
+ *
+ * With [NodeCircuitBreakers], a command that has a key also runs through the circuit breaker of the
+ * node that owns the key's slot in the connection's current partitions. Keyless commands only run
+ * through the guard. Breakers of nodes that disappear from the topology are dropped when Lettuce
+ * publishes a topology change.
+ *
+ * The decorator uses the client resources, options and transport of the wrapped client, and shutting
+ * it down also shuts down the wrapped client. The decorator opens its own connections, so a read
+ * preference of the wrapped client's connections is passed to it explicitly.
+ *
+ * @property delegate The RedisClusterClient to decorate
+ * @param initialUris The seed URIs of the wrapped client
+ * @property guard The guard applied to every command, if any
+ * @property nodeBreakers The circuit breakers of the cluster nodes, if any
+ * @property readFrom The read preference set on each connection, if any
+ */
+class ResilientRedisClusterClient private constructor(
+    private val delegate: RedisClusterClient,
+    initialUris: Iterable<RedisURI>,
+    private val guard: RedisCommandGuard?,
+    private val nodeBreakers: NodeCircuitBreakers?,
+    private val readFrom: ReadFrom?
+) : RedisClusterClient(delegate.resources, initialUris) {
+
+    private val topologySubscription: Disposable? = nodeBreakers?.let { breakers ->
+        resources.eventBus().get()
+            .filter { it is ClusterTopologyChangedEvent }
+            .subscribe { event ->
+                breakers.retainNodes((event as ClusterTopologyChangedEvent).after().map { nodeKey(it.uri) })
+            }
+    }
+
+    init {
+        setOptions(delegate.options as ClusterClientOptions)
+    }
+
+    override fun <V, K> newStatefulRedisClusterConnection(
+        channelWriter: RedisChannelWriter,
+        pushHandler: ClusterPushHandler,
+        codec: RedisCodec<K, V>,
+        timeout: Duration
+    ): StatefulRedisClusterConnectionImpl<K, V> {
+        val guarding = guard?.let { CommandGuarding(it, resources) }
+        return GuardedStatefulRedisClusterConnection(channelWriter, pushHandler, codec, timeout, guarding, nodeBreakers)
+    }
+
+    // Lettuce resets the read preference of a new connection at the end of connecting
+    override fun <K, V> connect(codec: RedisCodec<K, V>): StatefulRedisClusterConnection<K, V> =
+        super.connect(codec).also { connection -> readFrom?.let { connection.readFrom = it } }
+
+    override fun <K, V> connectAsync(codec: RedisCodec<K, V>): CompletableFuture<StatefulRedisClusterConnection<K, V>> =
+        super.connectAsync(codec).thenApply { connection ->
+            connection.also { readFrom?.let { connection.readFrom = it } }
+        }
+
+    override fun channelType(connectionBuilder: ConnectionBuilder, connectionPoint: ConnectionPoint) =
+        DelegateChannelType.apply(delegate, connectionBuilder, connectionPoint)
+
+    override fun shutdownAsync(quietPeriod: Long, timeout: Long, timeUnit: TimeUnit): CompletableFuture<Void> {
+        topologySubscription?.dispose()
+        return super.shutdownAsync(quietPeriod, timeout, timeUnit)
+            .thenCompose { delegate.shutdownAsync(quietPeriod, timeout, timeUnit) }
+    }
+
+    companion object {
+        /**
+         * Wraps a RedisClusterClient with the given guard.
+         *
+         * @param client The RedisClusterClient to decorate
+         * @param guard The guard applied to every command
+         * @return A RedisClusterClient whose connections are guarded
+         */
+        @JvmStatic
+        fun wrap(client: RedisClusterClient, guard: RedisCommandGuard): ResilientRedisClusterClient =
+            ResilientRedisClusterClient(client, initialUrisOf(client), guard, null, null)
+
+        /**
+         * Wraps a RedisClusterClient with per-node circuit breakers and an optional guard.
+         *
+         * @param client The RedisClusterClient to decorate
+         * @param guard The guard applied to every command, or null to apply only the node breakers
+         * @param nodeBreakers The circuit breakers of the cluster nodes
+         * @return A RedisClusterClient whose connections are guarded
+         */
+        @JvmStatic
+        fun wrap(
+            client: RedisClusterClient,
+            guard: RedisCommandGuard?,
+            nodeBreakers: NodeCircuitBreakers
+        ): ResilientRedisClusterClient =
+            ResilientRedisClusterClient(client, initialUrisOf(client), guard, nodeBreakers, null)
+
+        /**
+         * Wraps a RedisClusterClient with an optional guard, optional per-node circuit breakers and
+         * the read preference of the wrapped client's connections.
+         *
+         * @param client The RedisClusterClient to decorate
+         * @param guard The guard applied to every command, if any
+         * @param nodeBreakers The circuit breakers of the cluster nodes, if any
+         * @param readFrom The read preference set on each connection, or null for Lettuce's default
+         * @return A RedisClusterClient whose connections are guarded
+         */
+        @JvmStatic
+        fun wrap(
+            client: RedisClusterClient,
+            guard: RedisCommandGuard?,
+            nodeBreakers: NodeCircuitBreakers?,
+            readFrom: ReadFrom?
+        ): ResilientRedisClusterClient =
+            ResilientRedisClusterClient(client, initialUrisOf(client), guard, nodeBreakers, readFrom)
+
+        /**
+         * Returns the key of a node in [NodeCircuitBreakers].
+         */
+        internal fun nodeKey(uri: RedisURI): String = "${uri.host}:${uri.port}"
+
+        /**
+         * Reads the seed URIs of a RedisClusterClient.
+         * RedisClusterClient keeps them private, so they are looked up once here rather than on the command path.
+         */
+        @Suppress("UNCHECKED_CAST")
+        private fun initialUrisOf(client: RedisClusterClient): Iterable<RedisURI> {
+            val field = RedisClusterClient::class.java.getDeclaredField("initialUris")
+            field.isAccessible = true
+            return field.get(client) as Iterable<RedisURI>
+        }
+    }
+}
+
+/**
+ * Lettuce cluster connection that acquires permission from a [RedisCommandGuard] before dispatching a command.
+ * With node breakers, a keyed command also acquires permission from the breaker of the node that owns its slot.
+ * That breaker is acquired first and released again if the guard rejects the command, as in [FusedGuard].
+ *
+ * @property guarding The guard applied to every command, if any
+ * @property nodeBreakers The circuit breakers of the cluster nodes, if any
+ */
+internal class GuardedStatefulRedisClusterConnection<K, V>(
+    channelWriter: RedisChannelWriter,
+    pushHandler: ClusterPushHandler,
+    codec: RedisCodec<K, V>,
+    timeout: Duration,
+    private val guarding: CommandGuarding?,
+    private val nodeBreakers: NodeCircuitBreakers? = null
+) : StatefulRedisClusterConnectionImpl<K, V>(channelWriter, pushHandler, codec, timeout) {
+
+    override fun <T> dispatch(command: RedisCommand<K, V, T>): RedisCommand<K, V, T> =
+        super.dispatch(guard(command))
+
+    override fun dispatch(commands: Collection<RedisCommand<K, V, *>>): Collection<RedisCommand<K, V, *>> {
+        val guarded = ArrayList<RedisCommand<K, V, *>>(commands.size)
+        try {
+            for (command in commands) {
+                guarded.add(guard(command))
+            }
+        } catch (e: Exception) {
+            // The commands guarded so far hold permits and are never dispatched: failing them releases the permits
+            guarded.forEach { it.completeExceptionally(e) }
+            commands.drop(guarded.size).forEach { it.completeExceptionally(e) }
+            throw e
+        }
+        return super.dispatch(guarded)
+    }
+
+    private fun <T> guard(command: RedisCommand<K, V, T>): RedisCommand<K, V, T> {
+        val node = nodeOf(command) ?: return guarding?.guard(command) ?: command
+        return guardOnNode(command, guarding, nodeBreakers!!.guardFor(node))
+    }
+
+    /**
+     * Resolves the node that owns the slot of a command's first key, or null for keyless commands.
+     */
+    private fun nodeOf(command: RedisCommand<K, V, *>): String? {
+        if (nodeBreakers == null) {
+            return null
+        }
+        val key = command.args?.firstEncodedKey ?: return null
+        val owner = partitions.getPartitionBySlot(SlotHash.getSlot(key)) ?: return null
+        return ResilientRedisClusterClient.nodeKey(owner.uri)
+    }
+
+    internal companion object {
+        /**
+         * Wraps a keyed command in the guard and then in the breaker of the node that owns its slot.
+         * The deadline is registered on the node wrapper, so an expired command is recorded as a failure
+         * by the node's breaker as well as the guard, and a late reply is not counted as a success.
+         *
+         * @param command The command to guard
+         * @param guarding The guard applied to every command, if any
+         * @param breaker The guard of the node's circuit breaker
+         * @return The guarded command
+         */
+        fun <K, V, T> guardOnNode(
+            command: RedisCommand<K, V, T>,
+            guarding: CommandGuarding?,
+            breaker: CircuitBreakerGuard
+        ): RedisCommand<K, V, T> {
+            val startNanos = breaker.acquirePermission()
+            val inner = try {
+                guarding?.acquire(command) ?: command
+            } catch (e: Exception) {
+                // The command never ran, so it must not count towards the node's breaker
+                breaker.circuitBreaker.releasePermission()
+                throw e
+            }
+            val guarded = GuardedCommand(inner, breaker, startNanos)
+            return guarding?.expire(guarded) ?: guarded
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Token bucket that limits retries to a share of successful commands.
+ * Each success deposits [ratio] tokens, up to [maxTokens], and each retry withdraws one token.
+ * The bucket starts full, so a client can retry a short burst of failures before it has any successes.
+ *
+ * @property ratio The number of tokens deposited per success
+ * @property maxTokens The capacity of the bucket
+ */
+internal class RetryBudget(private val ratio: Double, private val maxTokens: Int) {
+    // Tokens are kept in thousandths, so fractional deposits can be added atomically
+    private val capacity = maxTokens * SCALE
+    private val deposit = (ratio * SCALE).toLong()
+    private val balance = AtomicLong(capacity)
+
+    init {
+        require(ratio >= 0) { "ratio must not be negative" }
+        require(maxTokens > 0) { "maxTokens must be positive" }
+    }
+
+    /**
+     * The number of retries currently available.
+     */
+    val availableRetries: Long
+        get() = balance.get() / SCALE
+
+    /**
+     * Records a successful command.
+     */
+    fun onSuccess() {
+        while (true) {
+            val current = balance.get()
+            // A full bucket is left untouched, so steady successes do not contend on the counter
+            if (current >= capacity || balance.compareAndSet(current, minOf(capacity, current + deposit))) {
+                return
+            }
+        }
+    }
+
+    /**
+     * Withdraws a token for a retry.
+     *
+     * @return true if the retry may proceed
+     */
+    fun tryWithdraw(): Boolean {
+        while (true) {
+            val current = balance.get()
+            if (current < SCALE) {
+                return false
+            }
+            if (balance.compareAndSet(current, current - SCALE)) {
+                return true
+            }
+        }
+    }
+
+    companion object {
+        private const val SCALE = 1000L
+    }
+}
@@ -1,11 +1,19 @@
 package com.joshrotenberg.redis.client.builder
 
 import com.joshrotenberg.redis.client.builder.jedis.JedisClientBuilder
+import com.joshrotenberg.redis.client.builder.jedis.JedisClusterClientBuilder
+import com.joshrotenberg.redis.client.builder.jedis.JedisPooledClientBuilder
+import com.joshrotenberg.redis.client.builder.jedis.JedisSentinelClientBuilder
 import com.joshrotenberg.redis.client.builder.lettuce.LettuceClientBuilder
+import com.joshrotenberg.redis.client.builder.lettuce.LettuceClusterClientBuilder
 import io.lettuce.core.RedisClient
+import io.lettuce.core.cluster.RedisClusterClient
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.Assertions.*
+import redis.clients.jedis.JedisCluster
 import redis.clients.jedis.JedisPool
+import redis.clients.jedis.JedisPooled
+import redis.clients.jedis.JedisSentinelPool
 
 class RedisClientBuilderFactoryTest {
 
@@ -44,4 +52,28 @@ class RedisClientBuilderFactoryTest {
         }
         assertEquals("Unsupported Redis client type: java.lang.String", exception.message)
     }
+
+    @Test
+    fun testProvidersAreDiscovered() {
+        assertEquals(listOf("jedis", "lettuce"), RedisClientBuilderFactory.providers().map { it.name }.sorted())
+    }
+
+    @Test
+    fun testGenericBuilderPrefersMostSpecificType() {
+        // JedisPooled is a UnifiedJedis, but has a builder of its own
+        assertTrue(RedisClientBuilderFactory.builder(JedisPooled::class.java) is JedisPooledClientBuilder)
+    }
+
+    @Test
+    fun testClusterBuilders() {
+        assertTrue(RedisClientBuilderFactory.clusterBuilder(JedisCluster::class.java) is JedisClusterClientBuilder)
+        val lettuce = RedisClientBuilderFactory.clusterBuilder(RedisClusterClient::class.java)
+        assertTrue(lettuce is LettuceClusterClientBuilder)
+    }
+
+    @Test
+    fun testSentinelBuilder() {
+        val builder = RedisClientBuilderFactory.sentinelBuilder(JedisSentinelPool::class.java)
+        assertTrue(builder is JedisSentinelClientBuilder)
+    }
 }
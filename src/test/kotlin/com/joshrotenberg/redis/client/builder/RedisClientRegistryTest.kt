@@ -0,0 +1,98 @@
+package com.joshrotenberg.redis.client.builder
+
+import com.joshrotenberg.redis.client.builder.jedis.JedisPooledClientBuilder
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+
+class RedisClientRegistryTest {
+    private val registry = RedisClientRegistry()
+
+    /**
+     * Stands in for a client, counting how often it is closed.
+     */
+    private class FakeClient : AutoCloseable {
+        var closed = 0
+
+        override fun close() {
+            closed++
+        }
+    }
+
+    private fun spec(port: Int): RedisClientSpec =
+        RedisClientSpec.builder(FakeClient::class.java).set("port", port).build()
+
+    @AfterEach
+    fun tearDown() {
+        registry.close()
+    }
+
+    @Test
+    fun testBuildersConfiguredAlikeShareClient() {
+        val first = registry.acquire(JedisPooledClientBuilder.create().host("localhost").port(6379))
+        val second = registry.acquire(JedisPooledClientBuilder.create().port(6379).host("localhost"))
+        val other = registry.acquire(JedisPooledClientBuilder.create().host("localhost").port(6380))
+
+        assertSame(first.client, second.client)
+        assertNotSame(first.client, other.client)
+        assertEquals(2, registry.size)
+        assertEquals(2, registry.referenceCount(first.spec))
+    }
+
+    @Test
+    fun testClientWithoutCloserNotBuilt() {
+        var built = 0
+        val spec = RedisClientSpec.builder(Any::class.java).set("port", 1).build()
+
+        assertThrows(IllegalArgumentException::class.java) { registry.acquire(spec, { Any().also { built++ } }) }
+        assertEquals(0, built)
+        assertEquals(0, registry.size)
+    }
+
+    @Test
+    fun testClientClosedWithLastLease() {
+        var built = 0
+        val first = registry.acquire(spec(1), { FakeClient().also { built++ } })
+        val second = registry.acquire(spec(1), { FakeClient().also { built++ } })
+        assertEquals(1, built)
+
+        first.close()
+        first.close()
+        assertEquals(0, first.client.closed)
+        assertEquals(1, registry.referenceCount(spec(1)))
+
+        second.close()
+        assertEquals(1, first.client.closed)
+        assertEquals(0, registry.size)
+
+        // The next lease builds a new client
+        registry.acquire(spec(1), { FakeClient().also { built++ } }).close()
+        assertEquals(2, built)
+    }
+
+    @Test
+    fun testCustomCloser() {
+        val closed = mutableListOf<String>()
+        registry.acquire(spec(1), { "client" }, { closed.add(it) }).close()
+        assertEquals(listOf("client"), closed)
+
+        assertThrows(IllegalArgumentException::class.java) { registry.acquire(spec(2), { "client" }) }
+    }
+
+    @Test
+    fun testCloseClosesLeasedClients() {
+        val lease = registry.acquire(spec(1), { FakeClient() })
+        registry.close()
+
+        assertEquals(1, lease.client.closed)
+        assertEquals(0, registry.size)
+        assertThrows(IllegalStateException::class.java) { registry.acquire(spec(1), { FakeClient() }) }
+
+        // Releasing a lease after the registry closed does not close the client again
+        lease.close()
+        assertEquals(1, lease.client.closed)
+    }
+}
@@ -0,0 +1,56 @@
+package com.joshrotenberg.redis.client.builder
+
+import com.joshrotenberg.redis.client.builder.jedis.JedisClusterClientBuilder
+import com.joshrotenberg.redis.client.builder.jedis.JedisPooledClientBuilder
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisPooled
+
+class RedisClientSpecTest {
+
+    @Test
+    fun testBuildersConfiguredAlikeHaveEqualSpecs() {
+        val first = JedisPooledClientBuilder.create().host("redis").port(6380).database(2).spec()
+        val second = JedisPooledClientBuilder.create().database(2).port(6380).host("redis").spec()
+
+        assertEquals(first, second)
+        assertEquals(first.hashCode(), second.hashCode())
+        assertEquals(JedisPooled::class.java.name, first.clientType)
+        assertEquals("redis", first["host"])
+        assertNotEquals(first, JedisPooledClientBuilder.create().host("redis").port(6381).database(2).spec())
+    }
+
+    @Test
+    fun testResiliencePoliciesComparedBySettings() {
+        val first = JedisPooledClientBuilder.create().withCircuitBreaker { it.failureRateThreshold(30f) }.spec()
+        val second = JedisPooledClientBuilder.create().withCircuitBreaker { it.failureRateThreshold(30f) }.spec()
+        val other = JedisPooledClientBuilder.create().withCircuitBreaker { it.failureRateThreshold(40f) }.spec()
+
+        assertEquals(first, second)
+        assertNotEquals(first, other)
+        assertNotEquals(first, JedisPooledClientBuilder.create().spec())
+    }
+
+    @Test
+    fun testSpecDoesNotChangeWithBuilder() {
+        val builder = JedisClusterClientBuilder.create().addNode("node1", 6379)
+        val spec = builder.spec()
+        builder.addNode("node2", 6379)
+
+        assertEquals(setOf(HostAndPort("node1", 6379)), spec["nodes"])
+        assertNotEquals(spec, builder.spec())
+    }
+
+    @Test
+    fun testSpecHidesSecrets() {
+        val spec = JedisPooledClientBuilder.create().password("hunter2").spec()
+
+        assertFalse(spec.toString().contains("hunter2"))
+        assertTrue(spec.toString().contains("password=****"))
+        assertEquals("hunter2", spec["password"])
+    }
+}
@@ -0,0 +1,78 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class LocalCacheTest {
+
+    @Test
+    fun `test lru evicts least recently read entry`() {
+        val cache = LocalCache.forStrings(2, 0, 0, CacheEvictionPolicy.LRU)
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.get("a")
+        cache.put("c", "3")
+
+        assertEquals("1", cache.get("a"))
+        assertNull(cache.get("b"))
+        assertEquals(1, cache.metrics.evictions)
+    }
+
+    @Test
+    fun `test fifo evicts first written entry`() {
+        val cache = LocalCache.forStrings(2, 0, 0, CacheEvictionPolicy.FIFO)
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.get("a")
+        cache.put("c", "3")
+
+        assertNull(cache.get("a"))
+        assertEquals("2", cache.get("b"))
+    }
+
+    @Test
+    fun `test entries are bounded by weight`() {
+        val cache = LocalCache<String, String>(100, 10, 0, CacheEvictionPolicy.LRU, { _, value -> value.length })
+        cache.put("a", "12345")
+        cache.put("b", "12345")
+        cache.put("c", "123")
+
+        assertEquals(2, cache.metrics.size)
+        assertEquals(8, cache.weight)
+        // A value heavier than the whole cache is not cached
+        cache.put("d", "12345678901")
+        assertNull(cache.get("d"))
+    }
+
+    @Test
+    fun `test entries expire after ttl`() {
+        var now = 0L
+        val cache = LocalCache<String, String>(10, 0, 100, CacheEvictionPolicy.LRU, { _, _ -> 1 }, { now })
+        cache.put("a", "1")
+
+        now = TimeUnit.MILLISECONDS.toNanos(99)
+        assertEquals("1", cache.get("a"))
+        now = TimeUnit.MILLISECONDS.toNanos(100)
+        assertNull(cache.get("a"))
+        assertEquals(0, cache.metrics.size)
+    }
+
+    @Test
+    fun `test metrics count hits misses and invalidations`() {
+        val cache = LocalCache.forStrings(10, 0, 0, CacheEvictionPolicy.LRU)
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.get("a")
+        cache.get("x")
+        cache.invalidate("a")
+        cache.invalidate("missing")
+        cache.invalidateAll()
+
+        assertEquals(1, cache.metrics.hits)
+        assertEquals(1, cache.metrics.misses)
+        assertEquals(2, cache.metrics.invalidations)
+        assertEquals(0, cache.metrics.size)
+    }
+}
@@ -0,0 +1,152 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class OffHeapCacheTest {
+
+    private val pageBytes = 4096
+
+    @Test
+    fun `test values are read back`() {
+        val cache = OffHeapCache(1L shl 20, 0, pageBytes)
+        cache.put("a", "1")
+        cache.put("b", "ü".repeat(100))
+
+        assertEquals("1", cache.get("a"))
+        assertEquals("ü".repeat(100), cache.get("b"))
+        assertNull(cache.get("c"))
+        assertEquals(2, cache.metrics.hits)
+        assertEquals(1, cache.metrics.misses)
+    }
+
+    @Test
+    fun `test overwrite and invalidate`() {
+        val cache = OffHeapCache(1L shl 20, 0, pageBytes)
+        cache.put("a", "1")
+        cache.put("a", "a much longer value that moves to a larger slot")
+
+        assertEquals("a much longer value that moves to a larger slot", cache.get("a"))
+        assertEquals(1, cache.metrics.size)
+        cache.invalidate("a")
+        assertNull(cache.get("a"))
+        assertEquals(1, cache.metrics.invalidations)
+    }
+
+    @Test
+    fun `test index grows and removals keep probe sequences intact`() {
+        val cache = OffHeapCache(16L shl 20, 0, pageBytes)
+        for (i in 0 until 5000) {
+            cache.put("key:$i", "value:$i")
+        }
+        for (i in 0 until 5000 step 2) {
+            cache.invalidate("key:$i")
+        }
+
+        for (i in 0 until 5000) {
+            assertEquals(if (i % 2 == 0) null else "value:$i", cache.get("key:$i"))
+        }
+        assertEquals(2500, cache.metrics.size)
+    }
+
+    @Test
+    fun `test clock eviction stays within budget and spares recently read entries`() {
+        // One page of 64-byte slots: 64 entries
+        val cache = OffHeapCache(pageBytes.toLong(), 0, pageBytes)
+        for (i in 0 until 64) {
+            cache.put("key:$i", "v")
+        }
+        for (i in 0 until 32) {
+            cache.get("key:$i")
+        }
+        for (i in 64 until 96) {
+            cache.put("key:$i", "v")
+        }
+
+        assertEquals(pageBytes.toLong(), cache.allocatedBytes)
+        assertEquals(64, cache.metrics.size)
+        assertEquals(32, cache.metrics.evictions)
+        for (i in 0 until 32) {
+            assertEquals("v", cache.get("key:$i"))
+        }
+    }
+
+    @Test
+    fun `test size class without pages takes the only page`() {
+        val cache = OffHeapCache(pageBytes.toLong(), 0, pageBytes)
+        for (i in 0 until 64) {
+            cache.put("key:$i", "v")
+            cache.get("key:$i")
+        }
+
+        cache.put("big:0", "x".repeat(900))
+
+        assertEquals("x".repeat(900), cache.get("big:0"))
+        assertEquals(pageBytes.toLong(), cache.allocatedBytes)
+        assertEquals(1, cache.metrics.size)
+        assertEquals(64, cache.metrics.evictions)
+        assertNull(cache.get("key:0"))
+    }
+
+    @Test
+    fun `test pages move to larger values after warm-up with small values`() {
+        // Eight pages of 64-byte slots, then values that need 1024-byte slots: four per page
+        val cache = OffHeapCache(8L * pageBytes, 0, pageBytes)
+        for (i in 0 until 8 * 64) {
+            cache.put("key:$i", "v")
+        }
+        for (i in 0 until 8 * 4) {
+            cache.put("big:$i", "x".repeat(900))
+            assertEquals("x".repeat(900), cache.get("big:$i"))
+        }
+
+        assertEquals(8L * pageBytes, cache.allocatedBytes)
+        for (i in 0 until 8 * 4) {
+            assertEquals("x".repeat(900), cache.get("big:$i"))
+        }
+        assertEquals(32, cache.metrics.size)
+        assertEquals(512, cache.metrics.evictions)
+    }
+
+    @Test
+    fun `test entry larger than a page is not cached`() {
+        val cache = OffHeapCache(1L shl 20, 0, pageBytes)
+        cache.put("a", "x".repeat(pageBytes))
+
+        assertNull(cache.get("a"))
+        assertEquals(0, cache.allocatedBytes)
+    }
+
+    @Test
+    fun `test entries expire after ttl`() {
+        var now = 0L
+        val cache = OffHeapCache(1L shl 20, 100, pageBytes) { now }
+        cache.put("a", "1")
+
+        now = TimeUnit.MILLISECONDS.toNanos(99)
+        assertEquals("1", cache.get("a"))
+        now = TimeUnit.MILLISECONDS.toNanos(100)
+        assertNull(cache.get("a"))
+        assertEquals(0, cache.metrics.size)
+    }
+
+    @Test
+    fun `test invalidate all frees every slot`() {
+        val cache = OffHeapCache(pageBytes.toLong(), 0, pageBytes)
+        for (i in 0 until 64) {
+            cache.put("key:$i", "v")
+        }
+
+        cache.invalidateAll()
+        assertEquals(0, cache.metrics.size)
+        for (i in 0 until 64) {
+            cache.put("other:$i", "v")
+        }
+        assertEquals(64, cache.metrics.size)
+        assertEquals(0, cache.metrics.evictions)
+        assertTrue(cache.metrics.invalidations >= 64)
+    }
+}
@@ -0,0 +1,204 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.TimeUnit
+
+class RedisTieredCacheTest {
+
+    /**
+     * Store that keeps keys in memory and delivers published messages to its subscribers synchronously.
+     */
+    private class MapStore(private val onGet: () -> Unit = {}) : RedisCacheStore {
+        val values = ConcurrentHashMap<String, String>()
+        private val subscribers = CopyOnWriteArrayList<(String?) -> Unit>()
+        var gets = 0
+
+        override fun get(key: String): String? {
+            gets++
+            onGet()
+            return values[key]
+        }
+
+        override fun set(key: String, value: String, ttlMs: Long) {
+            values[key] = value
+        }
+
+        override fun delete(key: String) {
+            values.remove(key)
+        }
+
+        override fun publish(channel: String, message: String) {
+            subscribers.forEach { it(message) }
+        }
+
+        override fun subscribe(channel: String, listener: (String?) -> Unit): AutoCloseable {
+            subscribers.add(listener)
+            return AutoCloseable { subscribers.remove(listener) }
+        }
+    }
+
+    private var now = 0L
+
+    private fun builder(): RedisTieredCache.Builder =
+        RedisTieredCache.builder()
+            .l1Ttl(100)
+            .earlyExpiration(0.0)
+            .executor { it.run() }
+            .clock { now }
+
+    @Test
+    fun `test reads are answered from l1 after l2`() {
+        val store = MapStore()
+        store.values["a"] = "1"
+        val cache = builder().build(store)
+
+        assertEquals("1", cache.get("a"))
+        assertEquals("1", cache.get("a"))
+
+        assertEquals(1, store.gets)
+        assertEquals(1, cache.metrics.l1Hits)
+        assertEquals(1, cache.metrics.l2Hits)
+    }
+
+    @Test
+    fun `test off-heap l1 answers reads and expires entries`() {
+        val store = MapStore()
+        store.values["a"] = "1"
+        val cache = builder().offHeap(1L shl 20, 4096).build(store)
+
+        assertEquals("1", cache.get("a"))
+        assertEquals("1", cache.get("a"))
+        assertEquals(1, cache.metrics.l1Hits)
+        assertEquals(1, cache.metrics.size)
+
+        store.values["a"] = "2"
+        now = TimeUnit.MILLISECONDS.toNanos(100)
+        assertEquals("2", cache.get("a"))
+        assertEquals(1, cache.metrics.evictions)
+    }
+
+    @Test
+    fun `test loader fills both tiers`() {
+        val store = MapStore()
+        val cache = builder().loader { key -> "loaded:$key" }.build(store)
+
+        assertEquals("loaded:a", cache.get("a"))
+        assertEquals("loaded:a", store.values["a"])
+        assertEquals(1, cache.metrics.misses)
+        assertNull(cache.get("b") { null })
+    }
+
+    @Test
+    fun `test l1 entry expires after ttl`() {
+        val store = MapStore()
+        store.values["a"] = "1"
+        val cache = builder().build(store)
+        cache.get("a")
+
+        store.values["a"] = "2"
+        now = TimeUnit.MILLISECONDS.toNanos(99)
+        assertEquals("1", cache.get("a"))
+        now = TimeUnit.MILLISECONDS.toNanos(100)
+        assertEquals("2", cache.get("a"))
+        assertEquals(1, cache.metrics.evictions)
+    }
+
+    @Test
+    fun `test refresh ahead reloads entry in background`() {
+        val store = MapStore()
+        store.values["a"] = "1"
+        val cache = builder().refreshAhead(0.5).build(store)
+        cache.get("a")
+
+        store.values["a"] = "2"
+        now = TimeUnit.MILLISECONDS.toNanos(60)
+        // The reader gets the current value while the entry is reloaded
+        assertEquals("1", cache.get("a"))
+        assertEquals("2", cache.get("a"))
+        assertEquals(1, cache.metrics.refreshes)
+    }
+
+    @Test
+    fun `test slow entries expire early`() {
+        // Each read of Redis takes 10 ms, so early expiration refreshes the entry well before its expiry
+        val store = MapStore { now += TimeUnit.MILLISECONDS.toNanos(10) }
+        store.values["a"] = "1"
+        val cache = builder().earlyExpiration(1_000_000.0).build(store)
+        cache.get("a")
+
+        cache.get("a")
+        assertEquals(1, cache.metrics.refreshes)
+        assertEquals(2, store.gets)
+    }
+
+    @Test
+    fun `test pubsub invalidation reaches other instances`() {
+        val store = MapStore()
+        store.values["a"] = "1"
+        val writer = builder().pubSubInvalidation().build(store)
+        val reader = builder().pubSubInvalidation().build(store)
+        writer.get("a")
+        reader.get("a")
+
+        writer.put("a", "2")
+
+        assertEquals(0, writer.metrics.invalidations)
+        assertEquals(1, reader.metrics.invalidations)
+        assertEquals("2", reader.get("a"))
+        assertEquals("2", writer.get("a"))
+    }
+
+    @Test
+    fun `test invalidate removes key from both tiers`() {
+        val store = MapStore()
+        val cache = builder().build(store)
+        cache.put("a", "1")
+
+        cache.invalidate("a")
+
+        assertNull(cache.get("a"))
+        assertTrue(store.values.isEmpty())
+    }
+
+    @Test
+    fun `test writes of other keys do not discard a load`() {
+        lateinit var cache: RedisTieredCache
+        val store = MapStore(onGet = { if (cache.metrics.size == 0L) cache.put("b", "2") })
+        store.values["a"] = "1"
+        cache = builder().build(store)
+
+        assertEquals("1", cache.get("a"))
+        assertEquals("1", cache.get("a"))
+
+        assertEquals(1, cache.metrics.l1Hits)
+        assertEquals(2, cache.metrics.size)
+    }
+
+    @Test
+    fun `test write of the loading key discards the stale load`() {
+        lateinit var cache: RedisTieredCache
+        var raced = false
+        lateinit var store: MapStore
+        store = MapStore(onGet = {
+            if (!raced) {
+                raced = true
+                cache.put("a", "2")
+                // The load read Redis before the write landed
+                store.values["a"] = "1"
+            }
+        })
+        store.values["a"] = "1"
+        cache = builder().build(store)
+
+        assertEquals("1", cache.get("a"))
+
+        // The stale load did not replace the written value in the L1
+        assertEquals("2", cache.get("a"))
+        assertEquals(1, cache.metrics.l1Hits)
+    }
+}
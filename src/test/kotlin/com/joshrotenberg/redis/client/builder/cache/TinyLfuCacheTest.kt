@@ -0,0 +1,64 @@
+package com.joshrotenberg.redis.client.builder.cache
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class TinyLfuCacheTest {
+
+    @Test
+    fun `test frequently read entry survives a scan`() {
+        val cache = TinyLfuCache<String, String>(100) { _, _ -> 1 }
+        cache.put("hot", "value")
+        repeat(10) { cache.get("hot") }
+
+        for (i in 0 until 1000) {
+            cache.put("scan:$i", "value")
+            if (i % 10 == 0) {
+                cache.get("hot")
+            }
+        }
+
+        assertEquals("value", cache.get("hot"))
+        assertEquals(100, cache.size)
+        assertEquals(901, cache.evictions)
+    }
+
+    @Test
+    fun `test entries are bounded by weight`() {
+        val cache = TinyLfuCache<String, String>(10) { _, value -> value.length }
+        cache.put("a", "12345")
+        cache.put("b", "12345")
+        cache.put("c", "123")
+
+        assertTrue(cache.weight <= 10)
+        // A value heavier than the whole cache is not cached
+        cache.put("d", "12345678901")
+        assertNull(cache.get("d"))
+    }
+
+    @Test
+    fun `test updated entry is reweighed`() {
+        val cache = TinyLfuCache<String, String>(100) { _, value -> value.length }
+        cache.put("a", "12345")
+        cache.put("a", "12")
+
+        assertEquals("12", cache.get("a"))
+        assertEquals(2, cache.weight)
+    }
+
+    @Test
+    fun `test remove and clear`() {
+        val cache = TinyLfuCache<String, String>(100) { _, _ -> 1 }
+        cache.put("a", "1")
+        cache.put("b", "2")
+        cache.put("c", "3")
+
+        assertTrue(cache.remove("a"))
+        assertNull(cache.peek("a"))
+        assertEquals(2, cache.clear())
+        assertEquals(0, cache.size)
+        assertEquals(0, cache.weight)
+    }
+}
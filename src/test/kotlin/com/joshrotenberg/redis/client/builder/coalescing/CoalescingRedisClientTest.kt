@@ -0,0 +1,122 @@
+package com.joshrotenberg.redis.client.builder.coalescing
+
+import io.lettuce.core.RedisChannelWriter
+import io.lettuce.core.RedisFuture
+import io.lettuce.core.codec.StringCodec
+import io.lettuce.core.protocol.RedisCommand
+import io.mockk.every
+import io.mockk.mockk
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.nio.ByteBuffer
+import java.time.Duration
+import java.util.Collections
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class CoalescingRedisClientTest {
+
+    // Commands written to the server, which holds them until the test answers them
+    private val written = Collections.synchronizedList(mutableListOf<RedisCommand<String, String, *>>())
+    private val coalescer = ReadCoalescer()
+    private val connection = CoalescingStatefulRedisConnection(
+        writer(),
+        mockk(relaxed = true),
+        StringCodec.UTF8,
+        Duration.ofSeconds(10),
+        coalescer
+    )
+
+    private fun writer(): RedisChannelWriter {
+        val writer = mockk<RedisChannelWriter>(relaxed = true)
+        every { writer.write(any<RedisCommand<String, String, *>>()) } answers {
+            firstArg<RedisCommand<String, String, *>>().also { written.add(it) }
+        }
+        return writer
+    }
+
+    private fun <T> concurrently(threads: Int, task: () -> RedisFuture<T>): List<RedisFuture<T>> {
+        val pool = Executors.newFixedThreadPool(threads)
+        try {
+            return (0 until threads).map { pool.submit(Callable { task() }) }.map { it.get(10, TimeUnit.SECONDS) }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    // Answers a command as the connection would, through its output, so that wrappers see the completion
+    private fun answer(command: RedisCommand<String, String, *>, reply: String) {
+        command.output.set(ByteBuffer.wrap(reply.toByteArray()))
+        command.complete()
+    }
+
+    @Test
+    fun `test identical reads share one server call`() {
+        val futures = concurrently(8) { connection.async().get("key") }
+
+        assertEquals(1, written.size)
+        assertEquals(8, coalescer.metrics.reads)
+        assertEquals(7, coalescer.metrics.coalesced)
+        answer(written.single(), "value")
+        futures.forEach { assertEquals("value", it.get(1, TimeUnit.SECONDS)) }
+        assertEquals(0, coalescer.metrics.inFlight)
+    }
+
+    @Test
+    fun `test read after reply is written again`() {
+        val first = connection.async().get("key")
+        answer(written.single(), "value")
+        assertEquals("value", first.get(1, TimeUnit.SECONDS))
+
+        connection.async().get("key")
+
+        assertEquals(2, written.size)
+        assertEquals(0, coalescer.metrics.coalesced)
+    }
+
+    @Test
+    fun `test writes are not coalesced`() {
+        val futures = concurrently(4) { connection.async().set("key", "value") }
+
+        assertEquals(4, written.size)
+        assertEquals(0, coalescer.metrics.reads)
+        written.forEach { answer(it, "OK") }
+        futures.forEach { assertEquals("OK", it.get(1, TimeUnit.SECONDS)) }
+    }
+
+    @Test
+    fun `test read after a write to its key is written again`() {
+        val before = connection.async().get("key")
+        val write = connection.async().set("key", "new")
+        answer(written[1], "OK")
+        assertEquals("OK", write.get(1, TimeUnit.SECONDS))
+
+        val after = connection.async().get("key")
+        val follower = connection.async().get("key")
+
+        assertEquals(3, written.size)
+        assertEquals(1, coalescer.metrics.coalesced)
+        answer(written[0], "old")
+        answer(written[2], "new")
+        assertEquals("old", before.get(1, TimeUnit.SECONDS))
+        assertEquals("new", after.get(1, TimeUnit.SECONDS))
+        assertEquals("new", follower.get(1, TimeUnit.SECONDS))
+        assertEquals(0, coalescer.metrics.inFlight)
+    }
+
+    @Test
+    fun `test command names are matched in any case`() {
+        assertTrue(ReadCommands.isRead("GET".toByteArray()))
+        assertTrue(ReadCommands.isRead("zRangeByScore".toByteArray()))
+        assertFalse(ReadCommands.isRead("SET".toByteArray()))
+        assertFalse(ReadCommands.isRead("GETDEL".toByteArray()))
+        assertFalse(ReadCommands.isRead("A-COMMAND-NAME-LONGER-THAN-ANY-READ".toByteArray()))
+        assertTrue(ReadCommands.isMultiKeyRead("mget".toByteArray()))
+        assertFalse(ReadCommands.isMultiKeyRead("GET".toByteArray()))
+        assertTrue(ReadCommands.isMultiKeyWrite("Del".toByteArray()))
+        assertFalse(ReadCommands.isMultiKeyWrite("SET".toByteArray()))
+    }
+}
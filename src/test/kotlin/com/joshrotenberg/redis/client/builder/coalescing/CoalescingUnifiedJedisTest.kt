@@ -0,0 +1,155 @@
+package com.joshrotenberg.redis.client.builder.coalescing
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.exceptions.JedisConnectionException
+import redis.clients.jedis.executors.CommandExecutor
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+
+class CoalescingUnifiedJedisTest {
+
+    /**
+     * Command executor that holds every command until it is released, then answers it or fails it.
+     */
+    private class GatedCommandExecutor(private val failure: RuntimeException? = null) : CommandExecutor {
+        val calls = AtomicInteger()
+        val release = CountDownLatch(1)
+
+        @Suppress("UNCHECKED_CAST")
+        override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+            calls.incrementAndGet()
+            release.await(10, TimeUnit.SECONDS)
+            failure?.let { throw it }
+            return "value" as T
+        }
+
+        override fun close() {
+            // Nothing to close
+        }
+    }
+
+    private fun <T> concurrently(threads: Int, executor: GatedCommandExecutor, task: () -> T): List<Future<T>> {
+        val pool = Executors.newFixedThreadPool(threads)
+        try {
+            val futures = (0 until threads).map { pool.submit(Callable { task() }) }
+            // Give every thread time to join the read in flight before the reply arrives
+            Thread.sleep(200)
+            executor.release.countDown()
+            futures.forEach { runCatching { it.get(10, TimeUnit.SECONDS) } }
+            return futures
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test
+    fun `test identical reads share one request`() {
+        val executor = GatedCommandExecutor()
+        val client = CoalescingUnifiedJedis(UnifiedJedis(executor))
+
+        val futures = concurrently(8, executor) { client.get("key") }
+
+        futures.forEach { assertEquals("value", it.get()) }
+        assertEquals(1, executor.calls.get())
+        assertEquals(8, client.metrics.reads)
+        assertEquals(7, client.metrics.coalesced)
+        assertEquals(0, client.metrics.inFlight)
+    }
+
+    @Test
+    fun `test different keys are not coalesced`() {
+        val executor = GatedCommandExecutor()
+        val client = CoalescingUnifiedJedis(UnifiedJedis(executor))
+        val key = AtomicInteger()
+
+        concurrently(4, executor) { client.get("key:${key.getAndIncrement()}") }
+
+        assertEquals(4, executor.calls.get())
+        assertEquals(0, client.metrics.coalesced)
+    }
+
+    @Test
+    fun `test writes are not coalesced`() {
+        val executor = GatedCommandExecutor()
+        val client = CoalescingUnifiedJedis(UnifiedJedis(executor))
+
+        concurrently(4, executor) { client.set("key", "value") }
+
+        assertEquals(4, executor.calls.get())
+        assertEquals(0, client.metrics.reads)
+    }
+
+    @Test
+    fun `test failure is shared with followers`() {
+        val executor = GatedCommandExecutor(JedisConnectionException("connection reset"))
+        val client = CoalescingUnifiedJedis(UnifiedJedis(executor))
+
+        val futures = concurrently(4, executor) { client.get("key") }
+
+        futures.forEach { future ->
+            val error = assertThrows(Exception::class.java) { future.get() }
+            assertEquals(JedisConnectionException::class.java, error.cause!!::class.java)
+        }
+        assertEquals(1, executor.calls.get())
+    }
+
+    @Test
+    fun `test read after reply is sent again`() {
+        val executor = GatedCommandExecutor()
+        executor.release.countDown()
+        val client = CoalescingUnifiedJedis(UnifiedJedis(executor))
+
+        client.get("key")
+        client.get("key")
+
+        assertEquals(2, executor.calls.get())
+        assertEquals(0, client.metrics.coalesced)
+    }
+
+    @Test
+    fun `test read after a write to its key is sent again`() {
+        val calls = AtomicInteger()
+        val release = CountDownLatch(1)
+        // Holds the first read until it is released, and answers every other command at once
+        val executor = object : CommandExecutor {
+            @Suppress("UNCHECKED_CAST")
+            override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+                if (calls.getAndIncrement() == 0) {
+                    release.await(10, TimeUnit.SECONDS)
+                    return "old" as T
+                }
+                return "new" as T
+            }
+
+            override fun close() {
+                // Nothing to close
+            }
+        }
+        val client = CoalescingUnifiedJedis(UnifiedJedis(executor))
+        val pool = Executors.newSingleThreadExecutor()
+        try {
+            val before = pool.submit(Callable { client.get("key") })
+            while (client.metrics.inFlight == 0) {
+                Thread.sleep(10)
+            }
+
+            client.set("key", "value")
+
+            assertEquals("new", client.get("key"))
+            release.countDown()
+            assertEquals("old", before.get(10, TimeUnit.SECONDS))
+            assertEquals(3, calls.get())
+            assertEquals(0, client.metrics.coalesced)
+        } finally {
+            pool.shutdown()
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.joshrotenberg.redis.client.builder.integration
+
+import com.joshrotenberg.redis.client.builder.jedis.AutoPipeliningJedis
+import com.joshrotenberg.redis.client.builder.jedis.JedisPooledClientBuilder
+import com.joshrotenberg.redis.client.builder.jedis.UnifiedJedisClientBuilder
+import com.joshrotenberg.redis.client.builder.resilience.ResilientUnifiedJedis
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.exceptions.JedisDataException
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
+
+class AutoPipeliningIntegrationTest : RedisContainerTest() {
+
+    @Test
+    fun testConcurrentCommandsShareConnections() {
+        val client = UnifiedJedisClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .autoPipelining(64, 200, 2)
+            .build() as AutoPipeliningJedis
+
+        val executor = Executors.newFixedThreadPool(16)
+        try {
+            val tasks = (0 until 16).map { thread ->
+                Callable {
+                    for (i in 0 until 100) {
+                        val key = "test:autopipelining:$thread:$i"
+                        client.set(key, "value-$i")
+                        assertEquals("value-$i", client.get(key))
+                    }
+                }
+            }
+            executor.invokeAll(tasks).forEach { it.get(30, TimeUnit.SECONDS) }
+
+            assertEquals(3200, client.metrics.commands)
+            assertTrue(client.metrics.batches < 3200, "Concurrent commands should be written together")
+            assertEquals(0, client.metrics.queued)
+        } finally {
+            executor.shutdown()
+            client.close()
+        }
+    }
+
+    @Test
+    fun testResiliencePoliciesWrapAutoPipelinedClient() {
+        val client = UnifiedJedisClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .autoPipelining(64, 200)
+            .withCircuitBreaker { it.name("test-auto-pipelining-circuit-breaker") }
+            .build()
+
+        try {
+            assertTrue(client is ResilientUnifiedJedis)
+            client.set("test:autopipelining:resilient", "value")
+            assertEquals("value", client.get("test:autopipelining:resilient"))
+        } finally {
+            client.close()
+        }
+    }
+
+    @Test
+    fun testErrorReplyFailsOnlyItsCommand() {
+        val builder = JedisPooledClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .autoPipelining(16, 0)
+        builder.build().use { pooled ->
+            builder.autoPipelined(pooled).use { client ->
+                client.set("test:autopipelining:string", "value")
+
+                assertThrows(JedisDataException::class.java) { client.lpush("test:autopipelining:string", "x") }
+                assertEquals("value", client.get("test:autopipelining:string"))
+            }
+            // The pipelined connection went back to the pool
+            assertEquals("value", pooled.get("test:autopipelining:string"))
+        }
+    }
+
+    @Test
+    fun testClosedClientRejectsCommands() {
+        val client = UnifiedJedisClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .autoPipelining(16, 0)
+            .build()
+        client.close()
+
+        assertThrows(IllegalStateException::class.java) { client.get("test:autopipelining:closed") }
+    }
+}
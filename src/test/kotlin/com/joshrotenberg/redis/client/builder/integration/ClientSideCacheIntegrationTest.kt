@@ -0,0 +1,88 @@
+package com.joshrotenberg.redis.client.builder.integration
+
+import com.joshrotenberg.redis.client.builder.jedis.JedisClientSideCaching
+import com.joshrotenberg.redis.client.builder.jedis.JedisPooledClientBuilder
+import com.joshrotenberg.redis.client.builder.lettuce.LettuceClientBuilder
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class ClientSideCacheIntegrationTest : RedisContainerTest() {
+
+    @Test
+    fun testLettuceCacheIsInvalidatedByWrites() {
+        val builder = LettuceClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .clientSideCache(1000)
+        val client = builder.build()
+        try {
+            val writer = client.connect()
+            writer.sync().set("test:csc:lettuce", "v1")
+
+            builder.clientSideCacheFrontend(client).use { cache ->
+                assertEquals("v1", cache.get("test:csc:lettuce"))
+                assertEquals("v1", cache.get("test:csc:lettuce"))
+                assertEquals(1, cache.metrics.hits)
+                assertEquals(1, cache.metrics.misses)
+
+                writer.sync().set("test:csc:lettuce", "v2")
+                awaitInvalidation { cache.metrics.invalidations }
+                assertEquals("v2", cache.get("test:csc:lettuce"))
+            }
+            writer.close()
+        } finally {
+            client.shutdown()
+        }
+    }
+
+    @Test
+    fun testJedisCacheIsInvalidatedByWrites() {
+        JedisPooledClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .clientSideCache(1000)
+            .build()
+            .use { client ->
+                val metrics = JedisClientSideCaching.metrics(client)
+                client.set("test:csc:jedis", "v1")
+
+                assertEquals("v1", client.get("test:csc:jedis"))
+                assertEquals("v1", client.get("test:csc:jedis"))
+                assertEquals(1, metrics.hits)
+
+                client.set("test:csc:jedis", "v2")
+                assertEquals("v2", client.get("test:csc:jedis"))
+                assertTrue(metrics.invalidations >= 1)
+            }
+    }
+
+    @Test
+    fun testJedisCacheMetricsThroughDecorators() {
+        JedisPooledClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+            .clientSideCache(1000)
+            .withCircuitBreaker { it.name("test-csc-circuit-breaker") }
+            .coalesceReads()
+            .build()
+            .use { client ->
+                val metrics = JedisClientSideCaching.metrics(client)
+                client.set("test:csc:jedis:decorated", "v1")
+
+                assertEquals("v1", client.get("test:csc:jedis:decorated"))
+                assertEquals("v1", client.get("test:csc:jedis:decorated"))
+                assertEquals(1, metrics.hits)
+                assertEquals(1, metrics.size)
+            }
+    }
+
+    private fun awaitInvalidation(invalidations: () -> Long) {
+        val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+        while (invalidations() == 0L && System.nanoTime() < deadline) {
+            Thread.sleep(10)
+        }
+        assertEquals(1, invalidations())
+    }
+}
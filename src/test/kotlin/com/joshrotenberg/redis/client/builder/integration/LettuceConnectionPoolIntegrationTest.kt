@@ -0,0 +1,75 @@
+package com.joshrotenberg.redis.client.builder.integration
+
+import com.joshrotenberg.redis.client.builder.lettuce.LettuceClientBuilder
+import io.lettuce.core.RedisClient
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+
+class LettuceConnectionPoolIntegrationTest : RedisContainerTest() {
+
+    private val clients = ArrayList<RedisClient>()
+
+    @AfterEach
+    fun tearDown() {
+        clients.forEach { it.shutdown() }
+    }
+
+    private fun builder(): LettuceClientBuilder =
+        LettuceClientBuilder.create()
+            .host(redisHost)
+            .port(redisPort)
+
+    @Test
+    fun testPoolIsWarmedAndRunsTransactions() {
+        val builder = builder().pooled(2, 4)
+        val client = builder.build().also { clients.add(it) }
+
+        builder.connectionPool(client).use { pool ->
+            assertEquals(2, pool.metrics.idle, "Idle connections should be opened up front")
+
+            val result = pool.withConnection { connection ->
+                val async = connection.async()
+                async.multi()
+                async.set("test:pool:key", "value")
+                async.get("test:pool:key")
+                async.exec()
+            }.get(5, TimeUnit.SECONDS)
+
+            assertEquals(listOf<Any>("OK", "value"), result.toList())
+            assertEquals(1, pool.metrics.acquisitions)
+            assertEquals(0, pool.metrics.active)
+        }
+    }
+
+    @Test
+    fun testIdleConnectionsAboveMinimumAreEvicted() {
+        val builder = builder().pooled(1, 4, 200)
+        val client = builder.build().also { clients.add(it) }
+
+        builder.connectionPool(client).use { pool ->
+            val connections = (1..3).map { pool.acquire().get(5, TimeUnit.SECONDS) }
+            connections.forEach { pool.release(it).get(5, TimeUnit.SECONDS) }
+            assertEquals(3, pool.metrics.idle)
+
+            val deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5)
+            while (pool.metrics.idle > 1 && System.nanoTime() < deadline) {
+                Thread.sleep(50)
+            }
+
+            assertEquals(1, pool.metrics.idle)
+            assertTrue(pool.metrics.evictions >= 2)
+        }
+    }
+
+    @Test
+    fun testConnectionPoolRequiresPooling() {
+        val builder = builder()
+        val client = builder.build().also { clients.add(it) }
+
+        assertThrows(IllegalStateException::class.java) { builder.connectionPool(client) }
+    }
+}
@@ -0,0 +1,102 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import com.joshrotenberg.redis.client.builder.fixtures.ClusterSimulator
+import com.joshrotenberg.redis.client.builder.fixtures.ClusterSlots
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.HostAndPort
+import redis.clients.jedis.JedisCluster
+import redis.clients.jedis.exceptions.JedisClusterOperationException
+
+class ClusterMultiKeyExecutorTest {
+    private val cluster = ClusterSimulator.builder().nodes(3).seed(1).build()
+    private val client = JedisCluster(cluster.nodes.map { HostAndPort(it.host, it.port) }.toSet(), TIMEOUT_MS, MAX_ATTEMPTS)
+
+    @AfterEach
+    fun tearDown() {
+        client.close()
+        cluster.close()
+    }
+
+    @Test
+    fun `test mget returns values in key order across slots`() {
+        val keys = (0 until 50).map { "key$it" }
+        keys.filterIndexed { i, _ -> i % 3 != 0 }.forEach { client.set(it, "value-$it") }
+
+        ClusterMultiKeyExecutor.create(client, 8, TIMEOUT_MS.toLong()).use { executor ->
+            val values = executor.mget(keys)
+
+            assertEquals(keys.size, values.size)
+            for (i in keys.indices) {
+                if (i % 3 == 0) assertNull(values[i]) else assertEquals("value-${keys[i]}", values[i])
+            }
+        }
+    }
+
+    @Test
+    fun `test keys are grouped into one command per slot and batch`() {
+        val keys = (0 until 10).map { "{user}:$it" }
+        val node = cluster.nodeFor(keys.first())
+
+        ClusterMultiKeyExecutor.create(client, 4, TIMEOUT_MS.toLong()).use { executor ->
+            executor.mset(keys.associateWith { "value-$it" })
+            val before = cluster.server(node).metrics.commands
+            val values = executor.mget(keys)
+
+            assertEquals(keys.map { "value-$it" }, values)
+            assertEquals(3, cluster.server(node).metrics.commands - before)
+            assertEquals(10, executor.del(keys))
+            assertEquals(0, executor.del(keys))
+        }
+    }
+
+    @Test
+    fun `test moved slots fall back to the cluster client`() {
+        client.set("foo", "bar")
+        client.set("baz", "qux")
+        val owner = cluster.nodeFor("foo")
+        cluster.migrateSlot(ClusterSlots.slot("foo"), cluster.nodes.first { it != owner })
+
+        ClusterMultiKeyExecutor.create(client, 8, TIMEOUT_MS.toLong()).use { executor ->
+            assertEquals(listOf("bar", "qux"), executor.mget(listOf("foo", "baz")))
+        }
+        assertTrue(cluster.server(owner).metrics.moved > 0)
+    }
+
+    @Test
+    fun `test migrating slots follow ask through the cluster client`() {
+        client.set("{user}:a", "1")
+        client.set("other", "2")
+        val slot = ClusterSlots.slot("{user}:a")
+        val owner = cluster.nodeForSlot(slot)
+        cluster.beginMigration(slot, cluster.nodes.first { it != owner })
+        cluster.migrateKeys(slot, 10)
+
+        ClusterMultiKeyExecutor.create(client, 8, TIMEOUT_MS.toLong()).use { executor ->
+            assertEquals(listOf("1", "2"), executor.mget(listOf("{user}:a", "other")))
+        }
+        assertTrue(cluster.server(owner).metrics.asked > 0)
+    }
+
+    @Test
+    fun `test slow node times out`() {
+        client.set("foo", "bar")
+        val slow = cluster.server(cluster.nodeFor("foo"))
+        slow.latencyMs = 500
+
+        ClusterMultiKeyExecutor.create(client, 8, 100).use { executor ->
+            val e = assertThrows(JedisClusterOperationException::class.java) { executor.mget(listOf("foo")) }
+            assertTrue(e.message!!.contains("timed out"))
+        }
+        slow.latencyMs = 0
+    }
+
+    private companion object {
+        const val TIMEOUT_MS = 2000
+        const val MAX_ATTEMPTS = 3
+    }
+}
@@ -1,8 +1,13 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
+import com.joshrotenberg.redis.client.builder.fixtures.RespServer
+import com.joshrotenberg.redis.client.builder.resilience.ResilientJedisPool
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException
 import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
 import redis.clients.jedis.JedisPool
+import redis.clients.jedis.exceptions.JedisConnectionException
+import redis.clients.jedis.exceptions.JedisDataException
 
 class JedisClientBuilderTest {
     @Test
@@ -54,4 +59,62 @@ class JedisClientBuilderTest {
         // because it's just testing the builder configuration, not the connection.
         // For connection tests, see the integration tests.
     }
+
+    @Test
+    fun testResilientPool() {
+        val builder = JedisClientBuilder.create()
+            .withCircuitBreaker { it.name("jedis-pool-builder-circuit-breaker") }
+
+        assertNotEquals(JedisClientBuilder.create().spec(), builder.spec())
+        val jedisPool = builder.build()
+        assertTrue(jedisPool is ResilientJedisPool)
+        jedisPool.close()
+    }
+
+    @Test
+    fun testCircuitBreakerGuardsPooledJedis() {
+        RespServer.builder().errorRate(1.0).build().use { server ->
+            val jedisPool = JedisClientBuilder.create()
+                .host(server.host)
+                .port(server.port)
+                .withCircuitBreaker {
+                    it.name("jedis-pool-builder-open-circuit-breaker")
+                        .failureRateThreshold(50f)
+                        .minimumNumberOfCalls(2)
+                }
+                .build()
+
+            jedisPool.resource.use { jedis ->
+                repeat(2) { assertThrows(JedisDataException::class.java) { jedis.get("key") } }
+                assertThrows(CallNotPermittedException::class.java) { jedis.get("key") }
+            }
+            assertEquals(2, server.metrics.injectedErrors)
+            jedisPool.close()
+        }
+    }
+
+    @Test
+    fun testRetryStopsOnBrokenConnection() {
+        RespServer.builder().build().use { server ->
+            val jedisPool = JedisClientBuilder.create()
+                .host(server.host)
+                .port(server.port)
+                .socketTimeout(100)
+                .withRetry { it.name("jedis-pool-builder-broken-retry").maxAttempts(3).waitDuration(1) }
+                .build()
+            jedisPool.resource.use { it.set("key", "value") }
+
+            // The reply arrives after the read timed out, so a retry on the connection would read it
+            server.latencyMs = 300
+            val before = server.metrics.commands
+            jedisPool.resource.use { jedis ->
+                assertThrows(JedisConnectionException::class.java) { jedis.get("key") }
+            }
+            assertEquals(1, server.metrics.commands - before)
+
+            server.latencyMs = 0
+            jedisPool.resource.use { jedis -> assertEquals("value", jedis.get("key")) }
+            jedisPool.close()
+        }
+    }
 }
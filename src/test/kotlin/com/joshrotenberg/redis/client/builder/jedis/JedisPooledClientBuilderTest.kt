@@ -1,5 +1,6 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
+import com.joshrotenberg.redis.client.builder.resilience.ResilientJedisPooled
 import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
 import redis.clients.jedis.JedisPooled
@@ -97,4 +98,34 @@ class JedisPooledClientBuilderTest {
         // Close the connection to avoid resource leaks
         jedisPooled.close()
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testResilienceConfiguration() {
+        // Test that configured resilience policies are applied to the built client
+        val jedisPooled = JedisPooledClientBuilder.create()
+            .withCircuitBreaker { it.name("jedis-pooled-builder-circuit-breaker") }
+            .withRetry { it.maxAttempts(2) }
+            .build()
+
+        assertTrue(jedisPooled is ResilientJedisPooled)
+
+        // Close the connection to avoid resource leaks
+        jedisPooled.close()
+    }
+
+    @Test
+    fun testClientSideCacheWithResilience() {
+        // The resilient client reports the cache of the client it wraps
+        val jedisPooled = JedisPooledClientBuilder.create()
+            .clientSideCache(100)
+            .withCircuitBreaker { it.name("jedis-pooled-builder-csc-circuit-breaker") }
+            .build()
+
+        assertTrue(jedisPooled is ResilientJedisPooled)
+        assertNotNull(jedisPooled.cache)
+        assertEquals(0, JedisClientSideCaching.metrics(jedisPooled).size)
+
+        // Close the connection to avoid resource leaks
+        jedisPooled.close()
+    }
+}
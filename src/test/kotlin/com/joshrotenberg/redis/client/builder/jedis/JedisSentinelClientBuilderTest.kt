@@ -1,6 +1,7 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotEquals
 import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Assertions.assertThrows
 import org.junit.jupiter.api.Test
@@ -69,4 +70,17 @@ class JedisSentinelClientBuilderTest {
         // But we can verify that the builder methods work and return the builder instance
         assertNotNull(builder)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun testResiliencePoliciesInSpec() {
+        val builder = JedisSentinelClientBuilder.create()
+            .masterName("mymaster")
+            .addSentinel("localhost", 26379)
+        val spec = builder.spec()
+
+        builder.withCircuitBreaker { it.name("jedis-sentinel-builder-circuit-breaker") }
+            .withRetry { it.maxAttempts(2) }
+
+        assertNotEquals(spec, builder.spec())
+    }
+}
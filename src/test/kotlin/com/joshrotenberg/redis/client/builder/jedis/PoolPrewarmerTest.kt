@@ -0,0 +1,78 @@
+package com.joshrotenberg.redis.client.builder.jedis
+
+import org.apache.commons.pool2.BasePooledObjectFactory
+import org.apache.commons.pool2.PooledObject
+import org.apache.commons.pool2.impl.DefaultPooledObject
+import org.apache.commons.pool2.impl.GenericObjectPool
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class PoolPrewarmerTest {
+
+    private class SlowFactory(private val delayMs: Long) : BasePooledObjectFactory<Any>() {
+        override fun create(): Any {
+            Thread.sleep(delayMs)
+            return Any()
+        }
+
+        override fun wrap(obj: Any): PooledObject<Any> = DefaultPooledObject(obj)
+    }
+
+    private fun newPool(delayMs: Long, maxTotal: Int = 8): GenericObjectPool<Any> {
+        val config = GenericObjectPoolConfig<Any>().apply {
+            this.maxTotal = maxTotal
+            this.maxIdle = maxTotal
+        }
+        return GenericObjectPool(SlowFactory(delayMs), config)
+    }
+
+    @Test
+    fun `test pools are warmed in parallel`() {
+        val first = newPool(100)
+        val second = newPool(100)
+
+        val start = System.nanoTime()
+        PoolPrewarmer.prewarm(mapOf("first" to first, "second" to second), 4, 5000, true)
+        val elapsedMs = (System.nanoTime() - start) / 1_000_000
+
+        assertEquals(4, first.numIdle)
+        assertEquals(4, second.numIdle)
+        // Eight sequential connections would take at least 800 ms
+        assertTrue(elapsedMs < 800, "Pre-warming took $elapsedMs ms")
+    }
+
+    @Test
+    fun `test target is capped at the pool size`() {
+        val pool = newPool(0, maxTotal = 2)
+
+        PoolPrewarmer.prewarm(mapOf("pool" to pool), 10, 1000, true)
+
+        assertEquals(2, pool.numIdle)
+    }
+
+    @Test
+    fun `test required pre-warming fails on timeout`() {
+        val pool = newPool(1000)
+
+        val e = assertThrows(IllegalStateException::class.java) {
+            PoolPrewarmer.prewarm(mapOf("slow" to pool), 2, 50, true)
+        }
+        assertTrue(e.message!!.contains("slow 0/2"))
+    }
+
+    @Test
+    fun `test optional pre-warming only warns on timeout`() {
+        val pool = newPool(1000)
+
+        PoolPrewarmer.prewarm(mapOf("slow" to pool), 2, 50, false)
+    }
+
+    @Test
+    fun `test invalid prewarm settings`() {
+        assertThrows(IllegalArgumentException::class.java) { JedisClientBuilder.create().prewarm(-1, 1000) }
+        assertThrows(IllegalArgumentException::class.java) { JedisClusterClientBuilder.create().prewarm(4, 0) }
+    }
+}
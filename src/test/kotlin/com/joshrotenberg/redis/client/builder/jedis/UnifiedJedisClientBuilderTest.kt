@@ -1,5 +1,6 @@
 package com.joshrotenberg.redis.client.builder.jedis
 
+import com.joshrotenberg.redis.client.builder.resilience.ResilientUnifiedJedis
 import org.junit.jupiter.api.Assertions.*
 import org.junit.jupiter.api.Test
 import redis.clients.jedis.UnifiedJedis
@@ -97,4 +98,18 @@ class UnifiedJedisClientBuilderTest {
         // Close the connection to avoid resource leaks
         unifiedJedis.close()
     }
+
+    @Test
+    fun testAutoPipeliningWithCircuitBreaker() {
+        // Resilience policies decorate the auto-pipelining client instead of rejecting it
+        val unifiedJedis = UnifiedJedisClientBuilder.create()
+            .autoPipelining(16, 100)
+            .withCircuitBreaker { it.name("test-auto-pipelining-circuit-breaker") }
+            .build()
+
+        assertTrue(unifiedJedis is ResilientUnifiedJedis)
+
+        // Close the decorator, which also stops the writer threads of the wrapped client
+        unifiedJedis.close()
+    }
 }
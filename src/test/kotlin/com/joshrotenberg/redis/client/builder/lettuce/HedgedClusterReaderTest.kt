@@ -0,0 +1,121 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import io.lettuce.core.cluster.api.StatefulRedisClusterConnection
+import io.lettuce.core.cluster.api.async.RedisAdvancedClusterAsyncCommands
+import io.lettuce.core.codec.StringCodec
+import io.lettuce.core.output.ValueOutput
+import io.lettuce.core.protocol.AsyncCommand
+import io.lettuce.core.protocol.Command
+import io.lettuce.core.protocol.CommandType
+import io.netty.util.HashedWheelTimer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.lang.reflect.Proxy
+import java.util.concurrent.ConcurrentLinkedQueue
+import java.util.concurrent.TimeUnit
+
+class HedgedClusterReaderTest {
+
+    private val timer = HashedWheelTimer(5, TimeUnit.MILLISECONDS)
+
+    @AfterEach
+    fun tearDown() {
+        timer.stop()
+    }
+
+    /**
+     * Connection whose GET commands stay pending until the test completes them.
+     */
+    private class PendingConnection {
+        val pending = ConcurrentLinkedQueue<AsyncCommand<String, String, String>>()
+
+        private val commands = Proxy.newProxyInstance(
+            javaClass.classLoader,
+            arrayOf(RedisAdvancedClusterAsyncCommands::class.java)
+        ) { _, method, _ ->
+            check(method.name == "get") { "Unexpected command ${method.name}" }
+            val output = ValueOutput<String, String>(StringCodec.UTF8)
+            AsyncCommand(Command(CommandType.GET, output)).also { pending.add(it) }
+        }
+
+        @Suppress("UNCHECKED_CAST")
+        val connection = Proxy.newProxyInstance(
+            javaClass.classLoader,
+            arrayOf(StatefulRedisClusterConnection::class.java)
+        ) { _, method, _ ->
+            when (method.name) {
+                "async" -> commands
+                "close" -> null
+                else -> throw UnsupportedOperationException(method.name)
+            }
+        } as StatefulRedisClusterConnection<String, String>
+
+        fun reply(value: String) {
+            val command = pending.poll()
+            command.output.set(StringCodec.UTF8.encodeValue(value))
+            command.complete()
+        }
+    }
+
+    @Test
+    fun `test fast primary read is not hedged`() {
+        val primary = PendingConnection()
+        val replicas = PendingConnection()
+        val reader = HedgedClusterReader(
+            primary.connection, replicas.connection, timer, TimeUnit.MILLISECONDS.toNanos(50), 100.0
+        )
+
+        val result = reader.read { it.get("key") }
+        primary.reply("primary")
+
+        assertEquals("primary", result.get(1, TimeUnit.SECONDS))
+        Thread.sleep(100)
+        assertEquals(0, reader.metrics.hedges)
+        assertEquals(0, replicas.pending.size)
+    }
+
+    @Test
+    fun `test slow primary read is hedged to a replica`() {
+        val primary = PendingConnection()
+        val replicas = PendingConnection()
+        val reader = HedgedClusterReader(
+            primary.connection, replicas.connection, timer, TimeUnit.MILLISECONDS.toNanos(10), 100.0
+        )
+
+        val result = reader.read { it.get("key") }
+        while (replicas.pending.isEmpty()) {
+            Thread.sleep(5)
+        }
+        replicas.reply("replica")
+
+        assertEquals("replica", result.get(1, TimeUnit.SECONDS))
+        assertEquals(1, reader.metrics.hedges)
+        assertEquals(1, reader.metrics.hedgeWins)
+        assertEquals(1.0, reader.metrics.winRate)
+    }
+
+    @Test
+    fun `test hedges are limited by the budget`() {
+        val primary = PendingConnection()
+        val replicas = PendingConnection()
+        val reader = HedgedClusterReader(
+            primary.connection, replicas.connection, timer, TimeUnit.MILLISECONDS.toNanos(10), 0.0
+        )
+
+        // With no budget for new hedges, only the initial burst of hedges is sent
+        repeat(20) { reader.read { it.get("key") } }
+        Thread.sleep(200)
+
+        assertEquals(10, reader.metrics.hedges)
+        assertEquals(0.5, reader.metrics.hedgeRate)
+    }
+
+    @Test
+    fun `test invalid hedge percent`() {
+        assertThrows(IllegalArgumentException::class.java) {
+            LettuceClusterClientBuilder.create().hedgedReads(10, 150.0)
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.joshrotenberg.redis.client.builder.lettuce
 
+import com.joshrotenberg.redis.client.builder.coalescing.CoalescingRedisClient
 import io.lettuce.core.ClientOptions
 import io.lettuce.core.RedisClient
 import io.lettuce.core.RedisURI
@@ -80,6 +81,35 @@ class LettuceClientBuilderTest {
         assertEquals(disconnectedBehavior, clientOptions.disconnectedBehavior)
     }
 
+    @Test
+    fun testCoalesceReads() {
+        val redisClient = LettuceClientBuilder.create()
+            .host("redis-host")
+            .coalesceReads()
+            .build()
+
+        assertTrue(redisClient is CoalescingRedisClient)
+        assertEquals("redis-host", getRedisURI(redisClient).host)
+        redisClient.shutdown()
+    }
+
+    @Test
+    fun testCoalesceReadsRejectsResiliencePolicies() {
+        val builder = LettuceClientBuilder.create()
+            .coalesceReads()
+            .withCircuitBreaker { it.name("test-coalescing-circuit-breaker") }
+
+        assertThrows(IllegalStateException::class.java) { builder.build() }
+    }
+
+    @Test
+    fun testRetryIsRejected() {
+        val builder = LettuceClientBuilder.create()
+            .withRetry { it.name("test-lettuce-retry") }
+
+        assertThrows(IllegalStateException::class.java) { builder.build() }
+    }
+
     /**
      * Helper method to get the RedisURI from a RedisClient using reflection
      */
@@ -0,0 +1,92 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import io.lettuce.core.ReadFrom
+import io.lettuce.core.cluster.ClusterClientOptions
+import io.lettuce.core.cluster.ClusterTopologyRefreshOptions.RefreshTrigger
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.time.Duration
+
+class LettuceClusterClientBuilderTest {
+
+    @Test
+    fun `test topology refresh is off by default`() {
+        val client = LettuceClusterClientBuilder.create()
+            .addNode("localhost", 7000)
+            .build()
+
+        val refresh = (client.options as ClusterClientOptions).topologyRefreshOptions
+        assertFalse(refresh.isPeriodicRefreshEnabled)
+        assertTrue(refresh.adaptiveRefreshTriggers.isEmpty())
+        assertTrue(refresh.useDynamicRefreshSources())
+        client.shutdown()
+    }
+
+    @Test
+    fun `test topology refresh options`() {
+        val client = LettuceClusterClientBuilder.create()
+            .addNode("localhost", 7000)
+            .periodicTopologyRefresh(60000)
+            .adaptiveTopologyRefresh(RefreshTrigger.MOVED_REDIRECT, RefreshTrigger.PERSISTENT_RECONNECTS)
+            .adaptiveTopologyRefreshRateLimit(5000)
+            .refreshTriggersReconnectAttempts(3)
+            .dynamicRefreshSources(false)
+            .build()
+
+        val refresh = (client.options as ClusterClientOptions).topologyRefreshOptions
+        assertTrue(refresh.isPeriodicRefreshEnabled)
+        assertEquals(Duration.ofMinutes(1), refresh.refreshPeriod)
+        assertEquals(
+            setOf(RefreshTrigger.MOVED_REDIRECT, RefreshTrigger.PERSISTENT_RECONNECTS),
+            refresh.adaptiveRefreshTriggers
+        )
+        assertEquals(Duration.ofSeconds(5), refresh.adaptiveRefreshTimeout)
+        assertEquals(3, refresh.refreshTriggersReconnectAttempts)
+        assertFalse(refresh.useDynamicRefreshSources())
+        client.shutdown()
+    }
+
+    @Test
+    fun `test adaptive refresh without triggers enables all of them`() {
+        val client = LettuceClusterClientBuilder.create()
+            .addNode("localhost", 7000)
+            .adaptiveTopologyRefresh()
+            .build()
+
+        val refresh = (client.options as ClusterClientOptions).topologyRefreshOptions
+        assertEquals(RefreshTrigger.values().toSet(), refresh.adaptiveRefreshTriggers)
+        client.shutdown()
+    }
+
+    @Test
+    fun `test read preference uses a client that applies it`() {
+        val client = LettuceClusterClientBuilder.create()
+            .addNode("localhost", 7000)
+            .readFrom(ReadFrom.REPLICA_PREFERRED)
+            .build()
+
+        assertTrue(client is SharedResourcesRedisClusterClient)
+        client.shutdown()
+    }
+
+    @Test
+    fun `test invalid refresh settings are rejected`() {
+        val builder = LettuceClusterClientBuilder.create()
+
+        assertThrows(IllegalArgumentException::class.java) { builder.periodicTopologyRefresh(-1) }
+        assertThrows(IllegalArgumentException::class.java) { builder.adaptiveTopologyRefreshRateLimit(0) }
+        assertThrows(IllegalArgumentException::class.java) { builder.refreshTriggersReconnectAttempts(0) }
+    }
+
+    @Test
+    fun `test retry is rejected`() {
+        val builder = LettuceClusterClientBuilder.create()
+            .addNode("localhost", 7000)
+            .withRetry { it.name("test-lettuce-cluster-retry") }
+
+        assertThrows(IllegalStateException::class.java) { builder.build() }
+    }
+}
@@ -0,0 +1,46 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import io.netty.channel.nio.NioEventLoopGroup
+import io.netty.channel.socket.nio.NioSocketChannel
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNull
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class LettuceTransportTest {
+
+    @Test
+    fun `test auto leaves the choice to lettuce`() {
+        assertNull(ResolvedTransport.resolve(LettuceTransport.AUTO))
+    }
+
+    @Test
+    fun `test nio transport`() {
+        val nio = ResolvedTransport.resolve(LettuceTransport.NIO)!!
+
+        assertEquals(LettuceTransport.NIO, nio.transport)
+        assertEquals(NioEventLoopGroup::class.java, nio.eventLoopGroupClass)
+        assertEquals(NioSocketChannel::class.java, nio.socketChannelClass)
+    }
+
+    @Test
+    fun `test unavailable native transport falls back to nio`() {
+        for (transport in listOf(LettuceTransport.EPOLL, LettuceTransport.IO_URING)) {
+            val resolved = ResolvedTransport.resolve(transport)!!
+            assertTrue(resolved.transport == transport || resolved.transport == LettuceTransport.NIO)
+        }
+    }
+
+    @Test
+    fun `test builder shares resources with the configured transport`() {
+        val builder = LettuceClientBuilder.create().transport(LettuceTransport.NIO)
+
+        val first = builder.build()
+        val second = builder.build()
+
+        assertSame(first.resources, second.resources)
+        first.shutdown()
+        second.shutdown()
+    }
+}
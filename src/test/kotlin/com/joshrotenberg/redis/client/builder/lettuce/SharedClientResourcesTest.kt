@@ -0,0 +1,76 @@
+package com.joshrotenberg.redis.client.builder.lettuce
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+
+class SharedClientResourcesTest {
+
+    @Test
+    fun `test clients share resources until the last one shuts down`() {
+        val shared = SharedClientResources.create(2, 2)
+        val builder = LettuceClientBuilder.create().clientResources(shared)
+
+        val first = builder.build()
+        val second = builder.build()
+        val cluster = LettuceClusterClientBuilder.create()
+            .addNode("localhost", 7000)
+            .clientResources(shared)
+            .build()
+
+        assertSame(shared.resources, first.resources)
+        assertSame(shared.resources, cluster.resources)
+        assertEquals(2, shared.resources.ioThreadPoolSize())
+        assertEquals(3, shared.referenceCount)
+
+        first.shutdown()
+        // Shutting down a client twice releases its reference only once
+        first.shutdown()
+        cluster.shutdown()
+        assertEquals(1, shared.referenceCount)
+        assertFalse(shared.isShutdown)
+
+        second.shutdown()
+        assertEquals(0, shared.referenceCount)
+        assertTrue(shared.isShutdown)
+        assertThrows(IllegalStateException::class.java) { builder.build() }
+    }
+
+    @Test
+    fun `test builder shares resources sized by thread pool settings`() {
+        val builder = LettuceClientBuilder.create()
+            .ioThreadPoolSize(3)
+            .computationThreadPoolSize(2)
+
+        val first = builder.build()
+        val second = builder.build()
+
+        assertSame(first.resources, second.resources)
+        assertEquals(3, first.resources.ioThreadPoolSize())
+        assertEquals(2, first.resources.computationThreadPoolSize())
+
+        first.shutdown()
+        second.shutdown()
+
+        // Once the last client is gone, the next client gets new resources
+        val third = builder.build()
+        assertNotSame(first.resources, third.resources)
+        third.shutdown()
+    }
+
+    @Test
+    fun `test clients without thread settings keep their own resources`() {
+        val builder = LettuceClientBuilder.create()
+
+        val first = builder.build()
+        val second = builder.build()
+
+        assertNotSame(first.resources, second.resources)
+        first.shutdown()
+        second.shutdown()
+    }
+}
@@ -0,0 +1,95 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.TimeoutException
+
+class AdaptiveConcurrencyLimiterTest {
+
+    /**
+     * Takes every permit of the limiter, then completes them all with the given round-trip time.
+     */
+    private fun AdaptiveConcurrencyLimiter.completeAll(rttMicros: Long) {
+        val permits = metrics.limit
+        repeat(permits) { acquirePermission() }
+        repeat(permits) { onSuccess(System.nanoTime() - TimeUnit.MICROSECONDS.toNanos(rttMicros)) }
+    }
+
+    @Test
+    fun `test rejects calls beyond the limit`() {
+        val limiter = AdaptiveConcurrencyLimiter("test-reject", AdaptiveLimitAlgorithm.AIMD, 2, 1, 10)
+        limiter.acquirePermission()
+        limiter.acquirePermission()
+
+        val e = assertThrows(ConcurrencyLimitExceededException::class.java) { limiter.acquirePermission() }
+        assertTrue(e.message!!.contains("limit=2"))
+        assertTrue(e.message!!.contains("inFlight=2"))
+        assertEquals(1, limiter.metrics.rejectedCalls)
+        assertEquals(2, limiter.metrics.inFlight)
+    }
+
+    @Test
+    fun `test aimd grows while utilized and backs off on timeouts`() {
+        val limiter = AdaptiveConcurrencyLimiter("test-aimd", AdaptiveLimitAlgorithm.AIMD, 10, 1, 100)
+        limiter.completeAll(rttMicros = 100)
+        assertTrue(limiter.metrics.limit > 10)
+
+        val grown = limiter.metrics.limit
+        val start = limiter.acquirePermission()
+        limiter.onError(start, TimeoutException())
+        assertTrue(limiter.metrics.limit < grown)
+    }
+
+    @Test
+    fun `test errors other than timeouts do not change the limit`() {
+        val limiter = AdaptiveConcurrencyLimiter("test-errors", AdaptiveLimitAlgorithm.AIMD, 10, 1, 100)
+        repeat(20) {
+            val start = limiter.acquirePermission()
+            limiter.onError(start, IllegalStateException("WRONGTYPE"))
+        }
+
+        assertEquals(10, limiter.metrics.limit)
+        assertEquals(0, limiter.metrics.inFlight)
+    }
+
+    @Test
+    fun `test vegas backs off when latency rises and recovers afterwards`() {
+        val limiter = AdaptiveConcurrencyLimiter("test-vegas", AdaptiveLimitAlgorithm.VEGAS, 20, 1, 200)
+        limiter.completeAll(rttMicros = 100)
+        val healthy = limiter.metrics.limit
+
+        repeat(5) { limiter.completeAll(rttMicros = 2000) }
+        val degraded = limiter.metrics.limit
+        assertTrue(degraded < healthy)
+
+        repeat(5) { limiter.completeAll(rttMicros = 100) }
+        assertTrue(limiter.metrics.limit > degraded)
+    }
+
+    @Test
+    fun `test gradient backs off when latency rises`() {
+        val limiter = AdaptiveConcurrencyLimiter("test-gradient", AdaptiveLimitAlgorithm.GRADIENT, 20, 1, 200)
+        repeat(3) { limiter.completeAll(rttMicros = 100) }
+        val healthy = limiter.metrics.limit
+
+        repeat(5) { limiter.completeAll(rttMicros = 5000) }
+        assertTrue(limiter.metrics.limit < healthy)
+        assertTrue(limiter.metrics.smoothedRttNanos > limiter.metrics.minRttNanos)
+    }
+
+    @Test
+    fun `test limit stays within bounds`() {
+        val limiter = AdaptiveConcurrencyLimiter("test-bounds", AdaptiveLimitAlgorithm.AIMD, 4, 2, 5)
+        repeat(10) { limiter.completeAll(rttMicros = 100) }
+        assertEquals(5, limiter.metrics.limit)
+
+        repeat(20) {
+            val start = limiter.acquirePermission()
+            limiter.onError(start, TimeoutException())
+        }
+        assertEquals(2, limiter.metrics.limit)
+    }
+}
@@ -0,0 +1,75 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.concurrent.thread
+
+class GcraRateLimiterTest {
+
+    @Test
+    fun `test allows a burst up to the limit`() {
+        val limiter = GcraRateLimiter("test-burst", 10, TimeUnit.SECONDS.toNanos(10), 0)
+
+        repeat(10) { assertTrue(limiter.tryAcquirePermission()) }
+        assertFalse(limiter.tryAcquirePermission())
+    }
+
+    @Test
+    fun `test rejects when the wait exceeds the timeout`() {
+        val limiter = GcraRateLimiter("test-timeout", 1, TimeUnit.SECONDS.toNanos(10), TimeUnit.MILLISECONDS.toNanos(10))
+        limiter.acquirePermission()
+
+        val e = assertThrows(RateLimitExceededException::class.java) { limiter.acquirePermission() }
+        assertTrue(e.message!!.contains("test-timeout"))
+    }
+
+    @Test
+    fun `test waits for the next permission within the timeout`() {
+        val limiter = GcraRateLimiter("test-wait", 1, TimeUnit.MILLISECONDS.toNanos(20), TimeUnit.SECONDS.toNanos(1))
+        limiter.acquirePermission()
+
+        val start = System.nanoTime()
+        limiter.acquirePermission()
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(10))
+    }
+
+    @Test
+    fun `test striped limiter does not exceed the total limit`() {
+        val limiter = GcraRateLimiter("test-striped", 64, TimeUnit.SECONDS.toNanos(60), 0, stripes = 4)
+        val granted = AtomicInteger()
+        val ready = CountDownLatch(1)
+        val workers = (1..8).map {
+            thread {
+                ready.await()
+                repeat(100) {
+                    if (limiter.tryAcquirePermission()) {
+                        granted.incrementAndGet()
+                    }
+                }
+            }
+        }
+        ready.countDown()
+        workers.forEach { it.join() }
+
+        assertEquals(64, granted.get())
+    }
+
+    @Test
+    fun `test rate limiter impl uses gcra`() {
+        val rateLimiter = RedisRateLimiterImpl<Any>()
+        rateLimiter.name("test-gcra-impl")
+            .limitForPeriod(5)
+            .algorithm(RateLimiterAlgorithm.GCRA)
+            .stripes(2)
+
+        val guard = rateLimiter.createGuard()
+        assertTrue(guard is GcraRateLimiter)
+        assertTrue(guard === rateLimiter.createGuard())
+    }
+}
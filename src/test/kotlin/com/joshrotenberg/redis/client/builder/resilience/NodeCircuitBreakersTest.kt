@@ -0,0 +1,69 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException
+import io.github.resilience4j.circuitbreaker.CircuitBreaker
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry
+import redis.clients.jedis.JedisCluster
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.io.IOException
+
+class NodeCircuitBreakersTest {
+
+    private val registry = CircuitBreakerRegistry.ofDefaults()
+
+    private fun newNodeBreakers(): NodeCircuitBreakers =
+        RedisCircuitBreakerImpl<JedisCluster>(registry)
+            .name("cluster")
+            .failureRateThreshold(50f)
+            .minimumNumberOfCalls(2)
+            .createNodeCircuitBreakers()
+
+    private fun fail(guard: RedisCommandGuard) {
+        guard.onError(guard.acquirePermission(), IOException("node down"))
+    }
+
+    @Test
+    fun `test breakers are registered per node`() {
+        val breakers = newNodeBreakers()
+        val first = breakers.circuitBreaker("10.0.0.1:7000")
+
+        assertSame(first, breakers.circuitBreaker("10.0.0.1:7000"))
+        assertNotSame(first, breakers.circuitBreaker("10.0.0.2:7000"))
+        assertEquals("cluster-10.0.0.1:7000", first.name)
+        assertTrue(registry.find("cluster-10.0.0.2:7000").isPresent)
+        assertEquals(setOf("10.0.0.1:7000", "10.0.0.2:7000"), breakers.nodes())
+    }
+
+    @Test
+    fun `test failing node does not open other breakers`() {
+        val breakers = newNodeBreakers()
+        val failing = breakers.guardFor("10.0.0.1:7000")
+        repeat(2) { fail(failing) }
+
+        assertEquals(CircuitBreaker.State.OPEN, breakers.circuitBreaker("10.0.0.1:7000").state)
+        assertThrows(CallNotPermittedException::class.java) { failing.acquirePermission() }
+
+        val healthy = breakers.guardFor("10.0.0.2:7000")
+        healthy.onSuccess(healthy.acquirePermission())
+        assertEquals(CircuitBreaker.State.CLOSED, breakers.circuitBreaker("10.0.0.2:7000").state)
+    }
+
+    @Test
+    fun `test removed node starts with a fresh breaker`() {
+        val breakers = newNodeBreakers()
+        repeat(2) { fail(breakers.guardFor("10.0.0.1:7000")) }
+        breakers.circuitBreaker("10.0.0.2:7000")
+
+        breakers.retainNodes(listOf("10.0.0.2:7000"))
+
+        assertEquals(setOf("10.0.0.2:7000"), breakers.nodes())
+        assertFalse(registry.find("cluster-10.0.0.1:7000").isPresent)
+        assertEquals(CircuitBreaker.State.CLOSED, breakers.circuitBreaker("10.0.0.1:7000").state)
+    }
+}
@@ -3,8 +3,13 @@ package com.joshrotenberg.redis.client.builder.resilience
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertNotSame
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
 import io.github.resilience4j.ratelimiter.RateLimiterRegistry
 import redis.clients.jedis.JedisPool
+import redis.clients.jedis.JedisPooled
 
 class RedisRateLimiterImplTest {
 
@@ -30,15 +35,38 @@ class RedisRateLimiterImplTest {
         assertEquals(rateLimiter, rateLimiter.name("another-name"))
     }
 
+    @Test
+    fun `test gcra limiter is shared until a setting changes`() {
+        val rateLimiter = RedisRateLimiterImpl<JedisPooled>()
+        rateLimiter.name("test-gcra").algorithm(RateLimiterAlgorithm.GCRA)
+        val first = rateLimiter.createGuard()
+        assertSame(first, rateLimiter.createGuard())
+
+        rateLimiter.name("test-gcra-renamed")
+
+        val second = rateLimiter.createGuard()
+        assertNotSame(first, second)
+        assertEquals("test-gcra-renamed", (second as GcraRateLimiter).name)
+    }
+
     @Test
     fun `test wrap client`() {
+        val rateLimiter = RedisRateLimiterImpl.create<JedisPooled>()
+        val client = JedisPooled()
+
+        val wrappedClient = rateLimiter.wrap(client)
+        assertTrue(wrappedClient is ResilientJedisPooled)
+        wrappedClient.close()
+    }
+
+    @Test
+    fun `test wrap unsupported client`() {
         val rateLimiter = RedisRateLimiterImpl.create<JedisPool>()
-        val mockClient = JedisPool()
-        
-        val wrappedClient = rateLimiter.wrap(mockClient)
-        assertNotNull(wrappedClient)
-        
-        // In a real test, we would verify that the wrapped client behaves correctly
-        // For now, we'll just ensure the wrap method returns a non-null value
+        val client = JedisPool()
+
+        assertThrows(IllegalArgumentException::class.java) {
+            rateLimiter.wrap(client)
+        }
+        client.close()
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,113 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertSame
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.exceptions.JedisConnectionException
+import redis.clients.jedis.executors.CommandExecutor
+
+class RedisResiliencePipelineTest {
+
+    /**
+     * Command executor that fails a given number of times before answering with a fixed value.
+     */
+    private class FlakyCommandExecutor(private var failures: Int) : CommandExecutor {
+        var calls = 0
+
+        @Suppress("UNCHECKED_CAST")
+        override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+            calls++
+            if (failures > 0) {
+                failures--
+                throw JedisConnectionException("connection reset")
+            }
+            return "value" as T
+        }
+
+        override fun close() {
+            // Nothing to close
+        }
+    }
+
+    @Test
+    fun `test empty pipeline returns client unchanged`() {
+        val client = UnifiedJedis(FlakyCommandExecutor(0))
+        val pipeline = RedisResiliencePipeline.create<UnifiedJedis>()
+
+        assertTrue(pipeline.isEmpty())
+        assertSame(client, pipeline.wrap(client))
+    }
+
+    @Test
+    fun `test pipeline fuses policies into one decorator`() {
+        val client = RedisResiliencePipeline.create<UnifiedJedis>()
+            .circuitBreaker(RedisCircuitBreakerImpl.create<UnifiedJedis>().name("test-fused-circuit-breaker"))
+            .retry(RedisRetryImpl.create<UnifiedJedis>().name("test-fused-retry").waitDuration(1))
+            .bulkhead(RedisBulkheadImpl.create<UnifiedJedis>().name("test-fused-bulkhead"))
+            .rateLimiter(RedisRateLimiterImpl.create<UnifiedJedis>().name("test-fused-rate-limiter"))
+            .timeLimiter(RedisTimeLimiterImpl.create<UnifiedJedis>().name("test-fused-time-limiter"))
+            .wrap(UnifiedJedis(FlakyCommandExecutor(0)))
+
+        assertTrue(client is ResilientUnifiedJedis)
+        assertEquals("value", client.get("key"))
+    }
+
+    @Test
+    fun `test retry runs through the whole pipeline`() {
+        val executor = FlakyCommandExecutor(2)
+        val client = RedisResiliencePipeline.create<UnifiedJedis>()
+            .circuitBreaker(RedisCircuitBreakerImpl.create<UnifiedJedis>().name("test-retried-circuit-breaker"))
+            .retry(RedisRetryImpl.create<UnifiedJedis>().name("test-retried-retry").maxAttempts(3).waitDuration(1))
+            .wrap(UnifiedJedis(executor))
+
+        assertEquals("value", client.get("key"))
+        assertEquals(3, executor.calls)
+    }
+
+    @Test
+    fun `test rejected calls are not retried`() {
+        val executor = FlakyCommandExecutor(Int.MAX_VALUE)
+        val client = RedisResiliencePipeline.create<UnifiedJedis>()
+            .circuitBreaker(
+                RedisCircuitBreakerImpl.create<UnifiedJedis>()
+                    .name("test-rejecting-circuit-breaker")
+                    .minimumNumberOfCalls(2)
+            )
+            .retry(RedisRetryImpl.create<UnifiedJedis>().name("test-rejecting-retry").maxAttempts(5).waitDuration(1))
+            .wrap(UnifiedJedis(executor))
+
+        // The first command fails twice, which opens the breaker, and the third attempt is rejected
+        assertThrows(CallNotPermittedException::class.java) { client.get("key") }
+        assertEquals(2, executor.calls)
+    }
+
+    @Test
+    fun `test late reply is returned and recorded as a timeout`() {
+        val registry = CircuitBreakerRegistry.ofDefaults()
+        val executor = object : CommandExecutor {
+            @Suppress("UNCHECKED_CAST")
+            override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+                Thread.sleep(50)
+                return "OK" as T
+            }
+
+            override fun close() {
+                // Nothing to close
+            }
+        }
+        val client = RedisResiliencePipeline.create<UnifiedJedis>()
+            .circuitBreaker(RedisCircuitBreakerImpl<UnifiedJedis>(registry).name("test-late-circuit-breaker"))
+            .timeLimiter(RedisTimeLimiterImpl.create<UnifiedJedis>().name("test-late-time-limiter").timeoutDuration(10))
+            .wrap(UnifiedJedis(executor))
+
+        // The write was executed, so failing it would make the caller apply it twice
+        assertEquals("OK", client.set("key", "value"))
+        assertEquals(1, registry.circuitBreaker("test-late-circuit-breaker").metrics.numberOfFailedCalls)
+    }
+}
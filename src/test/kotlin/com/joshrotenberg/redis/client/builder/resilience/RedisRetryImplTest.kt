@@ -3,8 +3,12 @@ package com.joshrotenberg.redis.client.builder.resilience
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
 import io.github.resilience4j.retry.RetryRegistry
 import redis.clients.jedis.JedisPool
+import redis.clients.jedis.JedisPooled
 
 class RedisRetryImplTest {
 
@@ -34,13 +38,70 @@ class RedisRetryImplTest {
 
     @Test
     fun `test wrap client`() {
+        val retry = RedisRetryImpl.create<JedisPooled>()
+        val client = JedisPooled()
+
+        val wrappedClient = retry.wrap(client)
+        assertTrue(wrappedClient is ResilientJedisPooled)
+        wrappedClient.close()
+    }
+
+    @Test
+    fun `test decorrelated jitter stays within bounds`() {
+        val retry = RedisRetryImpl<JedisPooled>()
+        retry.name("test-jitter-retry")
+            .maxAttempts(10)
+            .waitDuration(10)
+            .decorrelatedJitter(100)
+        val guard = retry.createGuard()
+
+        var delay = 0L
+        for (attempt in 1 until 10) {
+            delay = guard.retryDelay(attempt, RuntimeException("failure"), true, delay)
+            assertTrue(delay in 10..100)
+        }
+    }
+
+    @Test
+    fun `test command idempotency`() {
+        assertTrue(RedisCommands.isIdempotent("GET"))
+        assertTrue(RedisCommands.isIdempotent("set"))
+        assertFalse(RedisCommands.isIdempotent("INCR"))
+        assertFalse(RedisCommands.isIdempotent("lpush".toByteArray()))
+        // Removing by count or by rank removes further elements on every execution
+        assertFalse(RedisCommands.isIdempotent("LREM", listOf("queue", "1", "job")))
+        assertFalse(RedisCommands.isIdempotent("zremrangebyrank".toByteArray()))
+        assertTrue(RedisCommands.isIdempotent("ZREMRANGEBYSCORE"))
+    }
+
+    @Test
+    fun `test conditional writes are not idempotent`() {
+        assertFalse(RedisCommands.isIdempotent("SETNX"))
+        assertFalse(RedisCommands.isIdempotent("del"))
+        assertFalse(RedisCommands.isIdempotent("BITFIELD", listOf("counter", "INCRBY", "u8", "0", "1")))
+        assertFalse(RedisCommands.isIdempotent("SET", listOf("lock", "owner", "NX", "PX", "30000")))
+        assertFalse(RedisCommands.isIdempotent("set", listOf("key", "value", "get")))
+        assertTrue(RedisCommands.isIdempotent("SET", listOf("key", "value", "XX", "EX", "10")))
+        // Option names in the value position are data, not options
+        assertTrue(RedisCommands.isIdempotent("SET", listOf("key", "NX")))
+    }
+
+    @Test
+    fun `test zadd is idempotent unless it increments`() {
+        assertTrue(RedisCommands.isIdempotent("ZADD", listOf("board", "XX", "CH", "1", "member")))
+        assertFalse(RedisCommands.isIdempotent("ZADD", listOf("board", "XX", "INCR", "1", "member")))
+        // A member named INCR does not make the command increment
+        assertTrue(RedisCommands.isIdempotent("zadd", listOf("board", "1", "INCR")))
+    }
+
+    @Test
+    fun `test wrap unsupported client`() {
         val retry = RedisRetryImpl.create<JedisPool>()
-        val mockClient = JedisPool()
-        
-        val wrappedClient = retry.wrap(mockClient)
-        assertNotNull(wrappedClient)
-        
-        // In a real test, we would verify that the wrapped client behaves correctly
-        // For now, we'll just ensure the wrap method returns a non-null value
+        val client = JedisPool()
+
+        assertThrows(IllegalArgumentException::class.java) {
+            retry.wrap(client)
+        }
+        client.close()
     }
-}
\ No newline at end of file
+}
@@ -3,8 +3,11 @@ package com.joshrotenberg.redis.client.builder.resilience
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.Assertions.assertNotNull
 import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
 import io.github.resilience4j.timelimiter.TimeLimiterRegistry
 import redis.clients.jedis.JedisPool
+import redis.clients.jedis.JedisPooled
 
 class RedisTimeLimiterImplTest {
 
@@ -31,13 +34,22 @@ class RedisTimeLimiterImplTest {
 
     @Test
     fun `test wrap client`() {
+        val timeLimiter = RedisTimeLimiterImpl.create<JedisPooled>()
+        val client = JedisPooled()
+
+        val wrappedClient = timeLimiter.wrap(client)
+        assertTrue(wrappedClient is ResilientJedisPooled)
+        wrappedClient.close()
+    }
+
+    @Test
+    fun `test wrap unsupported client`() {
         val timeLimiter = RedisTimeLimiterImpl.create<JedisPool>()
-        val mockClient = JedisPool()
-        
-        val wrappedClient = timeLimiter.wrap(mockClient)
-        assertNotNull(wrappedClient)
-        
-        // In a real test, we would verify that the wrapped client behaves correctly
-        // For now, we'll just ensure the wrap method returns a non-null value
+        val client = JedisPool()
+
+        assertThrows(IllegalArgumentException::class.java) {
+            timeLimiter.wrap(client)
+        }
+        client.close()
     }
-}
\ No newline at end of file
+}
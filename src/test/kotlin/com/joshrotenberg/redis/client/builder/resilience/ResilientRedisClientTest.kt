@@ -0,0 +1,134 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.bulkhead.Bulkhead
+import io.github.resilience4j.bulkhead.BulkheadConfig
+import io.github.resilience4j.bulkhead.BulkheadFullException
+import io.github.resilience4j.circuitbreaker.CircuitBreaker
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry
+import io.github.resilience4j.timelimiter.TimeLimiter
+import io.lettuce.core.RedisChannelWriter
+import io.lettuce.core.RedisClient
+import io.lettuce.core.RedisCommandTimeoutException
+import io.lettuce.core.cluster.RedisClusterClient
+import io.lettuce.core.codec.StringCodec
+import io.lettuce.core.output.StatusOutput
+import io.lettuce.core.protocol.AsyncCommand
+import io.lettuce.core.protocol.Command
+import io.lettuce.core.protocol.CommandType
+import io.lettuce.core.resource.ClientResources
+import io.mockk.every
+import io.mockk.mockk
+import io.netty.util.HashedWheelTimer
+import org.junit.jupiter.api.AfterEach
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.time.Duration
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.TimeUnit
+
+class ResilientRedisClientTest {
+
+    private val timer = HashedWheelTimer(10, TimeUnit.MILLISECONDS)
+
+    @AfterEach
+    fun tearDown() {
+        timer.stop()
+    }
+
+    private fun newCommand(): AsyncCommand<String, String, String> =
+        AsyncCommand(Command(CommandType.GET, StatusOutput(StringCodec.UTF8)))
+
+    @Test
+    fun `test command is expired by the timer`() {
+        val guard = TimeLimiterGuard(TimeLimiter.of(Duration.ofMillis(50)))
+        val command = newCommand()
+        val guarded = GuardedCommand(command, guard, guard.acquirePermission())
+        guarded.expireAfter(timer, guard.commandTimeoutNanos())
+
+        val e = assertThrows(ExecutionException::class.java) { command.get(1, TimeUnit.SECONDS) }
+        assertTrue(e.cause is RedisCommandTimeoutException)
+    }
+
+    @Test
+    fun `test completed command is not expired`() {
+        val guard = TimeLimiterGuard(TimeLimiter.of(Duration.ofMillis(50)))
+        val command = newCommand()
+        val guarded = GuardedCommand(command, guard, guard.acquirePermission())
+        guarded.expireAfter(timer, guard.commandTimeoutNanos())
+
+        command.output.set(StringCodec.UTF8.encodeValue("OK"))
+        guarded.complete()
+        Thread.sleep(100)
+
+        assertEquals("OK", command.get(1, TimeUnit.SECONDS))
+    }
+
+    @Test
+    fun `test slow node opens its breaker behind a time limiter`() {
+        val breaker = RedisCircuitBreakerImpl<RedisClusterClient>(CircuitBreakerRegistry.ofDefaults())
+            .name("cluster")
+            .failureRateThreshold(50f)
+            .minimumNumberOfCalls(2)
+            .createNodeCircuitBreakers()
+            .guardFor("10.0.0.1:7000")
+        val resources = mockk<ClientResources>()
+        every { resources.timer() } returns timer
+        val guarding = CommandGuarding(TimeLimiterGuard(TimeLimiter.of(Duration.ofMillis(50))), resources)
+
+        val commands = List(2) { newCommand() }
+        val guarded = commands.map { GuardedStatefulRedisClusterConnection.guardOnNode(it, guarding, breaker) }
+        for (command in commands) {
+            val e = assertThrows(ExecutionException::class.java) { command.get(1, TimeUnit.SECONDS) }
+            assertTrue(e.cause is RedisCommandTimeoutException)
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.circuitBreaker.state)
+
+        // The slow node replies after the deadline, which must not count as a success
+        guarded.forEach { it.complete() }
+        assertEquals(2, breaker.circuitBreaker.metrics.numberOfFailedCalls)
+        assertEquals(0, breaker.circuitBreaker.metrics.numberOfSuccessfulCalls)
+    }
+
+    @Test
+    fun `test rejected batch releases the permits of its commands`() {
+        val bulkhead = Bulkhead.of(
+            "batch",
+            BulkheadConfig.custom().maxConcurrentCalls(2).maxWaitDuration(Duration.ZERO).build()
+        )
+        val resources = mockk<ClientResources>()
+        every { resources.timer() } returns timer
+        val connection = GuardedStatefulRedisConnection(
+            mockk<RedisChannelWriter>(relaxed = true),
+            mockk(relaxed = true),
+            StringCodec.UTF8,
+            Duration.ofSeconds(10),
+            CommandGuarding(BulkheadGuard(bulkhead), resources)
+        )
+
+        val commands = List(3) { newCommand() }
+        assertThrows(BulkheadFullException::class.java) { connection.dispatch(commands) }
+
+        assertEquals(2, bulkhead.metrics.availableConcurrentCalls)
+        commands.forEach { assertTrue(it.isCompletedExceptionally) }
+    }
+
+    @Test
+    fun `test wrap client`() {
+        val timeLimiter = RedisTimeLimiterImpl.create<RedisClient>().timeoutDuration(100)
+        val wrappedClient = timeLimiter.wrap(RedisClient.create())
+
+        assertTrue(wrappedClient is ResilientRedisClient)
+        wrappedClient.shutdown()
+    }
+
+    @Test
+    fun `test wrap cluster client`() {
+        val timeLimiter = RedisTimeLimiterImpl.create<RedisClusterClient>().timeoutDuration(100)
+        val wrappedClient = timeLimiter.wrap(RedisClusterClient.create("redis://localhost:7000"))
+
+        assertTrue(wrappedClient is ResilientRedisClusterClient)
+        wrappedClient.shutdown()
+    }
+}
@@ -0,0 +1,178 @@
+package com.joshrotenberg.redis.client.builder.resilience
+
+import io.github.resilience4j.bulkhead.BulkheadFullException
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import redis.clients.jedis.CommandObject
+import redis.clients.jedis.UnifiedJedis
+import redis.clients.jedis.exceptions.JedisConnectionException
+import redis.clients.jedis.executors.CommandExecutor
+import redis.clients.jedis.params.SetParams
+
+class ResilientUnifiedJedisTest {
+
+    /**
+     * Command executor that answers every command with a fixed value, or fails a given number of times first.
+     */
+    private class StubCommandExecutor(
+        private var failures: Int = 0,
+        private val reply: Any = "value"
+    ) : CommandExecutor {
+        var calls = 0
+
+        @Suppress("UNCHECKED_CAST")
+        override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+            calls++
+            if (failures > 0) {
+                failures--
+                throw JedisConnectionException("connection reset")
+            }
+            return reply as T
+        }
+
+        override fun close() {
+            // Nothing to close
+        }
+    }
+
+    @Test
+    fun `test wrapped client executes commands`() {
+        val executor = StubCommandExecutor()
+        val client = RedisCircuitBreakerImpl.create<UnifiedJedis>().wrap(UnifiedJedis(executor))
+
+        assertEquals("value", client.get("key"))
+        assertEquals(1, executor.calls)
+    }
+
+    @Test
+    fun `test circuit breaker opens after failures`() {
+        val executor = StubCommandExecutor(failures = Int.MAX_VALUE)
+        val client = RedisCircuitBreakerImpl.create<UnifiedJedis>()
+            .name("test-open-circuit-breaker")
+            .minimumNumberOfCalls(2)
+            .failureRateThreshold(50f)
+            .wrap(UnifiedJedis(executor))
+
+        repeat(2) {
+            assertThrows(JedisConnectionException::class.java) { client.get("key") }
+        }
+        assertThrows(CallNotPermittedException::class.java) { client.get("key") }
+        assertEquals(2, executor.calls)
+    }
+
+    @Test
+    fun `test retry recovers from transient failures`() {
+        val executor = StubCommandExecutor(failures = 2)
+        val client = RedisRetryImpl.create<UnifiedJedis>()
+            .name("test-transient-retry")
+            .maxAttempts(3)
+            .waitDuration(1)
+            .wrap(UnifiedJedis(executor))
+
+        assertEquals("value", client.get("key"))
+        assertEquals(3, executor.calls)
+    }
+
+    @Test
+    fun `test retry gives up after max attempts`() {
+        val executor = StubCommandExecutor(failures = Int.MAX_VALUE)
+        val client = RedisRetryImpl.create<UnifiedJedis>()
+            .name("test-exhausted-retry")
+            .maxAttempts(2)
+            .waitDuration(1)
+            .wrap(UnifiedJedis(executor))
+
+        assertThrows(JedisConnectionException::class.java) { client.get("key") }
+        assertEquals(2, executor.calls)
+    }
+
+    @Test
+    fun `test non-idempotent commands are not retried`() {
+        val executor = StubCommandExecutor(failures = 1, reply = 1L)
+        val client = RedisRetryImpl.create<UnifiedJedis>()
+            .name("test-non-idempotent-retry")
+            .maxAttempts(3)
+            .waitDuration(1)
+            .wrap(UnifiedJedis(executor))
+
+        assertThrows(JedisConnectionException::class.java) { client.incr("counter") }
+        assertEquals(1, executor.calls)
+    }
+
+    @Test
+    fun `test lock acquisition is not retried`() {
+        val executor = StubCommandExecutor(failures = 1, reply = "OK")
+        val client = RedisRetryImpl.create<UnifiedJedis>()
+            .name("test-lock-retry")
+            .maxAttempts(3)
+            .waitDuration(1)
+            .wrap(UnifiedJedis(executor))
+
+        assertThrows(JedisConnectionException::class.java) {
+            client.set("lock", "owner", SetParams.setParams().nx().px(30000))
+        }
+        assertEquals(1, executor.calls)
+
+        // Without NX, SET can be repeated safely
+        assertEquals("OK", client.set("key", "value", SetParams.setParams().xx()))
+        assertEquals(2, executor.calls)
+    }
+
+    @Test
+    fun `test non-idempotent commands are retried when enabled`() {
+        val executor = StubCommandExecutor(failures = 1, reply = 1L)
+        val client = RedisRetryImpl.create<UnifiedJedis>()
+            .name("test-enabled-non-idempotent-retry")
+            .maxAttempts(3)
+            .waitDuration(1)
+            .retryNonIdempotent(true)
+            .wrap(UnifiedJedis(executor))
+
+        assertEquals(1L, client.incr("counter"))
+        assertEquals(2, executor.calls)
+    }
+
+    @Test
+    fun `test retry budget stops retries once spent`() {
+        val executor = StubCommandExecutor(failures = Int.MAX_VALUE)
+        val client = RedisRetryImpl.create<UnifiedJedis>()
+            .name("test-budget-retry")
+            .maxAttempts(3)
+            .waitDuration(1)
+            .retryBudget(10.0, 2)
+            .wrap(UnifiedJedis(executor))
+
+        // The first command spends the whole budget on its two retries
+        assertThrows(JedisConnectionException::class.java) { client.get("key") }
+        assertEquals(3, executor.calls)
+
+        assertThrows(JedisConnectionException::class.java) { client.get("key") }
+        assertEquals(4, executor.calls)
+    }
+
+    @Test
+    fun `test bulkhead rejects calls beyond the limit`() {
+        val bulkhead = RedisBulkheadImpl.create<UnifiedJedis>()
+            .name("test-full-bulkhead")
+            .maxConcurrentCalls(1)
+            .waitTime(0)
+        lateinit var client: UnifiedJedis
+        val reentrant = object : CommandExecutor {
+            @Suppress("UNCHECKED_CAST")
+            override fun <T> executeCommand(commandObject: CommandObject<T>): T {
+                // A nested call while the outer call holds the only permit must be rejected
+                assertThrows(BulkheadFullException::class.java) { client.get("nested") }
+                return "value" as T
+            }
+
+            override fun close() {
+                // Nothing to close
+            }
+        }
+        client = bulkhead.wrap(UnifiedJedis(reentrant))
+
+        assertEquals("value", client.get("key"))
+    }
+}